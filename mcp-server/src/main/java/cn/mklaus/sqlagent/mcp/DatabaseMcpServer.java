@@ -1,11 +1,25 @@
 package cn.mklaus.sqlagent.mcp;
 
 import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.output.OutputOptions;
+import cn.mklaus.sqlagent.mcp.output.ResultEncoder;
+import cn.mklaus.sqlagent.mcp.schema.RelationshipGraphCache;
+import cn.mklaus.sqlagent.mcp.schema.TableMetadataCache;
+import cn.mklaus.sqlagent.mcp.tools.BatchWriteSizingTool;
+import cn.mklaus.sqlagent.mcp.tools.BenchmarkQueryTool;
 import cn.mklaus.sqlagent.mcp.tools.ExplainSqlTool;
+import cn.mklaus.sqlagent.mcp.tools.GetRelationshipsTool;
 import cn.mklaus.sqlagent.mcp.tools.GetTableMetadataTool;
+import cn.mklaus.sqlagent.mcp.tools.IndexHealthTool;
 import cn.mklaus.sqlagent.mcp.tools.ListTablesTool;
+import cn.mklaus.sqlagent.mcp.tools.LockWaitsTool;
 import cn.mklaus.sqlagent.mcp.tools.McpTool;
 import cn.mklaus.sqlagent.mcp.tools.ParseSqlTool;
+import cn.mklaus.sqlagent.mcp.tools.RewriteSqlTool;
+import cn.mklaus.sqlagent.mcp.tools.SampleDistributionTool;
+import cn.mklaus.sqlagent.mcp.tools.TableFootprintTool;
+import cn.mklaus.sqlagent.mcp.tools.ToolCancellation;
+import cn.mklaus.sqlagent.mcp.tools.VerifyEquivalenceTool;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -17,23 +31,37 @@ import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Database MCP Server - Main server class
  *
  * Implements MCP (Model Context Protocol) server for database operations.
- * Communicates via STDIO using JSON-RPC 2.0 protocol.
+ * Communicates via STDIO using JSON-RPC 2.0 protocol, or over streamable HTTP
+ * through {@link McpHttpTransport} when one process is shared by several clients.
  */
 public class DatabaseMcpServer {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseMcpServer.class);
     private static final Gson GSON = new Gson();
+    private static final String DEFAULT_PROTOCOL_VERSION = "2024-11-05";
+    private static final Set<String> SUPPORTED_PROTOCOL_VERSIONS =
+        Set.of("2024-11-05", "2025-03-26", "2025-06-18");
+    private static final int WARM_UP_TABLES = 30;
+    private static final int STDIO_WORKERS = 4;
 
     private final DatabaseConfig config;
     private final Map<String, McpTool> tools;
     private final Map<String, Object> toolContexts; // Context for each tool instance
+    private final ResultEncoder resultEncoder = new ResultEncoder();
+    private final RelationshipGraphCache graphCache; // Schema catalog shared by tools
+    private final TableMetadataCache metadataCache; // Per-table metadata, warmed up at initialize
+    private final ToolCancellation cancellation = new ToolCancellation();
 
     public DatabaseMcpServer(DatabaseConfig config) {
         this.config = config;
+        this.graphCache = new RelationshipGraphCache(config);
+        this.metadataCache = new TableMetadataCache(config, graphCache);
         this.tools = new ConcurrentHashMap<>();
         this.toolContexts = new ConcurrentHashMap<>();
         initializeTools();
@@ -45,10 +73,19 @@ public class DatabaseMcpServer {
     private void initializeTools() {
         try {
             // Initialize tools with database context
-            tools.put("get_table_metadata", new GetTableMetadataTool(config));
+            tools.put("get_table_metadata", new GetTableMetadataTool(config, metadataCache));
             tools.put("explain_sql", new ExplainSqlTool(config));
             tools.put("parse_sql", new ParseSqlTool());
-            tools.put("list_tables", new ListTablesTool(config));
+            tools.put("list_tables", new ListTablesTool(config, metadataCache));
+            tools.put("get_relationships", new GetRelationshipsTool(graphCache));
+            tools.put("sample_distribution", new SampleDistributionTool(config, graphCache));
+            tools.put("benchmark_query", new BenchmarkQueryTool(config));
+            tools.put("verify_equivalence", new VerifyEquivalenceTool(config));
+            tools.put("index_health", new IndexHealthTool(config));
+            tools.put("lock_waits", new LockWaitsTool(config));
+            tools.put("table_footprint", new TableFootprintTool(config));
+            tools.put("rewrite_sql", new RewriteSqlTool(graphCache));
+            tools.put("batch_write_sizing", new BatchWriteSizingTool(config));
 
             logger.info("Initialized {} MCP tools", tools.size());
         } catch (Exception e) {
@@ -57,13 +94,30 @@ public class DatabaseMcpServer {
         }
     }
 
+    public DatabaseConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Release resources shared by all tools (connection pool)
+     */
+    public void close() {
+        config.closeDataSource();
+    }
+
     /**
      * Start the MCP server
-     * Reads JSON-RPC requests from stdin and writes responses to stdout
+     * Reads JSON-RPC requests from stdin and writes responses to stdout. Tool calls run on
+     * worker threads, so a notifications/cancelled for a running call is read meanwhile.
      */
     public void start() {
         logger.info("Starting MCP server on STDIO...");
 
+        ExecutorService workers = Executors.newFixedThreadPool(STDIO_WORKERS, runnable -> {
+            Thread thread = new Thread(runnable, "mcp-stdio-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -73,10 +127,11 @@ public class DatabaseMcpServer {
 
                 try {
                     JsonObject request = GSON.fromJson(line, JsonObject.class);
-                    JsonObject response = handleRequest(request);
-                    String responseJson = GSON.toJson(response);
-                    System.out.println(responseJson);
-                    System.out.flush();
+                    if (request.has("method") && "tools/call".equals(request.get("method").getAsString())) {
+                        workers.execute(() -> respond(handleRequest(request)));
+                    } else {
+                        respond(handleRequest(request));
+                    }
                 } catch (Exception e) {
                     logger.error("Error processing request: {}", line, e);
                     sendError(-1, "Request processing error: " + e.getMessage());
@@ -85,19 +140,55 @@ public class DatabaseMcpServer {
         } catch (Exception e) {
             logger.error("Server error", e);
             throw new RuntimeException("Server failed", e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void respond(JsonObject response) {
+        if (response == null) {
+            return; // Notification, no response expected
+        }
+        String responseJson = GSON.toJson(response);
+        synchronized (System.out) {
+            System.out.println(responseJson);
+            System.out.flush();
         }
     }
 
     /**
      * Handle incoming JSON-RPC request
+     * Safe to call concurrently from several transport threads.
+     *
+     * @return Response object, or null for notifications
      */
-    private JsonObject handleRequest(JsonObject request) {
+    JsonObject handleRequest(JsonObject request) {
+        return handleRequest(request, "");
+    }
+
+    /**
+     * @param scope Client the request came from, e.g. the HTTP session; request ids are only unique per client
+     */
+    JsonObject handleRequest(JsonObject request, String scope) {
         String method = request.has("method") ? request.get("method").getAsString() : null;
 
         if (method == null) {
             return sendError(null, "Missing 'method' field");
         }
 
+        if ("notifications/cancelled".equals(method)) {
+            JsonObject params = request.getAsJsonObject("params");
+            if (params != null && params.has("requestId")) {
+                cancellation.cancel(scope, params.get("requestId").getAsString());
+            }
+            return null;
+        }
+
+        // Notifications (e.g. notifications/initialized) carry no id and get no response
+        if (method.startsWith("notifications/")) {
+            return null;
+        }
+
         // Handle different method types
         switch (method) {
             case "initialize":
@@ -105,7 +196,7 @@ public class DatabaseMcpServer {
             case "tools/list":
                 return handleListTools(request);
             case "tools/call":
-                return handleToolCall(request);
+                return handleToolCall(request, scope);
             case "ping":
                 return handlePing(request);
             default:
@@ -122,8 +213,16 @@ public class DatabaseMcpServer {
         response.addProperty("jsonrpc", "2.0");
         response.add("id", request.get("id"));
 
+        // Echo the client's version when supported (streamable HTTP clients ask for 2025-03-26+)
+        String protocolVersion = DEFAULT_PROTOCOL_VERSION;
+        JsonObject params = request.getAsJsonObject("params");
+        if (params != null && params.has("protocolVersion")
+                && SUPPORTED_PROTOCOL_VERSIONS.contains(params.get("protocolVersion").getAsString())) {
+            protocolVersion = params.get("protocolVersion").getAsString();
+        }
+
         JsonObject result = new JsonObject();
-        result.addProperty("protocolVersion", "2024-11-05");
+        result.addProperty("protocolVersion", protocolVersion);
 
         JsonObject serverInfo = new JsonObject();
         serverInfo.addProperty("name", "sqlagent-database-tools");
@@ -135,6 +234,9 @@ public class DatabaseMcpServer {
         result.add("capabilities", capabilities);
 
         response.add("result", result);
+
+        // Load the catalog while the client lists tools and sends the first prompt
+        metadataCache.warmUp(WARM_UP_TABLES);
         return response;
     }
 
@@ -158,7 +260,7 @@ public class DatabaseMcpServer {
      * Handle tools/call request
      * MCP spec: response must contain content array
      */
-    private JsonObject handleToolCall(JsonObject request) {
+    private JsonObject handleToolCall(JsonObject request, String scope) {
         JsonObject params = request.getAsJsonObject("params");
         String toolName = params.get("name").getAsString();
         JsonObject arguments = params.getAsJsonObject("arguments");
@@ -169,13 +271,16 @@ public class DatabaseMcpServer {
         }
 
         try {
-            JsonObject toolResult = tool.execute(arguments);
+            // Output options are common to all tools and removed before the tool sees the arguments
+            OutputOptions outputOptions = OutputOptions.extract(arguments);
+            String requestId = request.has("id") ? request.get("id").getAsString() : "";
+            JsonObject toolResult = cancellation.run(scope, requestId, () -> tool.execute(arguments));
 
             // Wrap result in MCP content format
             JsonObject result = new JsonObject();
 
-            // Format tool result as JSON string
-            String resultText = GSON.toJson(toolResult);
+            // Format tool result as JSON or compact text within the requested budget
+            String resultText = resultEncoder.encode(toolResult, outputOptions);
 
             JsonObject contentItem = new JsonObject();
             contentItem.addProperty("type", "text");
@@ -212,7 +317,7 @@ public class DatabaseMcpServer {
             JsonObject desc = new JsonObject();
             desc.addProperty("name", entry.getKey());
             desc.addProperty("description", entry.getValue().getDescription());
-            desc.add("inputSchema", GSON.toJsonTree(entry.getValue().getInputSchema()));
+            desc.add("inputSchema", OutputOptions.addToSchema(entry.getValue().getInputSchema()));
             descriptions.add(desc);
         }
 
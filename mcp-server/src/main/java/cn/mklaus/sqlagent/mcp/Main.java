@@ -4,19 +4,31 @@ import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Main entry point for Database MCP Server
  *
  * This server provides MCP (Model Context Protocol) tools for database operations.
- * It communicates via STDIO using JSON-RPC 2.0 protocol.
+ * It communicates via STDIO using JSON-RPC 2.0 protocol, or via streamable HTTP on
+ * localhost so that one process can be shared by several IDEs and OpenCode sessions.
  *
  * Environment variables required:
- * - DB_TYPE: mysql or postgresql
+ * - DB_TYPE: mysql, mariadb, tidb, aurora-mysql, postgresql or aurora-postgresql
+ *   (the engine behind a MySQL connection is detected, so mysql works for all of them)
  * - DB_HOST: database host
  * - DB_PORT: database port
  * - DB_NAME: database name
  * - DB_USER: database username
  * - DB_PASSWORD: database password
+ *
+ * Optional environment variables:
+ * - DB_POOL_SIZE: maximum pooled connections (default 3)
+ * - MCP_TRANSPORT: stdio (default) or http
+ * - MCP_HTTP_PORT: port for the HTTP transport (default 0, any free port)
+ * - MCP_HTTP_TOKEN: bearer token clients must send to the HTTP transport (required with http)
+ * - MCP_HTTP_THREADS: concurrently processed HTTP requests (default 16)
+ * - MCP_IDLE_TIMEOUT_MINUTES: stop the HTTP server after this long without requests (default 30, 0 = never)
  */
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
@@ -32,7 +44,20 @@ public class Main {
 
             // Create and start the MCP server
             DatabaseMcpServer server = new DatabaseMcpServer(config);
-            server.start();
+            String transport = getEnvOrDefault("MCP_TRANSPORT", "stdio");
+
+            if ("http".equalsIgnoreCase(transport)) {
+                McpHttpTransport httpTransport = new McpHttpTransport(server,
+                    Integer.parseInt(getEnvOrDefault("MCP_HTTP_PORT", "0")),
+                    Integer.parseInt(getEnvOrDefault("MCP_HTTP_THREADS", "16")),
+                    TimeUnit.MINUTES.toMillis(Long.parseLong(getEnvOrDefault("MCP_IDLE_TIMEOUT_MINUTES", "30"))),
+                    System.getenv("MCP_HTTP_TOKEN"));
+                Runtime.getRuntime().addShutdownHook(new Thread(httpTransport::stop));
+                httpTransport.start();
+            } else {
+                server.start();
+            }
+            server.close();
 
             logger.info("Database MCP Server stopped gracefully");
 
@@ -42,4 +67,9 @@ public class Main {
             System.exit(1);
         }
     }
+
+    private static String getEnvOrDefault(String key, String defaultValue) {
+        String value = System.getenv(key);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
 }
@@ -0,0 +1,408 @@
+package cn.mklaus.sqlagent.mcp;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streamable HTTP transport for the MCP server
+ *
+ * Lets a single server process (one connection pool, one set of caches) serve many
+ * clients at once: several IDE instances and OpenCode sessions. Binds to localhost only, and
+ * every /mcp request must carry the token generated by the launching IDE as a bearer token,
+ * so other local processes and web pages cannot run SQL with the configured credentials.
+ *
+ * Endpoints:
+ * - POST   /mcp     JSON-RPC request, notification or batch
+ * - DELETE /mcp     terminate the session given in the Mcp-Session-Id header
+ * - GET    /health  liveness check; with the token it also reports the database fingerprint
+ * - POST   /shutdown stop the server, e.g. before the IDE replaces it after a password change
+ *
+ * The server stops itself after idleTimeoutMillis without requests. A /health request with the
+ * token counts as a request, so IDEs attached to the server keep it alive by polling it.
+ *
+ * Sessions not used for SESSION_TIMEOUT_MILLIS are dropped; their clients get 404 and
+ * re-initialize.
+ *
+ * Responses are plain JSON unless the client only accepts text/event-stream, in which case
+ * the response is sent as a single SSE message. The server does not push unsolicited
+ * messages, so GET /mcp (standalone SSE stream) answers 405 as allowed by the spec.
+ */
+public class McpHttpTransport {
+    private static final Logger logger = LoggerFactory.getLogger(McpHttpTransport.class);
+    private static final Gson GSON = new Gson();
+    private static final String SESSION_HEADER = "Mcp-Session-Id";
+    private static final String MCP_PATH = "/mcp";
+    private static final String HEALTH_PATH = "/health";
+    private static final String SHUTDOWN_PATH = "/shutdown";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final long SESSION_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final DatabaseMcpServer server;
+    private final int port;
+    private final int threads;
+    private final long idleTimeoutMillis;
+    private final byte[] token;
+    private final Map<String, Long> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong lastActivity = new AtomicLong(System.currentTimeMillis());
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final Object stopLock = new Object();
+
+    private HttpServer httpServer;
+    private ExecutorService executor;
+    private ScheduledExecutorService maintenance;
+    private boolean stopped;
+
+    /**
+     * @param server            Request handler shared by all sessions
+     * @param port              Port to listen on (0 picks a free port)
+     * @param threads           Number of requests processed concurrently
+     * @param idleTimeoutMillis Shut down after this long without requests (0 disables)
+     * @param token             Bearer token required on every /mcp request
+     */
+    public McpHttpTransport(DatabaseMcpServer server, int port, int threads, long idleTimeoutMillis, String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("A bearer token is required for the HTTP transport");
+        }
+        this.server = server;
+        this.port = port;
+        this.threads = threads;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Start listening and block until the transport is stopped
+     */
+    public void start() throws IOException, InterruptedException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "mcp-http-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(executor);
+        httpServer.createContext(MCP_PATH, this::handleMcp);
+        httpServer.createContext(HEALTH_PATH, this::handleHealth);
+        httpServer.createContext(SHUTDOWN_PATH, this::handleShutdown);
+        httpServer.start();
+
+        logger.info("MCP server listening on http://127.0.0.1:{}{}", getPort(), MCP_PATH);
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mcp-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::expireSessions, 1, 1, TimeUnit.MINUTES);
+        if (idleTimeoutMillis > 0) {
+            maintenance.scheduleWithFixedDelay(this::stopIfIdle, 1, 1, TimeUnit.MINUTES);
+        }
+
+        synchronized (stopLock) {
+            while (!stopped) {
+                stopLock.wait();
+            }
+        }
+    }
+
+    /**
+     * Stop accepting requests and release the listener thread blocked in {@link #start()}
+     */
+    public void stop() {
+        synchronized (stopLock) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            stopLock.notifyAll();
+        }
+
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        if (httpServer != null) {
+            httpServer.stop(1);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        logger.info("MCP HTTP transport stopped");
+    }
+
+    /**
+     * Actual port, useful when started with port 0
+     */
+    public int getPort() {
+        return httpServer != null ? httpServer.getAddress().getPort() : port;
+    }
+
+    private void stopIfIdle() {
+        long idle = System.currentTimeMillis() - lastActivity.get();
+        if (activeRequests.get() == 0 && idle > idleTimeoutMillis) {
+            logger.info("No requests for {} ms, shutting down shared MCP server", idle);
+            stop();
+        }
+    }
+
+    private void expireSessions() {
+        long oldest = System.currentTimeMillis() - SESSION_TIMEOUT_MILLIS;
+        if (sessions.values().removeIf(lastUsed -> lastUsed < oldest)) {
+            logger.info("Expired idle MCP sessions ({} active)", sessions.size());
+        }
+    }
+
+    /**
+     * Handle POST/DELETE on the MCP endpoint
+     */
+    private void handleMcp(HttpExchange exchange) throws IOException {
+        activeRequests.incrementAndGet();
+        lastActivity.set(System.currentTimeMillis());
+        try {
+            if (!isAllowedOrigin(exchange)) {
+                sendStatus(exchange, 403);
+                return;
+            }
+            if (!isAuthorized(exchange)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                sendStatus(exchange, 401);
+                return;
+            }
+
+            switch (exchange.getRequestMethod()) {
+                case "POST":
+                    handlePost(exchange);
+                    break;
+                case "DELETE":
+                    String sessionId = exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+                    if (sessionId != null && sessions.remove(sessionId) != null) {
+                        logger.info("MCP session closed: {} ({} active)", sessionId, sessions.size());
+                    }
+                    sendStatus(exchange, 204);
+                    break;
+                default:
+                    exchange.getResponseHeaders().set("Allow", "POST, DELETE");
+                    sendStatus(exchange, 405);
+            }
+        } catch (Exception e) {
+            logger.error("HTTP request processing error", e);
+            sendStatus(exchange, 500);
+        } finally {
+            activeRequests.decrementAndGet();
+            lastActivity.set(System.currentTimeMillis());
+            exchange.close();
+        }
+    }
+
+    private void handlePost(HttpExchange exchange) throws IOException {
+        JsonElement body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            sendStatus(exchange, 400);
+            return;
+        }
+
+        String sessionId = exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+        boolean initialize = containsMethod(body, "initialize");
+
+        if (initialize) {
+            sessionId = UUID.randomUUID().toString();
+            sessions.put(sessionId, System.currentTimeMillis());
+            logger.info("MCP session opened: {} ({} active)", sessionId, sessions.size());
+        } else if (sessionId != null) {
+            if (!sessions.containsKey(sessionId)) {
+                sendStatus(exchange, 404); // Client must re-initialize
+                return;
+            }
+            sessions.put(sessionId, System.currentTimeMillis());
+        }
+
+        JsonElement response = dispatch(body, sessionId != null ? sessionId : "");
+
+        if (sessionId != null) {
+            exchange.getResponseHeaders().set(SESSION_HEADER, sessionId);
+        }
+        if (response == null) {
+            sendStatus(exchange, 202); // Only notifications or responses were posted
+            return;
+        }
+
+        String json = GSON.toJson(response);
+        if (prefersEventStream(exchange)) {
+            sendBody(exchange, "text/event-stream", "event: message\ndata: " + json + "\n\n");
+        } else {
+            sendBody(exchange, "application/json", json);
+        }
+    }
+
+    /**
+     * Dispatch a single request or a batch to the server
+     *
+     * @return Response object/array, or null if nothing needs to be answered
+     */
+    private JsonElement dispatch(JsonElement body, String scope) {
+        if (body.isJsonArray()) {
+            JsonArray responses = new JsonArray();
+            for (JsonElement element : body.getAsJsonArray()) {
+                JsonObject response = dispatchSingle(element, scope);
+                if (response != null) {
+                    responses.add(response);
+                }
+            }
+            return responses.size() > 0 ? responses : null;
+        }
+        return dispatchSingle(body, scope);
+    }
+
+    private JsonObject dispatchSingle(JsonElement element, String scope) {
+        if (!element.isJsonObject()) {
+            return null;
+        }
+        JsonObject message = element.getAsJsonObject();
+        if (!message.has("method")) {
+            return null; // Client response to a server request; we never send any
+        }
+        return server.handleRequest(message, scope);
+    }
+
+    private boolean containsMethod(JsonElement body, String method) {
+        if (body.isJsonArray()) {
+            for (JsonElement element : body.getAsJsonArray()) {
+                if (containsMethod(element, method)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return body.isJsonObject()
+                && body.getAsJsonObject().has("method")
+                && method.equals(body.getAsJsonObject().get("method").getAsString());
+    }
+
+    /**
+     * Handle GET /health
+     */
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            JsonObject health = new JsonObject();
+            health.addProperty("status", "ok");
+            if (isAuthorized(exchange)) {
+                lastActivity.set(System.currentTimeMillis());
+                health.addProperty("fingerprint", server.getConfig().getFingerprint());
+                health.addProperty("sessions", sessions.size());
+                health.addProperty("active_requests", activeRequests.get());
+            }
+            sendBody(exchange, "application/json", GSON.toJson(health));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handle POST /shutdown; stops after the response is sent
+     */
+    private void handleShutdown(HttpExchange exchange) throws IOException {
+        try {
+            if (!isAllowedOrigin(exchange)) {
+                sendStatus(exchange, 403);
+                return;
+            }
+            if (!isAuthorized(exchange)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                sendStatus(exchange, 401);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendStatus(exchange, 405);
+                return;
+            }
+            logger.info("Shutdown requested");
+            sendStatus(exchange, 204);
+        } finally {
+            exchange.close();
+        }
+        // Only reached after a 204. stop() waits for exchanges to finish, so not on this thread
+        Thread stopper = new Thread(this::stop, "mcp-shutdown");
+        stopper.setDaemon(true);
+        stopper.start();
+    }
+
+    /**
+     * Reject cross-site requests from browsers (DNS rebinding protection), including the
+     * opaque "null" origin of sandboxed frames and file pages. Non-browser clients send no
+     * Origin header.
+     */
+    private boolean isAllowedOrigin(HttpExchange exchange) {
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin == null || origin.isEmpty()) {
+            return true;
+        }
+        if ("null".equals(origin)) {
+            return false;
+        }
+        try {
+            String host = URI.create(origin).getHost();
+            return "localhost".equals(host) || "127.0.0.1".equals(host) || "[::1]".equals(host);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isAuthorized(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return false;
+        }
+        byte[] presented = authorization.substring(BEARER_PREFIX.length()).trim().getBytes(StandardCharsets.UTF_8);
+        // Constant time, so the token cannot be guessed byte by byte
+        return MessageDigest.isEqual(token, presented);
+    }
+
+    private boolean prefersEventStream(HttpExchange exchange) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return accept != null && accept.contains("text/event-stream") && !accept.contains("application/json");
+    }
+
+    private void sendBody(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void sendStatus(HttpExchange exchange, int status) throws IOException {
+        // Consume a rejected request's body, or the kept-alive connection breaks for the next one
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        exchange.sendResponseHeaders(status, -1);
+    }
+}
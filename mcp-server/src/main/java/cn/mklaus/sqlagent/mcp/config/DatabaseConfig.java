@@ -1,30 +1,48 @@
 package cn.mklaus.sqlagent.mcp.config;
 
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import cn.mklaus.sqlagent.mcp.dialect.Dialects;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HexFormat;
 
 /**
  * Database configuration for MCP server
  */
 public class DatabaseConfig {
+    private static final int DEFAULT_POOL_SIZE = 3; // Small pool for MCP server
+
     private final String type;
     private final String host;
     private final int port;
     private final String database;
     private final String username;
     private final String password;
+    private final int maxPoolSize;
+
+    private volatile HikariDataSource sharedDataSource;
+    private volatile Dialect dialect;
 
     public DatabaseConfig(String type, String host, int port, String database,
                           String username, String password) {
+        this(type, host, port, database, username, password, DEFAULT_POOL_SIZE);
+    }
+
+    public DatabaseConfig(String type, String host, int port, String database,
+                          String username, String password, int maxPoolSize) {
         this.type = type;
         this.host = host;
         this.port = port;
         this.database = database;
         this.username = username;
         this.password = password;
+        this.maxPoolSize = maxPoolSize;
     }
 
     public String getType() {
@@ -51,6 +69,67 @@ public class DatabaseConfig {
         return password;
     }
 
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Get the connection pool shared by all tools and all clients of this server process.
+     * Created lazily on first use, together with the detection of the server's dialect.
+     */
+    public HikariDataSource getDataSource() throws SQLException {
+        HikariDataSource dataSource = sharedDataSource;
+        if (dataSource == null) {
+            synchronized (this) {
+                dataSource = sharedDataSource;
+                if (dataSource == null) {
+                    dataSource = createDataSource();
+                    try (Connection conn = dataSource.getConnection()) {
+                        dialect = Dialects.detect(type, conn);
+                    } catch (SQLException e) {
+                        dataSource.close();
+                        throw e;
+                    }
+                    sharedDataSource = dataSource;
+                }
+            }
+        }
+        return dataSource;
+    }
+
+    /**
+     * Get the dialect of the database server. Detected when the pool is created, so this
+     * never needs a second connection while the caller holds one.
+     */
+    public Dialect getDialect() throws SQLException {
+        getDataSource();
+        return dialect;
+    }
+
+    /**
+     * Close the shared connection pool, if it was created
+     */
+    public synchronized void closeDataSource() {
+        if (sharedDataSource != null) {
+            sharedDataSource.close();
+            sharedDataSource = null;
+        }
+    }
+
+    /**
+     * Stable identifier of the database and user this configuration points to, without the
+     * password. Used to match a running shared server with a requested configuration.
+     */
+    public String getFingerprint() {
+        String key = String.join("|", type.toLowerCase(), host, String.valueOf(port), database, username);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     /**
      * Create HikariDataSource from this configuration
      */
@@ -59,7 +138,7 @@ public class DatabaseConfig {
         config.setJdbcUrl(getJdbcUrl());
         config.setUsername(username);
         config.setPassword(password);
-        config.setMaximumPoolSize(3); // Small pool for MCP server
+        config.setMaximumPoolSize(maxPoolSize);
         config.setMinimumIdle(1);
         config.setConnectionTimeout(30000); // 30 seconds
         config.setIdleTimeout(600000); // 10 minutes
@@ -72,17 +151,7 @@ public class DatabaseConfig {
      * Get JDBC URL based on database type
      */
     private String getJdbcUrl() {
-        switch (type.toLowerCase()) {
-            case "mysql":
-                return String.format("jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC",
-                    host, port, database);
-            case "postgresql":
-            case "postgres":
-                return String.format("jdbc:postgresql://%s:%d/%s",
-                    host, port, database);
-            default:
-                throw new IllegalArgumentException("Unsupported database type: " + type);
-        }
+        return Dialects.jdbcUrl(type, host, port, database);
     }
 
     /**
@@ -95,6 +164,7 @@ public class DatabaseConfig {
         String database = getEnvOrDefault("DB_NAME", "");
         String username = getEnvOrDefault("DB_USER", "");
         String password = getEnvOrDefault("DB_PASSWORD", "");
+        int maxPoolSize = Integer.parseInt(getEnvOrDefault("DB_POOL_SIZE", String.valueOf(DEFAULT_POOL_SIZE)));
 
         if (database.isEmpty()) {
             throw new IllegalArgumentException("DB_NAME environment variable is required");
@@ -103,7 +173,7 @@ public class DatabaseConfig {
             throw new IllegalArgumentException("DB_USER environment variable is required");
         }
 
-        return new DatabaseConfig(type, host, port, database, username, password);
+        return new DatabaseConfig(type, host, port, database, username, password, maxPoolSize);
     }
 
     private static String getEnvOrDefault(String key, String defaultValue) {
@@ -112,14 +182,6 @@ public class DatabaseConfig {
     }
 
     private static String getDefaultPort(String type) {
-        switch (type.toLowerCase()) {
-            case "mysql":
-                return "3306";
-            case "postgresql":
-            case "postgres":
-                return "5432";
-            default:
-                return "3306";
-        }
+        return String.valueOf(Dialects.defaultPort(type));
     }
 }
@@ -0,0 +1,61 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+/**
+ * Name and version handling shared by all dialects
+ */
+abstract class AbstractDialect implements Dialect {
+    private final String name;
+    private final String version;
+    private final int[] versionNumbers;
+
+    AbstractDialect(String name, String version) {
+        this.name = name;
+        this.version = version;
+        this.versionNumbers = parseVersion(version);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Whether the server version is at least major.minor.patch
+     */
+    boolean isAtLeast(int major, int minor, int patch) {
+        int[] required = {major, minor, patch};
+        for (int i = 0; i < required.length; i++) {
+            if (versionNumbers[i] != required[i]) {
+                return versionNumbers[i] > required[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Leading numbers of a version string, e.g. "8.0.35-log" -> [8, 0, 35]
+     */
+    static int[] parseVersion(String version) {
+        int[] numbers = new int[3];
+        if (version == null) {
+            return numbers;
+        }
+        int part = 0;
+        for (int i = 0; i < version.length() && part < numbers.length; i++) {
+            char c = version.charAt(i);
+            if (Character.isDigit(c)) {
+                numbers[part] = numbers[part] * 10 + (c - '0');
+            } else if (c == '.') {
+                part++;
+            } else {
+                break;
+            }
+        }
+        return numbers;
+    }
+}
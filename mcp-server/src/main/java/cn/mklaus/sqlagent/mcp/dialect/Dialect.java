@@ -0,0 +1,178 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Catalog, EXPLAIN and statistics SQL of one database engine and version
+ *
+ * Catalog queries are constant strings with bind parameters only, so the driver's statement
+ * cache (enabled in the JDBC URL by {@link Dialects#jdbcUrl}) keeps them prepared server-side per
+ * pooled connection and the database parses and plans each one only once.
+ *
+ * Schema-wide queries cover the current schema: every schema on the search_path on
+ * PostgreSQL, the connection's database on the MySQL family.
+ */
+public interface Dialect {
+
+    /**
+     * Placeholder for index parts that are expressions rather than columns
+     */
+    String EXPRESSION_COLUMN = "(expression)";
+
+    /**
+     * Engine name reported to clients, e.g. "mysql", "mariadb", "tidb", "aurora-postgresql"
+     */
+    String getName();
+
+    /**
+     * Server version as reported by the driver
+     */
+    String getVersion();
+
+    /**
+     * Whether the engine speaks PostgreSQL (as opposed to the MySQL protocol and SQL dialect)
+     */
+    boolean isPostgres();
+
+    /**
+     * Quote an identifier
+     */
+    String quote(String identifier);
+
+    /**
+     * Base table names, ordered
+     */
+    String listTablesQuery();
+
+    /**
+     * Columns of one table (? = table name): name, data type, nullable (YES/NO), default
+     */
+    String tableColumnsQuery();
+
+    /**
+     * Indexes of one table (? = table name): name, comma-separated key columns, unique,
+     * definition (may be null), primary, access method (btree, hash, gin, FULLTEXT...), partial
+     */
+    String tableIndexesQuery();
+
+    /**
+     * On-disk size of the indexes of one table (? = table name): index name, bytes;
+     * null if the engine does not expose it
+     */
+    String indexSizesQuery();
+
+    /**
+     * Usage counters of the indexes of one table (? = table name): index name, reads, blocks
+     * read from disk (may be null); null if the engine does not expose them
+     */
+    String indexUsageQuery();
+
+    /**
+     * Time since which index usage counters accumulate (statistics reset or server start);
+     * null if unknown
+     */
+    String usageStatsSinceQuery();
+
+    /**
+     * Table names, the most read and written first; null if the engine keeps no table usage counters
+     */
+    String tableUsageQuery();
+
+    /**
+     * Row estimates from optimizer statistics: table name, estimated rows (null if never analyzed)
+     */
+    String tableStatsQuery();
+
+    /**
+     * Storage footprint, largest tables first: table name, estimated rows (null if never
+     * analyzed), data bytes, index bytes, out-of-line (TOAST) bytes or null, average row bytes
+     * or null, reclaimable or bloat bytes (estimate, null if unknown)
+     */
+    String tableFootprintQuery();
+
+    /**
+     * Columns of table ?, in order: column name, data type, maximum length in bytes (null for
+     * fixed-size types), average stored width in bytes from statistics (null if unknown)
+     */
+    String columnWidthsQuery();
+
+    /**
+     * Single value: largest statement in bytes the server accepts, or null if the limit is
+     * too large to matter (e.g. PostgreSQL's 1 GB message size)
+     */
+    String maxStatementBytesQuery();
+
+    /**
+     * All columns: table name, column name, data type, then engine-specific details that only
+     * matter for change detection; ordered by table and position
+     */
+    String schemaColumnsQuery();
+
+    /**
+     * All index columns: table, index, column (null for expressions), unique, primary;
+     * ordered by table, index and position
+     */
+    String schemaIndexColumnsQuery();
+
+    /**
+     * All foreign key columns: constraint, table, column, referenced table, referenced column;
+     * ordered by table, constraint and position
+     */
+    String schemaForeignKeysQuery();
+
+    /**
+     * Constraints, for change detection: table, constraint name, constraint type
+     */
+    String schemaConstraintsQuery();
+
+    /**
+     * Current lock waits, one row per waiting session and blocker: waiting session id,
+     * waiting statement, seconds waited, blocking session id, blocking session's current or
+     * last statement, blocking session state, seconds since the blocker's transaction began,
+     * lock description; null if the engine does not expose lock waits
+     */
+    String lockWaitsQuery();
+
+    /**
+     * Open transactions older than ? seconds, oldest first: session id, user, state,
+     * transaction seconds, current or last statement, locks or locked rows held (may be null)
+     */
+    String longTransactionsQuery();
+
+    /**
+     * Statement returning the plan used by the explain_sql tool
+     */
+    String explainQuery(String sql);
+
+    /**
+     * Statement executing the query and returning the plan with run-time statistics, or null
+     * if this engine or version cannot do that
+     */
+    String explainAnalyzeQuery(String sql);
+
+    /**
+     * Run {@link #explainQuery} and return the plan as text
+     */
+    default String explain(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(explainQuery(sql));
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    /**
+     * Plan estimated by the optimizer without running the statement, as text
+     */
+    default String estimate(Connection conn, String sql) throws SQLException {
+        return explain(conn, sql);
+    }
+
+    /**
+     * Make the statement stream its result instead of buffering it in memory
+     */
+    void enableStreaming(Statement stmt, int fetchSize) throws SQLException;
+}
@@ -0,0 +1,112 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Chooses the dialect for a configured database type and the server actually connected to
+ *
+ * The configured type (DB_TYPE) only decides the driver: mysql, mariadb, tidb and
+ * aurora-mysql use MySQL Connector/J; postgresql and aurora-postgresql use pgJDBC. The
+ * engine behind a MySQL-protocol connection is then detected from the server, so a MariaDB
+ * or TiDB server configured as "mysql" still gets its own dialect.
+ */
+public final class Dialects {
+
+    private Dialects() {
+    }
+
+    /**
+     * Whether the configured type is served by the PostgreSQL driver
+     */
+    public static boolean isPostgresType(String type) {
+        String lower = type.toLowerCase(Locale.ROOT);
+        return lower.equals("postgresql") || lower.equals("postgres") || lower.equals("aurora-postgresql");
+    }
+
+    /**
+     * JDBC URL for the configured type, with server-side prepared statements and the
+     * driver's per-connection statement cache enabled
+     */
+    public static String jdbcUrl(String type, String host, int port, String database) {
+        if (isPostgresType(type)) {
+            // Prepare server-side on first use; cache up to 256 statements per connection
+            return String.format("jdbc:postgresql://%s:%d/%s" +
+                            "?prepareThreshold=1&preparedStatementCacheQueries=256&preparedStatementCacheSizeMiB=5",
+                    host, port, database);
+        }
+        switch (type.toLowerCase(Locale.ROOT)) {
+            case "mysql":
+            case "mariadb":
+            case "tidb":
+            case "aurora-mysql":
+                return String.format("jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC" +
+                                "&useServerPrepStmts=true&cachePrepStmts=true" +
+                                "&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048",
+                        host, port, database);
+            default:
+                throw new IllegalArgumentException("Unsupported database type: " + type);
+        }
+    }
+
+    /**
+     * Default port for the configured type
+     */
+    public static int defaultPort(String type) {
+        if (isPostgresType(type)) {
+            return 5432;
+        }
+        return type.equalsIgnoreCase("tidb") ? 4000 : 3306;
+    }
+
+    /**
+     * Detect the dialect of the server behind a connection
+     */
+    public static Dialect detect(String type, Connection conn) throws SQLException {
+        String lower = type.toLowerCase(Locale.ROOT);
+        String version = conn.getMetaData().getDatabaseProductVersion();
+
+        if (isPostgresType(type)) {
+            boolean aurora = lower.startsWith("aurora")
+                    || hasRow(conn, "SELECT 1 FROM pg_proc WHERE proname = 'aurora_version'");
+            return new PostgresDialect(aurora ? "aurora-postgresql" : "postgresql", version);
+        }
+
+        String serverVersion = queryString(conn, "SELECT VERSION()");
+        if (serverVersion == null) {
+            serverVersion = version;
+        }
+        int tidb = serverVersion.indexOf("-TiDB-v");
+        if (tidb >= 0 || lower.equals("tidb")) {
+            // e.g. "8.0.11-TiDB-v7.5.1": the TiDB release matters, not the MySQL compatibility level
+            return new TiDbDialect(tidb >= 0 ? serverVersion.substring(tidb + "-TiDB-v".length()) : serverVersion);
+        }
+        if (serverVersion.contains("MariaDB") || lower.equals("mariadb")) {
+            return new MariaDbDialect(serverVersion);
+        }
+        boolean aurora = lower.startsWith("aurora")
+                || hasRow(conn, "SHOW VARIABLES LIKE 'aurora_version'");
+        return new MySqlDialect(aurora ? "aurora-mysql" : "mysql", serverVersion);
+    }
+
+    private static boolean hasRow(Connection conn, String query) {
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static String queryString(Connection conn, String query) {
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
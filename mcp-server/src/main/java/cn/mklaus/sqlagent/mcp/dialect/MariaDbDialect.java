@@ -0,0 +1,45 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * MariaDB, which diverged from MySQL in its EXPLAIN syntax
+ */
+public class MariaDbDialect extends MySqlDialect {
+
+    public MariaDbDialect(String version) {
+        super("mariadb", version);
+    }
+
+    @Override
+    public String explainQuery(String sql) {
+        // FORMAT=JSON exists since 10.1; older versions only have the tabular output
+        return isAtLeast(10, 1, 0) ? "EXPLAIN FORMAT=JSON " + sql : "EXPLAIN " + sql;
+    }
+
+    @Override
+    public String explainAnalyzeQuery(String sql) {
+        return isAtLeast(10, 1, 0) ? "ANALYZE FORMAT=JSON " + sql : null;
+    }
+
+    @Override
+    public String usageStatsSinceQuery() {
+        return "SELECT NOW() - INTERVAL VARIABLE_VALUE SECOND " +
+                "FROM information_schema.GLOBAL_STATUS WHERE VARIABLE_NAME = 'UPTIME'";
+    }
+
+    @Override
+    public String lockWaitsQuery() {
+        // MariaDB kept the information_schema InnoDB lock tables
+        return legacyLockWaitsQuery();
+    }
+
+    @Override
+    public String explain(Connection conn, String sql) throws SQLException {
+        if (isAtLeast(10, 1, 0)) {
+            return super.explain(conn, sql);
+        }
+        return explainAsTable(conn, explainQuery(sql));
+    }
+}
@@ -0,0 +1,222 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * MySQL, including Aurora MySQL; base of the other MySQL-protocol engines
+ */
+public class MySqlDialect extends AbstractDialect {
+
+    public MySqlDialect(String name, String version) {
+        super(name, version);
+    }
+
+    @Override
+    public boolean isPostgres() {
+        return false;
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    @Override
+    public String listTablesQuery() {
+        return "SELECT TABLE_NAME FROM information_schema.tables " +
+                "WHERE TABLE_SCHEMA = DATABASE() " +
+                "AND TABLE_TYPE = 'BASE TABLE' " +
+                "ORDER BY TABLE_NAME";
+    }
+
+    @Override
+    public String tableColumnsQuery() {
+        return "SELECT COLUMN_NAME, DATA_TYPE, IS_NULLABLE, COLUMN_DEFAULT " +
+                "FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? " +
+                "ORDER BY ORDINAL_POSITION";
+    }
+
+    @Override
+    public String tableIndexesQuery() {
+        return "SELECT INDEX_NAME, GROUP_CONCAT(COALESCE(COLUMN_NAME, '" + EXPRESSION_COLUMN + "') " +
+                "ORDER BY SEQ_IN_INDEX), NON_UNIQUE = 0, NULL, INDEX_NAME = 'PRIMARY', INDEX_TYPE, FALSE " +
+                "FROM INFORMATION_SCHEMA.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? " +
+                "GROUP BY INDEX_NAME, NON_UNIQUE, INDEX_TYPE " +
+                "ORDER BY INDEX_NAME";
+    }
+
+    @Override
+    public String indexSizesQuery() {
+        return "SELECT index_name, stat_value * @@innodb_page_size " +
+                "FROM mysql.innodb_index_stats " +
+                "WHERE database_name = DATABASE() AND table_name = ? AND stat_name = 'size'";
+    }
+
+    @Override
+    public String indexUsageQuery() {
+        // The data behind sys.schema_unused_indexes, with the counts instead of just the unused ones
+        return "SELECT INDEX_NAME, COUNT_READ, NULL " +
+                "FROM performance_schema.table_io_waits_summary_by_index_usage " +
+                "WHERE OBJECT_SCHEMA = DATABASE() AND OBJECT_NAME = ? AND INDEX_NAME IS NOT NULL";
+    }
+
+    @Override
+    public String usageStatsSinceQuery() {
+        return "SELECT NOW() - INTERVAL VARIABLE_VALUE SECOND " +
+                "FROM performance_schema.global_status WHERE VARIABLE_NAME = 'Uptime'";
+    }
+
+    @Override
+    public String tableUsageQuery() {
+        return "SELECT OBJECT_NAME FROM performance_schema.table_io_waits_summary_by_table " +
+                "WHERE OBJECT_SCHEMA = DATABASE() ORDER BY COUNT_STAR DESC";
+    }
+
+    @Override
+    public String tableStatsQuery() {
+        return "SELECT TABLE_NAME, TABLE_ROWS FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_TYPE = 'BASE TABLE' " +
+                "ORDER BY TABLE_NAME";
+    }
+
+    @Override
+    public String tableFootprintQuery() {
+        // Off-page BLOB/TEXT pages are part of DATA_LENGTH; DATA_FREE is free space in the tablespace
+        return "SELECT TABLE_NAME, TABLE_ROWS, DATA_LENGTH, INDEX_LENGTH, NULL, AVG_ROW_LENGTH, DATA_FREE " +
+                "FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_TYPE = 'BASE TABLE' " +
+                "ORDER BY DATA_LENGTH + INDEX_LENGTH DESC";
+    }
+
+    @Override
+    public String columnWidthsQuery() {
+        // No per-column width statistics: widths are estimated from the declared types
+        return "SELECT COLUMN_NAME, DATA_TYPE, CHARACTER_OCTET_LENGTH, NULL " +
+                "FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? " +
+                "ORDER BY ORDINAL_POSITION";
+    }
+
+    @Override
+    public String maxStatementBytesQuery() {
+        return "SELECT @@max_allowed_packet";
+    }
+
+    @Override
+    public String schemaColumnsQuery() {
+        return "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, IS_NULLABLE, COLUMN_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() ORDER BY TABLE_NAME, ORDINAL_POSITION";
+    }
+
+    @Override
+    public String schemaIndexColumnsQuery() {
+        return "SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME, NON_UNIQUE = 0, INDEX_NAME = 'PRIMARY' " +
+                "FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() " +
+                "ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX";
+    }
+
+    @Override
+    public String schemaForeignKeysQuery() {
+        return "SELECT CONSTRAINT_NAME, TABLE_NAME, COLUMN_NAME, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME " +
+                "FROM information_schema.KEY_COLUMN_USAGE " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME IS NOT NULL " +
+                "ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION";
+    }
+
+    @Override
+    public String schemaConstraintsQuery() {
+        return "SELECT TABLE_NAME, CONSTRAINT_NAME, CONSTRAINT_TYPE " +
+                "FROM information_schema.TABLE_CONSTRAINTS WHERE TABLE_SCHEMA = DATABASE() " +
+                "ORDER BY TABLE_NAME, CONSTRAINT_NAME";
+    }
+
+    @Override
+    public String lockWaitsQuery() {
+        if (!isAtLeast(8, 0, 1)) {
+            return legacyLockWaitsQuery();
+        }
+        // The blocker is often idle in its transaction: take its last statement from performance_schema
+        return "SELECT r.trx_mysql_thread_id, r.trx_query, TIMESTAMPDIFF(SECOND, r.trx_wait_started, NOW()), " +
+                "b.trx_mysql_thread_id, COALESCE(b.trx_query, s.SQL_TEXT), b.trx_state, " +
+                "TIMESTAMPDIFF(SECOND, b.trx_started, NOW()), " +
+                "CONCAT(l.LOCK_MODE, ' ', l.LOCK_TYPE, ' on ', l.OBJECT_NAME, COALESCE(CONCAT('.', l.INDEX_NAME), '')) " +
+                "FROM performance_schema.data_lock_waits w " +
+                "JOIN information_schema.INNODB_TRX r ON r.trx_id = w.REQUESTING_ENGINE_TRANSACTION_ID " +
+                "JOIN information_schema.INNODB_TRX b ON b.trx_id = w.BLOCKING_ENGINE_TRANSACTION_ID " +
+                "JOIN performance_schema.data_locks l ON l.ENGINE_LOCK_ID = w.BLOCKING_ENGINE_LOCK_ID " +
+                "LEFT JOIN performance_schema.threads t ON t.PROCESSLIST_ID = b.trx_mysql_thread_id " +
+                "LEFT JOIN performance_schema.events_statements_current s ON s.THREAD_ID = t.THREAD_ID " +
+                "ORDER BY r.trx_wait_started";
+    }
+
+    /**
+     * Lock waits from the InnoDB tables that MySQL 8.0 replaced with performance_schema.data_locks
+     */
+    String legacyLockWaitsQuery() {
+        return "SELECT r.trx_mysql_thread_id, r.trx_query, TIMESTAMPDIFF(SECOND, r.trx_wait_started, NOW()), " +
+                "b.trx_mysql_thread_id, b.trx_query, b.trx_state, TIMESTAMPDIFF(SECOND, b.trx_started, NOW()), " +
+                "CONCAT(l.lock_mode, ' ', l.lock_type, ' on ', l.lock_table, COALESCE(CONCAT('.', l.lock_index), '')) " +
+                "FROM information_schema.INNODB_LOCK_WAITS w " +
+                "JOIN information_schema.INNODB_TRX r ON r.trx_id = w.requesting_trx_id " +
+                "JOIN information_schema.INNODB_TRX b ON b.trx_id = w.blocking_trx_id " +
+                "JOIN information_schema.INNODB_LOCKS l ON l.lock_id = w.blocking_lock_id " +
+                "ORDER BY r.trx_wait_started";
+    }
+
+    @Override
+    public String longTransactionsQuery() {
+        return "SELECT t.trx_mysql_thread_id, p.USER, t.trx_state, TIMESTAMPDIFF(SECOND, t.trx_started, NOW()), " +
+                "t.trx_query, t.trx_rows_locked " +
+                "FROM information_schema.INNODB_TRX t " +
+                "LEFT JOIN information_schema.PROCESSLIST p ON p.ID = t.trx_mysql_thread_id " +
+                "WHERE t.trx_started < NOW() - INTERVAL ? SECOND " +
+                "ORDER BY t.trx_started";
+    }
+
+    @Override
+    public String explainQuery(String sql) {
+        return "EXPLAIN FORMAT=JSON " + sql;
+    }
+
+    @Override
+    public String explainAnalyzeQuery(String sql) {
+        // EXPLAIN ANALYZE exists since 8.0.18 (tree format only)
+        return isAtLeast(8, 0, 18) ? "EXPLAIN ANALYZE " + sql : null;
+    }
+
+    @Override
+    public void enableStreaming(Statement stmt, int fetchSize) throws SQLException {
+        // Connector/J streams row by row only with this fetch size
+        stmt.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Render a tabular EXPLAIN result as tab-separated text with a header line
+     */
+    String explainAsTable(Connection conn, String query) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            for (int i = 1; i <= columnCount; i++) {
+                plan.append(i > 1 ? "\t" : "").append(metaData.getColumnLabel(i));
+            }
+            while (rs.next()) {
+                plan.append('\n');
+                for (int i = 1; i <= columnCount; i++) {
+                    plan.append(i > 1 ? "\t" : "").append(rs.getString(i));
+                }
+            }
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,227 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The figures of a query plan that tell at a glance whether it is expensive
+ *
+ * Parsed from the EXPLAIN output of any supported engine: MySQL and MariaDB JSON, PostgreSQL
+ * JSON, and the tabular output of TiDB and old MariaDB. Rows examined is the sum of the
+ * per-scan estimates, so for joins it is a lower bound of the rows actually touched.
+ */
+public class PlanSummary {
+    private long rowsExamined;
+    private final Set<String> fullScanTables = new LinkedHashSet<>();
+    private boolean sort;
+    private boolean temporary;
+    private double cost = -1;
+
+    public long getRowsExamined() {
+        return rowsExamined;
+    }
+
+    public Set<String> getFullScanTables() {
+        return fullScanTables;
+    }
+
+    /**
+     * True if a step sorts rows itself (filesort) instead of reading them in index order
+     */
+    public boolean isSort() {
+        return sort;
+    }
+
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    /**
+     * Optimizer cost of the whole plan in the engine's own units, or -1 if not reported
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    public static PlanSummary parse(String plan) {
+        PlanSummary summary = new PlanSummary();
+        String text = plan != null ? plan.trim() : "";
+        if (text.startsWith("[")) {
+            JsonArray plans = JsonParser.parseString(text).getAsJsonArray();
+            JsonObject root = plans.get(0).getAsJsonObject().getAsJsonObject("Plan");
+            summary.cost = root.has("Total Cost") ? root.get("Total Cost").getAsDouble() : -1;
+            summary.addPostgresNode(root);
+        } else if (text.startsWith("{")) {
+            summary.addMySqlNode(JsonParser.parseString(text).getAsJsonObject());
+        } else if (!text.isEmpty()) {
+            summary.addTable(text);
+        }
+        return summary;
+    }
+
+    private void addPostgresNode(JsonObject node) {
+        String type = node.has("Node Type") ? node.get("Node Type").getAsString() : "";
+        if (type.endsWith("Scan") && node.has("Plan Rows")) {
+            rowsExamined += node.get("Plan Rows").getAsLong();
+        }
+        if ("Seq Scan".equals(type) && node.has("Relation Name")) {
+            fullScanTables.add(node.get("Relation Name").getAsString());
+        }
+        if ("Sort".equals(type) || "Incremental Sort".equals(type)) {
+            sort = true;
+        }
+        boolean hashAggregate = "Aggregate".equals(type) && node.has("Strategy")
+                && "Hashed".equals(node.get("Strategy").getAsString());
+        if ("Materialize".equals(type) || hashAggregate) {
+            temporary = true;
+        }
+        if (node.has("Plans")) {
+            for (JsonElement child : node.getAsJsonArray("Plans")) {
+                addPostgresNode(child.getAsJsonObject());
+            }
+        }
+    }
+
+    private void addMySqlNode(JsonObject node) {
+        for (Map.Entry<String, JsonElement> entry : node.entrySet()) {
+            String key = entry.getKey();
+            JsonElement value = entry.getValue();
+            switch (key) {
+                case "table":
+                    if (value.isJsonObject()) {
+                        addMySqlTable(value.getAsJsonObject());
+                    }
+                    break;
+                case "query_cost":
+                    if (cost < 0) {
+                        cost = value.getAsDouble();
+                    }
+                    break;
+                case "using_filesort":
+                    sort |= value.getAsBoolean();
+                    break;
+                case "filesort":
+                    // MariaDB nests the sorted subtree in a "filesort" object
+                    sort = true;
+                    break;
+                case "using_temporary_table":
+                    temporary |= value.getAsBoolean();
+                    break;
+                case "temporary_table":
+                    temporary = true;
+                    break;
+                default:
+                    break;
+            }
+            if (value.isJsonObject()) {
+                addMySqlNode(value.getAsJsonObject());
+            } else if (value.isJsonArray()) {
+                for (JsonElement element : value.getAsJsonArray()) {
+                    if (element.isJsonObject()) {
+                        addMySqlNode(element.getAsJsonObject());
+                    }
+                }
+            }
+        }
+    }
+
+    private void addMySqlTable(JsonObject table) {
+        // MySQL reports rows_examined_per_scan, MariaDB rows
+        if (table.has("rows_examined_per_scan")) {
+            rowsExamined += table.get("rows_examined_per_scan").getAsLong();
+        } else if (table.has("rows")) {
+            rowsExamined += table.get("rows").getAsLong();
+        }
+        if (table.has("access_type") && "ALL".equals(table.get("access_type").getAsString())
+                && table.has("table_name")) {
+            fullScanTables.add(table.get("table_name").getAsString());
+        }
+    }
+
+    /**
+     * Tab-separated plan with a header line, as rendered by MySqlDialect.explainAsTable
+     */
+    private void addTable(String text) {
+        String[] lines = text.split("\n");
+        String[] header = lines[0].split("\t");
+        int id = indexOf(header, "id");
+        int estRows = indexOf(header, "estRows");
+        int accessObject = indexOf(header, "access object");
+        int table = indexOf(header, "table");
+        int type = indexOf(header, "type");
+        int rows = indexOf(header, "rows");
+        int extra = indexOf(header, "Extra");
+
+        for (int i = 1; i < lines.length; i++) {
+            String[] row = lines[i].split("\t", -1);
+            if (estRows >= 0) {
+                // TiDB: operator ids such as TableFullScan_5, indented with tree characters
+                String operator = value(row, id);
+                if (operator.contains("Scan")) {
+                    rowsExamined += parseRows(value(row, estRows));
+                }
+                if (operator.contains("TableFullScan")) {
+                    addFullScan(value(row, accessObject).replaceFirst("^table:", "").split(",")[0]);
+                }
+                if (operator.contains("Sort") || operator.contains("TopN")) {
+                    sort = true;
+                }
+            } else {
+                rowsExamined += parseRows(value(row, rows));
+                if ("ALL".equals(value(row, type))) {
+                    addFullScan(value(row, table));
+                }
+                String extraInfo = value(row, extra);
+                sort |= extraInfo.contains("Using filesort");
+                temporary |= extraInfo.contains("Using temporary");
+            }
+        }
+    }
+
+    private void addFullScan(String table) {
+        if (!table.isEmpty()) {
+            fullScanTables.add(table);
+        }
+    }
+
+    private static int indexOf(String[] header, String column) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].trim().equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String value(String[] row, int index) {
+        return index >= 0 && index < row.length && row[index] != null ? row[index].trim() : "";
+    }
+
+    private static long parseRows(String rows) {
+        try {
+            return Math.round(Double.parseDouble(rows));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("rows_examined", rowsExamined);
+        JsonArray tables = new JsonArray();
+        fullScanTables.forEach(tables::add);
+        json.add("full_scan_tables", tables);
+        json.addProperty("sort", sort);
+        json.addProperty("temporary", temporary);
+        if (cost >= 0) {
+            json.addProperty("cost", cost);
+        }
+        return json;
+    }
+}
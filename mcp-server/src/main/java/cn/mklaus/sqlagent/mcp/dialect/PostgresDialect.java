@@ -0,0 +1,242 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * PostgreSQL, including Aurora PostgreSQL
+ */
+public class PostgresDialect extends AbstractDialect {
+    // Schema-wide queries cover every schema on the search_path; per-table queries resolve
+    // the name as the statement itself would, to the first schema on the path that has it
+    private static final String SEARCH_PATH = "ANY(current_schemas(false))";
+    private static final String TABLE_OID = "to_regclass(quote_ident(?))";
+    private static final String TABLE_NAME = "(SELECT tn.nspname, tc.relname FROM pg_class tc " +
+            "JOIN pg_namespace tn ON tn.oid = tc.relnamespace WHERE tc.oid = " + TABLE_OID + ")";
+
+    public PostgresDialect(String name, String version) {
+        super(name, version);
+    }
+
+    @Override
+    public boolean isPostgres() {
+        return true;
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String listTablesQuery() {
+        return "SELECT table_name FROM information_schema.tables " +
+                "WHERE table_schema = " + SEARCH_PATH + " " +
+                "AND table_type = 'BASE TABLE' " +
+                "ORDER BY table_name";
+    }
+
+    @Override
+    public String tableColumnsQuery() {
+        return "SELECT column_name, data_type, is_nullable, column_default " +
+                "FROM information_schema.columns " +
+                "WHERE (table_schema, table_name) = " + TABLE_NAME + " " +
+                "ORDER BY ordinal_position";
+    }
+
+    @Override
+    public String tableIndexesQuery() {
+        // Since 11, indkey also lists INCLUDE columns after the indnkeyatts key columns
+        String keyColumnsOnly = isAtLeast(11, 0, 0) ? "AND k.ord <= ix.indnkeyatts " : "";
+        return "SELECT i.relname, string_agg(COALESCE(a.attname, '" + EXPRESSION_COLUMN + "'), ',' ORDER BY k.ord), " +
+                "ix.indisunique, pg_get_indexdef(ix.indexrelid), ix.indisprimary, am.amname, " +
+                "ix.indpred IS NOT NULL " +
+                "FROM pg_index ix " +
+                "JOIN pg_class t ON t.oid = ix.indrelid " +
+                "JOIN pg_class i ON i.oid = ix.indexrelid " +
+                "JOIN pg_am am ON am.oid = i.relam " +
+                "JOIN pg_namespace n ON n.oid = t.relnamespace " +
+                "CROSS JOIN LATERAL unnest(ix.indkey::int2[]) WITH ORDINALITY AS k(attnum, ord) " +
+                "LEFT JOIN pg_attribute a ON a.attrelid = t.oid AND a.attnum = k.attnum " +
+                "WHERE t.oid = " + TABLE_OID + " " + keyColumnsOnly +
+                "GROUP BY i.relname, ix.indisunique, ix.indexrelid, ix.indisprimary, am.amname, ix.indpred " +
+                "ORDER BY i.relname";
+    }
+
+    @Override
+    public String indexSizesQuery() {
+        return "SELECT s.indexrelname, pg_relation_size(s.indexrelid) " +
+                "FROM pg_stat_user_indexes s " +
+                "WHERE s.relid = " + TABLE_OID;
+    }
+
+    @Override
+    public String indexUsageQuery() {
+        return "SELECT s.indexrelname, s.idx_scan, io.idx_blks_read " +
+                "FROM pg_stat_user_indexes s " +
+                "JOIN pg_statio_user_indexes io ON io.indexrelid = s.indexrelid " +
+                "WHERE s.relid = " + TABLE_OID;
+    }
+
+    @Override
+    public String usageStatsSinceQuery() {
+        return "SELECT COALESCE(stats_reset, pg_postmaster_start_time()) " +
+                "FROM pg_stat_database WHERE datname = current_database()";
+    }
+
+    @Override
+    public String tableUsageQuery() {
+        return "SELECT relname FROM pg_stat_user_tables WHERE schemaname = " + SEARCH_PATH + " " +
+                "ORDER BY COALESCE(seq_scan, 0) + COALESCE(idx_scan, 0) + n_tup_ins + n_tup_upd + n_tup_del DESC";
+    }
+
+    /**
+     * Row estimate of pg_class c, NULL while unknown
+     */
+    private String rowEstimate() {
+        // Before the first ANALYZE reltuples is -1 since 14. Older versions report 0, which is
+        // only believable for a table without pages
+        String unknown = isAtLeast(14, 0, 0) ? "c.reltuples < 0" : "c.reltuples <= 0 AND c.relpages > 0";
+        return "CASE WHEN " + unknown + " THEN NULL ELSE c.reltuples::bigint END";
+    }
+
+    @Override
+    public String tableStatsQuery() {
+        return "SELECT c.relname, " + rowEstimate() + " " +
+                "FROM pg_class c " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "WHERE n.nspname = " + SEARCH_PATH + " AND c.relkind IN ('r', 'p') " +
+                "ORDER BY c.relname";
+    }
+
+    @Override
+    public String tableFootprintQuery() {
+        // Bloat is estimated without pgstattuple: the pages the live rows need, from pg_stats
+        // average widths plus the 24-byte tuple header and 4-byte line pointer, against the
+        // pages the heap occupies. Tables never analyzed have no widths and no estimate.
+        return "WITH widths AS (" +
+                "SELECT schemaname, tablename, SUM((1 - null_frac) * avg_width) AS row_width " +
+                "FROM pg_stats WHERE schemaname = " + SEARCH_PATH + " GROUP BY schemaname, tablename), " +
+                "block AS (SELECT current_setting('block_size')::numeric AS size) " +
+                "SELECT c.relname, " + rowEstimate() + ", " +
+                "pg_relation_size(c.oid), pg_indexes_size(c.oid), " +
+                "CASE WHEN c.reltoastrelid = 0 THEN 0 ELSE pg_total_relation_size(c.reltoastrelid) END, " +
+                "CASE WHEN w.row_width IS NULL THEN NULL ELSE (w.row_width + 28)::bigint END, " +
+                "CASE WHEN w.row_width IS NULL OR c.reltuples <= 0 THEN NULL ELSE GREATEST(0, " +
+                "pg_relation_size(c.oid) - CEIL(c.reltuples * (w.row_width + 28) / (b.size - 24)) * b.size)::bigint END " +
+                "FROM pg_class c " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "CROSS JOIN block b " +
+                "LEFT JOIN widths w ON w.schemaname = n.nspname AND w.tablename = c.relname " +
+                "WHERE n.nspname = " + SEARCH_PATH + " AND c.relkind IN ('r', 'p', 'm') " +
+                "ORDER BY pg_total_relation_size(c.oid) DESC";
+    }
+
+    @Override
+    public String columnWidthsQuery() {
+        return "SELECT c.column_name, c.data_type, c.character_octet_length, s.avg_width " +
+                "FROM information_schema.columns c " +
+                "LEFT JOIN pg_stats s ON s.schemaname = c.table_schema AND s.tablename = c.table_name " +
+                "AND s.attname = c.column_name " +
+                "WHERE (c.table_schema, c.table_name) = " + TABLE_NAME + " " +
+                "ORDER BY c.ordinal_position";
+    }
+
+    @Override
+    public String maxStatementBytesQuery() {
+        return null;
+    }
+
+    @Override
+    public String schemaColumnsQuery() {
+        return "SELECT table_name, column_name, data_type, is_nullable FROM information_schema.columns " +
+                "WHERE table_schema = " + SEARCH_PATH + " ORDER BY table_name, ordinal_position";
+    }
+
+    @Override
+    public String schemaIndexColumnsQuery() {
+        return "SELECT t.relname, i.relname, a.attname, ix.indisunique, ix.indisprimary " +
+                "FROM pg_index ix " +
+                "JOIN pg_class t ON t.oid = ix.indrelid " +
+                "JOIN pg_class i ON i.oid = ix.indexrelid " +
+                "JOIN pg_namespace n ON n.oid = t.relnamespace " +
+                "CROSS JOIN LATERAL unnest(ix.indkey::int2[]) WITH ORDINALITY AS k(attnum, ord) " +
+                "LEFT JOIN pg_attribute a ON a.attrelid = t.oid AND a.attnum = k.attnum " +
+                "WHERE n.nspname = " + SEARCH_PATH + " " +
+                "ORDER BY t.relname, i.relname, k.ord";
+    }
+
+    @Override
+    public String schemaForeignKeysQuery() {
+        return "SELECT c.conname, cl.relname, a.attname, rcl.relname, ra.attname " +
+                "FROM pg_constraint c " +
+                "JOIN pg_class cl ON cl.oid = c.conrelid " +
+                "JOIN pg_namespace n ON n.oid = cl.relnamespace " +
+                "JOIN pg_class rcl ON rcl.oid = c.confrelid " +
+                "CROSS JOIN LATERAL unnest(c.conkey, c.confkey) WITH ORDINALITY AS k(col, refcol, ord) " +
+                "JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = k.col " +
+                "JOIN pg_attribute ra ON ra.attrelid = c.confrelid AND ra.attnum = k.refcol " +
+                "WHERE c.contype = 'f' AND n.nspname = " + SEARCH_PATH + " " +
+                "ORDER BY cl.relname, c.conname, k.ord";
+    }
+
+    @Override
+    public String schemaConstraintsQuery() {
+        return "SELECT table_name, constraint_name, constraint_type " +
+                "FROM information_schema.table_constraints WHERE table_schema = " + SEARCH_PATH + " " +
+                "ORDER BY table_name, constraint_name";
+    }
+
+    @Override
+    public String lockWaitsQuery() {
+        // pg_blocking_pids() (9.6+) resolves lock queues correctly, unlike a self-join of pg_locks
+        return "SELECT w.pid, w.query, EXTRACT(EPOCH FROM now() - w.query_start)::bigint, " +
+                "b.pid, b.query, b.state, EXTRACT(EPOCH FROM now() - b.xact_start)::bigint, " +
+                "l.mode || ' ' || l.locktype || COALESCE(' on ' || l.relation::regclass::text, '') " +
+                "FROM pg_stat_activity w " +
+                "CROSS JOIN LATERAL unnest(pg_blocking_pids(w.pid)) AS bp(pid) " +
+                "JOIN pg_stat_activity b ON b.pid = bp.pid " +
+                "LEFT JOIN LATERAL (SELECT locktype, mode, relation FROM pg_locks " +
+                "WHERE pid = w.pid AND NOT granted LIMIT 1) l ON true " +
+                "WHERE w.datname = current_database() " +
+                "ORDER BY w.query_start";
+    }
+
+    @Override
+    public String longTransactionsQuery() {
+        return "SELECT a.pid, a.usename, a.state, EXTRACT(EPOCH FROM now() - a.xact_start)::bigint, a.query, " +
+                "(SELECT count(*) FROM pg_locks l WHERE l.pid = a.pid AND l.granted) " +
+                "FROM pg_stat_activity a " +
+                "WHERE a.datname = current_database() AND a.pid <> pg_backend_pid() " +
+                "AND a.xact_start < now() - make_interval(secs => ?) " +
+                "ORDER BY a.xact_start";
+    }
+
+    @Override
+    public String explainQuery(String sql) {
+        return "EXPLAIN (ANALYZE, FORMAT JSON) " + sql;
+    }
+
+    @Override
+    public String explainAnalyzeQuery(String sql) {
+        return "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + sql;
+    }
+
+    @Override
+    public String estimate(Connection conn, String sql) throws SQLException {
+        // explainQuery runs the statement (ANALYZE); an estimate must not
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN (FORMAT JSON) " + sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    @Override
+    public void enableStreaming(Statement stmt, int fetchSize) throws SQLException {
+        // Uses a cursor as long as the connection is not in auto-commit mode
+        stmt.setFetchSize(fetchSize);
+    }
+}
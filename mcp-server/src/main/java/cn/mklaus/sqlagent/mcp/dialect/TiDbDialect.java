@@ -0,0 +1,77 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * TiDB, which speaks the MySQL protocol but has its own planner and EXPLAIN output
+ *
+ * TiDB has no EXPLAIN FORMAT=JSON; its plans are operator tables (id, estRows, task,
+ * access object, operator info), which are returned as text.
+ */
+public class TiDbDialect extends MySqlDialect {
+
+    public TiDbDialect(String version) {
+        super("tidb", version);
+    }
+
+    @Override
+    public String explainQuery(String sql) {
+        return "EXPLAIN FORMAT='brief' " + sql;
+    }
+
+    @Override
+    public String explainAnalyzeQuery(String sql) {
+        return "EXPLAIN ANALYZE " + sql;
+    }
+
+    @Override
+    public String indexSizesQuery() {
+        return null; // Stored in TiKV regions, not per index
+    }
+
+    @Override
+    public String indexUsageQuery() {
+        return isAtLeast(8, 0, 0)
+                ? "SELECT INDEX_NAME, QUERY_TOTAL, NULL FROM information_schema.TIDB_INDEX_USAGE " +
+                  "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?"
+                : null;
+    }
+
+    @Override
+    public String usageStatsSinceQuery() {
+        return null;
+    }
+
+    @Override
+    public String tableUsageQuery() {
+        // No performance_schema table counters; callers fall back to row estimates
+        return null;
+    }
+
+    @Override
+    public String lockWaitsQuery() {
+        // Pessimistic lock waits across all TiDB servers of the cluster
+        return "SELECT r.SESSION_ID, w.SQL_DIGEST_TEXT, TIMESTAMPDIFF(SECOND, r.WAITING_START_TIME, NOW()), " +
+                "b.SESSION_ID, b.CURRENT_SQL_DIGEST_TEXT, b.STATE, TIMESTAMPDIFF(SECOND, b.START_TIME, NOW()), " +
+                "CONCAT('key ', w.`KEY`) " +
+                "FROM information_schema.DATA_LOCK_WAITS w " +
+                "JOIN information_schema.CLUSTER_TIDB_TRX r ON r.ID = w.TRX_ID " +
+                "JOIN information_schema.CLUSTER_TIDB_TRX b ON b.ID = w.CURRENT_HOLDING_TRX_ID " +
+                "ORDER BY r.WAITING_START_TIME";
+    }
+
+    @Override
+    public String longTransactionsQuery() {
+        return "SELECT SESSION_ID, USER, STATE, TIMESTAMPDIFF(SECOND, START_TIME, NOW()), " +
+                "CURRENT_SQL_DIGEST_TEXT, MEM_BUFFER_KEYS " +
+                "FROM information_schema.CLUSTER_TIDB_TRX " +
+                "WHERE START_TIME < NOW() - INTERVAL ? SECOND " +
+                "ORDER BY START_TIME";
+    }
+
+    @Override
+    public String explain(Connection conn, String sql) throws SQLException {
+        return explainAsTable(conn, explainQuery(sql));
+    }
+}
@@ -0,0 +1,172 @@
+package cn.mklaus.sqlagent.mcp.output;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders a JSON tree as indented text with tabular arrays
+ *
+ * Example:
+ * <pre>
+ * table_name: orders
+ * columns[3]{name,type,nullable}:
+ *   id,bigint,NO
+ *   user_id,bigint,NO
+ *   note,varchar,YES
+ * tables[2]: orders,users
+ * </pre>
+ *
+ * Arrays of objects are written as a header with the union of their keys followed by one
+ * line per element, so repeated keys are paid for once. Values containing separators are
+ * written as JSON strings; missing cells are left empty.
+ */
+public class CompactFormatter {
+    private static final Gson GSON = new Gson();
+    private static final String INDENT = "  ";
+
+    public String format(JsonElement element) {
+        StringBuilder out = new StringBuilder();
+        if (element.isJsonObject()) {
+            writeObject(out, element.getAsJsonObject(), "");
+        } else if (element.isJsonArray()) {
+            writeArray(out, "items", element.getAsJsonArray(), "");
+        } else {
+            out.append(scalar(element)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private void writeObject(StringBuilder out, JsonObject object, String indent) {
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            writeMember(out, entry.getKey(), entry.getValue(), indent);
+        }
+    }
+
+    private void writeMember(StringBuilder out, String key, JsonElement value, String indent) {
+        if (value.isJsonObject()) {
+            out.append(indent).append(key).append(":\n");
+            writeObject(out, value.getAsJsonObject(), indent + INDENT);
+        } else if (value.isJsonArray()) {
+            writeArray(out, key, value.getAsJsonArray(), indent);
+        } else {
+            out.append(indent).append(key).append(": ").append(scalar(value)).append('\n');
+        }
+    }
+
+    private void writeArray(StringBuilder out, String key, JsonArray array, String indent) {
+        out.append(indent).append(key).append('[').append(array.size()).append(']');
+
+        if (array.isEmpty()) {
+            out.append(":\n");
+            return;
+        }
+
+        if (allPrimitive(array)) {
+            out.append(": ");
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(scalar(array.get(i)));
+            }
+            out.append('\n');
+            return;
+        }
+
+        if (allObjects(array)) {
+            Set<String> columns = new LinkedHashSet<>();
+            for (JsonElement element : array) {
+                columns.addAll(element.getAsJsonObject().keySet());
+            }
+            out.append('{').append(String.join(",", columns)).append("}:\n");
+            for (JsonElement element : array) {
+                JsonObject row = element.getAsJsonObject();
+                out.append(indent).append(INDENT);
+                boolean first = true;
+                for (String column : columns) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    JsonElement cell = row.get(column);
+                    if (cell != null) {
+                        out.append(cell.isJsonPrimitive() || cell.isJsonNull()
+                                ? scalar(cell)
+                                : GSON.toJson(GSON.toJson(cell)));
+                    }
+                }
+                out.append('\n');
+            }
+            return;
+        }
+
+        // Mixed content: one element per line
+        out.append(":\n");
+        for (JsonElement element : array) {
+            if (element.isJsonObject()) {
+                out.append(indent).append(INDENT).append("-\n");
+                writeObject(out, element.getAsJsonObject(), indent + INDENT + INDENT);
+            } else if (element.isJsonArray()) {
+                out.append(indent).append(INDENT).append("- ").append(GSON.toJson(element)).append('\n');
+            } else {
+                out.append(indent).append(INDENT).append("- ").append(scalar(element)).append('\n');
+            }
+        }
+    }
+
+    private boolean allPrimitive(JsonArray array) {
+        for (JsonElement element : array) {
+            if (!element.isJsonPrimitive() && !element.isJsonNull()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean allObjects(JsonArray array) {
+        for (JsonElement element : array) {
+            if (!element.isJsonObject()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a primitive bare when unambiguous, otherwise as a JSON string
+     */
+    private String scalar(JsonElement value) {
+        if (value.isJsonNull()) {
+            return "null";
+        }
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+        if (!primitive.isString()) {
+            return primitive.getAsString();
+        }
+        String text = primitive.getAsString();
+        return needsQuoting(text) ? GSON.toJson(text) : text;
+    }
+
+    private boolean needsQuoting(String text) {
+        if (text.isEmpty() || "null".equals(text) || "true".equals(text) || "false".equals(text)) {
+            return true;
+        }
+        if (Character.isWhitespace(text.charAt(0)) || Character.isWhitespace(text.charAt(text.length() - 1))) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r' || c == '\t') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package cn.mklaus.sqlagent.mcp.output;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Output options accepted by every tool
+ *
+ * These arguments are added to each tool's input schema by the server and are handled
+ * centrally, so individual tools never see them.
+ */
+public class OutputOptions {
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_COMPACT = "compact";
+
+    static final String ARG_FORMAT = "output_format";
+    static final String ARG_MAX_BYTES = "max_bytes";
+    static final String ARG_MAX_TOKENS = "max_tokens";
+
+    /** Rough UTF-8 bytes per LLM token for SQL, identifiers and numbers */
+    private static final int BYTES_PER_TOKEN = 4;
+
+    public static final OutputOptions DEFAULT = new OutputOptions(FORMAT_JSON, 0);
+
+    private final String format;
+    private final int maxBytes;
+
+    public OutputOptions(String format, int maxBytes) {
+        this.format = format;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Read output options from tool arguments and remove them
+     */
+    public static OutputOptions extract(JsonObject arguments) {
+        if (arguments == null) {
+            return DEFAULT;
+        }
+
+        String format = FORMAT_JSON;
+        if (arguments.has(ARG_FORMAT)) {
+            String requested = arguments.remove(ARG_FORMAT).getAsString();
+            if (!FORMAT_JSON.equalsIgnoreCase(requested) && !FORMAT_COMPACT.equalsIgnoreCase(requested)) {
+                throw new IllegalArgumentException("Unsupported output_format: " + requested);
+            }
+            format = requested.toLowerCase();
+        }
+
+        int maxBytes = 0;
+        if (arguments.has(ARG_MAX_BYTES)) {
+            maxBytes = arguments.remove(ARG_MAX_BYTES).getAsInt();
+        }
+        if (arguments.has(ARG_MAX_TOKENS)) {
+            int tokenBytes = arguments.remove(ARG_MAX_TOKENS).getAsInt() * BYTES_PER_TOKEN;
+            maxBytes = maxBytes > 0 ? Math.min(maxBytes, tokenBytes) : tokenBytes;
+        }
+
+        return new OutputOptions(format, Math.max(0, maxBytes));
+    }
+
+    /**
+     * Add the output arguments to a tool input schema
+     */
+    public static JsonObject addToSchema(JsonObject schema) {
+        JsonObject properties = schema.has("properties")
+                ? schema.getAsJsonObject("properties")
+                : new JsonObject();
+
+        JsonObject format = new JsonObject();
+        format.addProperty("type", "string");
+        JsonArray formats = new JsonArray();
+        formats.add(FORMAT_JSON);
+        formats.add(FORMAT_COMPACT);
+        format.add("enum", formats);
+        format.addProperty("description",
+                "Result encoding. 'compact' renders arrays of objects as tables (header once, one line per row) "
+                        + "and expands embedded JSON such as execution plans. Default: json");
+        properties.add(ARG_FORMAT, format);
+
+        JsonObject maxBytes = new JsonObject();
+        maxBytes.addProperty("type", "integer");
+        maxBytes.addProperty("description",
+                "Maximum size of the result in bytes. Long lists and strings are shortened and a "
+                        + "'_truncated' summary lists what was dropped");
+        properties.add(ARG_MAX_BYTES, maxBytes);
+
+        JsonObject maxTokens = new JsonObject();
+        maxTokens.addProperty("type", "integer");
+        maxTokens.addProperty("description", "Maximum size of the result in tokens (approximate), alternative to max_bytes");
+        properties.add(ARG_MAX_TOKENS, maxTokens);
+
+        schema.add("properties", properties);
+        return schema;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public boolean isCompact() {
+        return FORMAT_COMPACT.equals(format);
+    }
+
+    /**
+     * @return Byte budget, 0 if unlimited
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+}
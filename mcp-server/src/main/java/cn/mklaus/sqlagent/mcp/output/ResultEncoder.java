@@ -0,0 +1,212 @@
+package cn.mklaus.sqlagent.mcp.output;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes tool results for the LLM context within a byte budget
+ *
+ * When the encoded result exceeds the budget, the longest strings are shortened first,
+ * then every array is cut to the largest common row limit that still fits (found by
+ * binary search). What was dropped is reported in a "_truncated" member so the model
+ * knows the result is partial and can ask again with a narrower request.
+ */
+public class ResultEncoder {
+    static final String TRUNCATED_KEY = "_truncated";
+
+    private static final Gson GSON = new Gson();
+    private static final int[] STRING_LIMITS = {Integer.MAX_VALUE, 1024, 256, 64};
+    private static final String CUT_MARKER = "\n...[cut to fit max_bytes]";
+
+    private final CompactFormatter compactFormatter = new CompactFormatter();
+
+    /**
+     * Encode a tool result
+     */
+    public String encode(JsonObject result, OutputOptions options) {
+        JsonObject tree = options.isCompact() ? expandEmbeddedJson(result).getAsJsonObject() : result;
+
+        String full = render(tree, options);
+        int budget = options.getMaxBytes();
+        int fullBytes = byteLength(full);
+        if (budget <= 0 || fullBytes <= budget) {
+            return full;
+        }
+
+        int longestArray = longestArray(tree);
+        for (int stringLimit : STRING_LIMITS) {
+            // Largest row limit that fits, if any
+            int low = 1;
+            int high = Math.max(1, longestArray);
+            String best = null;
+            while (low <= high) {
+                int rowLimit = (low + high) >>> 1;
+                String candidate = render(prune(tree, rowLimit, stringLimit, fullBytes), options);
+                if (byteLength(candidate) <= budget) {
+                    best = candidate;
+                    low = rowLimit + 1;
+                } else {
+                    high = rowLimit - 1;
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+        }
+
+        // Even a single row per array does not fit: cut the smallest rendering
+        String smallest = render(prune(tree, 1, STRING_LIMITS[STRING_LIMITS.length - 1], fullBytes), options);
+        return cut(smallest, budget);
+    }
+
+    private String render(JsonObject tree, OutputOptions options) {
+        return options.isCompact() ? compactFormatter.format(tree) : GSON.toJson(tree);
+    }
+
+    /**
+     * Copy the tree keeping at most rowLimit elements per array and stringLimit chars per string,
+     * and attach a summary of what was removed
+     */
+    JsonObject prune(JsonObject tree, int rowLimit, int stringLimit, int originalBytes) {
+        List<String> dropped = new ArrayList<>();
+        int[] shortenedStrings = new int[1];
+        JsonObject pruned = pruneElement(tree, "", rowLimit, stringLimit, dropped, shortenedStrings).getAsJsonObject();
+
+        JsonObject summary = new JsonObject();
+        summary.addProperty("original_bytes", originalBytes);
+        if (!dropped.isEmpty()) {
+            JsonArray arrays = new JsonArray();
+            dropped.forEach(arrays::add);
+            summary.add("arrays", arrays);
+        }
+        if (shortenedStrings[0] > 0) {
+            summary.addProperty("strings_shortened", shortenedStrings[0]);
+            summary.addProperty("max_string_chars", stringLimit);
+        }
+        pruned.add(TRUNCATED_KEY, summary);
+        return pruned;
+    }
+
+    private JsonElement pruneElement(JsonElement element, String path, int rowLimit, int stringLimit,
+                                     List<String> dropped, int[] shortenedStrings) {
+        if (element.isJsonObject()) {
+            JsonObject copy = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                String childPath = path.isEmpty() ? entry.getKey() : path + "." + entry.getKey();
+                copy.add(entry.getKey(), pruneElement(entry.getValue(), childPath, rowLimit, stringLimit,
+                        dropped, shortenedStrings));
+            }
+            return copy;
+        }
+
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            JsonArray copy = new JsonArray();
+            int kept = Math.min(rowLimit, array.size());
+            for (int i = 0; i < kept; i++) {
+                copy.add(pruneElement(array.get(i), path + "[" + i + "]", rowLimit, stringLimit,
+                        dropped, shortenedStrings));
+            }
+            if (kept < array.size()) {
+                dropped.add(path + ": kept " + kept + " of " + array.size());
+            }
+            return copy;
+        }
+
+        if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+            String text = element.getAsString();
+            if (text.length() > stringLimit) {
+                shortenedStrings[0]++;
+                return new JsonPrimitive(text.substring(0, stringLimit) + "...(" + text.length() + " chars)");
+            }
+        }
+
+        return element;
+    }
+
+    /**
+     * Replace string values holding JSON documents (e.g. EXPLAIN FORMAT=JSON output) by the parsed tree,
+     * so they can be rendered compactly and truncated structurally
+     */
+    JsonElement expandEmbeddedJson(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject copy = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                copy.add(entry.getKey(), expandEmbeddedJson(entry.getValue()));
+            }
+            return copy;
+        }
+
+        if (element.isJsonArray()) {
+            JsonArray copy = new JsonArray();
+            for (JsonElement child : element.getAsJsonArray()) {
+                copy.add(expandEmbeddedJson(child));
+            }
+            return copy;
+        }
+
+        if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+            String text = element.getAsString().trim();
+            if ((text.startsWith("{") && text.endsWith("}")) || (text.startsWith("[") && text.endsWith("]"))) {
+                try {
+                    return expandEmbeddedJson(JsonParser.parseString(text));
+                } catch (RuntimeException e) {
+                    return element; // Not JSON after all
+                }
+            }
+        }
+
+        return element;
+    }
+
+    private int longestArray(JsonElement element) {
+        int longest = 0;
+        if (element.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                longest = Math.max(longest, longestArray(entry.getValue()));
+            }
+        } else if (element.isJsonArray()) {
+            longest = element.getAsJsonArray().size();
+            for (JsonElement child : element.getAsJsonArray()) {
+                longest = Math.max(longest, longestArray(child));
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Cut text to the budget on a character boundary and mark it
+     */
+    private String cut(String text, int budget) {
+        int limit = budget - byteLength(CUT_MARKER);
+        if (limit <= 0) {
+            return CUT_MARKER.trim();
+        }
+        StringBuilder out = new StringBuilder();
+        int bytes = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            int size = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8).length;
+            if (bytes + size > limit) {
+                break;
+            }
+            out.appendCodePoint(codePoint);
+            bytes += size;
+            i += Character.charCount(codePoint);
+        }
+        return out.append(CUT_MARKER).toString();
+    }
+
+    private static int byteLength(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
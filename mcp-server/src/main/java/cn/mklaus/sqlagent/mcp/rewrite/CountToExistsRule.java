@@ -0,0 +1,147 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExistsExpression;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * COUNT(*) used as an existence check to EXISTS
+ *
+ * {@code (SELECT COUNT(*) ...) > 0} counts every matching row to learn whether there is one;
+ * EXISTS stops at the first. A top-level {@code SELECT COUNT(*)} is offered as
+ * {@code SELECT 1 ... LIMIT 1} too, but only the caller knows whether it just tests for zero.
+ */
+class CountToExistsRule implements RewriteRule {
+
+    @Override
+    public String getName() {
+        return "count_to_exists";
+    }
+
+    @Override
+    public List<RewriteCandidate> apply(PlainSelect select, RewriteContext context) throws JSQLParserException {
+        List<RewriteCandidate> candidates = new ArrayList<>();
+        PlainSelect topLevel = SqlAst.copy(select);
+
+        List<Expression> conjuncts = SqlAst.conjuncts(select.getWhere());
+        boolean rewritten = false;
+        for (int i = 0; i < conjuncts.size(); i++) {
+            Expression exists = toExists(SqlAst.unwrap(conjuncts.get(i)));
+            if (exists != null) {
+                conjuncts.set(i, exists);
+                rewritten = true;
+            }
+        }
+        if (rewritten) {
+            select.setWhere(SqlAst.and(conjuncts));
+            candidates.add(new RewriteCandidate(getName(), select.toString(),
+                    "Replace COUNT(*) subqueries compared with zero by EXISTS, which stops at the first row", true)
+                    .precondition("the count is only compared with zero (> 0, >= 1, <> 0, = 0, < 1)")
+                    .precondition("counted subquery has no GROUP BY, HAVING or LIMIT"));
+        }
+
+        if (isCount(topLevel) && topLevel.getOrderByElements() == null && !SqlAst.hasLimit(topLevel)) {
+            topLevel.setSelectItems(new ArrayList<>(List.of(new SelectItem<>(new LongValue(1)))));
+            topLevel.setLimit(new Limit().withRowCount(new LongValue(1)));
+            candidates.add(new RewriteCandidate(getName(), topLevel.toString(),
+                    "Probe for one matching row instead of counting all of them", false)
+                    .precondition("statement is a plain COUNT without GROUP BY or HAVING")
+                    .caveat("Only applicable when the caller tests the count against zero (e.g. count > 0); "
+                            + "it must then check whether a row came back"));
+        }
+        return candidates;
+    }
+
+    /**
+     * @return EXISTS / NOT EXISTS replacing a zero comparison of a COUNT subquery, or null
+     */
+    private static Expression toExists(Expression term) {
+        if (!(term instanceof ComparisonOperator)) {
+            return null;
+        }
+        ComparisonOperator comparison = (ComparisonOperator) term;
+        Expression left = SqlAst.unwrap(comparison.getLeftExpression());
+        Expression right = SqlAst.unwrap(comparison.getRightExpression());
+
+        Boolean exists;
+        ParenthesedSelect subquery;
+        if (left instanceof ParenthesedSelect && right instanceof LongValue) {
+            subquery = (ParenthesedSelect) left;
+            exists = testsExistence(comparison, ((LongValue) right).getValue(), false);
+        } else if (right instanceof ParenthesedSelect && left instanceof LongValue) {
+            subquery = (ParenthesedSelect) right;
+            exists = testsExistence(comparison, ((LongValue) left).getValue(), true);
+        } else {
+            return null;
+        }
+        if (exists == null || !(subquery.getSelect() instanceof PlainSelect)
+                || !isCount((PlainSelect) subquery.getSelect()) || SqlAst.hasLimit((PlainSelect) subquery.getSelect())) {
+            return null;
+        }
+
+        PlainSelect inner = (PlainSelect) subquery.getSelect();
+        inner.setSelectItems(new ArrayList<>(List.of(new SelectItem<>(new LongValue(1)))));
+        ExistsExpression result = new ExistsExpression();
+        result.setRightExpression(subquery);
+        result.setNot(!exists);
+        return result;
+    }
+
+    /**
+     * @param reversed Whether the constant is on the left, as in {@code 0 < (SELECT COUNT(*) ...)}
+     * @return True if the comparison means "at least one row", false if "no row", null otherwise
+     */
+    private static Boolean testsExistence(ComparisonOperator comparison, long constant, boolean reversed) {
+        boolean greater = reversed ? comparison instanceof MinorThan : comparison instanceof GreaterThan;
+        boolean greaterOrEqual = reversed ? comparison instanceof MinorThanEquals : comparison instanceof GreaterThanEquals;
+        boolean less = reversed ? comparison instanceof GreaterThan : comparison instanceof MinorThan;
+        boolean lessOrEqual = reversed ? comparison instanceof GreaterThanEquals : comparison instanceof MinorThanEquals;
+
+        if (constant == 0 && (greater || comparison instanceof NotEqualsTo)
+                || constant == 1 && greaterOrEqual) {
+            return true;
+        }
+        if (constant == 0 && (comparison instanceof EqualsTo || lessOrEqual)
+                || constant == 1 && less) {
+            return false;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the select only returns COUNT(*) or COUNT(constant) over all its rows
+     */
+    private static boolean isCount(PlainSelect select) {
+        if (select.getSelectItems().size() != 1 || select.getGroupBy() != null || select.getHaving() != null
+                || select.getDistinct() != null || !(select.getSelectItems().get(0).getExpression() instanceof Function)) {
+            return false;
+        }
+        Function function = (Function) select.getSelectItems().get(0).getExpression();
+        if (!function.getName().equalsIgnoreCase("count") || function.isDistinct()) {
+            return false;
+        }
+        if (function.isAllColumns()) {
+            return true;
+        }
+        return function.getParameters() != null && function.getParameters().size() == 1
+                && (function.getParameters().get(0) instanceof AllColumns
+                || function.getParameters().get(0) instanceof LongValue);
+    }
+}
@@ -0,0 +1,154 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Deep {@code LIMIT n OFFSET m} to a deferred join or keyset pagination
+ *
+ * The database reads and discards m full rows. The deferred join pages over primary keys
+ * only and fetches full rows for the n survivors; it returns the same rows. Keyset pagination
+ * seeks past the last row of the previous page and reads only n rows, but needs the caller to
+ * pass that row's key instead of the offset.
+ */
+class DeepOffsetRule implements RewriteRule {
+    static final long MIN_OFFSET = 1000;
+
+    @Override
+    public String getName() {
+        return "deep_offset";
+    }
+
+    @Override
+    public List<RewriteCandidate> apply(PlainSelect select, RewriteContext context) throws JSQLParserException {
+        Table table = SqlAst.singleTable(select);
+        Limit limit = select.getLimit();
+        if (table == null || limit == null || !(limit.getRowCount() instanceof LongValue)
+                || select.getOrderByElements() == null || !SqlAst.isPlainRowSelect(select)) {
+            return List.of();
+        }
+        Expression offset = limit.getOffset() != null ? limit.getOffset()
+                : select.getOffset() != null ? select.getOffset().getOffset() : null;
+        if (!(offset instanceof LongValue) || ((LongValue) offset).getValue() < MIN_OFFSET) {
+            return List.of();
+        }
+
+        String name = SqlAst.name(table);
+        String qualifier = SqlAst.qualifier(table);
+        List<String> orderColumns = new ArrayList<>();
+        boolean ascending = select.getOrderByElements().get(0).isAsc();
+        boolean sameDirection = true;
+        for (OrderByElement element : select.getOrderByElements()) {
+            if (!(element.getExpression() instanceof Column) || element.getNullOrdering() != null) {
+                return List.of();
+            }
+            Column column = (Column) element.getExpression();
+            String columnQualifier = SqlAst.qualifier(column);
+            if (columnQualifier != null && !columnQualifier.equals(qualifier)
+                    || !context.hasColumn(name, SqlAst.columnName(column))) {
+                return List.of();
+            }
+            orderColumns.add(SqlAst.columnName(column));
+            sameDirection &= element.isAsc() == ascending;
+        }
+        boolean uniqueOrder = context.isUnique(name, orderColumns);
+        long rowCount = ((LongValue) limit.getRowCount()).getValue();
+        long offsetRows = ((LongValue) offset).getValue();
+
+        List<RewriteCandidate> candidates = new ArrayList<>();
+        PlainSelect keyset = SqlAst.copy(select);
+        List<String> primaryKey = context.getPrimaryKey(name);
+        if (!primaryKey.isEmpty()) {
+            candidates.add(deferredJoin(select, table, qualifier, primaryKey, rowCount, offsetRows, uniqueOrder));
+        }
+        if (uniqueOrder && sameDirection) {
+            candidates.add(keyset(keyset, orderColumns, ascending, offsetRows));
+        }
+        return candidates;
+    }
+
+    private RewriteCandidate deferredJoin(PlainSelect select, Table table, String qualifier, List<String> primaryKey,
+                                          long rowCount, long offset, boolean uniqueOrder) throws JSQLParserException {
+        String orderBy = select.getOrderByElements().stream()
+                .map(OrderByElement::toString)
+                .collect(Collectors.joining(", "));
+        String page = "SELECT " + String.join(", ", primaryKey) + " FROM " + table
+                + (select.getWhere() != null ? " WHERE " + select.getWhere() : "")
+                + " ORDER BY " + orderBy + " LIMIT " + rowCount + " OFFSET " + offset;
+
+        select.setWhere(null);
+        select.setLimit(null);
+        select.setOffset(null);
+        SqlAst.qualifyColumns(select, qualifier, 1);
+        List<SelectItem<?>> items = new ArrayList<>();
+        for (SelectItem<?> item : select.getSelectItems()) {
+            boolean star = item.getExpression() instanceof AllColumns && !(item.getExpression() instanceof AllTableColumns);
+            items.add(star ? new SelectItem<>(new AllTableColumns(new Table(qualifier))) : item);
+        }
+        select.setSelectItems(items);
+
+        String on = primaryKey.stream()
+                .map(column -> qualifier + "." + column + " = page." + column)
+                .collect(Collectors.joining(" AND "));
+        ParenthesedSelect pageSelect = new ParenthesedSelect().withSelect(SqlAst.parsePlainSelect(page));
+        pageSelect.setAlias(new Alias("page", true));
+        Join join = new Join();
+        join.setInner(true);
+        join.setRightItem(pageSelect);
+        join.addOnExpression(SqlAst.parseCondition(on));
+        select.addJoins(join);
+
+        RewriteCandidate candidate = new RewriteCandidate(getName(), select.toString(),
+                "Page over the primary key only (deferred join) and fetch full rows just for the " + rowCount
+                        + " rows of the page", true)
+                .precondition("primary key of " + table.getName() + " is (" + String.join(", ", primaryKey) + ")")
+                .precondition("single table without GROUP BY, DISTINCT or aggregates");
+        if (!uniqueOrder) {
+            candidate.caveat("ORDER BY is not unique: rows tied on it may land on different pages than before, "
+                    + "append the primary key to the ORDER BY");
+        }
+        return candidate;
+    }
+
+    private RewriteCandidate keyset(PlainSelect select, List<String> orderColumns, boolean ascending, long offset)
+            throws JSQLParserException {
+        String comparison = ascending ? " > " : " < ";
+        String condition;
+        if (orderColumns.size() == 1) {
+            condition = orderColumns.get(0) + comparison + ":last_" + orderColumns.get(0);
+        } else {
+            condition = "(" + String.join(", ", orderColumns) + ")" + comparison + "("
+                    + orderColumns.stream().map(column -> ":last_" + column).collect(Collectors.joining(", ")) + ")";
+        }
+
+        List<Expression> terms = SqlAst.conjuncts(select.getWhere());
+        terms.add(SqlAst.parseCondition(condition));
+        select.setWhere(SqlAst.and(terms));
+        select.getLimit().setOffset(null);
+        select.setOffset(null);
+
+        return new RewriteCandidate(getName(), select.toString(),
+                "Keyset pagination: seek past the last row of the previous page instead of skipping " + offset
+                        + " rows", false)
+                .precondition("ORDER BY columns (" + String.join(", ", orderColumns) + ") form a unique key, "
+                        + "all sorted in the same direction")
+                .caveat("Not a drop-in replacement: the caller passes the ORDER BY values of the previous page's "
+                        + "last row as :last_* parameters and runs the first page without the condition");
+    }
+}
@@ -0,0 +1,189 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExistsExpression;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code col IN (SELECT x FROM t WHERE ...)} to a semi-join
+ *
+ * The EXISTS form is always equivalent. The JOIN form is only offered when x is unique in t,
+ * so that the join cannot multiply outer rows. NOT IN is left alone: it differs from NOT
+ * EXISTS as soon as the subquery returns a NULL.
+ */
+class InSubqueryRule implements RewriteRule {
+
+    @Override
+    public String getName() {
+        return "in_subquery";
+    }
+
+    @Override
+    public List<RewriteCandidate> apply(PlainSelect select, RewriteContext context) throws JSQLParserException {
+        Map<String, String> outerRefs = SqlAst.tableRefs(select);
+        if (outerRefs == null || select.getWhere() == null) {
+            return List.of();
+        }
+
+        List<Expression> conjuncts = SqlAst.conjuncts(select.getWhere());
+        for (int i = 0; i < conjuncts.size(); i++) {
+            Expression term = SqlAst.unwrap(conjuncts.get(i));
+            if (!(term instanceof InExpression)) {
+                continue;
+            }
+            InExpression in = (InExpression) term;
+            if (in.isNot() || !(in.getLeftExpression() instanceof Column)
+                    || !(in.getRightExpression() instanceof ParenthesedSelect)
+                    || !(((ParenthesedSelect) in.getRightExpression()).getSelect() instanceof PlainSelect)) {
+                continue;
+            }
+            PlainSelect inner = (PlainSelect) ((ParenthesedSelect) in.getRightExpression()).getSelect();
+            if (inner.getSelectItems().size() != 1
+                    || !(inner.getSelectItems().get(0).getExpression() instanceof Column)
+                    || !SqlAst.isPlainRowSelect(inner) || SqlAst.hasLimit(inner)) {
+                continue;
+            }
+            Map<String, String> innerRefs = SqlAst.tableRefs(inner);
+            Column outerColumn = (Column) in.getLeftExpression();
+            String outerQualifier = outerQualifier(select, outerColumn);
+            if (innerRefs == null || outerQualifier == null || innerRefs.containsKey(outerQualifier)) {
+                continue;
+            }
+
+            List<RewriteCandidate> candidates = new ArrayList<>();
+            PlainSelect joinVariant = SqlAst.copy(select);
+            candidates.add(toExists(select, conjuncts, i, inner, outerColumn, outerQualifier));
+            RewriteCandidate join = toJoin(joinVariant, i, outerRefs, outerQualifier, context);
+            if (join != null) {
+                candidates.add(join);
+            }
+            return candidates;
+        }
+        return List.of();
+    }
+
+    private RewriteCandidate toExists(PlainSelect select, List<Expression> conjuncts, int index,
+                                      PlainSelect inner, Column outerColumn, String outerQualifier) {
+        Column innerColumn = (Column) inner.getSelectItems().get(0).getExpression();
+        outerColumn.setTable(new Table(outerQualifier));
+
+        List<Expression> innerTerms = SqlAst.conjuncts(inner.getWhere());
+        innerTerms.add(new EqualsTo(innerColumn, outerColumn));
+        inner.setSelectItems(new ArrayList<>(List.of(new SelectItem<>(new LongValue(1)))));
+        inner.setWhere(SqlAst.and(innerTerms));
+
+        ExistsExpression exists = new ExistsExpression();
+        exists.setRightExpression(new ParenthesedSelect().withSelect(inner));
+        List<Expression> terms = new ArrayList<>(conjuncts);
+        terms.set(index, exists);
+        select.setWhere(SqlAst.and(terms));
+
+        return new RewriteCandidate(getName(), select.toString(),
+                "Turn IN (subquery) into a correlated EXISTS semi-join that stops at the first match", true)
+                .precondition("IN, not NOT IN, so NULLs returned by the subquery cannot change the result")
+                .precondition("subquery has one plain column and no GROUP BY, DISTINCT or LIMIT")
+                .caveat("Recent MySQL and PostgreSQL already plan simple IN subqueries as semi-joins; "
+                        + "compare the plans before adopting");
+    }
+
+    /**
+     * Join the subquery's table when its column is unique, moving its conditions into ON
+     */
+    private RewriteCandidate toJoin(PlainSelect select, int index, Map<String, String> outerRefs,
+                                    String outerQualifier, RewriteContext context) throws JSQLParserException {
+        List<Expression> conjuncts = SqlAst.conjuncts(select.getWhere());
+        InExpression in = (InExpression) SqlAst.unwrap(conjuncts.get(index));
+        PlainSelect inner = (PlainSelect) ((ParenthesedSelect) in.getRightExpression()).getSelect();
+        Table innerTable = SqlAst.singleTable(inner);
+        if (innerTable == null || outerRefs.containsKey(SqlAst.qualifier(innerTable))) {
+            return null;
+        }
+        String table = SqlAst.name(innerTable);
+        String qualifier = SqlAst.qualifier(innerTable);
+        Column innerColumn = (Column) inner.getSelectItems().get(0).getExpression();
+        String innerColumnName = SqlAst.columnName(innerColumn);
+        if (!context.isUnique(table, List.of(innerColumnName))) {
+            return null;
+        }
+
+        // Inner conditions move next to the outer tables: every column must belong to the inner table
+        Expression innerWhere = inner.getWhere();
+        if (innerWhere != null) {
+            if (SqlAst.hasSubquery(innerWhere)) {
+                return null;
+            }
+            for (Column column : SqlAst.columns(innerWhere)) {
+                String columnQualifier = SqlAst.qualifier(column);
+                if (columnQualifier != null ? !columnQualifier.equals(qualifier)
+                        : !context.hasColumn(table, SqlAst.columnName(column))) {
+                    return null;
+                }
+            }
+            SqlAst.requalify(innerWhere, qualifier, qualifier);
+        }
+        innerColumn.setTable(new Table(qualifier));
+        ((Column) in.getLeftExpression()).setTable(new Table(outerQualifier));
+        if (!SqlAst.qualifyColumns(select, outerQualifier, outerRefs.size())) {
+            return null;
+        }
+
+        // SELECT * would now also return the joined table's columns
+        List<SelectItem<?>> items = new ArrayList<>();
+        for (SelectItem<?> item : select.getSelectItems()) {
+            if (item.getExpression() instanceof AllColumns && !(item.getExpression() instanceof AllTableColumns)) {
+                if (outerRefs.size() != 1) {
+                    return null;
+                }
+                items.add(new SelectItem<>(new AllTableColumns(new Table(outerRefs.keySet().iterator().next()))));
+            } else {
+                items.add(item);
+            }
+        }
+        select.setSelectItems(items);
+
+        List<Expression> on = new ArrayList<>();
+        on.add(new EqualsTo(innerColumn, in.getLeftExpression()));
+        on.addAll(SqlAst.conjuncts(innerWhere));
+        Join join = new Join();
+        join.setInner(true);
+        join.setRightItem(innerTable);
+        join.addOnExpression(SqlAst.and(on));
+        select.addJoins(join);
+
+        List<Expression> terms = new ArrayList<>(conjuncts);
+        terms.remove(index);
+        select.setWhere(SqlAst.and(terms));
+
+        return new RewriteCandidate(getName(), select.toString(),
+                "Turn IN (subquery) into an inner join, letting the optimizer pick the join order", true)
+                .precondition(innerColumnName + " is unique in " + table + ", so the join matches at most one row")
+                .precondition("subquery conditions only reference " + table);
+    }
+
+    /**
+     * Qualifier for the outer column, so that it keeps pointing at the outer table inside the subquery
+     */
+    private static String outerQualifier(PlainSelect select, Column column) {
+        String qualifier = SqlAst.qualifier(column);
+        if (qualifier != null) {
+            return qualifier;
+        }
+        Table table = SqlAst.singleTable(select);
+        return table != null ? SqlAst.qualifier(table) : null;
+    }
+}
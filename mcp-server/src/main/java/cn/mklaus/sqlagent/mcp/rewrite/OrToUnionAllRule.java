@@ -0,0 +1,107 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * OR over different indexed columns to UNION ALL
+ *
+ * {@code WHERE a = 1 OR b = 2} can rarely use both indexes; one branch per disjunct can. Later
+ * branches exclude rows of earlier ones with {@code (d) IS NOT TRUE}, which - unlike NOT -
+ * also keeps rows where the earlier disjunct is NULL, so the result is the same multiset.
+ */
+class OrToUnionAllRule implements RewriteRule {
+    private static final int MAX_BRANCHES = 4;
+
+    @Override
+    public String getName() {
+        return "or_to_union_all";
+    }
+
+    @Override
+    public List<RewriteCandidate> apply(PlainSelect select, RewriteContext context) throws JSQLParserException {
+        Table table = SqlAst.singleTable(select);
+        if (table == null || select.getWhere() == null || !SqlAst.isPlainRowSelect(select)
+                || SqlAst.hasLimit(select) || select.getOrderByElements() != null) {
+            return List.of();
+        }
+
+        List<Expression> conjuncts = SqlAst.conjuncts(select.getWhere());
+        int orIndex = -1;
+        for (int i = 0; i < conjuncts.size(); i++) {
+            if (SqlAst.unwrap(conjuncts.get(i)) instanceof OrExpression) {
+                orIndex = i;
+                break;
+            }
+        }
+        if (orIndex < 0) {
+            return List.of();
+        }
+
+        List<Expression> disjuncts = SqlAst.disjuncts(conjuncts.get(orIndex));
+        if (disjuncts.size() > MAX_BRANCHES) {
+            return List.of();
+        }
+        Set<String> seen = new HashSet<>();
+        List<String> indexedColumns = new ArrayList<>();
+        for (Expression disjunct : disjuncts) {
+            String column = singleColumn(disjunct);
+            if (column == null || SqlAst.hasSubquery(disjunct)
+                    || !seen.add(column.toLowerCase(Locale.ROOT))
+                    || !context.isIndexed(SqlAst.name(table), List.of(column))) {
+                return List.of();
+            }
+            indexedColumns.add(column);
+        }
+
+        List<Expression> rest = new ArrayList<>(conjuncts);
+        rest.remove(orIndex);
+        select.setWhere(null);
+        String head = select.toString();
+
+        List<String> branches = new ArrayList<>();
+        for (int i = 0; i < disjuncts.size(); i++) {
+            List<Expression> terms = new ArrayList<>(rest);
+            terms.add(disjuncts.get(i));
+            for (int j = 0; j < i; j++) {
+                terms.add(SqlAst.parseCondition("(" + disjuncts.get(j) + ") IS NOT TRUE"));
+            }
+            branches.add(head + " WHERE " + SqlAst.and(terms));
+        }
+
+        RewriteCandidate candidate = new RewriteCandidate(getName(), String.join(" UNION ALL ", branches),
+                "Split the OR into one UNION ALL branch per indexed column so every branch can use its index",
+                true)
+                .precondition("each OR term filters a different column leading an index of " + table.getName()
+                        + ": " + String.join(", ", indexedColumns))
+                .precondition("no DISTINCT, GROUP BY, aggregate, ORDER BY or LIMIT")
+                .caveat("Only faster when every branch is selective; index merge (MySQL) or BitmapOr "
+                        + "(PostgreSQL) may already combine the indexes, compare the plans");
+        return List.of(candidate);
+    }
+
+    /**
+     * @return Name of the only column the predicate references, or null
+     */
+    private static String singleColumn(Expression predicate) {
+        String name = null;
+        for (Column column : SqlAst.columns(predicate)) {
+            String current = SqlAst.columnName(column);
+            if (name != null && !name.equalsIgnoreCase(current)) {
+                return null;
+            }
+            name = current;
+        }
+        return name;
+    }
+}
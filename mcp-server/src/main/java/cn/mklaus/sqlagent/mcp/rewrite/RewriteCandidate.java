@@ -0,0 +1,83 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rewritten statement with the preconditions that were verified and what is left to check
+ */
+public class RewriteCandidate {
+    private final String rule;
+    private final String sql;
+    private final String description;
+    private final boolean equivalent;
+    private final List<String> preconditions = new ArrayList<>();
+    private final List<String> caveats = new ArrayList<>();
+
+    /**
+     * @param equivalent Whether the statement returns the same rows as the original; false for
+     *                   rewrites that also need a change in the calling code
+     */
+    public RewriteCandidate(String rule, String sql, String description, boolean equivalent) {
+        this.rule = rule;
+        this.sql = sql;
+        this.description = description;
+        this.equivalent = equivalent;
+    }
+
+    public RewriteCandidate precondition(String precondition) {
+        preconditions.add(precondition);
+        return this;
+    }
+
+    public RewriteCandidate caveat(String caveat) {
+        caveats.add(caveat);
+        return this;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isEquivalent() {
+        return equivalent;
+    }
+
+    public List<String> getPreconditions() {
+        return preconditions;
+    }
+
+    public List<String> getCaveats() {
+        return caveats;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("rule", rule);
+        json.addProperty("sql", sql);
+        json.addProperty("description", description);
+        json.addProperty("equivalent", equivalent);
+        if (!preconditions.isEmpty()) {
+            JsonArray array = new JsonArray();
+            preconditions.forEach(array::add);
+            json.add("verified", array);
+        }
+        if (!caveats.isEmpty()) {
+            JsonArray array = new JsonArray();
+            caveats.forEach(array::add);
+            json.add("caveats", array);
+        }
+        return json;
+    }
+}
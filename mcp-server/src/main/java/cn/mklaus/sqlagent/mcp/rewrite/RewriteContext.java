@@ -0,0 +1,73 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import cn.mklaus.sqlagent.mcp.schema.RelationshipGraph;
+import cn.mklaus.sqlagent.mcp.schema.TableInfo;
+
+import java.util.List;
+
+/**
+ * Catalog facts the rewrite rules check their preconditions against
+ *
+ * Every method answers conservatively for unknown tables: a rule that needs a fact it
+ * cannot get does not fire.
+ */
+public interface RewriteContext {
+
+    /**
+     * Context without catalog information; only rules needing no metadata fire
+     */
+    RewriteContext NONE = of(null);
+
+    boolean hasColumn(String table, String column);
+
+    /**
+     * Whether the columns are a prefix of some index of the table
+     */
+    boolean isIndexed(String table, List<String> columns);
+
+    /**
+     * Whether the columns form the primary key or a unique index of the table
+     */
+    boolean isUnique(String table, List<String> columns);
+
+    /**
+     * @return Primary key columns, empty if unknown
+     */
+    List<String> getPrimaryKey(String table);
+
+    /**
+     * Context backed by the relationship graph's table catalog
+     * @param graph Graph, or null if the catalog is not available
+     */
+    static RewriteContext of(RelationshipGraph graph) {
+        return new RewriteContext() {
+            private TableInfo table(String name) {
+                return graph != null ? graph.getTable(name) : null;
+            }
+
+            @Override
+            public boolean hasColumn(String table, String column) {
+                TableInfo info = table(table);
+                return info != null && info.hasColumn(column);
+            }
+
+            @Override
+            public boolean isIndexed(String table, List<String> columns) {
+                TableInfo info = table(table);
+                return info != null && info.isIndexed(columns);
+            }
+
+            @Override
+            public boolean isUnique(String table, List<String> columns) {
+                TableInfo info = table(table);
+                return info != null && info.isUnique(columns);
+            }
+
+            @Override
+            public List<String> getPrimaryKey(String table) {
+                TableInfo info = table(table);
+                return info != null ? info.getPrimaryKey() : List.of();
+            }
+        };
+    }
+}
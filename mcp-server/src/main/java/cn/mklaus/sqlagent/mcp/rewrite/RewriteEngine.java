@@ -0,0 +1,63 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies deterministic rewrite rules to a SELECT
+ *
+ * Each rule gets its own parse of the statement, so rules never see each other's changes.
+ * A candidate is only returned if it parses again. Rules run in microseconds to milliseconds;
+ * their candidates are meant to be checked with verify_equivalence and benchmark_query.
+ */
+public class RewriteEngine {
+    private static final Logger logger = LoggerFactory.getLogger(RewriteEngine.class);
+
+    private final List<RewriteRule> rules;
+
+    public RewriteEngine() {
+        this(List.of(
+                new OrToUnionAllRule(),
+                new InSubqueryRule(),
+                new ScalarSubqueryToJoinRule(),
+                new DeepOffsetRule(),
+                new CountToExistsRule()));
+    }
+
+    public RewriteEngine(List<RewriteRule> rules) {
+        this.rules = rules;
+    }
+
+    public List<RewriteRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return Candidates of all applicable rules, empty for statements other than a single SELECT
+     * @throws JSQLParserException If the statement cannot be parsed
+     */
+    public List<RewriteCandidate> rewrite(String sql, RewriteContext context) throws JSQLParserException {
+        List<RewriteCandidate> candidates = new ArrayList<>();
+        if (SqlAst.parsePlainSelect(sql) == null) {
+            return candidates;
+        }
+
+        for (RewriteRule rule : rules) {
+            try {
+                for (RewriteCandidate candidate : rule.apply(SqlAst.parsePlainSelect(sql), context)) {
+                    CCJSqlParserUtil.parse(candidate.getSql());
+                    candidates.add(candidate);
+                }
+            } catch (JSQLParserException | RuntimeException e) {
+                logger.warn("Rewrite rule {} failed: {}", rule.getName(), e.getMessage());
+            }
+        }
+        return candidates;
+    }
+}
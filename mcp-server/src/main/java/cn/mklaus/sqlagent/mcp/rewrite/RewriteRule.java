@@ -0,0 +1,21 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+import java.util.List;
+
+/**
+ * One mechanical rewrite with its correctness preconditions
+ */
+public interface RewriteRule {
+
+    String getName();
+
+    /**
+     * Rewrite the select if the rule applies
+     * @param select Freshly parsed statement the rule may modify
+     * @return Candidates, empty if the rule does not apply or a precondition does not hold
+     */
+    List<RewriteCandidate> apply(PlainSelect select, RewriteContext context) throws JSQLParserException;
+}
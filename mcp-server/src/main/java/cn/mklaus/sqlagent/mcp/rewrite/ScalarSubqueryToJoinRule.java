@@ -0,0 +1,182 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Correlated scalar subqueries in the select list to LEFT JOINs
+ *
+ * {@code (SELECT u.name FROM users u WHERE u.id = o.user_id)} runs once per outer row. When
+ * the correlated columns form a unique key of the subquery's table, the subquery yields at
+ * most one row, exactly like a LEFT JOIN on the same condition, and NULL when nothing matches.
+ */
+class ScalarSubqueryToJoinRule implements RewriteRule {
+
+    @Override
+    public String getName() {
+        return "scalar_subquery_to_join";
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RewriteCandidate> apply(PlainSelect select, RewriteContext context) throws JSQLParserException {
+        Map<String, String> outerRefs = SqlAst.tableRefs(select);
+        if (outerRefs == null || select.getGroupBy() != null || select.getHaving() != null) {
+            return List.of();
+        }
+        if (select.getJoins() != null) {
+            for (Join join : select.getJoins()) {
+                // Comma joins bind looser than JOIN in MySQL, the new ON could not see their tables
+                if (join.isSimple()) {
+                    return List.of();
+                }
+            }
+        }
+
+        List<String> keys = new ArrayList<>();
+        int aliasNumber = 0;
+        boolean unlabeled = false;
+        for (SelectItem<?> item : select.getSelectItems()) {
+            Expression expression = SqlAst.unwrap(item.getExpression());
+            if (!(expression instanceof ParenthesedSelect)
+                    || !(((ParenthesedSelect) expression).getSelect() instanceof PlainSelect)) {
+                continue;
+            }
+            PlainSelect inner = (PlainSelect) ((ParenthesedSelect) expression).getSelect();
+            // toJoin requalifies the subquery in place, so the alias must be free before it runs
+            int number = aliasNumber + 1;
+            while (outerRefs.containsKey("sq" + number)) {
+                number++;
+            }
+            Join join = toJoin(inner, outerRefs, "sq" + number, context, keys);
+            if (join == null) {
+                continue;
+            }
+            aliasNumber = number;
+            select.addJoins(join);
+            ((SelectItem<Expression>) item).setExpression(inner.getSelectItems().get(0).getExpression());
+            unlabeled |= item.getAlias() == null;
+        }
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        if (!SqlAst.qualifyColumns(select, outerRefs.keySet().iterator().next(), outerRefs.size())) {
+            return List.of();
+        }
+
+        RewriteCandidate candidate = new RewriteCandidate(getName(), select.toString(),
+                "Replace correlated scalar subqueries in the select list with LEFT JOINs evaluated once per query",
+                true)
+                .precondition("correlated columns are unique keys: " + String.join("; ", keys))
+                .precondition("subqueries select one non-aggregate value from one table");
+        if (unlabeled) {
+            candidate.caveat("The result column is now labeled by the joined column, add an alias if the "
+                    + "caller reads columns by name");
+        }
+        return List.of(candidate);
+    }
+
+    /**
+     * Build the LEFT JOIN replacing the subquery, requalifying its columns with the join alias
+     * @return The join, or null if the subquery does not qualify
+     */
+    private Join toJoin(PlainSelect inner, Map<String, String> outerRefs, String alias,
+                        RewriteContext context, List<String> keys) {
+        Table innerTable = SqlAst.singleTable(inner);
+        if (innerTable == null || inner.getWhere() == null || inner.getSelectItems().size() != 1
+                || inner.getSelectItems().get(0).getExpression() instanceof AllColumns
+                || !SqlAst.isPlainRowSelect(inner) || SqlAst.hasLimit(inner)
+                || SqlAst.hasSubquery(inner.getWhere())
+                || SqlAst.hasSubquery(inner.getSelectItems().get(0).getExpression())) {
+            return null;
+        }
+        String table = SqlAst.name(innerTable);
+        String qualifier = SqlAst.qualifier(innerTable);
+        if (outerRefs.containsKey(qualifier)) {
+            return null;
+        }
+
+        Expression value = inner.getSelectItems().get(0).getExpression();
+        for (Column column : SqlAst.columns(value)) {
+            if (!isInner(column, table, qualifier, context)) {
+                return null;
+            }
+        }
+
+        List<String> keyColumns = new ArrayList<>();
+        for (Expression term : SqlAst.conjuncts(inner.getWhere())) {
+            Expression unwrapped = SqlAst.unwrap(term);
+            if (unwrapped instanceof EqualsTo) {
+                String key = correlatedKey((EqualsTo) unwrapped, table, qualifier, outerRefs, context);
+                if (key != null) {
+                    keyColumns.add(key);
+                    continue;
+                }
+            }
+            for (Column column : SqlAst.columns(term)) {
+                if (!isInner(column, table, qualifier, context)) {
+                    return null;
+                }
+            }
+        }
+        if (keyColumns.isEmpty() || !context.isUnique(table, keyColumns)) {
+            return null;
+        }
+
+        SqlAst.requalify(inner.getWhere(), qualifier, alias);
+        SqlAst.requalify(value, qualifier, alias);
+        keys.add(table + "(" + String.join(", ", keyColumns) + ")");
+
+        Table joined = new Table(innerTable.getSchemaName(), innerTable.getName());
+        joined.setAlias(new Alias(alias, true));
+        Join join = new Join();
+        join.setLeft(true);
+        join.setRightItem(joined);
+        join.addOnExpression(inner.getWhere());
+        return join;
+    }
+
+    /**
+     * @return Inner column name of {@code inner = outer}, or null if the term is not such a correlation
+     */
+    private static String correlatedKey(EqualsTo equals, String table, String qualifier,
+                                        Map<String, String> outerRefs, RewriteContext context) {
+        if (!(equals.getLeftExpression() instanceof Column) || !(equals.getRightExpression() instanceof Column)) {
+            return null;
+        }
+        Column left = (Column) equals.getLeftExpression();
+        Column right = (Column) equals.getRightExpression();
+        if (isInner(left, table, qualifier, context) && isOuter(right, outerRefs)) {
+            return SqlAst.columnName(left);
+        }
+        if (isInner(right, table, qualifier, context) && isOuter(left, outerRefs)) {
+            return SqlAst.columnName(right);
+        }
+        return null;
+    }
+
+    private static boolean isInner(Column column, String table, String qualifier, RewriteContext context) {
+        String columnQualifier = SqlAst.qualifier(column);
+        return columnQualifier != null
+                ? columnQualifier.equals(qualifier)
+                : context.hasColumn(table, SqlAst.columnName(column));
+    }
+
+    private static boolean isOuter(Column column, Map<String, String> outerRefs) {
+        String columnQualifier = SqlAst.qualifier(column);
+        return columnQualifier != null && outerRefs.containsKey(columnQualifier);
+    }
+}
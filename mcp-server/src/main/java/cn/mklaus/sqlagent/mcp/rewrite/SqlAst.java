@@ -0,0 +1,295 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * AST helpers shared by the rewrite rules
+ */
+final class SqlAst {
+    private static final Set<String> AGGREGATES = Set.of(
+            "count", "sum", "avg", "min", "max", "group_concat", "string_agg", "array_agg",
+            "bit_and", "bit_or", "bool_and", "bool_or", "json_agg", "json_arrayagg", "json_objectagg");
+
+    private SqlAst() {
+    }
+
+    /**
+     * Parse a single SELECT that the rules can work on
+     * @return The select, or null for set operations, CTEs and other statements
+     */
+    static PlainSelect parsePlainSelect(String sql) throws JSQLParserException {
+        Object statement = CCJSqlParserUtil.parse(sql);
+        if (!(statement instanceof PlainSelect)) {
+            return null;
+        }
+        PlainSelect select = (PlainSelect) statement;
+        return select.getWithItemsList() == null || select.getWithItemsList().isEmpty() ? select : null;
+    }
+
+    /**
+     * Independent copy of a select, so that one rule can build several variants
+     */
+    static PlainSelect copy(PlainSelect select) throws JSQLParserException {
+        return (PlainSelect) CCJSqlParserUtil.parse(select.toString());
+    }
+
+    static Expression parseCondition(String condition) throws JSQLParserException {
+        return CCJSqlParserUtil.parseCondExpression(condition);
+    }
+
+    static Expression unwrap(Expression expression) {
+        while (expression instanceof Parenthesis) {
+            expression = ((Parenthesis) expression).getExpression();
+        }
+        return expression;
+    }
+
+    /**
+     * Split a condition into its top-level AND terms
+     */
+    static List<Expression> conjuncts(Expression condition) {
+        List<Expression> terms = new ArrayList<>();
+        if (condition != null) {
+            collect(condition, AndExpression.class, terms);
+        }
+        return terms;
+    }
+
+    /**
+     * Split a condition into its top-level OR terms
+     */
+    static List<Expression> disjuncts(Expression condition) {
+        List<Expression> terms = new ArrayList<>();
+        collect(condition, OrExpression.class, terms);
+        return terms;
+    }
+
+    private static void collect(Expression condition, Class<?> operator, List<Expression> terms) {
+        Expression unwrapped = unwrap(condition);
+        if (operator == AndExpression.class && unwrapped instanceof AndExpression) {
+            collect(((AndExpression) unwrapped).getLeftExpression(), operator, terms);
+            collect(((AndExpression) unwrapped).getRightExpression(), operator, terms);
+        } else if (operator == OrExpression.class && unwrapped instanceof OrExpression) {
+            collect(((OrExpression) unwrapped).getLeftExpression(), operator, terms);
+            collect(((OrExpression) unwrapped).getRightExpression(), operator, terms);
+        } else {
+            terms.add(condition);
+        }
+    }
+
+    /**
+     * Join terms with AND, parenthesizing OR terms
+     * @return The condition, or null if there are no terms
+     */
+    static Expression and(List<Expression> terms) {
+        Expression result = null;
+        for (Expression term : terms) {
+            Expression operand = unwrap(term) instanceof OrExpression ? new Parenthesis(unwrap(term)) : term;
+            result = result == null ? operand : new AndExpression(result, operand);
+        }
+        return result;
+    }
+
+    /**
+     * Table name without quotes, in lower case
+     */
+    static String name(Table table) {
+        return unquote(table.getName()).toLowerCase(Locale.ROOT);
+    }
+
+    static String unquote(String identifier) {
+        if (identifier.length() >= 2 && "\"`[".indexOf(identifier.charAt(0)) >= 0) {
+            return identifier.substring(1, identifier.length() - 1);
+        }
+        return identifier;
+    }
+
+    /**
+     * Name the table is referred to by in the query: its alias or else its name, in lower case
+     */
+    static String qualifier(Table table) {
+        return table.getAlias() != null
+                ? unquote(table.getAlias().getName()).toLowerCase(Locale.ROOT)
+                : name(table);
+    }
+
+    /**
+     * Tables of the FROM clause and its joins by qualifier
+     * @return Qualifier to table name, or null if any item is not a plain table
+     */
+    static Map<String, String> tableRefs(PlainSelect select) {
+        Map<String, String> refs = new LinkedHashMap<>();
+        List<FromItem> items = new ArrayList<>();
+        items.add(select.getFromItem());
+        if (select.getJoins() != null) {
+            for (Join join : select.getJoins()) {
+                items.add(join.getRightItem());
+            }
+        }
+        for (FromItem item : items) {
+            if (!(item instanceof Table)) {
+                return null;
+            }
+            refs.put(qualifier((Table) item), name((Table) item));
+        }
+        return refs;
+    }
+
+    /**
+     * The only table of a select without joins, or null
+     */
+    static Table singleTable(PlainSelect select) {
+        boolean noJoins = select.getJoins() == null || select.getJoins().isEmpty();
+        return noJoins && select.getFromItem() instanceof Table ? (Table) select.getFromItem() : null;
+    }
+
+    /**
+     * Whether the select has no DISTINCT, GROUP BY, HAVING, aggregates, INTO or locking clauses
+     */
+    static boolean isPlainRowSelect(PlainSelect select) {
+        if (select.getDistinct() != null || select.getGroupBy() != null || select.getHaving() != null
+                || select.isForUpdate() || select.getIntoTables() != null) {
+            return false;
+        }
+        for (SelectItem<?> item : select.getSelectItems()) {
+            if (hasAggregate(item.getExpression())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean hasLimit(PlainSelect select) {
+        return select.getLimit() != null || select.getOffset() != null || select.getFetch() != null;
+    }
+
+    static boolean hasAggregate(Expression expression) {
+        boolean[] found = new boolean[1];
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Function function) {
+                if (AGGREGATES.contains(function.getName().toLowerCase(Locale.ROOT))) {
+                    found[0] = true;
+                }
+                super.visit(function);
+            }
+        });
+        return found[0];
+    }
+
+    static boolean hasSubquery(Expression expression) {
+        boolean[] found = new boolean[1];
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(ParenthesedSelect select) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Column references of an expression, not descending into subqueries
+     */
+    static List<Column> columns(Expression expression) {
+        List<Column> columns = new ArrayList<>();
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                columns.add(column);
+            }
+        });
+        return columns;
+    }
+
+    /**
+     * Qualifier of a column reference in lower case, or null if unqualified
+     */
+    static String qualifier(Column column) {
+        Table table = column.getTable();
+        return table != null && table.getName() != null ? unquote(table.getName()).toLowerCase(Locale.ROOT) : null;
+    }
+
+    static String columnName(Column column) {
+        return unquote(column.getColumnName());
+    }
+
+    /**
+     * Qualify the unqualified columns in the select's own clauses, before another table joins
+     * the query and makes them ambiguous; ORDER BY references to select item aliases stay as is
+     * @return False if the select has several tables and unqualified columns, which cannot be attributed
+     */
+    static boolean qualifyColumns(PlainSelect select, String qualifier, int tableCount) {
+        Set<String> aliases = new HashSet<>();
+        for (SelectItem<?> item : select.getSelectItems()) {
+            if (item.getAlias() != null) {
+                aliases.add(unquote(item.getAlias().getName()).toLowerCase(Locale.ROOT));
+            }
+        }
+
+        List<Column> unqualified = new ArrayList<>();
+        List<Expression> clauses = new ArrayList<>();
+        select.getSelectItems().forEach(item -> clauses.add(item.getExpression()));
+        clauses.add(select.getWhere());
+        if (select.getGroupBy() != null) {
+            clauses.add(select.getGroupBy().getGroupByExpressionList());
+        }
+        clauses.add(select.getHaving());
+        for (Expression clause : clauses) {
+            if (clause != null) {
+                columns(clause).stream().filter(c -> qualifier(c) == null).forEach(unqualified::add);
+            }
+        }
+        if (select.getOrderByElements() != null) {
+            for (OrderByElement element : select.getOrderByElements()) {
+                for (Column column : columns(element.getExpression())) {
+                    if (qualifier(column) == null
+                            && !aliases.contains(columnName(column).toLowerCase(Locale.ROOT))) {
+                        unqualified.add(column);
+                    }
+                }
+            }
+        }
+
+        if (!unqualified.isEmpty() && tableCount != 1) {
+            return false;
+        }
+        unqualified.forEach(column -> column.setTable(new Table(qualifier)));
+        return true;
+    }
+
+    /**
+     * Point unqualified columns, and columns qualified with {@code from} if not null, to {@code to}
+     */
+    static void requalify(Expression expression, String from, String to) {
+        for (Column column : columns(expression)) {
+            String qualifier = qualifier(column);
+            if (qualifier == null || qualifier.equals(from)) {
+                column.setTable(new Table(to));
+            }
+        }
+    }
+}
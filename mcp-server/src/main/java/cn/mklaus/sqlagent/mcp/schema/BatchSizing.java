@@ -0,0 +1,200 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Size of a multi-row INSERT per row, and the chunk size that keeps it within server limits
+ *
+ * Values are sized as SQL literals, since that is what a multi-row statement or a JDBC driver
+ * rewriting a batch (rewriteBatchedStatements, reWriteBatchedInserts) puts on the wire. Average
+ * widths from statistics are used when known; otherwise variable-length columns are assumed
+ * half full, capped, which is listed in the result so the caller can correct it.
+ */
+public class BatchSizing {
+    /** Placeholders per prepared statement in the MySQL and PostgreSQL protocols */
+    public static final int MAX_BIND_PARAMETERS = 65535;
+    /** Rows per statement beyond which round trips saved no longer matter against lock time and memory */
+    static final int MAX_CHUNK_ROWS = 1000;
+    /** Share of the statement limit a chunk may use, leaving room for values wider than estimated */
+    static final double LIMIT_FRACTION = 0.5;
+    static final int STATEMENT_OVERHEAD_BYTES = 256;
+    static final int ASSUMED_TEXT_BYTES = 256;
+
+    private final String table;
+    private final Long maxStatementBytes;
+    private final List<String> columns = new ArrayList<>();
+    private final List<String> assumedColumns = new ArrayList<>();
+    private long bytesPerRow = 2; // parentheses of the row tuple
+
+    /**
+     * @param maxStatementBytes Server limit on statement size, or null if there is none that matters
+     */
+    public BatchSizing(String table, Long maxStatementBytes) {
+        this.table = table;
+        this.maxStatementBytes = maxStatementBytes;
+    }
+
+    /**
+     * @param octetLength Maximum length in bytes, or null for fixed-size types
+     * @param avgWidth    Average stored width from statistics, or null if unknown
+     */
+    public void addColumn(String name, String dataType, Long octetLength, Double avgWidth) {
+        columns.add(name);
+        String type = dataType != null ? dataType.toLowerCase(Locale.ROOT) : "";
+        long fixed = fixedLiteralBytes(type);
+        long bytes;
+        if (fixed > 0) {
+            bytes = fixed;
+        } else {
+            boolean binary = type.contains("binary") || type.contains("blob") || type.equals("bytea");
+            long width;
+            if (avgWidth != null) {
+                width = Math.round(avgWidth);
+            } else {
+                width = octetLength != null && octetLength > 0
+                        ? Math.min(octetLength / 2, ASSUMED_TEXT_BYTES)
+                        : ASSUMED_TEXT_BYTES;
+                assumedColumns.add(name);
+            }
+            // Quotes, plus hex encoding for binary values
+            bytes = (binary ? 2 * width : width) + 3;
+        }
+        bytesPerRow += bytes + 1; // separator
+    }
+
+    /**
+     * Literal width of types whose text form is bounded, quotes included; 0 for variable-length types
+     */
+    private static long fixedLiteralBytes(String type) {
+        switch (type) {
+            case "bit":
+            case "boolean":
+            case "bool":
+                return 5;
+            case "tinyint":
+            case "smallint":
+            case "int2":
+            case "year":
+                return 6;
+            case "mediumint":
+            case "int":
+            case "integer":
+            case "int4":
+            case "serial":
+                return 11;
+            case "bigint":
+            case "int8":
+            case "bigserial":
+                return 20;
+            case "decimal":
+            case "numeric":
+            case "float":
+            case "double":
+            case "real":
+            case "double precision":
+                return 24;
+            case "date":
+                return 12;
+            case "time":
+            case "time without time zone":
+                return 18;
+            case "datetime":
+            case "timestamp":
+            case "timestamp without time zone":
+            case "timestamp with time zone":
+                return 34;
+            case "uuid":
+                return 38;
+            default:
+                return 0;
+        }
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public long getBytesPerRow() {
+        return bytesPerRow;
+    }
+
+    /**
+     * Columns whose width is an assumption rather than a statistic or a fixed type size
+     */
+    public List<String> getAssumedColumns() {
+        return assumedColumns;
+    }
+
+    public long getStatementBytes(long rows) {
+        return STATEMENT_OVERHEAD_BYTES + rows * bytesPerRow;
+    }
+
+    public int getRecommendedChunkRows() {
+        return (int) Math.max(1, Math.min(MAX_CHUNK_ROWS, Math.min(rowsByStatementSize(), rowsByParameters())));
+    }
+
+    /**
+     * Which limit determines the recommended chunk size
+     */
+    public String getLimitingFactor() {
+        long bySize = rowsByStatementSize();
+        long byParameters = rowsByParameters();
+        if (bySize <= byParameters && bySize < MAX_CHUNK_ROWS) {
+            return "statement size";
+        }
+        return byParameters < MAX_CHUNK_ROWS ? "bind parameters" : "row cap";
+    }
+
+    private long rowsByStatementSize() {
+        if (maxStatementBytes == null) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (maxStatementBytes * LIMIT_FRACTION - STATEMENT_OVERHEAD_BYTES) / bytesPerRow;
+    }
+
+    private long rowsByParameters() {
+        return columns.isEmpty() ? Long.MAX_VALUE : MAX_BIND_PARAMETERS / columns.size();
+    }
+
+    /**
+     * @param plannedRows Rows the caller intends to write, or 0 if unknown
+     */
+    public JsonObject toJson(long plannedRows) {
+        JsonObject json = new JsonObject();
+        json.addProperty("table", table);
+        json.addProperty("columns", columns.size());
+        json.addProperty("bytes_per_row", bytesPerRow);
+        if (maxStatementBytes != null) {
+            json.addProperty("max_statement_bytes", maxStatementBytes);
+        }
+        json.addProperty("max_bind_parameters", MAX_BIND_PARAMETERS);
+        json.addProperty("recommended_chunk_rows", getRecommendedChunkRows());
+        json.addProperty("limiting_factor", getLimitingFactor());
+        json.addProperty("chunk_statement_bytes", getStatementBytes(getRecommendedChunkRows()));
+
+        if (plannedRows > 0) {
+            long statementBytes = getStatementBytes(plannedRows);
+            json.addProperty("planned_rows", plannedRows);
+            json.addProperty("single_statement_bytes", statementBytes);
+            json.addProperty("single_statement_fits", (maxStatementBytes == null || statementBytes <= maxStatementBytes)
+                    && plannedRows * columns.size() <= MAX_BIND_PARAMETERS);
+            json.addProperty("statements_needed", (plannedRows + getRecommendedChunkRows() - 1) / getRecommendedChunkRows());
+        }
+
+        if (!assumedColumns.isEmpty()) {
+            JsonArray assumed = new JsonArray();
+            assumedColumns.forEach(assumed::add);
+            json.add("assumed_width_columns", assumed);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,147 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One index with its size, usage and detected problems
+ */
+public class IndexInfo {
+    private final String name;
+    private final List<String> columns;
+    private final boolean unique;
+    private final boolean primary;
+    private final String method;
+    private final boolean partial;
+    private long sizeBytes = -1;
+    private long reads = -1;
+    private long blocksRead = -1;
+    private final List<String> issues = new ArrayList<>();
+    private final List<IssueKind> issueKinds = new ArrayList<>(); // Kind of each entry of issues
+
+    /**
+     * Kinds of problems IndexRedundancy reports
+     */
+    public enum IssueKind {
+        UNUSED, DUPLICATE, REDUNDANT;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public IndexInfo(String name, List<String> columns, boolean unique, boolean primary,
+                     String method, boolean partial) {
+        this.name = name;
+        this.columns = columns;
+        this.unique = unique;
+        this.primary = primary;
+        this.method = method;
+        this.partial = partial;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public boolean isPrimary() {
+        return primary;
+    }
+
+    /**
+     * Whether the index is a plain B-tree over columns only, so that its columns fully describe
+     * what it can serve
+     */
+    public boolean isPlainBtree() {
+        return !partial
+                && (method == null || method.equalsIgnoreCase("btree"))
+                && !columns.contains(Dialect.EXPRESSION_COLUMN);
+    }
+
+    /**
+     * @return Size on disk in bytes, -1 if unknown
+     */
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    /**
+     * @return Times the index was used since statistics were reset, -1 if unknown
+     */
+    public long getReads() {
+        return reads;
+    }
+
+    public void setReads(long reads) {
+        this.reads = reads;
+    }
+
+    public void setBlocksRead(long blocksRead) {
+        this.blocksRead = blocksRead;
+    }
+
+    public List<String> getIssues() {
+        return issues;
+    }
+
+    /**
+     * @return Kind of each issue, in the order of getIssues()
+     */
+    public List<IssueKind> getIssueKinds() {
+        return issueKinds;
+    }
+
+    void addIssue(IssueKind kind, String issue) {
+        issueKinds.add(kind);
+        issues.add(issue);
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("name", name);
+        json.addProperty("columns", String.join(",", columns));
+        if (primary) {
+            json.addProperty("primary", true);
+        } else if (unique) {
+            json.addProperty("unique", true);
+        }
+        if (method != null && !method.equalsIgnoreCase("btree")) {
+            json.addProperty("method", method);
+        }
+        if (partial) {
+            json.addProperty("partial", true);
+        }
+        if (sizeBytes >= 0) {
+            json.addProperty("size_bytes", sizeBytes);
+        }
+        if (reads >= 0) {
+            json.addProperty("reads", reads);
+        }
+        if (blocksRead >= 0) {
+            json.addProperty("blocks_read", blocksRead);
+        }
+        if (!issues.isEmpty()) {
+            JsonArray issueArray = new JsonArray();
+            issues.forEach(issueArray::add);
+            json.add("issues", issueArray);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,80 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import java.util.List;
+
+/**
+ * Finds indexes of one table that cost writes and memory without serving any lookup
+ *
+ * - duplicate: same key columns in the same order as another index
+ * - redundant: key columns are a left prefix of another index, which serves the same lookups
+ * - unused: never read since statistics were reset
+ *
+ * Unique and primary indexes enforce constraints and are never reported as redundant or
+ * unused; of two duplicates the one enforcing more is kept. Only plain B-tree indexes over
+ * columns are compared, since hash, full-text, partial and expression indexes serve other
+ * lookups than their column list suggests.
+ */
+public final class IndexRedundancy {
+
+    private IndexRedundancy() {
+    }
+
+    /**
+     * Add the issues found to the indexes
+     * @param usageKnown Whether read counters are available to detect unused indexes
+     */
+    public static void analyze(List<IndexInfo> indexes, boolean usageKnown) {
+        for (IndexInfo index : indexes) {
+            if (usageKnown && index.getReads() == 0 && !index.isUnique() && !index.isPrimary()) {
+                index.addIssue(IndexInfo.IssueKind.UNUSED, "unused");
+            }
+            if (!index.isPlainBtree() || index.isPrimary()) {
+                continue;
+            }
+
+            for (IndexInfo other : indexes) {
+                if (other == index || !other.isPlainBtree()) {
+                    continue;
+                }
+                if (sameColumns(index, other)) {
+                    if (isKeptOver(other, index)) {
+                        index.addIssue(IndexInfo.IssueKind.DUPLICATE, "duplicate of " + other.getName());
+                        break;
+                    }
+                } else if (!index.isUnique() && isPrefix(index.getColumns(), other.getColumns())) {
+                    index.addIssue(IndexInfo.IssueKind.REDUNDANT, "redundant: left prefix of " + other.getName());
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Which of two duplicate indexes stays: primary, then unique, then the first by name
+     */
+    private static boolean isKeptOver(IndexInfo candidate, IndexInfo index) {
+        if (candidate.isPrimary() != index.isPrimary()) {
+            return candidate.isPrimary();
+        }
+        if (candidate.isUnique() != index.isUnique()) {
+            return candidate.isUnique();
+        }
+        return candidate.getName().compareTo(index.getName()) < 0;
+    }
+
+    private static boolean sameColumns(IndexInfo a, IndexInfo b) {
+        return a.getColumns().size() == b.getColumns().size() && isPrefix(a.getColumns(), b.getColumns());
+    }
+
+    private static boolean isPrefix(List<String> prefix, List<String> columns) {
+        if (prefix.size() > columns.size()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.size(); i++) {
+            if (!prefix.get(i).equalsIgnoreCase(columns.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import com.google.gson.JsonObject;
+
+import java.util.List;
+
+/**
+ * Directed relationship: rows of the referencing table point to one row of the referenced table
+ */
+public class Relationship {
+    public enum Source {
+        FOREIGN_KEY,
+        INFERRED
+    }
+
+    private final String fromTable;
+    private final List<String> fromColumns;
+    private final String toTable;
+    private final List<String> toColumns;
+    private final Source source;
+    private final String name;
+    private final String confidence;
+
+    public Relationship(String fromTable, List<String> fromColumns, String toTable, List<String> toColumns,
+                        Source source, String name, String confidence) {
+        this.fromTable = fromTable;
+        this.fromColumns = fromColumns;
+        this.toTable = toTable;
+        this.toColumns = toColumns;
+        this.source = source;
+        this.name = name;
+        this.confidence = confidence;
+    }
+
+    /** Referencing ("many") side */
+    public String getFromTable() {
+        return fromTable;
+    }
+
+    public List<String> getFromColumns() {
+        return fromColumns;
+    }
+
+    /** Referenced ("one") side */
+    public String getToTable() {
+        return toTable;
+    }
+
+    public List<String> getToColumns() {
+        return toColumns;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * Constraint name for foreign keys, inference rule for inferred relationships
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * "certain" for declared foreign keys, "high" or "medium" for inferred ones
+     */
+    public String getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Join condition, e.g. orders.user_id = users.id
+     */
+    public String getJoinCondition() {
+        StringBuilder condition = new StringBuilder();
+        for (int i = 0; i < fromColumns.size(); i++) {
+            if (i > 0) {
+                condition.append(" AND ");
+            }
+            condition.append(fromTable).append('.').append(fromColumns.get(i))
+                    .append(" = ")
+                    .append(toTable).append('.').append(toColumns.get(i));
+        }
+        return condition.toString();
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("from", fromTable + "(" + String.join(",", fromColumns) + ")");
+        json.addProperty("to", toTable + "(" + String.join(",", toColumns) + ")");
+        json.addProperty("source", source.name().toLowerCase());
+        json.addProperty("name", name);
+        json.addProperty("confidence", confidence);
+        return json;
+    }
+}
@@ -0,0 +1,331 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory join graph of a schema
+ *
+ * Nodes are tables, edges are declared foreign keys plus relationships inferred from
+ * naming conventions (orders.user_id -> users.id) and from indexed columns named like
+ * another table's single-column primary key. Immutable once built; rebuilt when the
+ * schema fingerprint changes.
+ */
+public class RelationshipGraph {
+    private static final Set<String> INTEGER_TYPES = Set.of(
+            "tinyint", "smallint", "mediumint", "int", "integer", "bigint",
+            "int2", "int4", "int8", "serial", "bigserial", "smallserial");
+    private static final Set<String> STRING_TYPES = Set.of(
+            "char", "varchar", "character", "character varying", "text", "nvarchar", "nchar");
+    private static final String[] TABLE_PREFIXES = {"t_", "tb_", "tbl_"};
+
+    private final String fingerprint;
+    private final long loadedAt;
+    private final Map<String, TableInfo> tables = new LinkedHashMap<>();
+    private final List<Relationship> relationships = new ArrayList<>();
+    private final Map<String, List<Relationship>> adjacency = new HashMap<>();
+
+    /**
+     * Build the graph from catalog data, adding inferred relationships
+     */
+    public RelationshipGraph(String fingerprint, Collection<TableInfo> tableInfos, List<Relationship> foreignKeys) {
+        this.fingerprint = fingerprint;
+        this.loadedAt = System.currentTimeMillis();
+        for (TableInfo table : tableInfos) {
+            tables.put(key(table.getName()), table);
+        }
+        for (Relationship foreignKey : foreignKeys) {
+            addEdge(foreignKey);
+        }
+        inferRelationships();
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public Collection<TableInfo> getTables() {
+        return Collections.unmodifiableCollection(tables.values());
+    }
+
+    /**
+     * @return Table info, or null if the table does not exist (case-insensitive lookup)
+     */
+    public TableInfo getTable(String name) {
+        return tables.get(key(name));
+    }
+
+    public List<Relationship> getRelationships() {
+        return Collections.unmodifiableList(relationships);
+    }
+
+    /**
+     * Relationships in which the table takes part, on either side
+     */
+    public List<Relationship> getRelationships(String table) {
+        return adjacency.getOrDefault(key(table), List.of());
+    }
+
+    /**
+     * Cheapest join path between two tables: declared foreign keys are preferred over inferred
+     * relationships, and fewer hops over more
+     *
+     * @return Steps from source to target, empty if same table, null if not connected within maxHops
+     */
+    public List<JoinStep> findJoinPath(String from, String to, int maxHops) {
+        String source = key(from);
+        String target = key(to);
+        if (!tables.containsKey(source) || !tables.containsKey(target)) {
+            return null;
+        }
+        if (source.equals(target)) {
+            return List.of();
+        }
+
+        Map<String, Double> cost = new HashMap<>();
+        Map<String, Integer> hops = new HashMap<>();
+        Map<String, JoinStep> previous = new HashMap<>();
+        PriorityQueue<Map.Entry<String, Double>> queue = new PriorityQueue<>(Map.Entry.comparingByValue());
+        cost.put(source, 0.0);
+        hops.put(source, 0);
+        queue.add(Map.entry(source, 0.0));
+
+        while (!queue.isEmpty()) {
+            Map.Entry<String, Double> current = queue.poll();
+            String table = current.getKey();
+            if (current.getValue() > cost.get(table)) {
+                continue; // Stale queue entry
+            }
+            if (table.equals(target)) {
+                break;
+            }
+            if (hops.get(table) >= maxHops) {
+                continue;
+            }
+
+            for (Relationship relationship : adjacency.getOrDefault(table, List.of())) {
+                boolean forward = key(relationship.getFromTable()).equals(table);
+                String next = key(forward ? relationship.getToTable() : relationship.getFromTable());
+                double nextCost = current.getValue() + weight(relationship);
+                if (nextCost < cost.getOrDefault(next, Double.MAX_VALUE)) {
+                    cost.put(next, nextCost);
+                    hops.put(next, hops.get(table) + 1);
+                    previous.put(next, new JoinStep(relationship, forward, this));
+                    queue.add(Map.entry(next, nextCost));
+                }
+            }
+        }
+
+        if (!previous.containsKey(target)) {
+            return null;
+        }
+
+        List<JoinStep> path = new ArrayList<>();
+        String table = target;
+        while (!table.equals(source)) {
+            JoinStep step = previous.get(table);
+            path.add(0, step);
+            table = key(step.isForward() ? step.getRelationship().getFromTable() : step.getRelationship().getToTable());
+        }
+        return path;
+    }
+
+    private double weight(Relationship relationship) {
+        if (relationship.getSource() == Relationship.Source.FOREIGN_KEY) {
+            return 1.0;
+        }
+        return "high".equals(relationship.getConfidence()) ? 1.5 : 2.0;
+    }
+
+    private void addEdge(Relationship relationship) {
+        relationships.add(relationship);
+        adjacency.computeIfAbsent(key(relationship.getFromTable()), k -> new ArrayList<>()).add(relationship);
+        if (!key(relationship.getFromTable()).equals(key(relationship.getToTable()))) {
+            adjacency.computeIfAbsent(key(relationship.getToTable()), k -> new ArrayList<>()).add(relationship);
+        }
+    }
+
+    /**
+     * Add relationships for columns that look like references but have no declared foreign key
+     */
+    private void inferRelationships() {
+        Map<String, TableInfo> byBaseName = new HashMap<>();
+        for (TableInfo table : tables.values()) {
+            byBaseName.putIfAbsent(stripPrefix(key(table.getName())), table);
+        }
+
+        for (TableInfo table : tables.values()) {
+            Set<String> referencing = new HashSet<>();
+            for (Relationship relationship : getRelationships(table.getName())) {
+                if (key(relationship.getFromTable()).equals(key(table.getName()))) {
+                    relationship.getFromColumns().forEach(column -> referencing.add(key(column)));
+                }
+            }
+
+            for (String column : table.getColumns()) {
+                if (referencing.contains(key(column))) {
+                    continue;
+                }
+                if (!inferFromNaming(table, column, byBaseName)) {
+                    inferFromPrimaryKeyName(table, column);
+                }
+            }
+        }
+    }
+
+    /**
+     * user_id / userId -> user, users, t_user, ... with a single-column primary key
+     */
+    private boolean inferFromNaming(TableInfo table, String column, Map<String, TableInfo> byBaseName) {
+        String lower = key(column);
+        String base;
+        if (lower.endsWith("_id") && lower.length() > 3) {
+            base = lower.substring(0, lower.length() - 3);
+        } else if (column.endsWith("Id") && column.length() > 2) {
+            base = lower.substring(0, lower.length() - 2);
+        } else {
+            return false;
+        }
+
+        List<String> candidates = new ArrayList<>(List.of(base, base + "s", base + "es"));
+        if (base.endsWith("y")) {
+            candidates.add(base.substring(0, base.length() - 1) + "ies");
+        }
+
+        for (String candidate : candidates) {
+            TableInfo target = byBaseName.get(candidate);
+            if (target == null || target == table || target.getPrimaryKey().size() != 1) {
+                continue;
+            }
+            String targetColumn = target.getPrimaryKey().get(0);
+            if (!typesCompatible(table.getColumnType(column), target.getColumnType(targetColumn))) {
+                continue;
+            }
+            addEdge(new Relationship(table.getName(), List.of(column), target.getName(), List.of(targetColumn),
+                    Relationship.Source.INFERRED, "naming",
+                    table.isIndexed(List.of(column)) ? "high" : "medium"));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indexed column with the same name as another table's single-column primary key (e.g. user_no)
+     */
+    private void inferFromPrimaryKeyName(TableInfo table, String column) {
+        if ("id".equals(key(column)) || !table.isIndexed(List.of(column))) {
+            return;
+        }
+        for (TableInfo target : tables.values()) {
+            if (target == table || target.getPrimaryKey().size() != 1
+                    || !target.getPrimaryKey().get(0).equalsIgnoreCase(column)) {
+                continue;
+            }
+            // Both tables keyed by the same column (one-to-one extension table): only the smaller
+            // table references the larger one, so the pair yields a single edge
+            if (table.getPrimaryKey().size() == 1 && table.getPrimaryKey().get(0).equalsIgnoreCase(column)) {
+                long rows = table.getRowEstimate();
+                long targetRows = target.getRowEstimate();
+                if (rows > targetRows || (rows == targetRows && key(table.getName()).compareTo(key(target.getName())) > 0)) {
+                    continue;
+                }
+            }
+            if (typesCompatible(table.getColumnType(column), target.getColumnType(column))) {
+                addEdge(new Relationship(table.getName(), List.of(column), target.getName(),
+                        List.of(target.getPrimaryKey().get(0)), Relationship.Source.INFERRED,
+                        "indexed_column_matches_primary_key", "medium"));
+            }
+        }
+    }
+
+    private static boolean typesCompatible(String a, String b) {
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a.equals(b)) {
+            return true;
+        }
+        return (INTEGER_TYPES.contains(a) && INTEGER_TYPES.contains(b))
+                || (STRING_TYPES.contains(a) && STRING_TYPES.contains(b));
+    }
+
+    private static String stripPrefix(String table) {
+        for (String prefix : TABLE_PREFIXES) {
+            if (table.startsWith(prefix) && table.length() > prefix.length()) {
+                return table.substring(prefix.length());
+            }
+        }
+        return table;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One join along a relationship, in the direction it is traversed
+     */
+    public static class JoinStep {
+        private final Relationship relationship;
+        private final boolean forward;
+        private final String cardinality;
+        private final double fanOut;
+
+        JoinStep(Relationship relationship, boolean forward, RelationshipGraph graph) {
+            this.relationship = relationship;
+            this.forward = forward;
+
+            TableInfo referencing = graph.getTable(relationship.getFromTable());
+            TableInfo referenced = graph.getTable(relationship.getToTable());
+            boolean oneToOne = referencing != null && referencing.isUnique(relationship.getFromColumns());
+
+            if (oneToOne) {
+                cardinality = "one-to-one";
+                fanOut = 1.0;
+            } else if (forward) {
+                cardinality = "many-to-one";
+                fanOut = 1.0;
+            } else {
+                cardinality = "one-to-many";
+                long children = referencing != null ? referencing.getRowEstimate() : -1;
+                long parents = referenced != null ? referenced.getRowEstimate() : -1;
+                fanOut = children >= 0 && parents > 0 ? (double) children / parents : -1;
+            }
+        }
+
+        public Relationship getRelationship() {
+            return relationship;
+        }
+
+        /**
+         * True when traversed from the referencing to the referenced table
+         */
+        public boolean isForward() {
+            return forward;
+        }
+
+        public String getCardinality() {
+            return cardinality;
+        }
+
+        /**
+         * Average rows produced per input row by this join, -1 if statistics are missing
+         */
+        public double getFanOut() {
+            return fanOut;
+        }
+    }
+}
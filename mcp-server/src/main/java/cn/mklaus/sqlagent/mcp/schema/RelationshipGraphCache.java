@@ -0,0 +1,67 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Holds the relationship graph of the configured database
+ *
+ * The graph is loaded once and reused; the schema fingerprint is re-checked at most every
+ * {@code checkIntervalMillis}, and the graph is reloaded only when the fingerprint changed.
+ */
+public class RelationshipGraphCache {
+    private static final Logger logger = LoggerFactory.getLogger(RelationshipGraphCache.class);
+    private static final long DEFAULT_CHECK_INTERVAL_MILLIS = 60_000;
+
+    private final DatabaseConfig config;
+    private final long checkIntervalMillis;
+
+    private volatile RelationshipGraph graph;
+    private volatile long lastCheckedAt;
+
+    public RelationshipGraphCache(DatabaseConfig config) {
+        this(config, DEFAULT_CHECK_INTERVAL_MILLIS);
+    }
+
+    public RelationshipGraphCache(DatabaseConfig config, long checkIntervalMillis) {
+        this.config = config;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    /**
+     * Get the current graph, reloading it if the schema changed
+     */
+    public RelationshipGraph get() throws SQLException {
+        RelationshipGraph current = graph;
+        if (current != null && System.currentTimeMillis() - lastCheckedAt < checkIntervalMillis) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = graph;
+            if (current != null && System.currentTimeMillis() - lastCheckedAt < checkIntervalMillis) {
+                return current; // Checked by another thread meanwhile
+            }
+
+            Dialect dialect = config.getDialect();
+            try (Connection conn = config.getDataSource().getConnection()) {
+                String fingerprint = SchemaFingerprint.compute(conn, dialect);
+                if (current == null || !fingerprint.equals(current.getFingerprint())) {
+                    long start = System.currentTimeMillis();
+                    current = RelationshipLoader.load(conn, dialect, fingerprint);
+                    logger.info("Loaded relationship graph: {} tables, {} relationships in {} ms (fingerprint {})",
+                            current.getTables().size(), current.getRelationships().size(),
+                            System.currentTimeMillis() - start, fingerprint);
+                    graph = current;
+                }
+                lastCheckedAt = System.currentTimeMillis();
+                return current;
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Loads tables, indexes and foreign keys of the whole schema from the catalog
+ */
+class RelationshipLoader {
+
+    private RelationshipLoader() {
+    }
+
+    static RelationshipGraph load(Connection conn, Dialect dialect, String fingerprint) throws SQLException {
+        Map<String, TableInfo> tables = new LinkedHashMap<>();
+
+        loadTables(conn, dialect, tables);
+        loadColumns(conn, dialect, tables);
+        loadIndexes(conn, dialect, tables);
+        List<Relationship> foreignKeys = loadForeignKeys(conn, dialect);
+
+        return new RelationshipGraph(fingerprint, tables.values(), foreignKeys);
+    }
+
+    private static void loadTables(Connection conn, Dialect dialect, Map<String, TableInfo> tables)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.tableStatsQuery());
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                TableInfo table = new TableInfo(rs.getString(1));
+                long rows = rs.getLong(2);
+                table.setRowEstimate(rs.wasNull() ? -1 : rows);
+                tables.put(key(table.getName()), table);
+            }
+        }
+    }
+
+    private static void loadColumns(Connection conn, Dialect dialect, Map<String, TableInfo> tables)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.schemaColumnsQuery());
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                TableInfo table = tables.get(key(rs.getString(1)));
+                if (table != null) { // Skip views
+                    table.addColumn(rs.getString(2), rs.getString(3));
+                }
+            }
+        }
+    }
+
+    private static void loadIndexes(Connection conn, Dialect dialect, Map<String, TableInfo> tables)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.schemaIndexColumnsQuery());
+             ResultSet rs = stmt.executeQuery()) {
+            String currentTable = null;
+            String currentIndex = null;
+            List<String> columns = new ArrayList<>();
+            boolean unique = false;
+            boolean primary = false;
+
+            while (rs.next()) {
+                String tableName = rs.getString(1);
+                String indexName = rs.getString(2);
+                if (!tableName.equals(currentTable) || !indexName.equals(currentIndex)) {
+                    addIndex(tables, currentTable, columns, unique, primary);
+                    currentTable = tableName;
+                    currentIndex = indexName;
+                    columns = new ArrayList<>();
+                    unique = rs.getBoolean(4);
+                    primary = rs.getBoolean(5);
+                }
+                String column = rs.getString(3);
+                if (column != null) { // Expression index parts have no column
+                    columns.add(column);
+                }
+            }
+            addIndex(tables, currentTable, columns, unique, primary);
+        }
+    }
+
+    private static void addIndex(Map<String, TableInfo> tables, String tableName, List<String> columns,
+                                 boolean unique, boolean primary) {
+        if (tableName == null || columns.isEmpty()) {
+            return;
+        }
+        TableInfo table = tables.get(key(tableName));
+        if (table != null) {
+            table.addIndex(List.copyOf(columns), unique, primary);
+        }
+    }
+
+    private static List<Relationship> loadForeignKeys(Connection conn, Dialect dialect) throws SQLException {
+        List<Relationship> foreignKeys = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.schemaForeignKeysQuery());
+             ResultSet rs = stmt.executeQuery()) {
+            String currentName = null;
+            String currentTable = null;
+            String referencedTable = null;
+            List<String> columns = new ArrayList<>();
+            List<String> referencedColumns = new ArrayList<>();
+
+            while (rs.next()) {
+                String name = rs.getString(1);
+                String table = rs.getString(2);
+                if (!name.equals(currentName) || !table.equals(currentTable)) {
+                    if (currentName != null) {
+                        foreignKeys.add(new Relationship(currentTable, columns, referencedTable, referencedColumns,
+                                Relationship.Source.FOREIGN_KEY, currentName, "certain"));
+                    }
+                    currentName = name;
+                    currentTable = table;
+                    referencedTable = rs.getString(4);
+                    columns = new ArrayList<>();
+                    referencedColumns = new ArrayList<>();
+                }
+                columns.add(rs.getString(3));
+                referencedColumns.add(rs.getString(5));
+            }
+            if (currentName != null) {
+                foreignKeys.add(new Relationship(currentTable, columns, referencedTable, referencedColumns,
+                        Relationship.Source.FOREIGN_KEY, currentName, "certain"));
+            }
+        }
+        return foreignKeys;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,57 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HexFormat;
+
+/**
+ * Fingerprint of the schema structure (tables, columns, indexes, constraints)
+ *
+ * Changes whenever DDL changes the structure, but not when data changes, so it can be
+ * used to invalidate anything derived from the catalog.
+ */
+public final class SchemaFingerprint {
+
+    private SchemaFingerprint() {
+    }
+
+    /**
+     * Compute the fingerprint of the current database/schema
+     */
+    public static String compute(Connection conn, Dialect dialect) throws SQLException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        digestRows(conn, dialect.schemaColumnsQuery(), digest);
+        digestRows(conn, dialect.schemaIndexColumnsQuery(), digest);
+        digestRows(conn, dialect.schemaConstraintsQuery(), digest);
+
+        return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+    }
+
+    private static void digestRows(Connection conn, String query, MessageDigest digest) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    String value = rs.getString(i);
+                    digest.update((value != null ? value : "\0").getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) '|');
+                }
+                digest.update((byte) '\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage footprint of one table: heap, indexes, out-of-line values and estimated bloat
+ */
+public class TableFootprint {
+    /** Tables smaller than this are not flagged, their overhead does not matter */
+    static final long MIN_FLAGGED_BYTES = 8L * 1024 * 1024;
+    static final double BLOAT_RATIO = 0.3;
+    static final double INDEX_RATIO = 1.5;
+
+    private final String table;
+    private final Long rows;
+    private final long dataBytes;
+    private final long indexBytes;
+    private final Long toastBytes;
+    private final Long avgRowBytes;
+    private final Long bloatBytes;
+
+    public TableFootprint(String table, Long rows, long dataBytes, long indexBytes,
+                          Long toastBytes, Long avgRowBytes, Long bloatBytes) {
+        this.table = table;
+        this.rows = rows;
+        this.dataBytes = dataBytes;
+        this.indexBytes = indexBytes;
+        this.toastBytes = toastBytes;
+        this.avgRowBytes = avgRowBytes;
+        this.bloatBytes = bloatBytes;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public long getDataBytes() {
+        return dataBytes;
+    }
+
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+
+    /**
+     * @return TOAST bytes, 0 when the engine keeps large values in the data pages
+     */
+    public long getToastBytes() {
+        return toastBytes != null ? toastBytes : 0;
+    }
+
+    /**
+     * @return Estimated reclaimable bytes, 0 if unknown
+     */
+    public long getBloatBytes() {
+        return bloatBytes != null ? bloatBytes : 0;
+    }
+
+    public long getTotalBytes() {
+        return dataBytes + indexBytes + getToastBytes();
+    }
+
+    /**
+     * @return Findings that make the table cost more I/O than its row count suggests
+     */
+    public List<String> getIssues() {
+        List<String> issues = new ArrayList<>();
+        if (getTotalBytes() < MIN_FLAGGED_BYTES) {
+            return issues;
+        }
+        if (bloatBytes != null && dataBytes > 0 && bloatBytes > dataBytes * BLOAT_RATIO) {
+            issues.add(String.format("bloat: ~%d%% of the data pages are dead space", bloatBytes * 100 / dataBytes));
+        }
+        if (dataBytes > 0 && indexBytes > dataBytes * INDEX_RATIO) {
+            issues.add(String.format("indexes are %.1fx the data size, every write updates them", (double) indexBytes / dataBytes));
+        }
+        if (toastBytes != null && toastBytes > dataBytes) {
+            issues.add("most bytes are out-of-line values, avoid selecting wide columns that are not needed");
+        }
+        return issues;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("table", table);
+        if (rows != null) {
+            json.addProperty("rows", rows);
+        }
+        json.addProperty("total", humanReadable(getTotalBytes()));
+        json.addProperty("data_bytes", dataBytes);
+        json.addProperty("index_bytes", indexBytes);
+        if (toastBytes != null && toastBytes > 0) {
+            json.addProperty("toast_bytes", toastBytes);
+        }
+        if (avgRowBytes != null && avgRowBytes > 0) {
+            json.addProperty("avg_row_bytes", avgRowBytes);
+        }
+        if (bloatBytes != null && bloatBytes > 0) {
+            json.addProperty("bloat_bytes", bloatBytes);
+        }
+        List<String> issues = getIssues();
+        if (!issues.isEmpty()) {
+            JsonArray issueArray = new JsonArray();
+            issues.forEach(issueArray::add);
+            json.add("issues", issueArray);
+        }
+        return json;
+    }
+
+    public static String humanReadable(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String units = "KMGTP";
+        int unit = (int) (Math.log(bytes) / Math.log(1024));
+        unit = Math.min(unit, units.length());
+        return String.format("%.1f %siB", bytes / Math.pow(1024, unit), units.charAt(unit - 1));
+    }
+}
@@ -0,0 +1,119 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Catalog information about one table needed to reason about joins
+ */
+public class TableInfo {
+    private final String name;
+    private final Map<String, String> columnTypes = new LinkedHashMap<>(); // lower-case column -> data type
+    private final Map<String, String> columnNames = new LinkedHashMap<>(); // lower-case column -> actual name
+    private final List<List<String>> uniqueKeys = new ArrayList<>();
+    private final List<List<String>> indexes = new ArrayList<>();
+    private List<String> primaryKey = List.of();
+    private long rowEstimate = -1;
+
+    public TableInfo(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void addColumn(String column, String dataType) {
+        String key = column.toLowerCase(Locale.ROOT);
+        columnNames.put(key, column);
+        columnTypes.put(key, dataType != null ? dataType.toLowerCase(Locale.ROOT) : "");
+    }
+
+    void addIndex(List<String> columns, boolean unique, boolean primary) {
+        indexes.add(columns);
+        if (unique) {
+            uniqueKeys.add(columns);
+        }
+        if (primary) {
+            primaryKey = columns;
+        }
+    }
+
+    void setRowEstimate(long rowEstimate) {
+        this.rowEstimate = rowEstimate;
+    }
+
+    public List<String> getColumns() {
+        return new ArrayList<>(columnNames.values());
+    }
+
+    public boolean hasColumn(String column) {
+        return columnNames.containsKey(column.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return Data type of the column, or null if the table has no such column
+     */
+    public String getColumnType(String column) {
+        return columnTypes.get(column.toLowerCase(Locale.ROOT));
+    }
+
+    public List<String> getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public List<List<String>> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Whether the columns (in any order) form a primary key or unique index
+     */
+    public boolean isUnique(List<String> columns) {
+        for (List<String> key : uniqueKeys) {
+            if (key.size() == columns.size() && containsAllIgnoreCase(key, columns)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an index can be used to look up the columns, i.e. they are a prefix of some index
+     */
+    public boolean isIndexed(List<String> columns) {
+        for (List<String> index : indexes) {
+            if (index.size() >= columns.size()
+                    && containsAllIgnoreCase(index.subList(0, columns.size()), columns)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Estimated row count from catalog statistics, -1 if unknown
+     */
+    public long getRowEstimate() {
+        return rowEstimate;
+    }
+
+    private static boolean containsAllIgnoreCase(List<String> haystack, List<String> needles) {
+        for (String needle : needles) {
+            boolean found = false;
+            for (String candidate : haystack) {
+                if (candidate.equalsIgnoreCase(needle)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,343 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the table list, row estimates and per-table columns and indexes
+ *
+ * Every entry is a future: a caller asking for an entry that is being fetched waits for that
+ * fetch instead of starting another one, which is what lets tool calls arriving during the
+ * warm-up reuse its work. Entries are dropped when the schema fingerprint of the
+ * {@link RelationshipGraphCache} changes, so an index created after a suggestion shows up.
+ * Row estimates also expire after a few minutes, since they follow the data, not the schema.
+ */
+public class TableMetadataCache {
+    private static final Logger logger = LoggerFactory.getLogger(TableMetadataCache.class);
+    private static final String TABLES_KEY = "\0tables";
+    private static final String ROW_ESTIMATES_KEY = "\0rows";
+    private static final int MAX_WARM_UP_WORKERS = 4;
+    private static final long ROW_ESTIMATES_MAX_AGE_MILLIS = 5 * 60 * 1000;
+
+    private final DatabaseConfig config;
+    private final RelationshipGraphCache graphCache;
+    private final Map<String, CompletableFuture<Object>> entries = new ConcurrentHashMap<>();
+    private final Map<CompletableFuture<Object>, Long> fetchedAt = new ConcurrentHashMap<>(); // Of expiring entries
+    private final AtomicBoolean warmUpStarted = new AtomicBoolean();
+    private volatile String fingerprint;
+
+    public TableMetadataCache(DatabaseConfig config, RelationshipGraphCache graphCache) {
+        this.config = config;
+        this.graphCache = graphCache;
+    }
+
+    /**
+     * @return Names of all tables
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getTables() throws SQLException {
+        return (List<String>) get(TABLES_KEY, null, 0, this::loadTables);
+    }
+
+    /**
+     * @return Estimated row count of the table from optimizer statistics, -1 if unknown
+     */
+    @SuppressWarnings("unchecked")
+    public long getRowEstimate(String table) throws SQLException {
+        Map<String, Long> estimates = (Map<String, Long>) get(ROW_ESTIMATES_KEY, null,
+                ROW_ESTIMATES_MAX_AGE_MILLIS, this::loadRowEstimates);
+        Long estimate = estimates.get(table);
+        return estimate != null ? estimate : -1;
+    }
+
+    /**
+     * @return Copy of the table's "columns" and "indexes" arrays
+     */
+    public JsonObject getTableMetadata(String table) throws SQLException {
+        return getTableMetadata(table, null);
+    }
+
+    private JsonObject getTableMetadata(String table, Connection conn) throws SQLException {
+        JsonObject metadata = (JsonObject) get(table, conn, 0, c -> loadTableMetadata(c, table));
+        return metadata.deepCopy();
+    }
+
+    /**
+     * Start fetching the relationship graph, table list, row estimates and the metadata of the
+     * most used tables in the background; only the first call has an effect
+     * @return Future completing when the warm-up is done
+     */
+    public CompletableFuture<Void> warmUp(int tableLimit) {
+        if (!warmUpStarted.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int workers = Math.max(1, Math.min(config.getMaxPoolSize() - 1, MAX_WARM_UP_WORKERS));
+        // One extra thread coordinates, so the workers never wait behind it
+        ExecutorService executor = Executors.newFixedThreadPool(workers + 1, runnable -> {
+            Thread thread = new Thread(runnable, "schema-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<Void> warmUp = CompletableFuture.runAsync(() -> {
+            try {
+                // The first entry loads the relationship graph for the schema fingerprint
+                List<String> tables = mostUsedTables(tableLimit);
+
+                // One connection per worker, shared by all the tables the worker takes
+                AtomicInteger next = new AtomicInteger();
+                List<CompletableFuture<?>> futures = new ArrayList<>();
+                for (int w = 0; w < Math.min(workers, tables.size()); w++) {
+                    futures.add(CompletableFuture.runAsync(() -> {
+                        try (Connection conn = config.getDataSource().getConnection()) {
+                            int i;
+                            while ((i = next.getAndIncrement()) < tables.size()) {
+                                getTableMetadata(tables.get(i), conn);
+                            }
+                        } catch (SQLException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, executor));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+                logger.info("Schema warm-up loaded {} tables in {} ms", tables.size(),
+                        System.currentTimeMillis() - start);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+
+        return warmUp.whenComplete((ignored, error) -> {
+            executor.shutdown();
+            if (error != null) {
+                logger.warn("Schema warm-up failed: {}", error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Tables to warm up: the most used ones by engine counters, otherwise the largest, then the rest
+     */
+    private List<String> mostUsedTables(int limit) throws SQLException {
+        List<String> tables = getTables();
+        Set<String> known = new HashSet<>(tables);
+        Set<String> ordered = new LinkedHashSet<>();
+        Dialect dialect = config.getDialect();
+        if (dialect.tableUsageQuery() != null) {
+            try (Connection conn = config.getDataSource().getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(dialect.tableUsageQuery());
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next() && ordered.size() < limit) {
+                    if (known.contains(rs.getString(1))) {
+                        ordered.add(rs.getString(1));
+                    }
+                }
+            } catch (SQLException e) {
+                // performance_schema disabled
+                logger.debug("Table usage counters not readable: {}", e.getMessage());
+            }
+        }
+        if (ordered.size() < limit) {
+            List<String> bySize = new ArrayList<>(tables);
+            bySize.sort((a, b) -> Long.compare(rowEstimateOrZero(b), rowEstimateOrZero(a)));
+            for (String table : bySize) {
+                if (ordered.size() >= limit) {
+                    break;
+                }
+                ordered.add(table);
+            }
+        }
+        return new ArrayList<>(ordered);
+    }
+
+    private long rowEstimateOrZero(String table) {
+        try {
+            return Math.max(0, getRowEstimate(table));
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Get an entry, fetching it on this thread unless another thread is already fetching it
+     * @param conn Connection to fetch with, or null to borrow one from the pool
+     * @param maxAgeMillis Age after which a fetched entry is fetched again, 0 to keep it until the schema changes
+     */
+    private Object get(String key, Connection conn, long maxAgeMillis, Loader loader) throws SQLException {
+        invalidateIfSchemaChanged();
+
+        CompletableFuture<Object> fetch = new CompletableFuture<>();
+        CompletableFuture<Object> existing = entries.putIfAbsent(key, fetch);
+        if (existing != null && maxAgeMillis > 0 && isOlderThan(existing, maxAgeMillis)
+                && entries.replace(key, existing, fetch)) {
+            // Expired: fetch again on this thread, callers arriving meanwhile wait for it
+            fetchedAt.remove(existing);
+            existing = null;
+        }
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            Object value;
+            if (conn != null) {
+                value = loader.load(conn);
+            } else {
+                try (Connection borrowed = config.getDataSource().getConnection()) {
+                    value = loader.load(borrowed);
+                }
+            }
+            if (maxAgeMillis > 0) {
+                fetchedAt.put(fetch, System.currentTimeMillis());
+            }
+            fetch.complete(value);
+            return value;
+        } catch (SQLException | RuntimeException e) {
+            // Let the next caller try again
+            entries.remove(key, fetch);
+            fetch.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private boolean isOlderThan(CompletableFuture<Object> entry, long maxAgeMillis) {
+        Long time = fetchedAt.get(entry);
+        return time != null && System.currentTimeMillis() - time > maxAgeMillis;
+    }
+
+    /**
+     * Drop all entries when the relationship graph reports a new schema fingerprint; the graph
+     * cache re-checks the fingerprint at most once per interval, so this is cheap
+     */
+    private void invalidateIfSchemaChanged() {
+        String current;
+        try {
+            current = graphCache.get().getFingerprint();
+        } catch (SQLException e) {
+            logger.debug("Schema fingerprint not available: {}", e.getMessage());
+            return;
+        }
+        if (fingerprint == null) {
+            fingerprint = current;
+        } else if (!fingerprint.equals(current)) {
+            synchronized (this) {
+                if (!current.equals(fingerprint)) {
+                    logger.info("Schema changed, dropping {} cached metadata entries", entries.size());
+                    entries.clear();
+                    fetchedAt.clear();
+                    fingerprint = current;
+                }
+            }
+        }
+    }
+
+    private Object loadTables(Connection conn) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(config.getDialect().listTablesQuery());
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        return List.copyOf(tables);
+    }
+
+    private Object loadRowEstimates(Connection conn) throws SQLException {
+        Map<String, Long> estimates = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(config.getDialect().tableStatsQuery());
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                long rows = rs.getLong(2);
+                if (!rs.wasNull()) {
+                    estimates.put(rs.getString(1), rows);
+                }
+            }
+        }
+        return estimates;
+    }
+
+    private Object loadTableMetadata(Connection conn, String table) throws SQLException {
+        Dialect dialect = config.getDialect();
+        JsonArray columns = new JsonArray();
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.tableColumnsQuery())) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    JsonObject column = new JsonObject();
+                    column.addProperty("name", rs.getString(1));
+                    column.addProperty("type", rs.getString(2));
+                    column.addProperty("nullable", rs.getString(3));
+
+                    String defaultValue = rs.getString(4);
+                    if (defaultValue != null) {
+                        column.addProperty("default_value", defaultValue);
+                    }
+                    columns.add(column);
+                }
+            }
+        }
+
+        JsonArray indexes = new JsonArray();
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.tableIndexesQuery())) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    JsonObject index = new JsonObject();
+                    index.addProperty("name", rs.getString(1));
+                    index.addProperty("columns", rs.getString(2));
+                    index.addProperty("unique", rs.getBoolean(3));
+
+                    String definition = rs.getString(4);
+                    if (definition != null) {
+                        index.addProperty("definition", definition);
+                    }
+                    indexes.add(index);
+                }
+            }
+        }
+
+        JsonObject metadata = new JsonObject();
+        metadata.add("columns", columns);
+        metadata.add("indexes", indexes);
+        return metadata;
+    }
+
+    /**
+     * Fetches one entry with the given connection
+     */
+    @FunctionalInterface
+    private interface Loader {
+        Object load(Connection conn) throws SQLException;
+    }
+}
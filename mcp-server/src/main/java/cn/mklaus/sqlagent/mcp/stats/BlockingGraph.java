@@ -0,0 +1,108 @@
+package cn.mklaus.sqlagent.mcp.stats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Directed graph of sessions waiting on locks held by other sessions
+ *
+ * Root blockers are sessions that block others without waiting themselves: ending their
+ * transaction releases the whole chain below them. Sessions waiting on each other in a cycle
+ * have no root; the engine resolves such deadlocks by aborting one of them.
+ */
+public class BlockingGraph {
+    private final Map<String, Set<String>> blockedBy = new LinkedHashMap<>();
+    private final Map<String, Set<String>> blocking = new LinkedHashMap<>();
+
+    /**
+     * Record that a session waits for a lock held by the blocker
+     */
+    public void addWait(String waiting, String blocker) {
+        if (waiting.equals(blocker)) {
+            return;
+        }
+        blockedBy.computeIfAbsent(waiting, k -> new LinkedHashSet<>()).add(blocker);
+        blocking.computeIfAbsent(blocker, k -> new LinkedHashSet<>()).add(waiting);
+    }
+
+    public int getWaitingCount() {
+        return blockedBy.size();
+    }
+
+    public boolean isWaiting(String session) {
+        return blockedBy.containsKey(session);
+    }
+
+    /**
+     * @return Sessions that block others and wait for nobody, the most disruptive first
+     */
+    public List<String> getRootBlockers() {
+        List<String> roots = new ArrayList<>();
+        for (String blocker : blocking.keySet()) {
+            if (!blockedBy.containsKey(blocker)) {
+                roots.add(blocker);
+            }
+        }
+        roots.sort(Comparator.comparingInt((String root) -> getBlockedSessions(root).size()).reversed());
+        return roots;
+    }
+
+    /**
+     * @return All sessions waiting directly or transitively on the given session
+     */
+    public Set<String> getBlockedSessions(String session) {
+        Set<String> visited = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>(blocking.getOrDefault(session, Set.of()));
+        while (!queue.isEmpty()) {
+            String next = queue.poll();
+            if (!next.equals(session) && visited.add(next)) {
+                queue.addAll(blocking.getOrDefault(next, Set.of()));
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * @return Longest wait chain starting at the given session, e.g. [root, waiter, waiter's waiter]
+     */
+    public List<String> getLongestChain(String session) {
+        return longestChain(session, new HashSet<>());
+    }
+
+    private List<String> longestChain(String session, Set<String> path) {
+        path.add(session);
+        List<String> best = new ArrayList<>();
+        for (String waiter : blocking.getOrDefault(session, Set.of())) {
+            if (!path.contains(waiter)) {
+                List<String> chain = longestChain(waiter, path);
+                if (chain.size() > best.size()) {
+                    best = chain;
+                }
+            }
+        }
+        path.remove(session);
+        best.add(0, session);
+        return best;
+    }
+
+    /**
+     * @return Waiting sessions not reachable from any root blocker, i.e. part of or stuck behind a cycle
+     */
+    public Set<String> getDeadlockedSessions() {
+        Set<String> reachable = new HashSet<>();
+        for (String root : getRootBlockers()) {
+            reachable.addAll(getBlockedSessions(root));
+        }
+        Set<String> deadlocked = new LinkedHashSet<>(blockedBy.keySet());
+        deadlocked.removeAll(reachable);
+        return deadlocked;
+    }
+}
@@ -0,0 +1,99 @@
+package cn.mklaus.sqlagent.mcp.stats;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Value distribution of one column over a sample, in bounded memory
+ *
+ * Exact counts are kept for at most {@link #MAX_TRACKED_VALUES} distinct values; values first
+ * seen after that only feed the distinct-count sketch. In a random sample the frequent values
+ * show up early, so the top values stay right even for high-cardinality columns.
+ */
+public class ColumnDistribution {
+    static final int MAX_TRACKED_VALUES = 10_000;
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    private final String column;
+    private final HyperLogLog distinct = new HyperLogLog();
+    private final Map<String, Long> counts = new HashMap<>();
+    private long rows;
+    private long nulls;
+    private boolean countsTruncated;
+
+    public ColumnDistribution(String column) {
+        this.column = column;
+    }
+
+    public void add(String value) {
+        rows++;
+        if (value == null) {
+            nulls++;
+            return;
+        }
+
+        distinct.add(value);
+
+        String key = value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) + "..." : value;
+        Long count = counts.get(key);
+        if (count != null) {
+            counts.put(key, count + 1);
+        } else if (counts.size() < MAX_TRACKED_VALUES) {
+            counts.put(key, 1L);
+        } else {
+            countsTruncated = true;
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNulls() {
+        return nulls;
+    }
+
+    public long getDistinctEstimate() {
+        return distinct.estimate();
+    }
+
+    /**
+     * Most frequent values, highest count first
+     */
+    public List<Map.Entry<String, Long>> getTopValues(int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public JsonObject toJson(int topN) {
+        JsonObject json = new JsonObject();
+        json.addProperty("column", column);
+        json.addProperty("null_ratio", ratio(nulls, rows));
+        json.addProperty("distinct_estimate", getDistinctEstimate());
+
+        long nonNull = rows - nulls;
+        JsonArray topValues = new JsonArray();
+        for (Map.Entry<String, Long> entry : getTopValues(topN)) {
+            JsonObject value = new JsonObject();
+            value.addProperty("value", entry.getKey());
+            value.addProperty("ratio", ratio(entry.getValue(), nonNull));
+            topValues.add(value);
+        }
+        json.add("top_values", topValues);
+        if (countsTruncated) {
+            json.addProperty("top_values_approximate", true);
+        }
+        return json;
+    }
+
+    private static double ratio(long part, long total) {
+        return total > 0 ? Math.round(part * 10000.0 / total) / 10000.0 : 0.0;
+    }
+}
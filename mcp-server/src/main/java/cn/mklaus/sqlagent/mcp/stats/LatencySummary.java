@@ -0,0 +1,51 @@
+package cn.mklaus.sqlagent.mcp.stats;
+
+import com.google.gson.JsonObject;
+
+import java.util.Arrays;
+
+/**
+ * Percentiles of a set of measured latencies
+ */
+public class LatencySummary {
+    private final long[] sortedNanos;
+
+    public LatencySummary(long[] nanos) {
+        if (nanos.length == 0) {
+            throw new IllegalArgumentException("No measurements");
+        }
+        this.sortedNanos = nanos.clone();
+        Arrays.sort(this.sortedNanos);
+    }
+
+    /**
+     * Nearest-rank percentile in milliseconds
+     * @param percentile 0-100
+     */
+    public double percentileMillis(double percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.length);
+        return toMillis(sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, rank - 1))]);
+    }
+
+    public double minMillis() {
+        return toMillis(sortedNanos[0]);
+    }
+
+    public double maxMillis() {
+        return toMillis(sortedNanos[sortedNanos.length - 1]);
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("p50_ms", percentileMillis(50));
+        json.addProperty("p95_ms", percentileMillis(95));
+        json.addProperty("min_ms", minMillis());
+        json.addProperty("max_ms", maxMillis());
+        json.addProperty("runs", sortedNanos.length);
+        return json;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
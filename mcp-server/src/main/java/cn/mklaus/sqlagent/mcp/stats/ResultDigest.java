@@ -0,0 +1,93 @@
+package cn.mklaus.sqlagent.mcp.stats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Order-insensitive multiset hash of result rows in constant memory
+ *
+ * Every row hash is added (mod 2^64) into one of {@value #BUCKETS} buckets, together with a
+ * second, independently mixed hash. Addition is commutative, so the row order does not
+ * matter, while duplicates still count. Two digests of the same multiset are identical;
+ * the buckets that differ tell which rows to look at when searching for a differing row.
+ */
+public class ResultDigest {
+    public static final int BUCKETS = 256;
+    private static final long SECOND_SEED = 0x9e3779b97f4a7c15L;
+
+    private final long[] counts = new long[BUCKETS];
+    private final long[] sums = new long[BUCKETS];
+    private final long[] mixedSums = new long[BUCKETS];
+    private long rows;
+
+    /**
+     * Add a row of normalized values (null for SQL NULL)
+     */
+    public void add(List<String> row) {
+        long hash = rowHash(row);
+        int bucket = bucketOf(hash);
+        counts[bucket]++;
+        sums[bucket] += hash;
+        mixedSums[bucket] += mix(hash ^ SECOND_SEED);
+        rows++;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return Index of the first bucket that differs from the other digest, or -1 if equal
+     */
+    public int firstDifferingBucket(ResultDigest other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != other.counts[i] || sums[i] != other.sums[i] || mixedSums[i] != other.mixedSums[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 128-bit hex digest of the whole multiset
+     */
+    public String toHex() {
+        long sum = 0;
+        long mixedSum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            sum += sums[i];
+            mixedSum += mixedSums[i];
+        }
+        return String.format("%016x%016x", sum, mixedSum);
+    }
+
+    public static int bucketOf(List<String> row) {
+        return bucketOf(rowHash(row));
+    }
+
+    private static int bucketOf(long hash) {
+        return (int) (hash >>> 56) & (BUCKETS - 1);
+    }
+
+    static long rowHash(List<String> row) {
+        // Length-prefix every value so ("ab", "c") and ("a", "bc") hash differently
+        StringBuilder encoded = new StringBuilder();
+        for (String value : row) {
+            if (value == null) {
+                encoded.append("-1:");
+            } else {
+                encoded.append(value.length()).append(':').append(value);
+            }
+        }
+        return HyperLogLog.hash(encoded.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
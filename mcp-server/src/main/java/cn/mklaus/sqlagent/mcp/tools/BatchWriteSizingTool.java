@@ -0,0 +1,144 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import cn.mklaus.sqlagent.mcp.schema.BatchSizing;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * MCP Tool estimating multi-row INSERT sizes and the chunk size that fits the server's limits
+ */
+public class BatchWriteSizingTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(BatchWriteSizingTool.class);
+
+    private final DatabaseConfig config;
+
+    public BatchWriteSizingTool(DatabaseConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Estimate the bytes per row of a multi-row INSERT from column types and statistics, compare "
+                + "with max_allowed_packet and the bind parameter limit, and recommend a chunk size";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject table = new JsonObject();
+        table.addProperty("type", "string");
+        table.addProperty("description", "Table written to");
+        properties.add("table", table);
+
+        JsonObject columns = new JsonObject();
+        columns.addProperty("type", "array");
+        JsonObject items = new JsonObject();
+        items.addProperty("type", "string");
+        columns.add("items", items);
+        columns.addProperty("description", "Columns in the INSERT. If omitted, all columns of the table");
+        properties.add("columns", columns);
+
+        JsonObject rows = new JsonObject();
+        rows.addProperty("type", "integer");
+        rows.addProperty("description", "Number of rows the caller writes at once, to check a single statement");
+        properties.add("rows", rows);
+
+        schema.add("properties", properties);
+
+        JsonArray required = new JsonArray();
+        required.add("table");
+        schema.add("required", required);
+
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        String tableName = arguments.get("table").getAsString();
+        Set<String> requested = new HashSet<>();
+        if (arguments.has("columns")) {
+            for (JsonElement column : arguments.getAsJsonArray("columns")) {
+                requested.add(column.getAsString().toLowerCase(Locale.ROOT));
+            }
+        }
+        long rows = arguments.has("rows") ? Math.max(0, arguments.get("rows").getAsLong()) : 0;
+
+        logger.info("Sizing batch writes to table: {}", tableName);
+
+        try (Connection conn = config.getDataSource().getConnection()) {
+            Dialect dialect = config.getDialect();
+            Long maxStatementBytes = null;
+            if (dialect.maxStatementBytesQuery() != null) {
+                try (PreparedStatement stmt = conn.prepareStatement(dialect.maxStatementBytesQuery());
+                     ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        maxStatementBytes = rs.getLong(1);
+                    }
+                }
+            }
+
+            BatchSizing sizing = new BatchSizing(tableName, maxStatementBytes);
+            Set<String> found = new HashSet<>();
+            try (PreparedStatement stmt = conn.prepareStatement(dialect.columnWidthsQuery())) {
+                stmt.setString(1, tableName);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String column = rs.getString(1);
+                        if (!requested.isEmpty() && !requested.contains(column.toLowerCase(Locale.ROOT))) {
+                            continue;
+                        }
+                        long octetLength = rs.getLong(3);
+                        Long maxBytes = rs.wasNull() ? null : octetLength;
+                        double avgWidth = rs.getDouble(4);
+                        Double width = rs.wasNull() ? null : avgWidth;
+                        sizing.addColumn(column, rs.getString(2), maxBytes, width);
+                        found.add(column.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            if (sizing.getColumnCount() == 0) {
+                throw new Exception("Failed to size batch writes: table " + tableName + " not found");
+            }
+
+            JsonObject result = sizing.toJson(rows);
+            JsonArray notes = new JsonArray();
+            requested.removeAll(found);
+            if (!requested.isEmpty()) {
+                notes.add("Unknown columns ignored: " + String.join(", ", requested));
+            }
+            if (!sizing.getAssumedColumns().isEmpty()) {
+                notes.add("Widths of variable-length columns without statistics are assumed half their "
+                        + "declared length, at most 256 bytes");
+            }
+            if (dialect.isPostgres()) {
+                notes.add("With ExecutorType.BATCH, pgjdbc sends one INSERT per row unless the URL sets "
+                        + "reWriteBatchedInserts=true");
+            } else {
+                notes.add("With ExecutorType.BATCH, Connector/J sends one INSERT per row unless the URL sets "
+                        + "rewriteBatchedStatements=true, which also splits batches to fit max_allowed_packet");
+            }
+            result.add("notes", notes);
+            return result;
+
+        } catch (SQLException e) {
+            logger.error("Database error while sizing batch writes", e);
+            throw new Exception("Failed to size batch writes: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import cn.mklaus.sqlagent.mcp.stats.LatencySummary;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MCP Tool for measuring the latency of an original and an optimized SELECT
+ *
+ * Both queries run in the same read-only transaction (always rolled back), after warm-up
+ * runs, in alternating order (A B, B A, ...) so that caching and drift affect both
+ * equally. Every run reads the full result so the transfer cost is included.
+ */
+public class BenchmarkQueryTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkQueryTool.class);
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final int MAX_ITERATIONS = 20;
+    private static final int DEFAULT_WARMUP = 1;
+    private static final int DEFAULT_TIMEOUT_MS = 5_000;
+    private static final int MAX_TIMEOUT_MS = 30_000;
+    private static final int MAX_ROWS = 100_000;
+
+    private final DatabaseConfig config;
+
+    public BenchmarkQueryTool(DatabaseConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Measure p50/p95/max latency, row count and buffer/handler counters of an original and an "
+                + "optimized SELECT, run alternately in a read-only transaction";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject originalSql = new JsonObject();
+        originalSql.addProperty("type", "string");
+        originalSql.addProperty("description", "Original SELECT statement");
+        properties.add("original_sql", originalSql);
+
+        JsonObject optimizedSql = new JsonObject();
+        optimizedSql.addProperty("type", "string");
+        optimizedSql.addProperty("description", "Optimized SELECT statement");
+        properties.add("optimized_sql", optimizedSql);
+
+        JsonObject iterations = new JsonObject();
+        iterations.addProperty("type", "integer");
+        iterations.addProperty("description", "Measured runs per query (default " + DEFAULT_ITERATIONS
+                + ", at most " + MAX_ITERATIONS + ")");
+        properties.add("iterations", iterations);
+
+        JsonObject warmup = new JsonObject();
+        warmup.addProperty("type", "integer");
+        warmup.addProperty("description", "Unmeasured warm-up runs per query (default " + DEFAULT_WARMUP + ")");
+        properties.add("warmup", warmup);
+
+        JsonObject timeout = new JsonObject();
+        timeout.addProperty("type", "integer");
+        timeout.addProperty("description", "Timeout per run in milliseconds (default " + DEFAULT_TIMEOUT_MS
+                + ", at most " + MAX_TIMEOUT_MS + ")");
+        properties.add("timeout_ms", timeout);
+
+        schema.add("properties", properties);
+
+        JsonArray required = new JsonArray();
+        required.add("original_sql");
+        required.add("optimized_sql");
+        schema.add("required", required);
+
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        String originalSql = arguments.get("original_sql").getAsString();
+        String optimizedSql = arguments.get("optimized_sql").getAsString();
+        int iterations = clamp(intArgument(arguments, "iterations", DEFAULT_ITERATIONS), 1, MAX_ITERATIONS);
+        int warmup = clamp(intArgument(arguments, "warmup", DEFAULT_WARMUP), 0, 5);
+        int timeoutMs = clamp(intArgument(arguments, "timeout_ms", DEFAULT_TIMEOUT_MS), 100, MAX_TIMEOUT_MS);
+
+        requireSelect(originalSql, "original_sql");
+        requireSelect(optimizedSql, "optimized_sql");
+
+        logger.info("Benchmarking {} iterations (warm-up {}): {}", iterations, warmup,
+                originalSql.substring(0, Math.min(50, originalSql.length())));
+
+        try (Connection conn = config.getDataSource().getConnection()) {
+            conn.setReadOnly(true);
+            conn.setAutoCommit(false);
+            try {
+                Run original = new Run(originalSql, iterations);
+                Run optimized = new Run(optimizedSql, iterations);
+
+                for (int i = 0; i < warmup; i++) {
+                    execute(conn, original, timeoutMs);
+                    execute(conn, optimized, timeoutMs);
+                }
+                for (int i = 0; i < iterations; i++) {
+                    // Alternate which query goes first
+                    Run first = i % 2 == 0 ? original : optimized;
+                    Run second = i % 2 == 0 ? optimized : original;
+                    first.latencies[i] = execute(conn, first, timeoutMs);
+                    second.latencies[i] = execute(conn, second, timeoutMs);
+                }
+
+                original.counters = collectCounters(conn, original, timeoutMs);
+                optimized.counters = collectCounters(conn, optimized, timeoutMs);
+
+                LatencySummary originalLatency = new LatencySummary(original.latencies);
+                LatencySummary optimizedLatency = new LatencySummary(optimized.latencies);
+
+                JsonObject result = new JsonObject();
+                result.add("original", toJson(original, originalLatency));
+                result.add("optimized", toJson(optimized, optimizedLatency));
+
+                double originalP50 = originalLatency.percentileMillis(50);
+                double optimizedP50 = optimizedLatency.percentileMillis(50);
+                if (originalP50 > 0) {
+                    // Fraction of the original p50 latency saved; negative when slower
+                    result.addProperty("improvement", Math.round((1 - optimizedP50 / originalP50) * 1000) / 1000.0);
+                }
+                if (optimizedP50 > 0) {
+                    result.addProperty("speedup", Math.round(originalP50 / optimizedP50 * 100) / 100.0);
+                }
+                result.addProperty("row_count_matches", original.rows == optimized.rows);
+                result.addProperty("iterations", iterations);
+                result.addProperty("warmup", warmup);
+
+                return result;
+            } finally {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            logger.error("Database error while benchmarking SQL", e);
+            throw new Exception("Failed to benchmark SQL: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Run the query once, reading all rows
+     * @return Elapsed nanoseconds
+     */
+    private long execute(Connection conn, Run run, int timeoutMs) throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement(run.sql)) {
+            requireNoParameters(stmt);
+            ToolCancellation.track(stmt);
+            stmt.setQueryTimeout(Math.max(1, (timeoutMs + 999) / 1000));
+            stmt.setMaxRows(MAX_ROWS);
+            stmt.setFetchSize(1000);
+
+            long rows = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        rs.getObject(i); // Materialize values like a real client would
+                    }
+                    rows++;
+                }
+            }
+            run.rows = rows;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Buffer counters (PostgreSQL) or handler counters (MySQL) of one more execution
+     */
+    private JsonObject collectCounters(Connection conn, Run run, int timeoutMs) {
+        try {
+            Dialect dialect = config.getDialect();
+            if (dialect.isPostgres()) {
+                return postgresBufferCounters(conn, dialect, run, timeoutMs);
+            }
+            return mySqlHandlerCounters(conn, run, timeoutMs);
+        } catch (SQLException e) {
+            logger.warn("Failed to collect counters: {}", e.getMessage());
+            JsonObject counters = new JsonObject();
+            counters.addProperty("error", e.getMessage());
+            return counters;
+        }
+    }
+
+    private JsonObject postgresBufferCounters(Connection conn, Dialect dialect, Run run, int timeoutMs)
+            throws SQLException {
+        JsonObject counters = new JsonObject();
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.explainAnalyzeQuery(run.sql))) {
+            ToolCancellation.track(stmt);
+            stmt.setQueryTimeout(Math.max(1, (timeoutMs + 999) / 1000));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    JsonObject plan = JsonParser.parseString(rs.getString(1))
+                            .getAsJsonArray().get(0).getAsJsonObject()
+                            .getAsJsonObject("Plan");
+                    for (String counter : new String[]{"Shared Hit Blocks", "Shared Read Blocks",
+                            "Temp Read Blocks", "Temp Written Blocks"}) {
+                        JsonElement value = plan.get(counter);
+                        if (value != null) {
+                            counters.addProperty(counter.toLowerCase().replace(' ', '_'), value.getAsLong());
+                        }
+                    }
+                }
+            }
+        }
+        return counters;
+    }
+
+    private JsonObject mySqlHandlerCounters(Connection conn, Run run, int timeoutMs) throws SQLException {
+        Map<String, Long> before = mySqlSessionStatus(conn);
+        execute(conn, run, timeoutMs);
+        Map<String, Long> after = mySqlSessionStatus(conn);
+
+        JsonObject counters = new JsonObject();
+        for (Map.Entry<String, Long> entry : after.entrySet()) {
+            long delta = entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            if (delta > 0) {
+                counters.addProperty(entry.getKey().toLowerCase(), delta);
+            }
+        }
+        return counters;
+    }
+
+    private Map<String, Long> mySqlSessionStatus(Connection conn) throws SQLException {
+        Map<String, Long> status = new LinkedHashMap<>();
+        String query = "SHOW SESSION STATUS WHERE Variable_name LIKE 'Handler_read%' " +
+                "OR Variable_name IN ('Sort_rows', 'Created_tmp_tables', 'Created_tmp_disk_tables')";
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                status.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return status;
+    }
+
+    private JsonObject toJson(Run run, LatencySummary latency) {
+        JsonObject json = latency.toJson();
+        json.addProperty("rows", run.rows);
+        if (run.rows >= MAX_ROWS) {
+            json.addProperty("rows_capped", true);
+        }
+        json.add("counters", run.counters);
+        return json;
+    }
+
+    private void requireSelect(String sql, String argument) throws Exception {
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(sql);
+        } catch (Exception e) {
+            throw new Exception(argument + " could not be parsed: " + e.getMessage());
+        }
+        if (!(statement instanceof Select)) {
+            throw new Exception(argument + " must be a SELECT statement");
+        }
+    }
+
+    private void requireNoParameters(PreparedStatement stmt) throws SQLException {
+        if (stmt.getParameterMetaData().getParameterCount() > 0) {
+            throw new SQLException("Statement has bind parameters; substitute literal values to benchmark it");
+        }
+    }
+
+    private int intArgument(JsonObject arguments, String name, int defaultValue) {
+        return arguments.has(name) ? arguments.get(name).getAsInt() : defaultValue;
+    }
+
+    private int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Measurements of one query
+     */
+    private static class Run {
+        final String sql;
+        final long[] latencies;
+        long rows;
+        JsonObject counters = new JsonObject();
+
+        Run(String sql, int iterations) {
+            this.sql = sql;
+            this.latencies = new long[iterations];
+        }
+    }
+}
@@ -1,15 +1,13 @@
 package cn.mklaus.sqlagent.mcp.tools;
 
 import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.PlanSummary;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 /**
@@ -39,6 +37,13 @@ public class ExplainSqlTool implements McpTool {
         sql.addProperty("description", "SQL query to explain");
         properties.add("sql", sql);
 
+        JsonObject estimateOnly = new JsonObject();
+        estimateOnly.addProperty("type", "boolean");
+        estimateOnly.addProperty("description",
+                "Only ask the optimizer, never run the statement, and return a plan_summary "
+                        + "(rows_examined, full_scan_tables, sort, temporary, cost) instead of the plan");
+        properties.add("estimate_only", estimateOnly);
+
         schema.add("properties", properties);
 
         JsonArray required = new JsonArray();
@@ -51,30 +56,24 @@ public class ExplainSqlTool implements McpTool {
     @Override
     public JsonObject execute(JsonObject arguments) throws Exception {
         String sql = arguments.get("sql").getAsString();
+        boolean estimateOnly = arguments.has("estimate_only") && arguments.get("estimate_only").getAsBoolean();
 
         logger.info("Explaining SQL: {}", sql.substring(0, Math.min(50, sql.length())));
 
-        try (HikariDataSource dataSource = config.createDataSource();
-             Connection conn = dataSource.getConnection()) {
+        try (Connection conn = config.getDataSource().getConnection()) {
 
             JsonObject result = new JsonObject();
             result.addProperty("sql", sql);
 
-            // Use appropriate EXPLAIN syntax for database type
-            String explainQuery;
-            if (config.getType().equalsIgnoreCase("postgresql")) {
-                explainQuery = "EXPLAIN (ANALYZE, FORMAT JSON) " + sql;
-            } else { // MySQL
-                explainQuery = "EXPLAIN FORMAT=JSON " + sql;
+            if (estimateOnly) {
+                result.add("plan_summary", PlanSummary.parse(config.getDialect().estimate(conn, sql)).toJson());
+                return result;
             }
 
-            try (PreparedStatement stmt = conn.prepareStatement(explainQuery);
-                 ResultSet rs = stmt.executeQuery()) {
-
-                if (rs.next()) {
-                    String explainResult = rs.getString(1);
-                    result.addProperty("execution_plan", explainResult);
-                }
+            // EXPLAIN syntax and output format depend on the engine
+            String explainResult = config.getDialect().explain(conn, sql);
+            if (explainResult != null) {
+                result.addProperty("execution_plan", explainResult);
             }
 
             return result;
@@ -0,0 +1,170 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.schema.Relationship;
+import cn.mklaus.sqlagent.mcp.schema.RelationshipGraph;
+import cn.mklaus.sqlagent.mcp.schema.RelationshipGraphCache;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * MCP Tool for foreign-key and inferred join relationships between tables
+ */
+public class GetRelationshipsTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(GetRelationshipsTool.class);
+    private static final int DEFAULT_MAX_HOPS = 4;
+
+    private final RelationshipGraphCache graphCache;
+
+    public GetRelationshipsTool(RelationshipGraphCache graphCache) {
+        this.graphCache = graphCache;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Get join relationships (declared foreign keys and relationships inferred from column naming "
+                + "and indexes) for a set of tables, with the join path between each pair and its estimated fan-out";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject tables = new JsonObject();
+        tables.addProperty("type", "array");
+        JsonObject items = new JsonObject();
+        items.addProperty("type", "string");
+        tables.add("items", items);
+        tables.addProperty("description", "Tables to relate. If omitted, all relationships in the schema are returned");
+        properties.add("tables", tables);
+
+        JsonObject maxHops = new JsonObject();
+        maxHops.addProperty("type", "integer");
+        maxHops.addProperty("description", "Maximum number of joins in a path (default " + DEFAULT_MAX_HOPS + ")");
+        properties.add("max_hops", maxHops);
+
+        schema.add("properties", properties);
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        List<String> requested = new ArrayList<>();
+        if (arguments != null && arguments.has("tables")) {
+            for (JsonElement table : arguments.getAsJsonArray("tables")) {
+                requested.add(table.getAsString());
+            }
+        }
+        int maxHops = arguments != null && arguments.has("max_hops")
+                ? arguments.get("max_hops").getAsInt()
+                : DEFAULT_MAX_HOPS;
+
+        logger.info("Getting relationships for tables: {}", requested);
+
+        RelationshipGraph graph;
+        try {
+            graph = graphCache.get();
+        } catch (SQLException e) {
+            logger.error("Database error while loading relationships", e);
+            throw new Exception("Failed to load relationships: " + e.getMessage());
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("schema_fingerprint", graph.getFingerprint());
+        result.addProperty("table_count", graph.getTables().size());
+
+        if (requested.isEmpty()) {
+            JsonArray relationships = new JsonArray();
+            graph.getRelationships().forEach(relationship -> relationships.add(relationship.toJson()));
+            result.add("relationships", relationships);
+            return result;
+        }
+
+        JsonArray unknownTables = new JsonArray();
+        List<String> known = new ArrayList<>();
+        for (String table : requested) {
+            if (graph.getTable(table) == null) {
+                unknownTables.add(table);
+            } else {
+                known.add(graph.getTable(table).getName());
+            }
+        }
+
+        // Direct relationships of the requested tables
+        Set<Relationship> direct = new LinkedHashSet<>();
+        for (String table : known) {
+            direct.addAll(graph.getRelationships(table));
+        }
+        JsonArray relationships = new JsonArray();
+        direct.forEach(relationship -> relationships.add(relationship.toJson()));
+        result.add("relationships", relationships);
+
+        // Join path between each pair
+        JsonArray joinPaths = new JsonArray();
+        JsonArray unconnected = new JsonArray();
+        for (int i = 0; i < known.size(); i++) {
+            for (int j = i + 1; j < known.size(); j++) {
+                List<RelationshipGraph.JoinStep> path = graph.findJoinPath(known.get(i), known.get(j), maxHops);
+                if (path == null) {
+                    unconnected.add(known.get(i) + " - " + known.get(j));
+                } else if (!path.isEmpty()) {
+                    joinPaths.add(toJson(known.get(i), known.get(j), path));
+                }
+            }
+        }
+        result.add("join_paths", joinPaths);
+        if (!unconnected.isEmpty()) {
+            result.add("unconnected", unconnected);
+        }
+        if (!unknownTables.isEmpty()) {
+            result.add("unknown_tables", unknownTables);
+        }
+
+        return result;
+    }
+
+    private JsonObject toJson(String from, String to, List<RelationshipGraph.JoinStep> path) {
+        JsonObject json = new JsonObject();
+        json.addProperty("from", from);
+        json.addProperty("to", to);
+        json.addProperty("hops", path.size());
+
+        JsonArray steps = new JsonArray();
+        double rowMultiplier = 1.0;
+        boolean multiplierKnown = true;
+        for (RelationshipGraph.JoinStep step : path) {
+            JsonObject stepJson = new JsonObject();
+            stepJson.addProperty("join", step.getRelationship().getJoinCondition());
+            stepJson.addProperty("cardinality", step.getCardinality());
+            if (step.getFanOut() >= 0) {
+                stepJson.addProperty("fan_out", round(step.getFanOut()));
+                rowMultiplier *= step.getFanOut();
+            } else {
+                multiplierKnown = false;
+            }
+            stepJson.addProperty("source", step.getRelationship().getSource().name().toLowerCase());
+            steps.add(stepJson);
+        }
+        json.add("steps", steps);
+
+        // Rows produced per row of the first table when joining along the whole path
+        if (multiplierKnown) {
+            json.addProperty("row_multiplier", round(rowMultiplier));
+        }
+        return json;
+    }
+
+    private double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
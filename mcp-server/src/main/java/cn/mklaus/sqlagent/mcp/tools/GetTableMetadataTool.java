@@ -1,9 +1,9 @@
 package cn.mklaus.sqlagent.mcp.tools;
 
 import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.schema.TableMetadataCache;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,13 +14,19 @@ import java.sql.SQLException;
 
 /**
  * MCP Tool for getting table metadata
+ *
+ * Columns and indexes come from the shared metadata cache, usually filled by the warm-up at
+ * initialize. The row count is the optimizer estimate when there is one; only tables never
+ * analyzed are counted.
  */
 public class GetTableMetadataTool implements McpTool {
     private static final Logger logger = LoggerFactory.getLogger(GetTableMetadataTool.class);
     private final DatabaseConfig config;
+    private final TableMetadataCache metadataCache;
 
-    public GetTableMetadataTool(DatabaseConfig config) {
+    public GetTableMetadataTool(DatabaseConfig config, TableMetadataCache metadataCache) {
         this.config = config;
+        this.metadataCache = metadataCache;
     }
 
     @Override
@@ -54,14 +60,23 @@ public class GetTableMetadataTool implements McpTool {
 
         logger.info("Getting metadata for table: {}", tableName);
 
-        try (HikariDataSource dataSource = config.createDataSource();
-             Connection conn = dataSource.getConnection()) {
+        try {
+            JsonObject metadata = metadataCache.getTableMetadata(tableName);
 
             JsonObject result = new JsonObject();
             result.addProperty("table_name", tableName);
-            result.add("columns", getColumns(conn, tableName));
-            result.add("indexes", getIndexes(conn, tableName));
-            result.addProperty("row_count", getRowCount(conn, tableName));
+            result.add("columns", metadata.get("columns"));
+            result.add("indexes", metadata.get("indexes"));
+
+            long rowEstimate = metadataCache.getRowEstimate(tableName);
+            if (rowEstimate >= 0) {
+                result.addProperty("row_count", rowEstimate);
+                result.addProperty("row_count_estimated", true);
+            } else {
+                try (Connection conn = config.getDataSource().getConnection()) {
+                    result.addProperty("row_count", getRowCount(conn, tableName));
+                }
+            }
 
             return result;
 
@@ -71,102 +86,6 @@ public class GetTableMetadataTool implements McpTool {
         }
     }
 
-    /**
-     * Get column information for table
-     */
-    private JsonArray getColumns(Connection conn, String tableName) throws SQLException {
-        JsonArray columns = new JsonArray();
-
-        String query;
-        String nameCol, typeCol, nullableCol, defaultCol;
-
-        if (config.getType().equalsIgnoreCase("postgresql")) {
-            nameCol = "column_name";
-            typeCol = "data_type";
-            nullableCol = "is_nullable";
-            defaultCol = "column_default";
-            query = "SELECT column_name, data_type, is_nullable, column_default " +
-                    "FROM information_schema.columns " +
-                    "WHERE table_name = ? " +
-                    "ORDER BY ordinal_position";
-        } else { // MySQL
-            nameCol = "COLUMN_NAME";
-            typeCol = "DATA_TYPE";
-            nullableCol = "IS_NULLABLE";
-            defaultCol = "COLUMN_DEFAULT";
-            query = "SELECT COLUMN_NAME, DATA_TYPE, IS_NULLABLE, COLUMN_DEFAULT " +
-                    "FROM INFORMATION_SCHEMA.COLUMNS " +
-                    "WHERE TABLE_NAME = ? " +
-                    "ORDER BY ORDINAL_POSITION";
-        }
-
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, tableName);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    JsonObject column = new JsonObject();
-                    column.addProperty("name", rs.getString(nameCol));
-                    column.addProperty("type", rs.getString(typeCol));
-                    column.addProperty("nullable", rs.getString(nullableCol));
-
-                    String defaultValue = rs.getString(defaultCol);
-                    if (defaultValue != null && !rs.wasNull()) {
-                        column.addProperty("default_value", defaultValue);
-                    }
-
-                    columns.add(column);
-                }
-            }
-        }
-
-        return columns;
-    }
-
-    /**
-     * Get index information for table
-     */
-    private JsonArray getIndexes(Connection conn, String tableName) throws SQLException {
-        JsonArray indexes = new JsonArray();
-
-        String query;
-        if (config.getType().equalsIgnoreCase("postgresql")) {
-            query = "SELECT indexname, indexdef " +
-                    "FROM pg_indexes " +
-                    "WHERE tablename = ?";
-        } else { // MySQL
-            query = "SELECT INDEX_NAME as index_name, " +
-                    "GROUP_CONCAT(COLUMN_NAME ORDER BY SEQ_IN_INDEX) as columns, " +
-                    "NOT NON_UNIQUE as is_unique " +
-                    "FROM INFORMATION_SCHEMA.STATISTICS " +
-                    "WHERE TABLE_NAME = ? AND TABLE_SCHEMA = DATABASE() " +
-                    "GROUP BY INDEX_NAME, NON_UNIQUE";
-        }
-
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, tableName);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    JsonObject index = new JsonObject();
-
-                    if (config.getType().equalsIgnoreCase("postgresql")) {
-                        index.addProperty("name", rs.getString("indexname"));
-                        index.addProperty("definition", rs.getString("indexdef"));
-                    } else {
-                        index.addProperty("name", rs.getString("index_name"));
-                        index.addProperty("columns", rs.getString("columns"));
-                        index.addProperty("unique", rs.getBoolean("is_unique"));
-                    }
-
-                    indexes.add(index);
-                }
-            }
-        }
-
-        return indexes;
-    }
-
     /**
      * Get row count for table
      */
@@ -0,0 +1,318 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import cn.mklaus.sqlagent.mcp.schema.IndexInfo;
+import cn.mklaus.sqlagent.mcp.schema.IndexRedundancy;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MCP Tool reporting unused, duplicate and redundant indexes with their sizes
+ *
+ * Tables are analyzed in parallel by a few workers, each holding one pooled connection for
+ * all the tables it takes, so the per-table catalog statements stay prepared on that
+ * connection. One pooled connection is left free for other tool calls.
+ */
+public class IndexHealthTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(IndexHealthTool.class);
+    private static final int DEFAULT_TIMEOUT_MS = 60_000;
+    private static final int MAX_TIMEOUT_MS = 300_000;
+
+    private final DatabaseConfig config;
+
+    public IndexHealthTool(DatabaseConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Find unused, duplicate and left-prefix redundant indexes, with index sizes and usage counts, "
+                + "to spot write amplification and memory wasted on indexes";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject tables = new JsonObject();
+        tables.addProperty("type", "array");
+        JsonObject items = new JsonObject();
+        items.addProperty("type", "string");
+        tables.add("items", items);
+        tables.addProperty("description", "Tables to check. If omitted, all tables are checked");
+        properties.add("tables", tables);
+
+        JsonObject onlyIssues = new JsonObject();
+        onlyIssues.addProperty("type", "boolean");
+        onlyIssues.addProperty("description", "Only list indexes with issues (default true when checking all "
+                + "tables, false otherwise)");
+        properties.add("only_issues", onlyIssues);
+
+        JsonObject timeout = new JsonObject();
+        timeout.addProperty("type", "integer");
+        timeout.addProperty("description", "Time budget in milliseconds; tables not reached are reported as skipped "
+                + "(default " + DEFAULT_TIMEOUT_MS + ")");
+        properties.add("timeout_ms", timeout);
+
+        schema.add("properties", properties);
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        List<String> requested = new ArrayList<>();
+        if (arguments != null && arguments.has("tables")) {
+            for (JsonElement table : arguments.getAsJsonArray("tables")) {
+                requested.add(table.getAsString());
+            }
+        }
+        boolean onlyIssues = arguments != null && arguments.has("only_issues")
+                ? arguments.get("only_issues").getAsBoolean()
+                : requested.isEmpty();
+        int timeoutMs = arguments != null && arguments.has("timeout_ms")
+                ? Math.max(1000, Math.min(MAX_TIMEOUT_MS, arguments.get("timeout_ms").getAsInt()))
+                : DEFAULT_TIMEOUT_MS;
+
+        try {
+            Dialect dialect = config.getDialect();
+            List<String> tables = requested.isEmpty() ? listTables(dialect) : requested;
+            logger.info("Checking index health of {} tables", tables.size());
+
+            long startedAt = System.currentTimeMillis();
+            TableResult[] results = analyzeInParallel(dialect, tables, startedAt + timeoutMs);
+
+            JsonObject result = new JsonObject();
+            String usageSince = usageSince(dialect);
+            if (usageSince != null) {
+                result.addProperty("usage_since", usageSince);
+            }
+
+            int indexCount = 0;
+            int skipped = 0;
+            Map<IndexInfo.IssueKind, Integer> issueCounts = new EnumMap<>(IndexInfo.IssueKind.class);
+            long flaggedBytes = 0;
+            List<String> notes = new ArrayList<>();
+            JsonArray tableArray = new JsonArray();
+            for (TableResult table : results) {
+                if (table == null) {
+                    skipped++;
+                    continue;
+                }
+                if (table.note != null && !notes.contains(table.note)) {
+                    notes.add(table.note);
+                }
+
+                JsonArray indexArray = new JsonArray();
+                for (IndexInfo index : table.indexes) {
+                    indexCount++;
+                    if (!index.getIssues().isEmpty()) {
+                        for (IndexInfo.IssueKind kind : index.getIssueKinds()) {
+                            issueCounts.merge(kind, 1, Integer::sum);
+                        }
+                        flaggedBytes += Math.max(0, index.getSizeBytes());
+                    }
+                    if (!onlyIssues || !index.getIssues().isEmpty()) {
+                        indexArray.add(index.toJson());
+                    }
+                }
+                if (indexArray.size() > 0) {
+                    JsonObject tableJson = new JsonObject();
+                    tableJson.addProperty("table", table.name);
+                    tableJson.add("indexes", indexArray);
+                    tableArray.add(tableJson);
+                }
+            }
+
+            JsonObject summary = new JsonObject();
+            summary.addProperty("tables", tables.size() - skipped);
+            summary.addProperty("indexes", indexCount);
+            for (IndexInfo.IssueKind kind : IndexInfo.IssueKind.values()) {
+                summary.addProperty(kind.key(), issueCounts.getOrDefault(kind, 0));
+            }
+            summary.addProperty("flagged_bytes", flaggedBytes);
+            summary.addProperty("elapsed_ms", System.currentTimeMillis() - startedAt);
+            if (skipped > 0) {
+                summary.addProperty("tables_skipped", skipped);
+            }
+            result.add("summary", summary);
+            result.add("tables", tableArray);
+            if (!notes.isEmpty()) {
+                JsonArray noteArray = new JsonArray();
+                notes.forEach(noteArray::add);
+                result.add("notes", noteArray);
+            }
+            return result;
+
+        } catch (SQLException e) {
+            logger.error("Database error while checking index health", e);
+            throw new Exception("Failed to check index health: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Analyze tables with a bounded number of workers, each on its own pooled connection
+     * @return Results in table order, null for tables not reached before the deadline
+     */
+    private TableResult[] analyzeInParallel(Dialect dialect, List<String> tables, long deadline)
+            throws SQLException {
+        TableResult[] results = new TableResult[tables.size()];
+        int workers = Math.max(1, Math.min(config.getMaxPoolSize() - 1, tables.size()));
+        AtomicInteger next = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "index-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+            for (int w = 0; w < workers; w++) {
+                futures[w] = CompletableFuture.runAsync(() -> {
+                    try (Connection conn = config.getDataSource().getConnection()) {
+                        int i;
+                        while ((i = next.getAndIncrement()) < tables.size()
+                                && System.currentTimeMillis() < deadline) {
+                            results[i] = analyzeTable(conn, dialect, tables.get(i));
+                        }
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+            }
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private TableResult analyzeTable(Connection conn, Dialect dialect, String table) throws SQLException {
+        TableResult result = new TableResult(table);
+        Map<String, IndexInfo> byName = new HashMap<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.tableIndexesQuery())) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    IndexInfo index = new IndexInfo(rs.getString(1), Arrays.asList(rs.getString(2).split(",")),
+                            rs.getBoolean(3), rs.getBoolean(5), rs.getString(6), rs.getBoolean(7));
+                    result.indexes.add(index);
+                    byName.put(index.getName().toLowerCase(Locale.ROOT), index);
+                }
+            }
+        }
+
+        if (dialect.indexSizesQuery() == null) {
+            result.note = "Index sizes are not available on " + dialect.getName();
+        } else {
+            try (PreparedStatement stmt = conn.prepareStatement(dialect.indexSizesQuery())) {
+                stmt.setString(1, table);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        IndexInfo index = byName.get(rs.getString(1).toLowerCase(Locale.ROOT));
+                        if (index != null) {
+                            index.setSizeBytes(rs.getLong(2));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                result.note = "Index sizes not readable: " + e.getMessage();
+            }
+        }
+
+        boolean usageKnown = false;
+        if (dialect.indexUsageQuery() == null) {
+            result.note = "Index usage counters are not available on " + dialect.getName();
+        } else {
+            try (PreparedStatement stmt = conn.prepareStatement(dialect.indexUsageQuery())) {
+                stmt.setString(1, table);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        IndexInfo index = byName.get(rs.getString(1).toLowerCase(Locale.ROOT));
+                        if (index != null) {
+                            index.setReads(rs.getLong(2));
+                            long blocksRead = rs.getLong(3);
+                            if (!rs.wasNull()) {
+                                index.setBlocksRead(blocksRead);
+                            }
+                            usageKnown = true;
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                // performance_schema disabled or not granted
+                result.note = "Index usage not readable: " + e.getMessage();
+            }
+        }
+
+        IndexRedundancy.analyze(result.indexes, usageKnown);
+        return result;
+    }
+
+    private List<String> listTables(Dialect dialect) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Connection conn = config.getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.listTablesQuery());
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    private String usageSince(Dialect dialect) {
+        if (dialect.usageStatsSinceQuery() == null) {
+            return null;
+        }
+        try (Connection conn = config.getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(dialect.usageStatsSinceQuery());
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        } catch (SQLException e) {
+            logger.warn("Failed to read statistics reset time: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Indexes of one table
+     */
+    private static class TableResult {
+        final String name;
+        final List<IndexInfo> indexes = new ArrayList<>();
+        String note;
+
+        TableResult(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -1,15 +1,13 @@
 package cn.mklaus.sqlagent.mcp.tools;
 
 import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import cn.mklaus.sqlagent.mcp.schema.TableMetadataCache;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 /**
@@ -18,9 +16,11 @@ import java.sql.SQLException;
 public class ListTablesTool implements McpTool {
     private static final Logger logger = LoggerFactory.getLogger(ListTablesTool.class);
     private final DatabaseConfig config;
+    private final TableMetadataCache metadataCache;
 
-    public ListTablesTool(DatabaseConfig config) {
+    public ListTablesTool(DatabaseConfig config, TableMetadataCache metadataCache) {
         this.config = config;
+        this.metadataCache = metadataCache;
     }
 
     @Override
@@ -43,15 +43,17 @@ public class ListTablesTool implements McpTool {
     public JsonObject execute(JsonObject arguments) throws Exception {
         logger.info("Listing tables in database: {}", config.getDatabase());
 
-        try (HikariDataSource dataSource = config.createDataSource();
-             Connection conn = dataSource.getConnection()) {
+        try {
+            Dialect dialect = config.getDialect();
 
             JsonObject result = new JsonObject();
-            result.addProperty("database_type", config.getType());
+            result.addProperty("database_type", dialect.getName());
+            result.addProperty("database_version", dialect.getVersion());
             result.addProperty("database_name", config.getDatabase());
 
             // Get table list
-            JsonArray tables = getTables(conn);
+            JsonArray tables = new JsonArray();
+            metadataCache.getTables().forEach(tables::add);
             result.add("tables", tables);
             result.addProperty("table_count", tables.size());
 
@@ -62,34 +64,4 @@ public class ListTablesTool implements McpTool {
             throw new Exception("Failed to list tables: " + e.getMessage());
         }
     }
-
-    /**
-     * Get list of all tables in the database
-     */
-    private JsonArray getTables(Connection conn) throws SQLException {
-        JsonArray tables = new JsonArray();
-
-        String query;
-        if (config.getType().equalsIgnoreCase("postgresql")) {
-            query = "SELECT table_name FROM information_schema.tables " +
-                    "WHERE table_schema = 'public' " +
-                    "AND table_type = 'BASE TABLE' " +
-                    "ORDER BY table_name";
-        } else { // MySQL
-            query = "SELECT TABLE_NAME FROM information_schema.tables " +
-                    "WHERE TABLE_SCHEMA = DATABASE() " +
-                    "AND TABLE_TYPE = 'BASE TABLE' " +
-                    "ORDER BY TABLE_NAME";
-        }
-
-        try (PreparedStatement stmt = conn.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                tables.add(rs.getString(1));
-            }
-        }
-
-        return tables;
-    }
 }
@@ -0,0 +1,307 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import cn.mklaus.sqlagent.mcp.stats.BlockingGraph;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MCP Tool reporting current lock waits and long-running transactions
+ *
+ * Waits are folded into a blocking graph so the root blockers - sessions that hold the locks
+ * everybody else queues behind - are listed first with the statement they are running or ran
+ * last. A slow statement that shows up as waiting here suffers from contention, not its plan.
+ */
+public class LockWaitsTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(LockWaitsTool.class);
+    private static final int DEFAULT_MIN_TRANSACTION_SECONDS = 30;
+    private static final int DEFAULT_MAX_ITEMS = 20;
+    private static final int MAX_STATEMENT_LENGTH = 300;
+    private static final int QUERY_TIMEOUT_SECONDS = 10;
+
+    private final DatabaseConfig config;
+
+    public LockWaitsTool(DatabaseConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Show sessions waiting on locks, the root blockers holding them and long-running transactions, "
+                + "to tell lock contention apart from a bad execution plan";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject minSeconds = new JsonObject();
+        minSeconds.addProperty("type", "integer");
+        minSeconds.addProperty("description", "Report transactions open for at least this many seconds (default "
+                + DEFAULT_MIN_TRANSACTION_SECONDS + ")");
+        properties.add("min_transaction_seconds", minSeconds);
+
+        JsonObject maxItems = new JsonObject();
+        maxItems.addProperty("type", "integer");
+        maxItems.addProperty("description", "Maximum number of waits and transactions listed (default "
+                + DEFAULT_MAX_ITEMS + ")");
+        properties.add("max_items", maxItems);
+
+        schema.add("properties", properties);
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        int minSeconds = arguments != null && arguments.has("min_transaction_seconds")
+                ? Math.max(0, arguments.get("min_transaction_seconds").getAsInt())
+                : DEFAULT_MIN_TRANSACTION_SECONDS;
+        int maxItems = arguments != null && arguments.has("max_items")
+                ? Math.max(1, arguments.get("max_items").getAsInt())
+                : DEFAULT_MAX_ITEMS;
+
+        try (Connection conn = config.getDataSource().getConnection()) {
+            Dialect dialect = config.getDialect();
+            List<String> notes = new ArrayList<>();
+
+            Map<String, Wait> waits = new LinkedHashMap<>();
+            Map<String, Session> blockers = new LinkedHashMap<>();
+            BlockingGraph graph = new BlockingGraph();
+            if (dialect.lockWaitsQuery() == null) {
+                notes.add("Lock waits are not available on " + dialect.getName());
+            } else {
+                try {
+                    readWaits(conn, dialect, waits, blockers, graph);
+                } catch (SQLException e) {
+                    // performance_schema disabled or PROCESS privilege missing
+                    notes.add("Lock waits not readable: " + e.getMessage());
+                }
+            }
+
+            List<Session> transactions = new ArrayList<>();
+            try {
+                readLongTransactions(conn, dialect, minSeconds, transactions);
+            } catch (SQLException e) {
+                notes.add("Transactions not readable: " + e.getMessage());
+            }
+
+            List<String> roots = graph.getRootBlockers();
+            Set<String> deadlocked = graph.getDeadlockedSessions();
+            long maxWait = waits.values().stream().mapToLong(w -> w.seconds).max().orElse(0);
+            long oldest = transactions.stream().mapToLong(t -> t.transactionSeconds).max().orElse(0);
+
+            JsonObject summary = new JsonObject();
+            summary.addProperty("waiting_sessions", graph.getWaitingCount());
+            summary.addProperty("root_blockers", roots.size());
+            summary.addProperty("max_wait_seconds", maxWait);
+            if (!deadlocked.isEmpty()) {
+                summary.addProperty("deadlocked_sessions", deadlocked.size());
+            }
+            summary.addProperty("long_transactions", transactions.size());
+            summary.addProperty("oldest_transaction_seconds", oldest);
+            summary.addProperty("verdict", verdict(graph.getWaitingCount(), roots.size(), transactions.size()));
+
+            JsonObject result = new JsonObject();
+            result.add("summary", summary);
+
+            JsonArray rootArray = new JsonArray();
+            for (String root : roots.subList(0, Math.min(roots.size(), maxItems))) {
+                Session session = blockers.get(root);
+                JsonObject rootJson = session.toJson();
+                rootJson.addProperty("blocked_sessions", graph.getBlockedSessions(root).size());
+                List<String> chain = graph.getLongestChain(root);
+                if (chain.size() > 2) {
+                    rootJson.addProperty("longest_chain", String.join(" <- ", chain));
+                }
+                rootArray.add(rootJson);
+            }
+            if (rootArray.size() > 0) {
+                result.add("root_blockers", rootArray);
+            }
+
+            JsonArray waitArray = new JsonArray();
+            for (Wait wait : waits.values()) {
+                if (waitArray.size() >= maxItems) {
+                    break;
+                }
+                waitArray.add(wait.toJson(deadlocked.contains(wait.session)));
+            }
+            if (waitArray.size() > 0) {
+                result.add("waits", waitArray);
+            }
+
+            JsonArray transactionArray = new JsonArray();
+            for (Session transaction : transactions) {
+                if (transactionArray.size() >= maxItems) {
+                    break;
+                }
+                JsonObject transactionJson = transaction.toJson();
+                Set<String> blocked = graph.getBlockedSessions(transaction.id);
+                if (!blocked.isEmpty()) {
+                    transactionJson.addProperty("blocked_sessions", blocked.size());
+                }
+                transactionArray.add(transactionJson);
+            }
+            if (transactionArray.size() > 0) {
+                result.add("long_transactions", transactionArray);
+            }
+
+            if (!notes.isEmpty()) {
+                JsonArray noteArray = new JsonArray();
+                notes.forEach(noteArray::add);
+                result.add("notes", noteArray);
+            }
+            return result;
+
+        } catch (SQLException e) {
+            logger.error("Database error while reading lock waits", e);
+            throw new Exception("Failed to read lock waits: " + e.getMessage());
+        }
+    }
+
+    private void readWaits(Connection conn, Dialect dialect, Map<String, Wait> waits,
+                           Map<String, Session> blockers, BlockingGraph graph) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.lockWaitsQuery())) {
+            stmt.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String waiting = rs.getString(1);
+                    String blocker = rs.getString(4);
+                    Wait wait = waits.computeIfAbsent(waiting, id -> new Wait(id));
+                    wait.statement = abbreviate(rs.getString(2));
+                    wait.seconds = rs.getLong(3);
+                    wait.lock = rs.getString(8);
+                    wait.blockedBy.add(blocker);
+
+                    Session session = blockers.computeIfAbsent(blocker, id -> new Session(id));
+                    session.statement = abbreviate(rs.getString(5));
+                    session.state = rs.getString(6);
+                    session.transactionSeconds = rs.getLong(7);
+                    graph.addWait(waiting, blocker);
+                }
+            }
+        }
+        logger.info("Found {} sessions waiting on locks", waits.size());
+    }
+
+    private void readLongTransactions(Connection conn, Dialect dialect, int minSeconds, List<Session> transactions)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(dialect.longTransactionsQuery())) {
+            stmt.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            stmt.setInt(1, minSeconds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Session session = new Session(rs.getString(1));
+                    session.user = rs.getString(2);
+                    session.state = rs.getString(3);
+                    session.transactionSeconds = rs.getLong(4);
+                    session.statement = abbreviate(rs.getString(5));
+                    long locks = rs.getLong(6);
+                    session.locksHeld = rs.wasNull() ? null : locks;
+                    transactions.add(session);
+                }
+            }
+        }
+    }
+
+    private static String verdict(int waiting, int roots, int longTransactions) {
+        if (waiting > 0) {
+            return waiting + " session(s) waiting on locks held by " + roots + " root blocker(s): "
+                    + "slow statements among them are blocked, not badly planned";
+        }
+        if (longTransactions > 0) {
+            return "no lock waits, but long transactions may hold locks and delay cleanup of old row versions";
+        }
+        return "no lock contention: a slow statement is down to its plan or data volume";
+    }
+
+    private static String abbreviate(String statement) {
+        if (statement == null) {
+            return null;
+        }
+        String flat = statement.replaceAll("\\s+", " ").trim();
+        return flat.length() <= MAX_STATEMENT_LENGTH ? flat : flat.substring(0, MAX_STATEMENT_LENGTH) + "...";
+    }
+
+    /**
+     * A session holding locks or an open transaction
+     */
+    private static class Session {
+        final String id;
+        String user;
+        String state;
+        long transactionSeconds;
+        String statement;
+        Long locksHeld;
+
+        Session(String id) {
+            this.id = id;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("session", id);
+            if (user != null) {
+                json.addProperty("user", user);
+            }
+            if (state != null) {
+                json.addProperty("state", state);
+            }
+            json.addProperty("transaction_seconds", transactionSeconds);
+            if (statement != null && !statement.isEmpty()) {
+                json.addProperty("statement", statement);
+            }
+            if (locksHeld != null) {
+                json.addProperty("locks_held", locksHeld);
+            }
+            return json;
+        }
+    }
+
+    /**
+     * A session waiting on one or more blockers
+     */
+    private static class Wait {
+        final String session;
+        final List<String> blockedBy = new ArrayList<>();
+        long seconds;
+        String statement;
+        String lock;
+
+        Wait(String session) {
+            this.session = session;
+        }
+
+        JsonObject toJson(boolean deadlocked) {
+            JsonObject json = new JsonObject();
+            json.addProperty("session", session);
+            json.addProperty("blocked_by", String.join(",", blockedBy));
+            json.addProperty("wait_seconds", seconds);
+            if (statement != null) {
+                json.addProperty("statement", statement);
+            }
+            if (lock != null) {
+                json.addProperty("lock", lock);
+            }
+            if (deadlocked) {
+                json.addProperty("deadlock", true);
+            }
+            return json;
+        }
+    }
+}
@@ -4,6 +4,10 @@ import com.google.gson.JsonObject;
 
 /**
  * Interface for MCP tools
+ *
+ * Results are returned as JSON trees; the server encodes them (JSON or compact text,
+ * size budget) according to the output_format/max_bytes/max_tokens arguments it adds
+ * to every tool, see {@link cn.mklaus.sqlagent.mcp.output.OutputOptions}.
  */
 public interface McpTool {
     /**
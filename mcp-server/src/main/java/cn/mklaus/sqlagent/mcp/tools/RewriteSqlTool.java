@@ -0,0 +1,105 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.rewrite.RewriteCandidate;
+import cn.mklaus.sqlagent.mcp.rewrite.RewriteContext;
+import cn.mklaus.sqlagent.mcp.rewrite.RewriteEngine;
+import cn.mklaus.sqlagent.mcp.rewrite.RewriteRule;
+import cn.mklaus.sqlagent.mcp.schema.RelationshipGraphCache;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.sf.jsqlparser.JSQLParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * MCP Tool for deterministic SQL rewrites checked against schema metadata
+ */
+public class RewriteSqlTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(RewriteSqlTool.class);
+    private static final Pattern MYBATIS_PARAMETER = Pattern.compile("[#$]\\{[^}]*}");
+
+    private final RelationshipGraphCache graphCache;
+    private final RewriteEngine engine = new RewriteEngine();
+
+    public RewriteSqlTool(RelationshipGraphCache graphCache) {
+        this.graphCache = graphCache;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Generate rewrite candidates for a SELECT with fixed rules (OR to UNION ALL, IN subquery to "
+                + "EXISTS/JOIN, correlated scalar subquery to LEFT JOIN, deep OFFSET to deferred join or keyset, "
+                + "COUNT to EXISTS). Each candidate lists the schema preconditions that were checked";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject sql = new JsonObject();
+        sql.addProperty("type", "string");
+        sql.addProperty("description", "SELECT statement to rewrite. MyBatis #{...} parameters are treated as ?");
+        properties.add("sql", sql);
+
+        schema.add("properties", properties);
+
+        JsonArray required = new JsonArray();
+        required.add("sql");
+        schema.add("required", required);
+
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        String sql = MYBATIS_PARAMETER.matcher(arguments.get("sql").getAsString()).replaceAll("?");
+
+        logger.debug("Rewriting SQL: {}", sql.substring(0, Math.min(50, sql.length())));
+
+        JsonObject result = new JsonObject();
+        JsonArray notes = new JsonArray();
+        RewriteContext context;
+        try {
+            context = RewriteContext.of(graphCache.get());
+        } catch (SQLException e) {
+            logger.warn("Schema metadata unavailable for rewrites: {}", e.getMessage());
+            context = RewriteContext.NONE;
+            notes.add("Schema metadata unavailable (" + e.getMessage() + "), rules needing indexes or keys were skipped");
+        }
+
+        long start = System.nanoTime();
+        List<RewriteCandidate> candidates;
+        try {
+            candidates = engine.rewrite(sql, context);
+        } catch (JSQLParserException e) {
+            logger.error("Failed to parse SQL for rewrite", e);
+            throw new Exception("Failed to rewrite SQL: " + e.getMessage());
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        JsonArray candidateArray = new JsonArray();
+        candidates.forEach(candidate -> candidateArray.add(candidate.toJson()));
+        result.add("candidates", candidateArray);
+
+        JsonArray rules = new JsonArray();
+        for (RewriteRule rule : engine.getRules()) {
+            rules.add(rule.getName());
+        }
+        result.add("rules_checked", rules);
+        result.addProperty("elapsed_ms", elapsedMs);
+
+        if (candidates.isEmpty()) {
+            notes.add("No rule applies: the statement is not a single SELECT or its preconditions are not met");
+        } else {
+            notes.add("Candidates are unverified: run verify_equivalence and benchmark_query before proposing one");
+        }
+        result.add("notes", notes);
+        return result;
+    }
+}
@@ -0,0 +1,335 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import cn.mklaus.sqlagent.mcp.schema.RelationshipGraphCache;
+import cn.mklaus.sqlagent.mcp.schema.TableInfo;
+import cn.mklaus.sqlagent.mcp.stats.ColumnDistribution;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * MCP Tool for sampling the value distribution of table columns
+ *
+ * Bounded cost, safe on production replicas: reads at most max_rows rows in a read-only
+ * transaction and stops at the time budget (enforced by the database and while reading).
+ * PostgreSQL samples pages with TABLESAMPLE SYSTEM; MySQL reads short primary-key ranges
+ * starting at random keys.
+ */
+public class SampleDistributionTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(SampleDistributionTool.class);
+    private static final int DEFAULT_MAX_ROWS = 10_000;
+    private static final int MAX_ROWS_LIMIT = 100_000;
+    private static final int DEFAULT_TIME_BUDGET_MS = 2_000;
+    private static final int TIME_BUDGET_LIMIT_MS = 10_000;
+    private static final int DEFAULT_TOP_N = 5;
+    private static final int MAX_COLUMNS = 20;
+    private static final int PK_RANGE_CHUNKS = 20;
+    private static final Set<String> INTEGER_TYPES = Set.of(
+            "tinyint", "smallint", "mediumint", "int", "integer", "bigint");
+
+    private final DatabaseConfig config;
+    private final RelationshipGraphCache graphCache;
+
+    public SampleDistributionTool(DatabaseConfig config, RelationshipGraphCache graphCache) {
+        this.config = config;
+        this.graphCache = graphCache;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Sample a table to get per-column null ratio, approximate distinct count and most frequent values "
+                + "(data skew), within a strict row and time budget";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject tableName = new JsonObject();
+        tableName.addProperty("type", "string");
+        tableName.addProperty("description", "Name of the table");
+        properties.add("table_name", tableName);
+
+        JsonObject columns = new JsonObject();
+        columns.addProperty("type", "array");
+        JsonObject items = new JsonObject();
+        items.addProperty("type", "string");
+        columns.add("items", items);
+        columns.addProperty("description", "Columns to analyze (default: first " + MAX_COLUMNS + " columns)");
+        properties.add("columns", columns);
+
+        JsonObject maxRows = new JsonObject();
+        maxRows.addProperty("type", "integer");
+        maxRows.addProperty("description", "Maximum rows to read (default " + DEFAULT_MAX_ROWS
+                + ", at most " + MAX_ROWS_LIMIT + ")");
+        properties.add("max_rows", maxRows);
+
+        JsonObject timeBudget = new JsonObject();
+        timeBudget.addProperty("type", "integer");
+        timeBudget.addProperty("description", "Time budget in milliseconds (default " + DEFAULT_TIME_BUDGET_MS
+                + ", at most " + TIME_BUDGET_LIMIT_MS + ")");
+        properties.add("time_budget_ms", timeBudget);
+
+        JsonObject topN = new JsonObject();
+        topN.addProperty("type", "integer");
+        topN.addProperty("description", "Number of most frequent values per column (default " + DEFAULT_TOP_N + ")");
+        properties.add("top_n", topN);
+
+        schema.add("properties", properties);
+
+        JsonArray required = new JsonArray();
+        required.add("table_name");
+        schema.add("required", required);
+
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        String tableName = arguments.get("table_name").getAsString();
+        int maxRows = clamp(intArgument(arguments, "max_rows", DEFAULT_MAX_ROWS), 1, MAX_ROWS_LIMIT);
+        int timeBudgetMs = clamp(intArgument(arguments, "time_budget_ms", DEFAULT_TIME_BUDGET_MS), 100, TIME_BUDGET_LIMIT_MS);
+        int topN = clamp(intArgument(arguments, "top_n", DEFAULT_TOP_N), 1, 50);
+
+        logger.info("Sampling distribution of table: {} (max {} rows, {} ms)", tableName, maxRows, timeBudgetMs);
+
+        try {
+            TableInfo table = graphCache.get().getTable(tableName);
+            if (table == null) {
+                throw new Exception("Table not found: " + tableName);
+            }
+            List<String> columns = resolveColumns(table, arguments);
+
+            long startedAt = System.currentTimeMillis();
+            Sample sample = new Sample(columns, maxRows, startedAt + timeBudgetMs);
+            try (Connection conn = config.getDataSource().getConnection()) {
+                Dialect dialect = config.getDialect();
+                conn.setReadOnly(true);
+                conn.setAutoCommit(false);
+                try {
+                    if (dialect.isPostgres()) {
+                        try (Statement stmt = conn.createStatement()) {
+                            stmt.execute("SET LOCAL statement_timeout = " + timeBudgetMs);
+                        }
+                        samplePostgres(conn, dialect, table, sample);
+                    } else {
+                        sampleMySql(conn, dialect, table, sample);
+                    }
+                } finally {
+                    conn.rollback();
+                }
+            }
+
+            JsonObject result = new JsonObject();
+            result.addProperty("table_name", table.getName());
+            result.addProperty("table_rows_estimate", table.getRowEstimate());
+
+            JsonObject sampling = new JsonObject();
+            sampling.addProperty("method", sample.method);
+            if (sample.percent > 0) {
+                sampling.addProperty("percent", sample.percent);
+            }
+            sampling.addProperty("rows_sampled", sample.rows);
+            sampling.addProperty("elapsed_ms", System.currentTimeMillis() - startedAt);
+            if (sample.stoppedEarly) {
+                sampling.addProperty("stopped_early", "time budget reached");
+            }
+            if (sample.note != null) {
+                sampling.addProperty("note", sample.note);
+            }
+            result.add("sampling", sampling);
+
+            JsonArray distributions = new JsonArray();
+            for (ColumnDistribution distribution : sample.distributions) {
+                distributions.add(distribution.toJson(topN));
+            }
+            result.add("columns", distributions);
+
+            return result;
+
+        } catch (SQLException e) {
+            logger.error("Database error while sampling table: {}", tableName, e);
+            throw new Exception("Failed to sample table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sample pages with TABLESAMPLE SYSTEM, sized from the catalog row estimate
+     */
+    private void samplePostgres(Connection conn, Dialect dialect, TableInfo table, Sample sample) throws SQLException {
+        long rowEstimate = table.getRowEstimate();
+        double percent = 100.0;
+        if (rowEstimate > sample.maxRows) {
+            // Ask for twice the rows needed: pages are sampled, so the row count varies
+            percent = Math.max(0.01, Math.min(100.0, sample.maxRows * 200.0 / rowEstimate));
+            percent = Math.round(percent * 100) / 100.0;
+        }
+        sample.method = percent < 100 ? "tablesample_system" : "full_scan";
+        sample.percent = percent < 100 ? percent : 0;
+
+        String query = "SELECT " + selectList(dialect, sample.columns) + " FROM " + dialect.quote(table.getName())
+                + (percent < 100 ? String.format(Locale.ROOT, " TABLESAMPLE SYSTEM (%.2f)", percent) : "")
+                + " LIMIT " + sample.maxRows;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setFetchSize(1000);
+            readRows(stmt, sample);
+        }
+    }
+
+    /**
+     * Read short ranges of the primary key starting at random keys; falls back to the first
+     * rows of the table when there is no single-column integer primary key
+     */
+    private void sampleMySql(Connection conn, Dialect dialect, TableInfo table, Sample sample) throws SQLException {
+        List<String> primaryKey = table.getPrimaryKey();
+        boolean integerKey = primaryKey.size() == 1 && INTEGER_TYPES.contains(table.getColumnType(primaryKey.get(0)));
+
+        if (!integerKey || (table.getRowEstimate() >= 0 && table.getRowEstimate() <= sample.maxRows)) {
+            sample.method = integerKey ? "full_scan" : "head";
+            if (!integerKey) {
+                sample.note = "No integer primary key: first rows in storage order, may be biased";
+            }
+            String query = "SELECT " + hint(sample) + selectList(dialect, sample.columns)
+                    + " FROM " + dialect.quote(table.getName()) + " LIMIT " + sample.maxRows;
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                readRows(stmt, sample);
+            }
+            return;
+        }
+
+        String key = dialect.quote(primaryKey.get(0));
+        long min;
+        long max;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT MIN(" + key + "), MAX(" + key + ") FROM " + dialect.quote(table.getName()));
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            min = rs.getLong(1);
+            max = rs.getLong(2);
+        }
+
+        sample.method = "pk_range";
+        int rowsPerChunk = Math.max(1, (sample.maxRows + PK_RANGE_CHUNKS - 1) / PK_RANGE_CHUNKS);
+        for (int i = 0; i < PK_RANGE_CHUNKS && sample.rows < sample.maxRows && !sample.isExpired(); i++) {
+            long start = max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+            String query = "SELECT " + hint(sample) + selectList(dialect, sample.columns)
+                    + " FROM " + dialect.quote(table.getName())
+                    + " WHERE " + key + " >= ? ORDER BY " + key
+                    + " LIMIT " + Math.min(rowsPerChunk, sample.maxRows - sample.rows);
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setLong(1, start);
+                readRows(stmt, sample);
+            }
+        }
+    }
+
+    private void readRows(PreparedStatement stmt, Sample sample) throws SQLException {
+        long remainingMs = sample.deadline - System.currentTimeMillis();
+        if (remainingMs <= 0) {
+            sample.stoppedEarly = true;
+            return;
+        }
+        stmt.setQueryTimeout((int) Math.max(1, (remainingMs + 999) / 1000));
+        stmt.setMaxRows(sample.maxRows - (int) sample.rows);
+
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                for (int i = 0; i < sample.distributions.size(); i++) {
+                    sample.distributions.get(i).add(rs.getString(i + 1));
+                }
+                sample.rows++;
+                if ((sample.rows & 255) == 0 && sample.isExpired()) {
+                    sample.stoppedEarly = true;
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            if (sample.rows > 0 && sample.isExpired()) {
+                sample.stoppedEarly = true; // Timed out, report what was read
+                return;
+            }
+            throw e;
+        }
+    }
+
+    private List<String> resolveColumns(TableInfo table, JsonObject arguments) throws Exception {
+        List<String> columns = new ArrayList<>();
+        if (arguments.has("columns")) {
+            for (JsonElement element : arguments.getAsJsonArray("columns")) {
+                String requested = element.getAsString();
+                String actual = table.getColumns().stream()
+                        .filter(column -> column.equalsIgnoreCase(requested))
+                        .findFirst()
+                        .orElseThrow(() -> new Exception("Column not found: " + table.getName() + "." + requested));
+                columns.add(actual);
+            }
+        } else {
+            columns.addAll(table.getColumns());
+        }
+        return columns.size() > MAX_COLUMNS ? columns.subList(0, MAX_COLUMNS) : columns;
+    }
+
+    /**
+     * MySQL per-statement time limit, unlike SET SESSION it does not leak into the pooled connection
+     */
+    private String hint(Sample sample) {
+        long remainingMs = Math.max(1, sample.deadline - System.currentTimeMillis());
+        return "/*+ MAX_EXECUTION_TIME(" + remainingMs + ") */ ";
+    }
+
+    private String selectList(Dialect dialect, List<String> columns) {
+        return columns.stream().map(dialect::quote).collect(Collectors.joining(", "));
+    }
+
+    private int intArgument(JsonObject arguments, String name, int defaultValue) {
+        return arguments.has(name) ? arguments.get(name).getAsInt() : defaultValue;
+    }
+
+    private int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * State of one sampling run
+     */
+    private static class Sample {
+        final List<String> columns;
+        final List<ColumnDistribution> distributions;
+        final int maxRows;
+        final long deadline;
+        long rows;
+        String method;
+        double percent;
+        boolean stoppedEarly;
+        String note;
+
+        Sample(List<String> columns, int maxRows, long deadline) {
+            this.columns = columns;
+            this.distributions = columns.stream().map(ColumnDistribution::new).collect(Collectors.toList());
+            this.maxRows = maxRows;
+            this.deadline = deadline;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= deadline;
+        }
+    }
+}
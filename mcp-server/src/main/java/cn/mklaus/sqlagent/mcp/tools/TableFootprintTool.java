@@ -0,0 +1,139 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.dialect.Dialect;
+import cn.mklaus.sqlagent.mcp.schema.TableFootprint;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * MCP Tool reporting data, index, TOAST and estimated bloat sizes of tables
+ *
+ * Sizes come from catalog statistics only, so the tool is cheap on any table size; the bloat
+ * figure is an estimate, not a pgstattuple scan.
+ */
+public class TableFootprintTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(TableFootprintTool.class);
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final DatabaseConfig config;
+
+    public TableFootprintTool(DatabaseConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Get data size, index size, average row length, TOAST size and estimated bloat of tables, "
+                + "to weigh I/O volume and not just row counts";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject tables = new JsonObject();
+        tables.addProperty("type", "array");
+        JsonObject items = new JsonObject();
+        items.addProperty("type", "string");
+        tables.add("items", items);
+        tables.addProperty("description", "Tables to report. If omitted, the largest tables are reported");
+        properties.add("tables", tables);
+
+        JsonObject limit = new JsonObject();
+        limit.addProperty("type", "integer");
+        limit.addProperty("description", "Maximum number of tables when no tables are given (default "
+                + DEFAULT_LIMIT + ")");
+        properties.add("limit", limit);
+
+        schema.add("properties", properties);
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        Set<String> requested = new HashSet<>();
+        if (arguments != null && arguments.has("tables")) {
+            for (JsonElement table : arguments.getAsJsonArray("tables")) {
+                requested.add(table.getAsString().toLowerCase(Locale.ROOT));
+            }
+        }
+        int limit = arguments != null && arguments.has("limit")
+                ? Math.max(1, arguments.get("limit").getAsInt())
+                : DEFAULT_LIMIT;
+
+        try (Connection conn = config.getDataSource().getConnection()) {
+            Dialect dialect = config.getDialect();
+            long dataBytes = 0;
+            long indexBytes = 0;
+            long toastBytes = 0;
+            long bloatBytes = 0;
+            int tableCount = 0;
+            JsonArray tableArray = new JsonArray();
+
+            try (PreparedStatement stmt = conn.prepareStatement(dialect.tableFootprintQuery());
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString(1);
+                    if (!requested.isEmpty() && !requested.contains(table.toLowerCase(Locale.ROOT))) {
+                        continue;
+                    }
+                    TableFootprint footprint = new TableFootprint(table, getLong(rs, 2), rs.getLong(3),
+                            rs.getLong(4), getLong(rs, 5), getLong(rs, 6), getLong(rs, 7));
+
+                    tableCount++;
+                    dataBytes += footprint.getDataBytes();
+                    indexBytes += footprint.getIndexBytes();
+                    toastBytes += footprint.getToastBytes();
+                    bloatBytes += footprint.getBloatBytes();
+                    // Rows arrive largest first
+                    if (!requested.isEmpty() || tableArray.size() < limit) {
+                        tableArray.add(footprint.toJson());
+                    }
+                }
+            }
+            logger.info("Read storage footprint of {} tables", tableCount);
+
+            JsonObject summary = new JsonObject();
+            summary.addProperty("tables", tableCount);
+            summary.addProperty("total", TableFootprint.humanReadable(dataBytes + indexBytes + toastBytes));
+            summary.addProperty("data_bytes", dataBytes);
+            summary.addProperty("index_bytes", indexBytes);
+            if (toastBytes > 0) {
+                summary.addProperty("toast_bytes", toastBytes);
+            }
+            summary.addProperty(dialect.isPostgres() ? "estimated_bloat_bytes" : "data_free_bytes", bloatBytes);
+
+            JsonObject result = new JsonObject();
+            result.add("summary", summary);
+            result.add("tables", tableArray);
+            if (!dialect.isPostgres()) {
+                result.addProperty("note", "Sizes come from cached table statistics "
+                        + "(information_schema_stats_expiry); run ANALYZE TABLE for current numbers");
+            }
+            return result;
+
+        } catch (SQLException e) {
+            logger.error("Database error while reading table footprint", e);
+            throw new Exception("Failed to get table footprint: " + e.getMessage());
+        }
+    }
+
+    private static Long getLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -0,0 +1,85 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running tool calls that a client may cancel with notifications/cancelled
+ *
+ * The server runs each tools/call through {@link #run}; tools executing user SQL register their
+ * statement with {@link #track}, so a cancellation stops the query on the database instead of
+ * letting it run into its query timeout.
+ */
+public class ToolCancellation {
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Call> running = new ConcurrentHashMap<>();
+
+    private static class Call {
+        private boolean cancelled;
+        private Statement statement;
+
+        synchronized void track(Statement statement) throws SQLException {
+            if (cancelled) {
+                throw new SQLException("Cancelled by the client");
+            }
+            this.statement = statement;
+        }
+
+        void cancel() {
+            Statement current;
+            synchronized (this) {
+                cancelled = true;
+                current = statement;
+            }
+            if (current != null) {
+                try {
+                    current.cancel();
+                } catch (SQLException e) {
+                    // Already closed or finished
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a tool call, cancellable under its request id until it returns
+     * @param scope Separates request ids of different clients, e.g. the HTTP session
+     */
+    public <T> T run(String scope, String requestId, Callable<T> body) throws Exception {
+        String key = scope + "/" + requestId;
+        Call call = new Call();
+        running.put(key, call);
+        CURRENT.set(call);
+        try {
+            return body.call();
+        } finally {
+            CURRENT.remove();
+            running.remove(key, call);
+        }
+    }
+
+    /**
+     * Cancel a running call; unknown or finished ids are ignored
+     */
+    public void cancel(String scope, String requestId) {
+        Call call = running.get(scope + "/" + requestId);
+        if (call != null) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * Register the statement the current tool call is about to execute
+     * @throws SQLException if the call was cancelled already
+     */
+    public static void track(Statement statement) throws SQLException {
+        Call call = CURRENT.get();
+        if (call != null) {
+            call.track(statement);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import cn.mklaus.sqlagent.mcp.stats.ResultDigest;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * MCP Tool for checking that an optimized SELECT returns the same rows as the original
+ *
+ * Both results are streamed with a small fetch size into an order-insensitive multiset
+ * digest ({@link ResultDigest}), so memory stays constant regardless of result size. Only
+ * when the digests differ is a second pass made, collecting the rows of the first differing
+ * digest bucket (bounded) to report a sample row present in one result but not the other.
+ *
+ * Values are compared after normalization: numbers by their numeric value (1 = 1.0),
+ * booleans as 1/0, binary as hex. Column names are not compared, only positions.
+ */
+public class VerifyEquivalenceTool implements McpTool {
+    private static final Logger logger = LoggerFactory.getLogger(VerifyEquivalenceTool.class);
+    private static final int FETCH_SIZE = 500;
+    private static final long DEFAULT_MAX_ROWS = 1_000_000;
+    private static final long MAX_MAX_ROWS = 10_000_000;
+    private static final int DEFAULT_TIMEOUT_MS = 60_000;
+    private static final int MAX_TIMEOUT_MS = 300_000;
+    private static final int MAX_BUCKET_ROWS = 2_000;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final DatabaseConfig config;
+
+    public VerifyEquivalenceTool(DatabaseConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Check that an optimized SELECT returns the same multiset of rows as the original "
+                + "(order-insensitive), with row counts and a sample differing row";
+    }
+
+    @Override
+    public JsonObject getInputSchema() {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+
+        JsonObject properties = new JsonObject();
+        JsonObject originalSql = new JsonObject();
+        originalSql.addProperty("type", "string");
+        originalSql.addProperty("description", "Original SELECT statement");
+        properties.add("original_sql", originalSql);
+
+        JsonObject optimizedSql = new JsonObject();
+        optimizedSql.addProperty("type", "string");
+        optimizedSql.addProperty("description", "Optimized SELECT statement");
+        properties.add("optimized_sql", optimizedSql);
+
+        JsonObject maxRows = new JsonObject();
+        maxRows.addProperty("type", "integer");
+        maxRows.addProperty("description", "Rows to compare per query before giving up as inconclusive (default "
+                + DEFAULT_MAX_ROWS + ", at most " + MAX_MAX_ROWS + ")");
+        properties.add("max_rows", maxRows);
+
+        JsonObject timeout = new JsonObject();
+        timeout.addProperty("type", "integer");
+        timeout.addProperty("description", "Time budget for the whole check in milliseconds (default "
+                + DEFAULT_TIMEOUT_MS + ", at most " + MAX_TIMEOUT_MS + ")");
+        properties.add("timeout_ms", timeout);
+
+        schema.add("properties", properties);
+
+        JsonArray required = new JsonArray();
+        required.add("original_sql");
+        required.add("optimized_sql");
+        schema.add("required", required);
+
+        return schema;
+    }
+
+    @Override
+    public JsonObject execute(JsonObject arguments) throws Exception {
+        String originalSql = arguments.get("original_sql").getAsString();
+        String optimizedSql = arguments.get("optimized_sql").getAsString();
+        long maxRows = arguments.has("max_rows")
+                ? Math.max(1, Math.min(MAX_MAX_ROWS, arguments.get("max_rows").getAsLong()))
+                : DEFAULT_MAX_ROWS;
+        int timeoutMs = arguments.has("timeout_ms")
+                ? Math.max(1000, Math.min(MAX_TIMEOUT_MS, arguments.get("timeout_ms").getAsInt()))
+                : DEFAULT_TIMEOUT_MS;
+
+        requireSelect(originalSql, "original_sql");
+        requireSelect(optimizedSql, "optimized_sql");
+
+        logger.info("Verifying equivalence of: {}", originalSql.substring(0, Math.min(50, originalSql.length())));
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+
+        try (Connection conn = config.getDataSource().getConnection()) {
+            conn.setReadOnly(true);
+            // Required for cursor-based fetching on PostgreSQL
+            conn.setAutoCommit(false);
+            try {
+                Side original = digest(conn, originalSql, maxRows, deadline);
+                Side optimized = digest(conn, optimizedSql, maxRows, deadline);
+
+                JsonObject result = new JsonObject();
+                result.add("original", original.toJson());
+                result.add("optimized", optimized.toJson());
+
+                String inconclusive = inconclusiveReason(original, optimized, maxRows);
+                if (inconclusive != null) {
+                    result.addProperty("status", "inconclusive");
+                    result.addProperty("equivalent", false);
+                    result.addProperty("reason", inconclusive);
+                    return result;
+                }
+
+                if (original.columns.size() != optimized.columns.size()) {
+                    result.addProperty("status", "different");
+                    result.addProperty("equivalent", false);
+                    result.addProperty("reason", "Column count differs: " + original.columns.size()
+                            + " vs " + optimized.columns.size());
+                    return result;
+                }
+
+                int bucket = original.digest.firstDifferingBucket(optimized.digest);
+                if (bucket < 0) {
+                    result.addProperty("status", "equivalent");
+                    result.addProperty("equivalent", true);
+                    result.addProperty("column_names_match", original.columns.equals(optimized.columns));
+                    return result;
+                }
+
+                result.addProperty("status", "different");
+                result.addProperty("equivalent", false);
+                result.addProperty("reason", original.digest.getRows() != optimized.digest.getRows()
+                        ? "Row count differs: " + original.digest.getRows() + " vs " + optimized.digest.getRows()
+                        : "Same row count but different rows");
+                result.add("first_difference", findDifference(conn, original, optimized, bucket, deadline));
+                return result;
+            } finally {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            logger.error("Database error while verifying equivalence", e);
+            throw new Exception("Failed to verify equivalence: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stream a query into a digest
+     */
+    private Side digest(Connection conn, String sql, long maxRows, long deadline) throws SQLException {
+        Side side = new Side(sql);
+        try (PreparedStatement stmt = prepareStreaming(conn, sql, maxRows, deadline);
+             ResultSet rs = stmt.executeQuery()) {
+            side.columns = columnLabels(rs.getMetaData());
+            while (rs.next()) {
+                if (side.digest.getRows() >= maxRows) {
+                    side.truncated = true;
+                    break;
+                }
+                if (side.digest.getRows() % FETCH_SIZE == 0 && System.nanoTime() > deadline) {
+                    side.timedOut = true;
+                    break;
+                }
+                side.digest.add(readRow(rs, side.columns.size()));
+            }
+        }
+        return side;
+    }
+
+    /**
+     * Second pass: collect the rows of one digest bucket from both sides and diff them
+     */
+    private JsonObject findDifference(Connection conn, Side original, Side optimized, int bucket, long deadline)
+            throws SQLException {
+        Map<List<String>, Integer> balance = new HashMap<>();
+        List<List<String>> originalOrder = new ArrayList<>();
+        boolean complete = collectBucket(conn, original.sql, bucket, deadline, row -> {
+            if (balance.merge(row, 1, Integer::sum) == 1) {
+                originalOrder.add(row);
+            }
+        });
+        List<List<String>> optimizedOrder = new ArrayList<>();
+        complete &= collectBucket(conn, optimized.sql, bucket, deadline, row -> {
+            if (balance.merge(row, -1, Integer::sum) == -1) {
+                optimizedOrder.add(row);
+            }
+        });
+
+        JsonObject difference = new JsonObject();
+        for (List<String> row : originalOrder) {
+            if (balance.getOrDefault(row, 0) > 0) {
+                difference.add("only_in_original", toJson(original.columns, row));
+                break;
+            }
+        }
+        for (List<String> row : optimizedOrder) {
+            if (balance.getOrDefault(row, 0) < 0) {
+                difference.add("only_in_optimized", toJson(optimized.columns, row));
+                break;
+            }
+        }
+        if (!complete) {
+            difference.addProperty("sample_incomplete", true);
+        }
+        return difference;
+    }
+
+    /**
+     * @return false if the bucket had more rows than are kept or the time ran out
+     */
+    private boolean collectBucket(Connection conn, String sql, int bucket, long deadline, Consumer<List<String>> consumer)
+            throws SQLException {
+        int kept = 0;
+        long scanned = 0;
+        try (PreparedStatement stmt = prepareStreaming(conn, sql, 0, deadline);
+             ResultSet rs = stmt.executeQuery()) {
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                if (++scanned % FETCH_SIZE == 0 && System.nanoTime() > deadline) {
+                    return false;
+                }
+                List<String> row = readRow(rs, columnCount);
+                if (ResultDigest.bucketOf(row) != bucket) {
+                    continue;
+                }
+                if (kept++ >= MAX_BUCKET_ROWS) {
+                    return false;
+                }
+                consumer.accept(row);
+            }
+        }
+        return true;
+    }
+
+    private PreparedStatement prepareStreaming(Connection conn, String sql, long maxRows, long deadline)
+            throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            if (stmt.getParameterMetaData().getParameterCount() > 0) {
+                throw new SQLException("Statement has bind parameters; substitute literal values to verify it");
+            }
+            ToolCancellation.track(stmt);
+            config.getDialect().enableStreaming(stmt, FETCH_SIZE);
+            if (maxRows > 0 && maxRows < Integer.MAX_VALUE) {
+                // One extra row tells a capped result from one that fits exactly
+                stmt.setMaxRows((int) maxRows + 1);
+            }
+            long remainingSeconds = (deadline - System.nanoTime()) / 1_000_000_000L;
+            stmt.setQueryTimeout((int) Math.max(1, remainingSeconds));
+            return stmt;
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+    private List<String> columnLabels(ResultSetMetaData metaData) throws SQLException {
+        List<String> labels = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            labels.add(metaData.getColumnLabel(i));
+        }
+        return labels;
+    }
+
+    private List<String> readRow(ResultSet rs, int columnCount) throws SQLException {
+        String[] row = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            row[i] = normalize(rs.getObject(i + 1));
+        }
+        return Arrays.asList(row);
+    }
+
+    /**
+     * Canonical text of a value, so that type differences between rewrites do not count
+     */
+    static String normalize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "1" : "0";
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return String.valueOf(d);
+            }
+            return canonical(BigDecimal.valueOf(d));
+        }
+        if (value instanceof BigDecimal) {
+            return canonical((BigDecimal) value);
+        }
+        if (value instanceof BigInteger) {
+            return value.toString();
+        }
+        if (value instanceof Number) {
+            return String.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            char[] hex = new char[bytes.length * 2];
+            for (int i = 0; i < bytes.length; i++) {
+                hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+            }
+            return "0x" + new String(hex);
+        }
+        return value.toString();
+    }
+
+    private static String canonical(BigDecimal value) {
+        return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private String inconclusiveReason(Side original, Side optimized, long maxRows) {
+        if (original.timedOut || optimized.timedOut) {
+            return "Time budget exhausted before both results were read";
+        }
+        if (original.truncated || optimized.truncated) {
+            return "Result has more than " + maxRows + " rows";
+        }
+        return null;
+    }
+
+    private JsonObject toJson(List<String> columns, List<String> row) {
+        JsonObject json = new JsonObject();
+        for (int i = 0; i < row.size(); i++) {
+            String column = i < columns.size() ? columns.get(i) : "column_" + (i + 1);
+            json.addProperty(column, row.get(i));
+        }
+        return json;
+    }
+
+    private void requireSelect(String sql, String argument) throws Exception {
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(sql);
+        } catch (Exception e) {
+            throw new Exception(argument + " could not be parsed: " + e.getMessage());
+        }
+        if (!(statement instanceof Select)) {
+            throw new Exception(argument + " must be a SELECT statement");
+        }
+    }
+
+    /**
+     * Digest of one query's result
+     */
+    private static class Side {
+        final String sql;
+        final ResultDigest digest = new ResultDigest();
+        List<String> columns = new ArrayList<>();
+        boolean truncated;
+        boolean timedOut;
+
+        Side(String sql) {
+            this.sql = sql;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("rows", digest.getRows());
+            json.addProperty("columns", columns.size());
+            json.addProperty("digest", digest.toHex());
+            if (truncated) {
+                json.addProperty("truncated", true);
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package cn.mklaus.sqlagent.mcp;
+
+import cn.mklaus.sqlagent.mcp.config.DatabaseConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the access checks of McpHttpTransport; no database is needed
+ */
+public class McpHttpTransportTest {
+    private static final String TOKEN = "0123456789abcdef";
+    private static final String INITIALIZE = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{}}";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private McpHttpTransport transport;
+    private Thread listener;
+
+    @Before
+    public void setUp() throws Exception {
+        DatabaseConfig config = new DatabaseConfig("mysql", "localhost", 3306, "shop", "app", "secret");
+        transport = new McpHttpTransport(new DatabaseMcpServer(config), 0, 2, 0, TOKEN);
+        listener = new Thread(() -> {
+            try {
+                transport.start();
+            } catch (Exception e) {
+                // Stopped
+            }
+        });
+        listener.setDaemon(true);
+        listener.start();
+        for (int i = 0; i < 100 && transport.getPort() == 0; i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.stop();
+        listener.join(2000);
+    }
+
+    @Test
+    public void testRequiresToken() throws Exception {
+        assertEquals(401, post(null, null).statusCode());
+        assertEquals(401, post("Bearer wrong", null).statusCode());
+
+        HttpResponse<String> response = post("Bearer " + TOKEN, null);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Mcp-Session-Id").isPresent());
+    }
+
+    @Test
+    public void testRejectsForeignAndNullOrigins() throws Exception {
+        assertEquals(403, post("Bearer " + TOKEN, "null").statusCode());
+        assertEquals(403, post("Bearer " + TOKEN, "http://evil.example").statusCode());
+        assertEquals(200, post("Bearer " + TOKEN, "http://localhost:4096").statusCode());
+    }
+
+    @Test
+    public void testHealthHidesFingerprintWithoutToken() throws Exception {
+        HttpRequest.Builder health = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + transport.getPort() + "/health"));
+
+        String anonymous = client.send(health.build(), HttpResponse.BodyHandlers.ofString()).body();
+        String authorized = client.send(health.header("Authorization", "Bearer " + TOKEN).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+
+        assertFalse(anonymous.contains("fingerprint"));
+        assertTrue(authorized.contains("fingerprint"));
+    }
+
+    @Test
+    public void testShutdownRequiresToken() throws Exception {
+        HttpRequest.Builder shutdown = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + transport.getPort() + "/shutdown"))
+                .POST(HttpRequest.BodyPublishers.noBody());
+
+        assertEquals(401, client.send(shutdown.build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertTrue(listener.isAlive());
+
+        HttpResponse<String> response = client.send(shutdown.header("Authorization", "Bearer " + TOKEN).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(204, response.statusCode());
+        listener.join(5000);
+        assertFalse(listener.isAlive());
+    }
+
+    private HttpResponse<String> post(String authorization, String origin) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + transport.getPort() + "/mcp"))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json, text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(INITIALIZE));
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        if (origin != null) {
+            request.header("Origin", origin);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
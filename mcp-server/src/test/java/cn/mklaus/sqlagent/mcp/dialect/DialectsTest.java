@@ -0,0 +1,53 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for dialect selection and version handling
+ */
+public class DialectsTest {
+
+    @Test
+    public void testJdbcUrlEnablesStatementCaching() {
+        String mysql = Dialects.jdbcUrl("tidb", "db", 4000, "app");
+        assertTrue(mysql.startsWith("jdbc:mysql://db:4000/app?"));
+        assertTrue(mysql.contains("useServerPrepStmts=true"));
+        assertTrue(mysql.contains("cachePrepStmts=true"));
+
+        String postgres = Dialects.jdbcUrl("aurora-postgresql", "db", 5432, "app");
+        assertTrue(postgres.startsWith("jdbc:postgresql://db:5432/app?"));
+        assertTrue(postgres.contains("prepareThreshold=1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedType() {
+        Dialects.jdbcUrl("oracle", "db", 1521, "app");
+    }
+
+    @Test
+    public void testVersionDependentExplain() {
+        assertNull(new MySqlDialect("mysql", "5.7.44-log").explainAnalyzeQuery("SELECT 1"));
+        assertNull(new MySqlDialect("mysql", "8.0.17").explainAnalyzeQuery("SELECT 1"));
+        assertEquals("EXPLAIN ANALYZE SELECT 1", new MySqlDialect("mysql", "8.0.18").explainAnalyzeQuery("SELECT 1"));
+        assertEquals("ANALYZE FORMAT=JSON SELECT 1",
+                new MariaDbDialect("10.11.6-MariaDB").explainAnalyzeQuery("SELECT 1"));
+        assertEquals("EXPLAIN SELECT 1", new MariaDbDialect("10.0.38-MariaDB").explainQuery("SELECT 1"));
+    }
+
+    @Test
+    public void testUnanalyzedPostgresTablesHaveNoRowEstimate() {
+        assertTrue(new PostgresDialect("postgresql", "13.12").tableStatsQuery()
+                .contains("WHEN c.reltuples <= 0 AND c.relpages > 0 THEN NULL"));
+        assertTrue(new PostgresDialect("postgresql", "16.2").tableStatsQuery()
+                .contains("WHEN c.reltuples < 0 THEN NULL"));
+    }
+
+    @Test
+    public void testParseVersion() {
+        assertArrayEquals(new int[]{8, 0, 35}, AbstractDialect.parseVersion("8.0.35-log"));
+        assertArrayEquals(new int[]{16, 2, 0}, AbstractDialect.parseVersion("16.2 (Debian 16.2-1)"));
+        assertArrayEquals(new int[]{0, 0, 0}, AbstractDialect.parseVersion(null));
+    }
+}
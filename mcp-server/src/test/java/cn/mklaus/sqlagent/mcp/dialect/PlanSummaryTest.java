@@ -0,0 +1,60 @@
+package cn.mklaus.sqlagent.mcp.dialect;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for PlanSummary
+ */
+public class PlanSummaryTest {
+
+    @Test
+    public void testMySqlJson() {
+        String plan = "{\"query_block\": {\"select_id\": 1, \"cost_info\": {\"query_cost\": \"1210.40\"},"
+                + " \"ordering_operation\": {\"using_filesort\": true, \"nested_loop\": ["
+                + "{\"table\": {\"table_name\": \"o\", \"access_type\": \"ALL\", \"rows_examined_per_scan\": 10000}},"
+                + "{\"table\": {\"table_name\": \"u\", \"access_type\": \"eq_ref\", \"rows_examined_per_scan\": 1}}"
+                + "]}}}";
+
+        PlanSummary summary = PlanSummary.parse(plan);
+
+        assertEquals(10001, summary.getRowsExamined());
+        assertEquals(Set.of("o"), summary.getFullScanTables());
+        assertTrue(summary.isSort());
+        assertFalse(summary.isTemporary());
+        assertEquals(1210.40, summary.getCost(), 0.001);
+    }
+
+    @Test
+    public void testPostgresJson() {
+        String plan = "[{\"Plan\": {\"Node Type\": \"Sort\", \"Total Cost\": 180.5, \"Plan Rows\": 50, \"Plans\": ["
+                + "{\"Node Type\": \"Seq Scan\", \"Relation Name\": \"users\", \"Plan Rows\": 5000},"
+                + "{\"Node Type\": \"Index Scan\", \"Relation Name\": \"orders\", \"Plan Rows\": 3}]}}]";
+
+        PlanSummary summary = PlanSummary.parse(plan);
+
+        assertEquals(5003, summary.getRowsExamined());
+        assertEquals(Set.of("users"), summary.getFullScanTables());
+        assertTrue(summary.isSort());
+        assertEquals(180.5, summary.getCost(), 0.001);
+        assertFalse(summary.toJson().get("temporary").getAsBoolean());
+    }
+
+    @Test
+    public void testTiDbTable() {
+        String plan = "id\testRows\ttask\taccess object\toperator info\n"
+                + "TopN_7\t10.00\troot\t\tshop.users.name, offset:0, count:10\n"
+                + "\u2514\u2500TableReader_15\t10.00\troot\t\tdata:TopN_14\n"
+                + "  \u2514\u2500TableFullScan_13\t8000.00\tcop[tikv]\ttable:users\tkeep order:false";
+
+        PlanSummary summary = PlanSummary.parse(plan);
+
+        assertEquals(8000, summary.getRowsExamined());
+        assertEquals(Set.of("users"), summary.getFullScanTables());
+        assertTrue(summary.isSort());
+        assertFalse(summary.toJson().has("cost"));
+    }
+}
@@ -0,0 +1,104 @@
+package cn.mklaus.sqlagent.mcp.output;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ResultEncoder
+ */
+public class ResultEncoderTest {
+
+    private final ResultEncoder encoder = new ResultEncoder();
+
+    private JsonObject tableMetadata(int columnCount) {
+        JsonObject result = new JsonObject();
+        result.addProperty("table_name", "orders");
+        JsonArray columns = new JsonArray();
+        for (int i = 0; i < columnCount; i++) {
+            JsonObject column = new JsonObject();
+            column.addProperty("name", "col_" + i);
+            column.addProperty("type", "varchar");
+            column.addProperty("nullable", "YES");
+            columns.add(column);
+        }
+        result.add("columns", columns);
+        result.addProperty("row_count", 1200L);
+        return result;
+    }
+
+    @Test
+    public void testDefaultIsUnchangedJson() {
+        JsonObject result = tableMetadata(3);
+        String encoded = encoder.encode(result, OutputOptions.DEFAULT);
+        assertEquals(result, JsonParser.parseString(encoded));
+    }
+
+    @Test
+    public void testCompactWritesHeaderOnce() {
+        String encoded = encoder.encode(tableMetadata(2), new OutputOptions(OutputOptions.FORMAT_COMPACT, 0));
+
+        assertTrue(encoded.contains("columns[2]{name,type,nullable}:\n  col_0,varchar,YES\n  col_1,varchar,YES\n"));
+        assertTrue(encoded.contains("table_name: orders\n"));
+        assertTrue(encoded.contains("row_count: 1200\n"));
+    }
+
+    @Test
+    public void testCompactExpandsEmbeddedJsonAndQuotesSeparators() {
+        JsonObject result = new JsonObject();
+        result.addProperty("sql", "SELECT a, b FROM t");
+        result.addProperty("execution_plan", "{\"query_block\":{\"cost\":\"1.20\"}}");
+
+        String encoded = encoder.encode(result, new OutputOptions(OutputOptions.FORMAT_COMPACT, 0));
+
+        assertTrue(encoded.contains("sql: \"SELECT a, b FROM t\"\n"));
+        assertTrue(encoded.contains("execution_plan:\n  query_block:\n    cost: 1.20\n"));
+    }
+
+    @Test
+    public void testBudgetTruncatesRowsAndReportsDrops() {
+        OutputOptions options = new OutputOptions(OutputOptions.FORMAT_JSON, 600);
+        String encoded = encoder.encode(tableMetadata(100), options);
+
+        assertTrue(encoded.getBytes(StandardCharsets.UTF_8).length <= 600);
+        JsonObject parsed = JsonParser.parseString(encoded).getAsJsonObject();
+        int kept = parsed.getAsJsonArray("columns").size();
+        assertTrue(kept > 0 && kept < 100);
+
+        JsonObject summary = parsed.getAsJsonObject(ResultEncoder.TRUNCATED_KEY);
+        assertEquals("columns: kept " + kept + " of 100", summary.getAsJsonArray("arrays").get(0).getAsString());
+        assertEquals(1200L, parsed.get("row_count").getAsLong());
+    }
+
+    @Test
+    public void testBudgetShortensLongStrings() {
+        JsonObject result = new JsonObject();
+        result.addProperty("definition", "x".repeat(5000));
+
+        String encoded = encoder.encode(result, new OutputOptions(OutputOptions.FORMAT_COMPACT, 400));
+
+        assertTrue(encoded.getBytes(StandardCharsets.UTF_8).length <= 400);
+        assertTrue(encoded.contains("(5000 chars)"));
+        assertTrue(encoded.contains("strings_shortened: 1"));
+    }
+
+    @Test
+    public void testExtractRemovesOutputArguments() {
+        JsonObject arguments = new JsonObject();
+        arguments.addProperty("table_name", "orders");
+        arguments.addProperty("output_format", "compact");
+        arguments.addProperty("max_bytes", 10000);
+        arguments.addProperty("max_tokens", 1000);
+
+        OutputOptions options = OutputOptions.extract(arguments);
+
+        assertTrue(options.isCompact());
+        assertEquals(4000, options.getMaxBytes());
+        assertEquals(1, arguments.size());
+    }
+}
@@ -0,0 +1,148 @@
+package cn.mklaus.sqlagent.mcp.rewrite;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for RewriteEngine and its rules
+ */
+public class RewriteEngineTest {
+
+    /**
+     * users(id pk, email unique, name, status; index on status), orders(id pk, user_id indexed, total, created_at)
+     */
+    private static final RewriteContext CONTEXT = new RewriteContext() {
+        private final Map<String, Set<String>> columns = Map.of(
+                "users", Set.of("id", "email", "name", "status"),
+                "orders", Set.of("id", "user_id", "total", "created_at"));
+        private final Map<String, Set<String>> indexed = Map.of(
+                "users", Set.of("id", "email", "status"),
+                "orders", Set.of("id", "user_id"));
+
+        @Override
+        public boolean hasColumn(String table, String column) {
+            return columns.getOrDefault(table, Set.of()).contains(column);
+        }
+
+        @Override
+        public boolean isIndexed(String table, List<String> columns) {
+            return columns.size() == 1 && indexed.getOrDefault(table, Set.of()).contains(columns.get(0));
+        }
+
+        @Override
+        public boolean isUnique(String table, List<String> columns) {
+            return columns.equals(List.of("id")) || table.equals("users") && columns.equals(List.of("email"));
+        }
+
+        @Override
+        public List<String> getPrimaryKey(String table) {
+            return columns.containsKey(table) ? List.of("id") : List.of();
+        }
+    };
+
+    private final RewriteEngine engine = new RewriteEngine();
+
+    private List<RewriteCandidate> rewrite(String sql, String rule) throws Exception {
+        return engine.rewrite(sql, CONTEXT).stream()
+                .filter(candidate -> candidate.getRule().equals(rule))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testOrOnIndexedColumnsToUnionAll() throws Exception {
+        List<RewriteCandidate> candidates = rewrite(
+                "SELECT id FROM users WHERE email = 'a@b.c' OR status = 'new'", "or_to_union_all");
+
+        assertEquals(1, candidates.size());
+        assertEquals("SELECT id FROM users WHERE email = 'a@b.c' UNION ALL "
+                + "SELECT id FROM users WHERE status = 'new' AND (email = 'a@b.c') IS NOT TRUE",
+                candidates.get(0).getSql());
+
+        assertTrue(rewrite("SELECT id FROM users WHERE email = 'a' OR name = 'b'", "or_to_union_all").isEmpty());
+    }
+
+    @Test
+    public void testInSubqueryToExistsAndJoin() throws Exception {
+        List<RewriteCandidate> candidates = rewrite(
+                "SELECT id, total FROM orders WHERE user_id IN (SELECT id FROM users WHERE status = 'vip')",
+                "in_subquery");
+
+        assertEquals(2, candidates.size());
+        assertEquals("SELECT id, total FROM orders WHERE EXISTS "
+                + "(SELECT 1 FROM users WHERE status = 'vip' AND id = orders.user_id)", candidates.get(0).getSql());
+        assertEquals("SELECT orders.id, orders.total FROM orders INNER JOIN users "
+                + "ON users.id = orders.user_id AND users.status = 'vip'", candidates.get(1).getSql());
+
+        assertTrue(rewrite("SELECT id FROM orders WHERE user_id NOT IN (SELECT id FROM users)", "in_subquery")
+                .isEmpty());
+    }
+
+    @Test
+    public void testCorrelatedScalarSubqueryToLeftJoin() throws Exception {
+        List<RewriteCandidate> candidates = rewrite(
+                "SELECT o.id, (SELECT u.name FROM users u WHERE u.id = o.user_id) AS user_name FROM orders o",
+                "scalar_subquery_to_join");
+
+        assertEquals(1, candidates.size());
+        assertEquals("SELECT o.id, sq1.name AS user_name FROM orders o LEFT JOIN users AS sq1 ON sq1.id = o.user_id",
+                candidates.get(0).getSql());
+
+        // The outer query uses sq1 already
+        candidates = rewrite("SELECT sq1.id, (SELECT u.name FROM users u WHERE u.id = sq1.user_id) FROM orders sq1",
+                "scalar_subquery_to_join");
+        assertEquals(1, candidates.size());
+        assertEquals("SELECT sq1.id, sq2.name FROM orders sq1 LEFT JOIN users AS sq2 ON sq2.id = sq1.user_id",
+                candidates.get(0).getSql());
+
+        // status is not unique: the subquery could return several rows
+        assertTrue(rewrite("SELECT o.id, (SELECT u.name FROM users u WHERE u.status = o.total) FROM orders o",
+                "scalar_subquery_to_join").isEmpty());
+    }
+
+    @Test
+    public void testDeepOffset() throws Exception {
+        List<RewriteCandidate> candidates = rewrite(
+                "SELECT * FROM orders WHERE user_id = 7 ORDER BY id LIMIT 20 OFFSET 100000", "deep_offset");
+
+        assertEquals(2, candidates.size());
+        assertEquals("SELECT orders.* FROM orders INNER JOIN (SELECT id FROM orders WHERE user_id = 7 "
+                + "ORDER BY id LIMIT 20 OFFSET 100000) AS page ON orders.id = page.id ORDER BY orders.id",
+                candidates.get(0).getSql());
+        assertTrue(candidates.get(0).isEquivalent());
+        assertEquals("SELECT * FROM orders WHERE user_id = 7 AND id > :last_id ORDER BY id LIMIT 20",
+                candidates.get(1).getSql());
+        assertFalse(candidates.get(1).isEquivalent());
+
+        assertTrue(rewrite("SELECT * FROM orders ORDER BY id LIMIT 20 OFFSET 40", "deep_offset").isEmpty());
+    }
+
+    @Test
+    public void testCountComparedWithZeroToExists() throws Exception {
+        List<RewriteCandidate> candidates = rewrite(
+                "SELECT id FROM users u WHERE (SELECT COUNT(*) FROM orders o WHERE o.user_id = u.id) = 0",
+                "count_to_exists");
+
+        assertEquals(1, candidates.size());
+        assertEquals("SELECT id FROM users u WHERE NOT EXISTS (SELECT 1 FROM orders o WHERE o.user_id = u.id)",
+                candidates.get(0).getSql());
+
+        List<RewriteCandidate> topLevel = rewrite("SELECT COUNT(*) FROM orders WHERE user_id = 7", "count_to_exists");
+        assertEquals(1, topLevel.size());
+        assertEquals("SELECT 1 FROM orders WHERE user_id = 7 LIMIT 1", topLevel.get(0).getSql());
+        assertFalse(topLevel.get(0).isEquivalent());
+    }
+
+    @Test
+    public void testRulesNeedingMetadataDoNotFireWithoutIt() throws Exception {
+        List<RewriteCandidate> candidates = engine.rewrite(
+                "SELECT id FROM users WHERE email = 'a' OR status = 'b'", RewriteContext.NONE);
+
+        assertTrue(candidates.isEmpty());
+    }
+}
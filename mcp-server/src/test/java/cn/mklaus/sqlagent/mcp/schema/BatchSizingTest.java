@@ -0,0 +1,55 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for BatchSizing
+ */
+public class BatchSizingTest {
+
+    @Test
+    public void testChunkLimitedByStatementSize() {
+        BatchSizing sizing = new BatchSizing("users", 64L * 1024);
+        sizing.addColumn("id", "bigint", null, null);
+        sizing.addColumn("name", "varchar", 1020L, null);
+        sizing.addColumn("created_at", "datetime", null, null);
+
+        // (20 + 1) + (256 + 3 + 1) + (34 + 1) plus the tuple parentheses
+        assertEquals(318, sizing.getBytesPerRow());
+        assertEquals(102, sizing.getRecommendedChunkRows());
+        assertEquals("statement size", sizing.getLimitingFactor());
+        assertEquals(List.of("name"), sizing.getAssumedColumns());
+
+        JsonObject json = sizing.toJson(5000);
+        assertFalse(json.get("single_statement_fits").getAsBoolean());
+        assertEquals(50, json.get("statements_needed").getAsLong());
+    }
+
+    @Test
+    public void testChunkLimitedByBindParameters() {
+        BatchSizing sizing = new BatchSizing("wide", null);
+        for (int i = 0; i < 100; i++) {
+            sizing.addColumn("c" + i, "integer", null, null);
+        }
+
+        assertEquals(655, sizing.getRecommendedChunkRows());
+        assertEquals("bind parameters", sizing.getLimitingFactor());
+    }
+
+    @Test
+    public void testStatisticsWidthAndRowCap() {
+        BatchSizing sizing = new BatchSizing("notes", null);
+        sizing.addColumn("id", "uuid", null, null);
+        sizing.addColumn("body", "text", null, 40.0);
+
+        assertEquals(2 + 39 + 44, sizing.getBytesPerRow());
+        assertTrue(sizing.getAssumedColumns().isEmpty());
+        assertEquals(BatchSizing.MAX_CHUNK_ROWS, sizing.getRecommendedChunkRows());
+        assertEquals("row cap", sizing.getLimitingFactor());
+    }
+}
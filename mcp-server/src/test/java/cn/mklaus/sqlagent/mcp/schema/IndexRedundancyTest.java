@@ -0,0 +1,72 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IndexRedundancy
+ */
+public class IndexRedundancyTest {
+
+    @Test
+    public void testLeftPrefixIsRedundant() {
+        IndexInfo byUser = index("idx_user", false, "user_id");
+        IndexInfo byUserAndDate = index("idx_user_date", false, "user_id", "created_at");
+        IndexInfo byDate = index("idx_date", false, "created_at");
+
+        IndexRedundancy.analyze(List.of(byUser, byUserAndDate, byDate), false);
+
+        assertEquals(List.of("redundant: left prefix of idx_user_date"), byUser.getIssues());
+        assertTrue(byUserAndDate.getIssues().isEmpty());
+        assertTrue(byDate.getIssues().isEmpty());
+    }
+
+    @Test
+    public void testDuplicateKeepsUniqueIndex() {
+        IndexInfo plain = index("idx_email", false, "email");
+        IndexInfo unique = index("uk_email", true, "email");
+
+        IndexRedundancy.analyze(List.of(plain, unique), false);
+
+        assertEquals(List.of("duplicate of uk_email"), plain.getIssues());
+        assertTrue(unique.getIssues().isEmpty());
+    }
+
+    @Test
+    public void testUnusedIgnoresConstraintsAndNonBtree() {
+        IndexInfo unused = index("idx_status", false, "status");
+        unused.setReads(0);
+        IndexInfo unique = index("uk_code", true, "code");
+        unique.setReads(0);
+        IndexInfo fullText = new IndexInfo("ft_status", Arrays.asList("status"), false, false, "FULLTEXT", false);
+        fullText.setReads(5);
+
+        IndexRedundancy.analyze(List.of(unused, unique, fullText), true);
+
+        assertEquals(List.of("unused"), unused.getIssues());
+        assertTrue(unique.getIssues().isEmpty());
+        assertTrue(fullText.getIssues().isEmpty());
+    }
+
+    @Test
+    public void testReportsEveryIssueWithItsKind() {
+        IndexInfo byUser = index("idx_user", false, "user_id");
+        byUser.setReads(0);
+        IndexInfo byUserAndDate = index("idx_user_date", false, "user_id", "created_at");
+        byUserAndDate.setReads(3);
+
+        IndexRedundancy.analyze(List.of(byUser, byUserAndDate), true);
+
+        assertEquals(List.of(IndexInfo.IssueKind.UNUSED, IndexInfo.IssueKind.REDUNDANT), byUser.getIssueKinds());
+        assertEquals(2, byUser.getIssues().size());
+        assertTrue(byUserAndDate.getIssueKinds().isEmpty());
+    }
+
+    private static IndexInfo index(String name, boolean unique, String... columns) {
+        return new IndexInfo(name, Arrays.asList(columns), unique, false, "btree", false);
+    }
+}
@@ -0,0 +1,86 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for RelationshipGraph
+ */
+public class RelationshipGraphTest {
+
+    private TableInfo users;
+    private TableInfo orders;
+    private TableInfo orderItems;
+    private TableInfo categories;
+
+    @Before
+    public void setUp() {
+        users = table("users", 1_000, "id", "bigint");
+        users.addColumn("email", "varchar");
+
+        orders = table("orders", 10_000, "id", "bigint");
+        orders.addColumn("user_id", "bigint");
+        orders.addIndex(List.of("user_id"), false, false);
+
+        orderItems = table("order_items", 50_000, "id", "bigint");
+        orderItems.addColumn("order_id", "bigint");
+        orderItems.addColumn("category_id", "int");
+
+        categories = table("t_category", 20, "id", "int");
+    }
+
+    private TableInfo table(String name, long rows, String pk, String pkType) {
+        TableInfo table = new TableInfo(name);
+        table.addColumn(pk, pkType);
+        table.addIndex(List.of(pk), true, true);
+        table.setRowEstimate(rows);
+        return table;
+    }
+
+    private RelationshipGraph graph() {
+        Relationship orderItemsToOrders = new Relationship("order_items", List.of("order_id"), "orders",
+                List.of("id"), Relationship.Source.FOREIGN_KEY, "fk_items_order", "certain");
+        return new RelationshipGraph("fp", List.of(users, orders, orderItems, categories), List.of(orderItemsToOrders));
+    }
+
+    @Test
+    public void testInfersRelationshipsFromNaming() {
+        RelationshipGraph graph = graph();
+
+        Relationship ordersToUsers = graph.getRelationships("orders").stream()
+                .filter(r -> r.getToTable().equals("users"))
+                .findFirst().orElseThrow();
+        assertEquals(Relationship.Source.INFERRED, ordersToUsers.getSource());
+        assertEquals("high", ordersToUsers.getConfidence()); // user_id is indexed
+
+        Relationship itemsToCategory = graph.getRelationships("order_items").stream()
+                .filter(r -> r.getToTable().equals("t_category"))
+                .findFirst().orElseThrow();
+        assertEquals("medium", itemsToCategory.getConfidence());
+
+        // The declared foreign key is not duplicated by an inferred edge
+        assertEquals(3, graph.getRelationships().size());
+    }
+
+    @Test
+    public void testJoinPathWithFanOut() {
+        List<RelationshipGraph.JoinStep> path = graph().findJoinPath("USERS", "order_items", 4);
+
+        assertNotNull(path);
+        assertEquals(2, path.size());
+        assertEquals("orders.user_id = users.id", path.get(0).getRelationship().getJoinCondition());
+        assertEquals("one-to-many", path.get(0).getCardinality());
+        assertEquals(10.0, path.get(0).getFanOut(), 0.001);
+        assertEquals(5.0, path.get(1).getFanOut(), 0.001);
+    }
+
+    @Test
+    public void testUnconnectedWithinMaxHops() {
+        assertNull(graph().findJoinPath("users", "t_category", 2));
+        assertNotNull(graph().findJoinPath("users", "t_category", 3));
+    }
+}
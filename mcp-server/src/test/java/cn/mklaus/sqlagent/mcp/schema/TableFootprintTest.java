@@ -0,0 +1,40 @@
+package cn.mklaus.sqlagent.mcp.schema;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TableFootprint
+ */
+public class TableFootprintTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void testFlagsBloatAndOversizedIndexes() {
+        TableFootprint footprint = new TableFootprint("orders", 1_000_000L, 100 * MB, 200 * MB, 0L, 120L, 50 * MB);
+
+        List<String> issues = footprint.getIssues();
+        assertEquals(2, issues.size());
+        assertTrue(issues.get(0).startsWith("bloat: ~50%"));
+        assertTrue(issues.get(1).startsWith("indexes are 2.0x"));
+        assertEquals(300 * MB, footprint.getTotalBytes());
+    }
+
+    @Test
+    public void testSmallTablesAreNotFlagged() {
+        TableFootprint footprint = new TableFootprint("settings", 10L, MB, 3 * MB, null, null, MB);
+
+        assertTrue(footprint.getIssues().isEmpty());
+        assertFalse(footprint.toJson().has("toast_bytes"));
+    }
+
+    @Test
+    public void testHumanReadable() {
+        assertEquals("512 B", TableFootprint.humanReadable(512));
+        assertEquals("1.5 KiB", TableFootprint.humanReadable(1536));
+        assertEquals("300.0 MiB", TableFootprint.humanReadable(300 * MB));
+    }
+}
@@ -0,0 +1,51 @@
+package cn.mklaus.sqlagent.mcp.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for BlockingGraph
+ */
+public class BlockingGraphTest {
+
+    @Test
+    public void testRootBlockerOfChain() {
+        BlockingGraph graph = new BlockingGraph();
+        graph.addWait("2", "1");
+        graph.addWait("3", "2");
+        graph.addWait("4", "1");
+
+        assertEquals(List.of("1"), graph.getRootBlockers());
+        assertEquals(Set.of("2", "3", "4"), graph.getBlockedSessions("1"));
+        assertEquals(Arrays.asList("1", "2", "3"), graph.getLongestChain("1"));
+        assertTrue(graph.getDeadlockedSessions().isEmpty());
+    }
+
+    @Test
+    public void testRootsOrderedByBlockedSessions() {
+        BlockingGraph graph = new BlockingGraph();
+        graph.addWait("11", "10");
+        graph.addWait("21", "20");
+        graph.addWait("22", "20");
+
+        assertEquals(Arrays.asList("20", "10"), graph.getRootBlockers());
+        assertEquals(3, graph.getWaitingCount());
+    }
+
+    @Test
+    public void testCycleHasNoRoot() {
+        BlockingGraph graph = new BlockingGraph();
+        graph.addWait("1", "2");
+        graph.addWait("2", "1");
+        graph.addWait("3", "1");
+
+        assertTrue(graph.getRootBlockers().isEmpty());
+        assertEquals(Set.of("1", "2", "3"), graph.getDeadlockedSessions());
+        assertEquals(Set.of("2", "3"), graph.getBlockedSessions("1"));
+    }
+}
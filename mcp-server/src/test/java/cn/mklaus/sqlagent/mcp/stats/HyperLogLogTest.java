@@ -0,0 +1,50 @@
+package cn.mklaus.sqlagent.mcp.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for HyperLogLog
+ */
+public class HyperLogLogTest {
+
+    @Test
+    public void testSmallCardinalityIsNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("value-" + (i % 37));
+        }
+        assertEquals(37, sketch.estimate(), 1);
+    }
+
+    @Test
+    public void testLargeCardinalityWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog();
+        int distinct = 200_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.add(Integer.toString(i));
+        }
+        double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+        assertTrue("Relative error too large: " + error, error < 0.05);
+    }
+
+    @Test
+    public void testMerge() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 5000; i++) {
+            a.add("a" + i);
+            b.add("b" + i);
+            b.add("a" + i);
+        }
+        a.merge(b);
+        double error = Math.abs(a.estimate() - 10_000) / 10_000.0;
+        assertTrue("Relative error too large: " + error, error < 0.05);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeRejectsDifferentPrecision() {
+        new HyperLogLog(10).merge(new HyperLogLog(12));
+    }
+}
@@ -0,0 +1,51 @@
+package cn.mklaus.sqlagent.mcp.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ResultDigest
+ */
+public class ResultDigestTest {
+
+    @Test
+    public void testRowOrderDoesNotMatter() {
+        ResultDigest first = digest(row("1", "a"), row("2", "b"), row("3", null));
+        ResultDigest second = digest(row("3", null), row("1", "a"), row("2", "b"));
+
+        assertEquals(-1, first.firstDifferingBucket(second));
+        assertEquals(first.toHex(), second.toHex());
+    }
+
+    @Test
+    public void testDuplicatesCount() {
+        ResultDigest once = digest(row("1", "a"), row("2", "b"));
+        ResultDigest twice = digest(row("1", "a"), row("1", "a"), row("2", "b"));
+
+        assertNotEquals(-1, once.firstDifferingBucket(twice));
+        assertEquals(ResultDigest.bucketOf(row("1", "a")), once.firstDifferingBucket(twice));
+    }
+
+    @Test
+    public void testValueBoundariesAndNulls() {
+        assertNotEquals(digest(row("ab", "c")).toHex(), digest(row("a", "bc")).toHex());
+        assertNotEquals(digest(row((String) null)).toHex(), digest(row("")).toHex());
+    }
+
+    @SafeVarargs
+    private static ResultDigest digest(List<String>... rows) {
+        ResultDigest digest = new ResultDigest();
+        for (List<String> row : rows) {
+            digest.add(row);
+        }
+        return digest;
+    }
+
+    private static List<String> row(String... values) {
+        return Arrays.asList(values);
+    }
+}
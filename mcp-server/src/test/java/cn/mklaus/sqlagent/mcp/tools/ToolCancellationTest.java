@@ -0,0 +1,49 @@
+package cn.mklaus.sqlagent.mcp.tools;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ToolCancellation
+ */
+public class ToolCancellationTest {
+
+    @Test
+    public void testCancelStopsTrackedStatementAndLaterQueries() throws Exception {
+        ToolCancellation cancellation = new ToolCancellation();
+        AtomicInteger cancels = new AtomicInteger();
+        Statement statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    if ("cancel".equals(method.getName())) {
+                        cancels.incrementAndGet();
+                    }
+                    return null;
+                });
+
+        String result = cancellation.run("session-a", "7", () -> {
+            ToolCancellation.track(statement);
+            cancellation.cancel("session-b", "7"); // Same id from another client
+            assertEquals(0, cancels.get());
+            cancellation.cancel("session-a", "7");
+            assertEquals(1, cancels.get());
+            try {
+                ToolCancellation.track(statement);
+                fail("Tracking after a cancel must fail");
+            } catch (SQLException e) {
+                // Expected
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        cancellation.cancel("session-a", "7"); // Finished calls are ignored
+        assertEquals(1, cancels.get());
+        ToolCancellation.track(statement); // Outside of a call
+    }
+}
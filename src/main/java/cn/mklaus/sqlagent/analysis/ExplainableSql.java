@@ -0,0 +1,66 @@
+package cn.mklaus.sqlagent.analysis;
+
+import java.util.regex.Pattern;
+
+/**
+ * Makes the SQL of a mapper statement acceptable to EXPLAIN
+ *
+ * Dynamic SQL with every branch included leaves connectors such as "WHERE AND" and trailing
+ * commas; those are removed. Parameters get sample values, since EXPLAIN cannot run with
+ * unbound placeholders: LIMIT and OFFSET get numbers, everything else '1', which both MySQL
+ * and PostgreSQL convert to the column's type.
+ */
+public final class ExplainableSql {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SPACE_BEFORE_COMMA = Pattern.compile(" ,");
+    private static final Pattern LEADING_CONNECTOR = Pattern.compile("\\b(where|having|on)\\s+(and|or)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern EMPTY_WHERE = Pattern.compile(
+            "\\bwhere\\s*(?=$|\\)|\\b(order|group|limit|having|union|for)\\b)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LEADING_COMMA = Pattern.compile("\\b(set|values\\s*\\()\\s*,", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TRAILING_COMMA = Pattern.compile(",\\s*(?=$|\\)|\\bwhere\\b)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIMIT_PARAMETERS = Pattern.compile("\\blimit\\s+\\?\\s*,\\s*\\?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIMIT_PARAMETER = Pattern.compile("\\blimit\\s+\\?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern OFFSET_PARAMETER = Pattern.compile("\\boffset\\s+\\?", Pattern.CASE_INSENSITIVE);
+
+    private ExplainableSql() {
+    }
+
+    /**
+     * @param sql Statement with ? for parameters, e.g. from MapperSqlText.mask
+     */
+    public static String of(String sql) {
+        String text = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+        text = LEADING_CONNECTOR.matcher(text).replaceAll("$1");
+        text = EMPTY_WHERE.matcher(text).replaceAll("");
+        text = LEADING_COMMA.matcher(text).replaceAll("$1");
+        text = TRAILING_COMMA.matcher(text).replaceAll(" ");
+        text = LIMIT_PARAMETERS.matcher(text).replaceAll("LIMIT 0, 10");
+        text = LIMIT_PARAMETER.matcher(text).replaceAll("LIMIT 10");
+        text = OFFSET_PARAMETER.matcher(text).replaceAll("OFFSET 0");
+        text = WHITESPACE.matcher(text).replaceAll(" ").trim();
+        return bindSampleValues(SPACE_BEFORE_COMMA.matcher(text).replaceAll(","));
+    }
+
+    /**
+     * Replace the ? outside quotes with '1'
+     */
+    private static String bindSampleValues(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                quote = c == quote ? 0 : quote;
+                out.append(c);
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+                out.append(c);
+            } else if (c == '?') {
+                out.append("'1'");
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,210 @@
+package cn.mklaus.sqlagent.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Heuristic cost estimate of a mapper statement, without the database or the model
+ *
+ * Works on the text of the statement so that dynamic SQL that does not parse (e.g. a
+ * {@code <where>} body starting with AND) is still scored. The score only ranks statements
+ * against each other; it is not a plan cost. Findings carry their offsets in the analyzed
+ * text, so editors can mark the exact tokens.
+ */
+public class LocalSqlAnalyzer {
+
+    private static final Pattern WHERE = Pattern.compile("\\bwhere\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIMIT = Pattern.compile("\\b(limit|fetch\\s+first|top)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ORDER_BY_RAND = Pattern.compile("\\border\\s+by\\s+rand(om)?\\s*\\(\\s*\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SELECT_STAR = Pattern.compile("\\bselect\\s+(distinct\\s+)?(\\w+\\.)?\\*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LEADING_WILDCARD = Pattern.compile("\\blike\\s+(concat\\s*\\(\\s*)?'%", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FUNCTION_ON_COLUMN = Pattern.compile(
+            "\\b(?:where|and|or)\\s+((date|year|month|lower|upper|substr|substring|trim|ifnull|coalesce|cast|date_format)\\s*\\()",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern OFFSET = Pattern.compile("\\blimit\\s+[?\\d]+\\s*,|\\boffset\\s+[?\\d]+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JOIN = Pattern.compile("\\bjoin\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SUBQUERY = Pattern.compile("\\(\\s*select\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NOT_IN_SUBQUERY = Pattern.compile("\\bnot\\s+in\\s*\\(\\s*select\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern UNION = Pattern.compile("\\bunion\\b(?!\\s+all)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern OR = Pattern.compile("\\bor\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/|--[^\\n]*", Pattern.DOTALL);
+
+    /**
+     * One anti-pattern, its share of the cost and where it is
+     */
+    public static class Finding {
+        private final String message;
+        private final int cost;
+        private final int start;
+        private final int end;
+        private final boolean statistic;
+
+        Finding(String message, int cost, int start, int end) {
+            this(message, cost, start, end, false);
+        }
+
+        Finding(String message, int cost, int start, int end, boolean statistic) {
+            this.message = message;
+            this.cost = cost;
+            this.start = start;
+            this.end = end;
+            this.statistic = statistic;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        /**
+         * Offset in the analyzed text, or -1 for findings about the statement as a whole
+         */
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public boolean hasRange() {
+            return start >= 0;
+        }
+
+        /**
+         * Whether the finding only adds to the score, like the number of joins, rather than
+         * naming an anti-pattern worth marking in the editor
+         */
+        public boolean isStatistic() {
+            return statistic;
+        }
+    }
+
+    /**
+     * Estimated cost and the findings that make it up
+     */
+    public static class Analysis {
+        private final List<Finding> findings;
+
+        Analysis(List<Finding> findings) {
+            this.findings = findings;
+        }
+
+        public int getCost() {
+            return findings.stream().mapToInt(Finding::getCost).sum();
+        }
+
+        public List<Finding> getFindings() {
+            return findings;
+        }
+
+        /**
+         * Distinct finding messages, most expensive first
+         */
+        public List<String> getMessages() {
+            return findings.stream()
+                    .sorted((a, b) -> Integer.compare(b.getCost(), a.getCost()))
+                    .map(Finding::getMessage)
+                    .distinct()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param sqlType SELECT, INSERT, UPDATE or DELETE
+     * @param sql Statement text, parameters replaced by ?; comments are ignored
+     */
+    public Analysis analyze(String sqlType, String sql) {
+        return analyze(sqlType, sql, "");
+    }
+
+    /**
+     * @param sqlType SELECT, INSERT, UPDATE or DELETE
+     * @param sql Statement text, parameters replaced by ?; comments are ignored
+     * @param included Text of the fragments the statement includes, only searched for WHERE and
+     *                 LIMIT; null if some could not be resolved, which skips those checks
+     */
+    public Analysis analyze(String sqlType, String sql, String included) {
+        List<Finding> findings = new ArrayList<>();
+        if (sql == null || sql.isBlank()) {
+            return new Analysis(findings);
+        }
+        String text = blankComments(sql);
+
+        Matcher where = WHERE.matcher(text);
+        boolean hasWhere = where.find();
+        if (included != null) {
+            String whole = included.isEmpty() ? text : text + "\n" + blankComments(included);
+            boolean wholeHasWhere = hasWhere || WHERE.matcher(whole).find();
+            if (!wholeHasWhere && ("UPDATE".equals(sqlType) || "DELETE".equals(sqlType))) {
+                findings.add(new Finding(sqlType + " without WHERE affects every row", 50, -1, -1));
+            } else if (!wholeHasWhere && "SELECT".equals(sqlType) && !LIMIT.matcher(whole).find()) {
+                findings.add(new Finding("SELECT without WHERE or LIMIT reads the whole table", 30, -1, -1));
+            }
+        }
+
+        addMatches(findings, ORDER_BY_RAND, 0, text, "ORDER BY RAND() sorts every row", 40);
+        addMatches(findings, LEADING_WILDCARD, 0, text, "LIKE with a leading wildcard cannot use an index", 25);
+        addMatches(findings, NOT_IN_SUBQUERY, 0, text,
+                "NOT IN subquery; NOT EXISTS avoids the NULL trap and is often faster", 20);
+        addMatches(findings, FUNCTION_ON_COLUMN, 1, text, "Function applied to a column in WHERE prevents index use", 15);
+        addMatches(findings, OFFSET, 0, text, "OFFSET pagination reads and discards the skipped rows", 15);
+        if (hasWhere) {
+            Matcher or = OR.matcher(text);
+            if (or.find(where.end())) {
+                findings.add(new Finding("OR in WHERE may prevent index use", 10, or.start(), or.end()));
+            }
+        }
+        addMatches(findings, UNION, 0, text, "UNION removes duplicates with a sort; UNION ALL does not", 10);
+        addMatches(findings, SELECT_STAR, 0, text, "SELECT * reads every column and prevents covering indexes", 10);
+        addMatches(findings, SUBQUERY, 0, text, "Subquery; make sure it is not evaluated once per row", 10);
+
+        int joins = count(JOIN, text);
+        if (joins > 0) {
+            findings.add(new Finding(joins + (joins == 1 ? " join" : " joins"), 5 * joins, -1, -1, true));
+        }
+        return new Analysis(findings);
+    }
+
+    /**
+     * A finding for every match of the pattern, marking the given group
+     */
+    private static void addMatches(List<Finding> findings, Pattern pattern, int group, String text,
+                                   String message, int cost) {
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            findings.add(new Finding(message, cost, matcher.start(group), matcher.end(group)));
+        }
+    }
+
+    private static int count(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Replace comments with spaces, keeping the offsets of everything else
+     */
+    private static String blankComments(String sql) {
+        StringBuilder text = new StringBuilder(sql);
+        Matcher matcher = COMMENT.matcher(sql);
+        while (matcher.find()) {
+            for (int i = matcher.start(); i < matcher.end(); i++) {
+                if (text.charAt(i) != '\n') {
+                    text.setCharAt(i, ' ');
+                }
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package cn.mklaus.sqlagent.analysis;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the raw XML body of a mapper statement into analyzable SQL of the same length
+ *
+ * Every character of the result is at the offset of the character it came from, so findings
+ * of LocalSqlAnalyzer map straight back to the editor. Markup becomes spaces, except for
+ * {@code <where>}, {@code <set>} and the prefix of {@code <trim>}, which add SQL keywords;
+ * parameters become ? and entities the character they stand for.
+ */
+public class MapperSqlText {
+    private static final Pattern TAG_NAME = Pattern.compile("</?\\s*([\\w.-]+)");
+    private static final Pattern PREFIX = Pattern.compile("\\bprefix\\s*=\\s*([\"'])(.*?)\\1");
+    private static final Map<String, Character> ENTITIES = Map.of(
+            "&lt;", '<', "&gt;", '>', "&amp;", '&', "&quot;", '"', "&apos;", '\'');
+
+    private MapperSqlText() {
+    }
+
+    /**
+     * @param xml Text between the start and end tag of the statement
+     * @return SQL of the same length as xml
+     */
+    public static String mask(String xml) {
+        StringBuilder sql = new StringBuilder(xml.length());
+        int i = 0;
+        while (i < xml.length()) {
+            if (xml.startsWith("<![CDATA[", i)) {
+                int end = xml.indexOf("]]>", i);
+                end = end < 0 ? xml.length() : end;
+                blank(sql, xml, i, i + 9);
+                maskText(sql, xml.substring(i + 9, end), false);
+                blank(sql, xml, end, Math.min(end + 3, xml.length()));
+                i = Math.min(end + 3, xml.length());
+            } else if (xml.startsWith("<!--", i)) {
+                int end = xml.indexOf("-->", i);
+                end = end < 0 ? xml.length() : end + 3;
+                blank(sql, xml, i, end);
+                i = end;
+            } else if (xml.charAt(i) == '<') {
+                int end = xml.indexOf('>', i);
+                end = end < 0 ? xml.length() : end + 1;
+                maskTag(sql, xml.substring(i, end));
+                i = end;
+            } else {
+                int end = xml.indexOf('<', i);
+                end = end < 0 ? xml.length() : end;
+                maskText(sql, xml.substring(i, end), true);
+                i = end;
+            }
+        }
+        return sql.toString();
+    }
+
+    private static void maskTag(StringBuilder sql, String tag) {
+        Matcher name = TAG_NAME.matcher(tag);
+        String keyword = null;
+        if (!tag.startsWith("</") && name.lookingAt()) {
+            switch (name.group(1).toLowerCase(Locale.ROOT)) {
+                case "where":
+                    keyword = "where";
+                    break;
+                case "set":
+                    keyword = "set";
+                    break;
+                case "trim":
+                    Matcher prefix = PREFIX.matcher(tag);
+                    keyword = prefix.find() ? prefix.group(2).trim() : null;
+                    break;
+                default:
+                    break;
+            }
+        }
+        int start = sql.length();
+        blank(sql, tag, 0, tag.length());
+        // The tag is always longer than the keyword plus the spaces around it
+        if (keyword != null && !keyword.isEmpty() && keyword.length() + 2 <= tag.length()) {
+            sql.replace(start + 1, start + 1 + keyword.length(), keyword);
+        }
+    }
+
+    private static void maskText(StringBuilder sql, String text, boolean decodeEntities) {
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if ((c == '#' || c == '$') && i + 1 < text.length() && text.charAt(i + 1) == '{') {
+                int end = text.indexOf('}', i);
+                end = end < 0 ? text.length() : end + 1;
+                sql.append('?');
+                blank(sql, text, i + 1, end);
+                i = end;
+            } else if (decodeEntities && c == '&') {
+                int end = text.indexOf(';', i);
+                Character decoded = end < 0 ? null : ENTITIES.get(text.substring(i, end + 1));
+                if (decoded != null) {
+                    sql.append(decoded.charValue());
+                    blank(sql, text, i + 1, end + 1);
+                    i = end + 1;
+                } else {
+                    sql.append(c);
+                    i++;
+                }
+            } else {
+                sql.append(c);
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Append spaces for text[start, end), keeping line breaks
+     */
+    private static void blank(StringBuilder sql, String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            sql.append(text.charAt(i) == '\n' ? '\n' : ' ');
+        }
+    }
+}
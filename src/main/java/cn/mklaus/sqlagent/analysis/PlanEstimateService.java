@@ -0,0 +1,157 @@
+package cn.mklaus.sqlagent.analysis;
+
+import cn.mklaus.sqlagent.cache.SqlFingerprint;
+import cn.mklaus.sqlagent.mcp.McpServerLifecycleService;
+import cn.mklaus.sqlagent.mcp.McpToolClient;
+import cn.mklaus.sqlagent.model.PlanEstimate;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Application service fetching plan estimates from the MCP server in the background
+ *
+ * Estimates are cached in memory by normalized SQL for a few minutes, so the gutter shows them
+ * without a round trip on every highlighting pass and still follows changes of the data.
+ * Failures are cached too, so a statement the database cannot explain is not retried on
+ * every keystroke.
+ */
+@Service(Service.Level.APP)
+public final class PlanEstimateService implements Disposable {
+    private static final Logger LOG = Logger.getInstance(PlanEstimateService.class);
+
+    private static final int MAX_ENTRIES = 1000;
+    private static final long MAX_AGE_MILLIS = 10 * 60 * 1000;
+    private static final long TIMEOUT_MILLIS = 15_000;
+    private static final int CONCURRENCY = 2;
+
+    private final Map<String, CachedEstimate> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedEstimate> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("SqlAgent Plan Estimates", CONCURRENCY);
+
+    private static class CachedEstimate {
+        final PlanEstimate estimate;
+        final long fetchedAt;
+
+        CachedEstimate(PlanEstimate estimate, long fetchedAt) {
+            this.estimate = estimate;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    public static PlanEstimateService getInstance() {
+        return ApplicationManager.getApplication().getService(PlanEstimateService.class);
+    }
+
+    /**
+     * @param sql Statement as accepted by EXPLAIN, see ExplainableSql
+     * @return The cached estimate, or null if there is none or it is too old
+     */
+    public synchronized PlanEstimate getCached(String sql) {
+        String key = key(sql);
+        CachedEstimate cached = cache.get(key);
+        if (cached == null || System.currentTimeMillis() - cached.fetchedAt > MAX_AGE_MILLIS) {
+            cache.remove(key);
+            return null;
+        }
+        return cached.estimate;
+    }
+
+    /**
+     * Fetch the estimate in the background, unless it is being fetched already
+     *
+     * Does nothing while the MCP server is not started: estimates need the database, and
+     * highlighting must not start processes. Safe to call inside a read action.
+     * @param onReady Called on a pooled thread once the estimate is cached
+     */
+    public void request(String sql, Runnable onReady) {
+        String key = key(sql);
+        if (!McpServerLifecycleService.getInstance().isMcpServerStarted() || !pending.add(key)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                // May wait for the service lock or restart a server that died; never on the caller's thread
+                McpServerLifecycleService lifecycle = McpServerLifecycleService.getInstance();
+                McpToolClient client = lifecycle.isMcpServerStarted() ? lifecycle.getToolClient() : null;
+                if (client == null) {
+                    return;
+                }
+                PlanEstimate estimate = fetch(client, sql);
+                synchronized (this) {
+                    cache.put(key, new CachedEstimate(estimate, System.currentTimeMillis()));
+                }
+            } finally {
+                pending.remove(key);
+            }
+            onReady.run();
+        });
+    }
+
+    private PlanEstimate fetch(McpToolClient client, String sql) {
+        JsonObject arguments = new JsonObject();
+        arguments.addProperty("sql", sql);
+        arguments.addProperty("estimate_only", true);
+        try {
+            JsonObject summary = client.callTool("explain_sql", arguments, TIMEOUT_MILLIS).getAsJsonObject("plan_summary");
+            if (summary == null) {
+                return PlanEstimate.unavailable("MCP server returned no plan summary");
+            }
+            return parse(summary);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Plan estimate failed for " + sql + ": " + e.getMessage());
+            return PlanEstimate.unavailable(e.getMessage());
+        }
+    }
+
+    private PlanEstimate parse(JsonObject summary) {
+        PlanEstimate estimate = new PlanEstimate();
+        estimate.setRowsExamined(summary.get("rows_examined").getAsLong());
+        List<String> tables = new ArrayList<>();
+        for (JsonElement table : summary.getAsJsonArray("full_scan_tables")) {
+            tables.add(table.getAsString());
+        }
+        estimate.setFullScanTables(tables);
+        estimate.setSort(summary.get("sort").getAsBoolean());
+        estimate.setTemporary(summary.get("temporary").getAsBoolean());
+        if (summary.has("cost")) {
+            estimate.setCost(summary.get("cost").getAsDouble());
+        }
+        return estimate;
+    }
+
+    private static String key(String sql) {
+        return SqlFingerprint.hash(SqlFingerprint.normalize(sql));
+    }
+
+    /**
+     * Forget all estimates, e.g. after the database changed
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,56 @@
+package cn.mklaus.sqlagent.batch;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Analyzes all mapper SQL of the project, or resumes the previous run
+ */
+public class AnalyzeAllMapperSqlAction extends AnAction {
+    private static final String NOTIFICATION_GROUP_ID = "SQL Agent";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project != null) {
+            start(project);
+        }
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        event.getPresentation().setEnabled(project != null && !BatchReportService.getInstance(project).isRunning());
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    /**
+     * Show the report tool window and start the batch analysis in the background
+     */
+    public static void start(Project project) {
+        if (!BatchReportService.getInstance(project).tryStartRun()) {
+            Notifications.Bus.notify(new Notification(NOTIFICATION_GROUP_ID, "Batch analysis already running",
+                    "See the SQL Agent Report tool window", NotificationType.INFORMATION), project);
+            return;
+        }
+
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(BatchReportToolWindowFactory.TOOL_WINDOW_ID);
+        if (toolWindow != null) {
+            toolWindow.show();
+        }
+        ProgressManager.getInstance().run(new BatchAnalysisTask(project));
+    }
+}
@@ -0,0 +1,221 @@
+package cn.mklaus.sqlagent.batch;
+
+import cn.mklaus.sqlagent.analysis.LocalSqlAnalyzer;
+import cn.mklaus.sqlagent.cache.SqlFingerprint;
+import cn.mklaus.sqlagent.config.SqlAgentConfigurable;
+import cn.mklaus.sqlagent.config.SqlAgentSettingsService;
+import cn.mklaus.sqlagent.model.MyBatisSqlInfo;
+import cn.mklaus.sqlagent.mybatis.MapperStatementLocator;
+import cn.mklaus.sqlagent.mybatis.MyBatisSqlExtractor;
+import cn.mklaus.sqlagent.mybatis.dynamic.MapperStatementVariants;
+import cn.mklaus.sqlagent.mybatis.dynamic.SqlVariant;
+import cn.mklaus.sqlagent.opencode.OpenCodeServerManager;
+import cn.mklaus.sqlagent.service.SqlOptimizerService;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Analyzes every mapper statement of the project
+ *
+ * All statements are scored by LocalSqlAnalyzer first, each by its most expensive dynamic SQL
+ * variant. The most expensive ones, up to the configured number, are then sent to OpenCode
+ * through BatchOptimizationRunner. Results go into BatchReportService, so running the task
+ * again resumes with the statements that are not optimized yet.
+ */
+public class BatchAnalysisTask extends Task.Backgroundable {
+    private static final String OPENCODE_SERVER_URL = "http://localhost:4096";
+    private static final String NOTIFICATION_GROUP_ID = "SQL Agent";
+    private static final long RETRY_DELAY_MILLIS = 5_000;
+
+    private final MyBatisSqlExtractor extractor = new MyBatisSqlExtractor();
+    private final LocalSqlAnalyzer analyzer = new LocalSqlAnalyzer();
+    private List<BatchItem> queue = List.of();
+    private boolean serverUnavailable;
+
+    public BatchAnalysisTask(Project project) {
+        super(project, "Analyzing mapper SQL", true);
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        Project project = getProject();
+        BatchReportService report = BatchReportService.getInstance(project);
+
+        indicator.setIndeterminate(true);
+        indicator.setText("Collecting and analyzing mapper statements...");
+        List<BatchItem> items = report.merge(collectStatements(project, indicator));
+
+        // The most expensive statements; those optimized in an earlier run keep their result
+        SqlAgentConfigurable.State state = SqlAgentSettingsService.getInstance().getState();
+        queue = items.stream()
+                .filter(item -> item.getCost() > 0)
+                .sorted(Comparator.comparingInt(BatchItem::getCost).reversed())
+                .limit(state.batchMaxStatements)
+                .filter(item -> item.getStatus() != BatchStatus.OPTIMIZED)
+                .collect(Collectors.toList());
+        queue.forEach(item -> {
+            item.setStatus(BatchStatus.QUEUED);
+            item.setAttempts(0);
+        });
+        BatchReportPanel panel = BatchReportToolWindowFactory.getPanel(project);
+        if (panel != null) {
+            panel.setItems(items);
+        }
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        String serverUrl = state.serverUrl != null ? state.serverUrl : OPENCODE_SERVER_URL;
+        indicator.setText("Checking OpenCode server...");
+        // Start the server once here rather than from each parallel request
+        OpenCodeServerManager serverManager = new OpenCodeServerManager(serverUrl, state.openCodeExecutablePath);
+        if (!serverManager.isServerRunning() && !(state.autoStartServer && serverManager.ensureServerRunning())) {
+            serverUnavailable = true;
+            notify(project, "OpenCode server not available",
+                    "Local analysis finished; start the OpenCode server and run again to optimize "
+                            + queue.size() + " statements", NotificationType.WARNING);
+            return;
+        }
+
+        indicator.setIndeterminate(false);
+        indicator.setFraction(0);
+        AtomicInteger finished = new AtomicInteger();
+        SqlOptimizerService optimizer = new SqlOptimizerService(serverUrl, state);
+        BatchOptimizationRunner runner = new BatchOptimizationRunner(state.batchConcurrency,
+                state.batchRequestsPerMinute, state.batchMaxRetries, RETRY_DELAY_MILLIS);
+        runner.run(queue, item -> optimizer.optimize(item.getSql(), indicator), item -> {
+            if (item.getStatus() == BatchStatus.OPTIMIZED || item.getStatus() == BatchStatus.FAILED) {
+                int done = finished.incrementAndGet();
+                indicator.setFraction((double) done / queue.size());
+                indicator.setText("Optimized " + done + " of " + queue.size() + " statements");
+            } else if (item.getStatus() == BatchStatus.RUNNING) {
+                indicator.setText2(item.getDisplayName());
+            }
+            // The tool window may only have been created during the run
+            BatchReportPanel current = BatchReportToolWindowFactory.getPanel(project);
+            if (current != null) {
+                current.itemUpdated(item);
+            }
+        }, indicator::isCanceled);
+        indicator.checkCanceled();
+    }
+
+    /**
+     * Collects the statements one mapper file per read action, so an edit in the meantime only
+     * restarts the current file instead of the whole project
+     */
+    private List<BatchItem> collectStatements(Project project, ProgressIndicator indicator) {
+        // Mapper files come from MapperStatementIndex, so wait for indexing to finish
+        List<XmlFile> files = ReadAction.nonBlocking(() -> MapperStatementLocator.findAllMapperFiles(project))
+                .inSmartMode(project)
+                .executeSynchronously();
+        indicator.setIndeterminate(false);
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            indicator.checkCanceled();
+            indicator.setFraction((double) i / files.size());
+            XmlFile file = files.get(i);
+            items.addAll(ReadAction.nonBlocking(() -> file.isValid() ? collectStatements(file) : List.<BatchItem>of())
+                    .inSmartMode(project)
+                    .executeSynchronously());
+        }
+        return items;
+    }
+
+    private List<BatchItem> collectStatements(XmlFile file) {
+        XmlTag root = file.getRootTag();
+        if (root == null) {
+            return List.of();
+        }
+        List<BatchItem> items = new ArrayList<>();
+        for (XmlTag tag : root.getSubTags()) {
+            MyBatisSqlInfo info = extractor.extractSqlInfo(tag);
+            if (info == null || info.getOriginalSql() == null || info.getStatementId() == null) {
+                continue;
+            }
+            BatchItem item = new BatchItem(info.getNamespace(), info.getStatementId(), info.getSqlType(),
+                    info.getOriginalSql(), SqlFingerprint.hash(SqlFingerprint.normalize(info.getOriginalSql())));
+            analyze(item, tag);
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Scores a statement by its most expensive concrete variant, e.g. the search without any filter
+     */
+    private void analyze(BatchItem item, XmlTag tag) {
+        List<SqlVariant> variants = MapperStatementVariants.expand(tag).getVariants();
+        LocalSqlAnalyzer.Analysis worst = null;
+        SqlVariant worstVariant = null;
+        for (SqlVariant variant : variants) {
+            LocalSqlAnalyzer.Analysis analysis = analyzer.analyze(item.getSqlType(), variant.getSql());
+            if (worst == null || analysis.getCost() > worst.getCost()) {
+                worst = analysis;
+                worstVariant = variant;
+            }
+        }
+        if (worst == null) {
+            // The XML does not parse; analyze the annotated SQL as before
+            worst = analyzer.analyze(item.getSqlType(), item.getSql());
+        }
+        List<String> findings = new ArrayList<>(worst.getMessages());
+        if (variants.size() > 1 && worst.getCost() > 0 && !worstVariant.getConditions().isEmpty()) {
+            findings.add("Worst of " + variants.size() + " variants: " + String.join(", ", worstVariant.getConditions()));
+        }
+        item.setCost(worst.getCost());
+        item.setFindings(findings);
+    }
+
+    @Override
+    public void onSuccess() {
+        if (serverUnavailable) {
+            return;
+        }
+        long optimized = queue.stream().filter(item -> item.getStatus() == BatchStatus.OPTIMIZED).count();
+        long failed = queue.stream().filter(item -> item.getStatus() == BatchStatus.FAILED).count();
+        if (queue.isEmpty()) {
+            notify(getProject(), "Batch analysis completed",
+                    "No statements left to optimize; see the SQL Agent Report", NotificationType.INFORMATION);
+        } else {
+            notify(getProject(), "Batch analysis completed",
+                    "Optimized " + optimized + " of " + queue.size() + " statements"
+                            + (failed > 0 ? ", " + failed + " failed" : ""), NotificationType.INFORMATION);
+        }
+    }
+
+    @Override
+    public void onCancel() {
+        long remaining = queue.stream().filter(item -> item.getStatus() == BatchStatus.QUEUED).count();
+        notify(getProject(), "Batch analysis paused",
+                remaining + " statements remain; run Analyze All Mapper SQL again to resume",
+                NotificationType.INFORMATION);
+    }
+
+    @Override
+    public void onFinished() {
+        BatchReportService.getInstance(getProject()).finishRun();
+        BatchReportPanel panel = BatchReportToolWindowFactory.getPanel(getProject());
+        if (panel != null) {
+            panel.refresh();
+        }
+    }
+
+    private static void notify(Project project, String title, String content, NotificationType type) {
+        Notifications.Bus.notify(new Notification(NOTIFICATION_GROUP_ID, title, content, type), project);
+    }
+}
@@ -0,0 +1,158 @@
+package cn.mklaus.sqlagent.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One mapper statement in the batch report, with its local analysis and AI result
+ *
+ * A bean so that BatchReportService can persist the report in the workspace file.
+ */
+public class BatchItem {
+    private String namespace;
+    private String statementId;
+    private String sqlType;
+    private String sql;
+    private String fingerprint;
+    private int cost;
+    private List<String> findings = new ArrayList<>();
+    private volatile BatchStatus status = BatchStatus.ANALYZED;
+    private volatile int attempts;
+    private String optimizedSql;
+    private double estimatedImprovement;
+    private String message;
+
+    public BatchItem() {
+    }
+
+    public BatchItem(String namespace, String statementId, String sqlType, String sql, String fingerprint) {
+        this.namespace = namespace;
+        this.statementId = statementId;
+        this.sqlType = sqlType;
+        this.sql = sql;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Identity of the statement across runs
+     */
+    public String key() {
+        return namespace + "." + statementId;
+    }
+
+    /**
+     * e.g. "UserMapper.findUserById"
+     */
+    public String getDisplayName() {
+        String mapperName = namespace != null ? namespace.substring(namespace.lastIndexOf('.') + 1) : "";
+        return mapperName + "." + statementId;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    public void setStatementId(String statementId) {
+        this.statementId = statementId;
+    }
+
+    public String getSqlType() {
+        return sqlType;
+    }
+
+    public void setSqlType(String sqlType) {
+        this.sqlType = sqlType;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Hash of the normalized SQL; a result is only reused while it matches
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Estimated cost from LocalSqlAnalyzer
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    public void setCost(int cost) {
+        this.cost = cost;
+    }
+
+    public List<String> getFindings() {
+        return findings;
+    }
+
+    public void setFindings(List<String> findings) {
+        this.findings = findings;
+    }
+
+    public BatchStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BatchStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Requests sent to OpenCode for this statement, including retries
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getOptimizedSql() {
+        return optimizedSql;
+    }
+
+    public void setOptimizedSql(String optimizedSql) {
+        this.optimizedSql = optimizedSql;
+    }
+
+    public double getEstimatedImprovement() {
+        return estimatedImprovement;
+    }
+
+    public void setEstimatedImprovement(double estimatedImprovement) {
+        this.estimatedImprovement = estimatedImprovement;
+    }
+
+    /**
+     * Explanation of the optimization, or the error of the last attempt
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
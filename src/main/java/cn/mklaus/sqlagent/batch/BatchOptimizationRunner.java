@@ -0,0 +1,159 @@
+package cn.mklaus.sqlagent.batch;
+
+import cn.mklaus.sqlagent.model.OptimizationResponse;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends queued batch items to OpenCode with bounded parallelism
+ *
+ * At most {@code concurrency} requests run at once, each in its own pooled OpenCode session,
+ * and requests start no faster than {@code requestsPerMinute}. A failed request is retried
+ * with exponential backoff. On cancellation, items that did not finish go back to QUEUED so
+ * that the next run resumes with them.
+ */
+public class BatchOptimizationRunner {
+    private static final Logger LOG = Logger.getInstance(BatchOptimizationRunner.class);
+    private static final long CANCEL_CHECK_INTERVAL_MILLIS = 100;
+
+    private final int concurrency;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+    private final long startIntervalMillis;
+    private long nextStartAt;
+
+    /**
+     * Optimizes one statement; may throw ProcessCanceledException when cancelled
+     */
+    public interface Optimizer {
+        OptimizationResponse optimize(BatchItem item) throws Exception;
+    }
+
+    /**
+     * Told about every status change of an item, on a worker thread
+     */
+    public interface Listener {
+        void onUpdate(BatchItem item);
+    }
+
+    /**
+     * @param concurrency Requests running at the same time
+     * @param requestsPerMinute Rate at which requests start, 0 for no limit
+     * @param maxRetries Attempts after the first one failed
+     * @param retryDelayMillis Delay before the first retry, doubled for each further one
+     */
+    public BatchOptimizationRunner(int concurrency, int requestsPerMinute, int maxRetries, long retryDelayMillis) {
+        this.concurrency = Math.max(1, concurrency);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelayMillis = retryDelayMillis;
+        this.startIntervalMillis = requestsPerMinute > 0 ? 60_000L / requestsPerMinute : 0;
+    }
+
+    /**
+     * Optimize the items and wait until all are done or the run is cancelled
+     */
+    public void run(List<BatchItem> items, Optimizer optimizer, Listener listener, BooleanSupplier cancelled) {
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("SqlAgent Batch", concurrency);
+        CountDownLatch done = new CountDownLatch(items.size());
+        try {
+            for (BatchItem item : items) {
+                executor.execute(() -> {
+                    try {
+                        optimize(item, optimizer, listener, cancelled);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            while (!done.await(CANCEL_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (cancelled.getAsBoolean()) {
+                    // Running requests notice the cancellation themselves; wait for them to abort
+                    done.await();
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void optimize(BatchItem item, Optimizer optimizer, Listener listener, BooleanSupplier cancelled) {
+        try {
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                if (attempt > 0) {
+                    sleep(retryDelayMillis << (attempt - 1), cancelled);
+                }
+                awaitStartSlot(cancelled);
+
+                item.setStatus(BatchStatus.RUNNING);
+                item.setAttempts(item.getAttempts() + 1);
+                listener.onUpdate(item);
+
+                String error;
+                try {
+                    OptimizationResponse response = optimizer.optimize(item);
+                    if (response != null && !response.hasError()) {
+                        item.setOptimizedSql(response.getOptimizedSql());
+                        item.setEstimatedImprovement(response.getEstimatedImprovement());
+                        item.setMessage(response.getExplanation());
+                        item.setStatus(BatchStatus.OPTIMIZED);
+                        listener.onUpdate(item);
+                        return;
+                    }
+                    error = response != null ? response.getErrorMessage() : "No response";
+                } catch (ProcessCanceledException e) {
+                    throw e;
+                } catch (Exception e) {
+                    error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                }
+                LOG.info("Attempt " + item.getAttempts() + " failed for " + item.key() + ": " + error);
+                item.setMessage(error);
+            }
+            item.setStatus(BatchStatus.FAILED);
+        } catch (ProcessCanceledException e) {
+            item.setStatus(BatchStatus.QUEUED);
+        }
+        listener.onUpdate(item);
+    }
+
+    /**
+     * Wait until the rate limit allows the next request to start
+     */
+    private void awaitStartSlot(BooleanSupplier cancelled) {
+        long startAt;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            startAt = Math.max(now, nextStartAt);
+            nextStartAt = startAt + startIntervalMillis;
+        }
+        sleep(startAt - System.currentTimeMillis(), cancelled);
+    }
+
+    private static void sleep(long millis, BooleanSupplier cancelled) {
+        long until = System.currentTimeMillis() + millis;
+        while (true) {
+            if (cancelled.getAsBoolean()) {
+                throw new ProcessCanceledException();
+            }
+            long remaining = until - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(Math.min(remaining, CANCEL_CHECK_INTERVAL_MILLIS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException();
+            }
+        }
+    }
+}
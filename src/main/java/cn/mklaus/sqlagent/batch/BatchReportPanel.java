@@ -0,0 +1,244 @@
+package cn.mklaus.sqlagent.batch;
+
+import cn.mklaus.sqlagent.model.MyBatisSqlInfo;
+import cn.mklaus.sqlagent.mybatis.MapperStatementLocator;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextArea;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.PsiNavigateUtil;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sortable report of the batch analysis: one row per mapper statement
+ *
+ * Selecting a row shows its findings and result; double-clicking opens the statement.
+ */
+public class BatchReportPanel {
+    private static final String[] COLUMNS = {"Statement", "Type", "Est. Cost", "Status", "Attempts", "Improvement %", "Findings"};
+
+    private final Project project;
+    private final JPanel mainPanel;
+    private final ReportTableModel tableModel = new ReportTableModel();
+    private final JBTable table;
+    private final JBTextArea detailsArea;
+    private final JLabel summaryLabel;
+    private final JButton runButton;
+
+    public BatchReportPanel(Project project) {
+        this.project = project;
+
+        mainPanel = new JPanel(new BorderLayout(5, 5));
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        runButton = new JButton("Analyze All / Resume");
+        runButton.addActionListener(e -> AnalyzeAllMapperSqlAction.start(project));
+        topPanel.add(runButton);
+        JButton clearButton = new JButton("Clear Report");
+        clearButton.addActionListener(e -> {
+            BatchReportService.getInstance(project).clear();
+            refresh();
+        });
+        topPanel.add(clearButton);
+        summaryLabel = new JLabel();
+        topPanel.add(summaryLabel);
+        mainPanel.add(topPanel, BorderLayout.NORTH);
+
+        table = new JBTable(tableModel);
+        table.setAutoCreateRowSorter(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(0).setPreferredWidth(250);
+        table.getColumnModel().getColumn(6).setPreferredWidth(400);
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showDetails(getSelectedItem());
+            }
+        });
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    navigate(getSelectedItem());
+                }
+            }
+        });
+
+        detailsArea = new JBTextArea();
+        detailsArea.setEditable(false);
+        detailsArea.setLineWrap(true);
+        detailsArea.setWrapStyleWord(true);
+
+        JBSplitter splitter = new JBSplitter(true, 0.7f);
+        splitter.setFirstComponent(new JBScrollPane(table));
+        splitter.setSecondComponent(new JBScrollPane(detailsArea));
+        mainPanel.add(splitter, BorderLayout.CENTER);
+
+        refresh();
+    }
+
+    public JPanel getPanel() {
+        return mainPanel;
+    }
+
+    /**
+     * Show the items of a new run
+     */
+    public void setItems(List<BatchItem> items) {
+        runOnEdt(() -> {
+            tableModel.setItems(items);
+            updateSummary();
+        });
+    }
+
+    /**
+     * Reload the report from BatchReportService
+     */
+    public void refresh() {
+        setItems(BatchReportService.getInstance(project).getItems());
+    }
+
+    /**
+     * Repaint the row of an item whose status changed
+     */
+    public void itemUpdated(BatchItem item) {
+        runOnEdt(() -> {
+            tableModel.itemUpdated(item);
+            updateSummary();
+            if (item == getSelectedItem()) {
+                showDetails(item);
+            }
+        });
+    }
+
+    private void updateSummary() {
+        int optimized = 0;
+        int failed = 0;
+        int queued = 0;
+        for (BatchItem item : tableModel.items) {
+            if (item.getStatus() == BatchStatus.OPTIMIZED) {
+                optimized++;
+            } else if (item.getStatus() == BatchStatus.FAILED) {
+                failed++;
+            } else if (item.getStatus() == BatchStatus.QUEUED || item.getStatus() == BatchStatus.RUNNING) {
+                queued++;
+            }
+        }
+        summaryLabel.setText(tableModel.items.size() + " statements, " + optimized + " optimized, "
+                + failed + " failed, " + queued + " pending");
+        runButton.setEnabled(!BatchReportService.getInstance(project).isRunning());
+    }
+
+    private BatchItem getSelectedItem() {
+        int row = table.getSelectedRow();
+        return row >= 0 ? tableModel.items.get(table.convertRowIndexToModel(row)) : null;
+    }
+
+    private void showDetails(BatchItem item) {
+        if (item == null) {
+            detailsArea.setText("");
+            return;
+        }
+        StringBuilder details = new StringBuilder();
+        details.append(item.getDisplayName()).append(" (").append(item.getStatus()).append(")\n\n");
+        details.append(item.getSql()).append("\n");
+        if (!item.getFindings().isEmpty()) {
+            details.append("\nLocal findings:\n");
+            item.getFindings().forEach(finding -> details.append("  - ").append(finding).append("\n"));
+        }
+        if (item.getOptimizedSql() != null) {
+            details.append("\nOptimized SQL:\n").append(item.getOptimizedSql()).append("\n");
+        }
+        if (item.getMessage() != null) {
+            details.append("\n").append(item.getMessage()).append("\n");
+        }
+        detailsArea.setText(details.toString());
+        detailsArea.setCaretPosition(0);
+    }
+
+    private void navigate(BatchItem item) {
+        if (item == null) {
+            return;
+        }
+        if (DumbService.isDumb(project)) {
+            DumbService.getInstance(project).showDumbModeNotification("Navigation is available once indexing finishes");
+            return;
+        }
+        MyBatisSqlInfo info = MapperStatementLocator.findStatement(project, item.getNamespace(), item.getStatementId());
+        if (info != null) {
+            PsiNavigateUtil.navigate(info.getXmlTag());
+        }
+    }
+
+    private void runOnEdt(Runnable action) {
+        ApplicationManager.getApplication().invokeLater(action);
+    }
+
+    private static class ReportTableModel extends AbstractTableModel {
+        private List<BatchItem> items = new ArrayList<>();
+
+        void setItems(List<BatchItem> items) {
+            this.items = new ArrayList<>(items);
+            fireTableDataChanged();
+        }
+
+        void itemUpdated(BatchItem item) {
+            for (int row = 0; row < items.size(); row++) {
+                if (items.get(row) == item) {
+                    fireTableRowsUpdated(row, row);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return items.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 2 || column == 4 || column == 5 ? Integer.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            BatchItem item = items.get(row);
+            switch (column) {
+                case 0:
+                    return item.getDisplayName();
+                case 1:
+                    return item.getSqlType();
+                case 2:
+                    return item.getCost();
+                case 3:
+                    return item.getStatus().name();
+                case 4:
+                    return item.getAttempts();
+                case 5:
+                    return (int) Math.round(item.getEstimatedImprovement() * 100);
+                default:
+                    return String.join("; ", item.getFindings());
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package cn.mklaus.sqlagent.batch;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Project service holding the report of the last batch analysis
+ *
+ * The report is kept in the workspace file so an interrupted run can be resumed after a
+ * restart: statements that were already optimized and have not changed since keep their result.
+ */
+@Service(Service.Level.PROJECT)
+@State(
+    name = "SqlAgentBatchReport",
+    storages = @Storage(StoragePathMacros.WORKSPACE_FILE)
+)
+public final class BatchReportService implements PersistentStateComponent<BatchReportService.ReportState> {
+
+    public static class ReportState {
+        public List<BatchItem> items = new ArrayList<>();
+    }
+
+    private ReportState state = new ReportState();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public static BatchReportService getInstance(Project project) {
+        return project.getService(BatchReportService.class);
+    }
+
+    @NotNull
+    @Override
+    public ReportState getState() {
+        return state;
+    }
+
+    @Override
+    public void loadState(@NotNull ReportState state) {
+        this.state = state;
+    }
+
+    public synchronized List<BatchItem> getItems() {
+        return new ArrayList<>(state.items);
+    }
+
+    /**
+     * Replace the report with freshly collected statements, keeping the result of each
+     * statement that was optimized before and whose SQL is unchanged
+     *
+     * @return The new report items
+     */
+    public synchronized List<BatchItem> merge(List<BatchItem> collected) {
+        Map<String, BatchItem> previous = new HashMap<>();
+        for (BatchItem item : state.items) {
+            previous.put(item.key(), item);
+        }
+
+        List<BatchItem> merged = new ArrayList<>();
+        for (BatchItem item : collected) {
+            BatchItem old = previous.get(item.key());
+            if (old != null && old.getStatus() == BatchStatus.OPTIMIZED
+                    && old.getFingerprint() != null && old.getFingerprint().equals(item.getFingerprint())) {
+                merged.add(old);
+            } else {
+                merged.add(item);
+            }
+        }
+        state.items = merged;
+        return new ArrayList<>(merged);
+    }
+
+    /**
+     * @return false if a batch analysis of the project is already running
+     */
+    public boolean tryStartRun() {
+        return running.compareAndSet(false, true);
+    }
+
+    public void finishRun() {
+        running.set(false);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public synchronized void clear() {
+        state.items = new ArrayList<>();
+    }
+}
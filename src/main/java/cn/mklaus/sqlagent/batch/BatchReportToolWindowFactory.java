@@ -0,0 +1,38 @@
+package cn.mklaus.sqlagent.batch;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory for the SQL Agent Report tool window showing the batch analysis
+ */
+public class BatchReportToolWindowFactory implements ToolWindowFactory {
+    public static final String TOOL_WINDOW_ID = "SQL Agent Report";
+
+    // Store panel references per project
+    private static final Map<String, BatchReportPanel> panelMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        BatchReportPanel panel = new BatchReportPanel(project);
+        panelMap.put(project.getLocationHash(), panel);
+
+        Content content = ContentFactory.getInstance().createContent(panel.getPanel(), "", false);
+        content.setDisposer(() -> panelMap.remove(project.getLocationHash()));
+        toolWindow.getContentManager().addContent(content);
+    }
+
+    /**
+     * Get the panel for a specific project, or null if the tool window was not opened yet
+     */
+    public static BatchReportPanel getPanel(Project project) {
+        return panelMap.get(project.getLocationHash());
+    }
+}
@@ -0,0 +1,15 @@
+package cn.mklaus.sqlagent.batch;
+
+/**
+ * Progress of one statement in a batch analysis
+ */
+public enum BatchStatus {
+    /** Scored by the local analyzer only */
+    ANALYZED,
+    /** Waiting to be sent to OpenCode */
+    QUEUED,
+    RUNNING,
+    OPTIMIZED,
+    /** All attempts failed */
+    FAILED
+}
@@ -0,0 +1,150 @@
+package cn.mklaus.sqlagent.cache;
+
+import cn.mklaus.sqlagent.config.DatabaseConfig;
+import cn.mklaus.sqlagent.config.LlmProviderConfig;
+import cn.mklaus.sqlagent.mcp.McpServerLifecycleService;
+import cn.mklaus.sqlagent.mcp.McpToolClient;
+import cn.mklaus.sqlagent.model.OptimizationResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Application service caching optimization results on disk
+ *
+ * Results are keyed by the normalized SQL, the configured database and its schema fingerprint,
+ * and the LLM provider, endpoint and model, so they are reused across IDE restarts until the
+ * schema or the model changes. Without a schema fingerprint nothing is looked up or stored.
+ * Only successful responses are cached.
+ */
+@Service(Service.Level.APP)
+public final class OptimizationCache implements Disposable {
+    private static final Logger LOG = Logger.getInstance(OptimizationCache.class);
+
+    private static final int MAX_ENTRIES = 2000;
+    private static final long MAX_FILE_BYTES = 16 * 1024 * 1024;
+    private static final long SCHEMA_TIMEOUT_MILLIS = 10_000;
+
+    private final Gson gson = new Gson();
+    private OptimizationCacheStore store;
+
+    public static OptimizationCache getInstance() {
+        return ApplicationManager.getApplication().getService(OptimizationCache.class);
+    }
+
+    /**
+     * Cache key of a SQL statement for the current database, schema and model
+     *
+     * Starts the MCP server if needed, so call it from a background thread.
+     * @return The key, or null if the schema is unknown and the statement must not be cached
+     */
+    @Nullable
+    public String key(String sql, DatabaseConfig dbConfig, LlmProviderConfig llmConfig) {
+        String schema = schemaFingerprint(sql);
+        if (schema == null) {
+            return null;
+        }
+        return SqlFingerprint.hash(SqlFingerprint.normalize(sql), dbConfig.getFingerprint(), schema,
+                llmConfig.getProviderType(), llmConfig.getBaseUrl(), llmConfig.getModel());
+    }
+
+    /**
+     * @return The cached response with its creation time set, or null on a miss
+     */
+    public OptimizationResponse get(String key) {
+        try {
+            OptimizationCacheStore.Entry entry = getStore().get(key);
+            if (entry == null) {
+                return null;
+            }
+            OptimizationResponse response = gson.fromJson(entry.getPayload(), OptimizationResponse.class);
+            response.setCachedAt(entry.getCreatedAt());
+            return response;
+        } catch (Exception e) {
+            LOG.warn("Failed to read optimization cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String key, OptimizationResponse response) {
+        if (response == null || response.hasError() || response.getOptimizedSql() == null) {
+            return;
+        }
+        // Only what the model produced; verification and benchmarks are redone for each run
+        OptimizationResponse cached = new OptimizationResponse();
+        cached.setOptimizedSql(response.getOptimizedSql());
+        cached.setExplanation(response.getExplanation());
+        cached.setSuggestions(response.getSuggestions());
+        cached.setEstimatedImprovement(response.getEstimatedImprovement());
+        try {
+            getStore().put(key, gson.toJson(cached));
+        } catch (IOException e) {
+            LOG.warn("Failed to write optimization cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fingerprint of the schema the statement runs against, from the MCP server
+     * @return The fingerprint, or null if the database is not configured or does not answer
+     */
+    @Nullable
+    private String schemaFingerprint(String sql) {
+        McpToolClient client = McpServerLifecycleService.getInstance().getToolClient();
+        if (client == null) {
+            return null;
+        }
+
+        // Naming the statement's tables keeps the response small; the fingerprint covers the whole schema
+        JsonObject arguments = new JsonObject();
+        JsonArray tables = new JsonArray();
+        findTables(sql).forEach(tables::add);
+        arguments.add("tables", tables);
+        arguments.addProperty("max_hops", 1);
+        try {
+            JsonObject result = client.callTool("get_relationships", arguments, SCHEMA_TIMEOUT_MILLIS);
+            return result.has("schema_fingerprint") ? result.get("schema_fingerprint").getAsString() : null;
+        } catch (IOException e) {
+            LOG.warn("Failed to get schema fingerprint: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Set<String> findTables(String sql) {
+        try {
+            return TablesNamesFinder.findTables(sql.replaceAll("[#$]\\{[^}]*}", "?"));
+        } catch (JSQLParserException | RuntimeException e) {
+            return Set.of();
+        }
+    }
+
+    private synchronized OptimizationCacheStore getStore() throws IOException {
+        if (store == null) {
+            Path file = Path.of(PathManager.getSystemPath(), "sqlagent", "cache", "optimizations.log");
+            store = new OptimizationCacheStore(file, MAX_ENTRIES, MAX_FILE_BYTES);
+        }
+        return store;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close optimization cache: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package cn.mklaus.sqlagent.cache;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only file of cache entries with an in-memory index
+ *
+ * Each entry is one line {@code key TAB createdAtMillis TAB payload}; the payload must not contain
+ * line breaks. Writing a key again appends a new line and leaves the old one as dead bytes.
+ * The index keeps entries in LRU order (file order after a restart) and evicts the least
+ * recently used when there are more than maxEntries. The file is rewritten with the live
+ * entries once it exceeds maxFileBytes or is mostly dead bytes.
+ */
+public class OptimizationCacheStore implements AutoCloseable {
+    private static final Logger LOG = Logger.getInstance(OptimizationCacheStore.class);
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private final Path file;
+    private final int maxEntries;
+    private final long maxFileBytes;
+    private final Map<String, IndexEntry> index;
+    private FileChannel channel;
+    private long liveBytes;
+
+    /**
+     * A cached payload and when it was written
+     */
+    public static class Entry {
+        private final String payload;
+        private final long createdAt;
+
+        Entry(String payload, long createdAt) {
+            this.payload = payload;
+            this.createdAt = createdAt;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    private static class IndexEntry {
+        private final long offset;
+        private final int length;
+        private final long createdAt;
+
+        IndexEntry(long offset, int length, long createdAt) {
+            this.offset = offset;
+            this.length = length;
+            this.createdAt = createdAt;
+        }
+    }
+
+    public OptimizationCacheStore(Path file, int maxEntries, long maxFileBytes) throws IOException {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.maxFileBytes = maxFileBytes;
+        this.index = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IndexEntry> eldest) {
+                if (size() > OptimizationCacheStore.this.maxEntries) {
+                    liveBytes -= eldest.getValue().length;
+                    return true;
+                }
+                return false;
+            }
+        };
+        Files.createDirectories(file.getParent());
+        this.channel = open(file);
+        load();
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Rebuild the index from the file, dropping a partly written last line
+     */
+    private void load() throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        int lineStart = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] != '\n') {
+                continue;
+            }
+            String line = new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8);
+            String[] fields = line.split("\t", 3);
+            if (fields.length == 3) {
+                try {
+                    addToIndex(fields[0], new IndexEntry(lineStart, i + 1 - lineStart, Long.parseLong(fields[1])));
+                } catch (NumberFormatException e) {
+                    LOG.warn("Skipping corrupt cache entry at offset " + lineStart);
+                }
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart < content.length) {
+            LOG.warn("Dropping incomplete cache entry at offset " + lineStart);
+            channel.truncate(lineStart);
+        }
+    }
+
+    private void addToIndex(String key, IndexEntry entry) {
+        IndexEntry previous = index.put(key, entry);
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+        liveBytes += entry.length;
+    }
+
+    /**
+     * @return The entry, or null if the key is not cached
+     */
+    public synchronized Entry get(String key) throws IOException {
+        IndexEntry entry = index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, entry.offset + buffer.position()) < 0) {
+                throw new IOException("Cache file truncated at offset " + entry.offset);
+            }
+        }
+        String line = new String(buffer.array(), 0, entry.length - 1, StandardCharsets.UTF_8);
+        String[] fields = line.split("\t", 3);
+        if (fields.length != 3 || !fields[0].equals(key)) {
+            throw new IOException("Cache index out of sync at offset " + entry.offset);
+        }
+        return new Entry(fields[2], entry.createdAt);
+    }
+
+    public synchronized void put(String key, String payload) throws IOException {
+        if (key.contains("\t") || key.contains("\n") || payload.contains("\n")) {
+            throw new IllegalArgumentException("Cache keys and payloads must be single-line");
+        }
+        long createdAt = System.currentTimeMillis();
+        byte[] line = (key + "\t" + createdAt + "\t" + payload + "\n").getBytes(StandardCharsets.UTF_8);
+        long offset = channel.size();
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+        addToIndex(key, new IndexEntry(offset, line.length, createdAt));
+
+        long size = channel.size();
+        if (size > maxFileBytes || (size > MIN_COMPACTION_BYTES && size > 2 * liveBytes)) {
+            compact();
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Rewrite the file with the live entries, evicting the least recently used until they fill
+     * at most half of maxFileBytes
+     */
+    synchronized void compact() throws IOException {
+        Iterator<Map.Entry<String, IndexEntry>> eldest = index.entrySet().iterator();
+        while (liveBytes > maxFileBytes / 2 && eldest.hasNext()) {
+            liveBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Map.Entry<String, IndexEntry>> moved = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = 0;
+            for (Map.Entry<String, IndexEntry> entry : index.entrySet()) {
+                IndexEntry old = entry.getValue();
+                long transferred = 0;
+                while (transferred < old.length) {
+                    transferred += channel.transferTo(old.offset + transferred, old.length - transferred, out);
+                }
+                moved.add(Map.entry(entry.getKey(), new IndexEntry(offset, old.length, old.createdAt)));
+                offset += old.length;
+            }
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(file);
+
+        // Re-insert in LRU order so the access order survives the rewrite
+        index.clear();
+        liveBytes = 0;
+        for (Map.Entry<String, IndexEntry> entry : moved) {
+            addToIndex(entry.getKey(), entry.getValue());
+        }
+        LOG.info("Compacted optimization cache to " + index.size() + " entries, " + liveBytes + " bytes");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,109 @@
+package cn.mklaus.sqlagent.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalized form of a SQL statement, so formatting changes do not miss the cache
+ *
+ * Comments are removed, whitespace is collapsed and keywords are lower-cased. Literals, identifiers
+ * and MyBatis placeholders are kept as written: the optimized SQL is returned verbatim and must use
+ * the original's values, names and parameters.
+ */
+public final class SqlFingerprint {
+    private static final Set<String> KEYWORDS = Set.of(
+            "select", "from", "where", "and", "or", "not", "in", "is", "null", "like", "between", "exists",
+            "join", "inner", "left", "right", "full", "outer", "cross", "natural", "straight_join", "on", "using",
+            "as", "group", "by", "order", "having", "limit", "offset", "union", "intersect", "except", "all",
+            "distinct", "any", "some", "insert", "into", "values", "update", "set", "delete", "replace", "ignore",
+            "duplicate", "key", "conflict", "do", "nothing", "returning", "case", "when", "then", "else", "end",
+            "asc", "desc", "nulls", "first", "last", "with", "recursive", "over", "partition", "window", "rows",
+            "range", "preceding", "following", "unbounded", "current", "row", "fetch", "next", "only", "for",
+            "share", "nowait", "skip", "locked", "lateral", "escape", "interval", "true", "false", "default",
+            "force", "use", "index", "count", "sum", "avg", "min", "max", "coalesce", "ifnull", "nullif", "cast");
+
+    private SqlFingerprint() {
+    }
+
+    public static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                out.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end;
+                pendingSpace = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < sql.length() && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 1;
+                pendingSpace = true;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace && out.length() > 0) {
+                out.append(' ');
+            }
+            pendingSpace = false;
+            if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+                out.append(c);
+            } else if ((c == '#' || c == '$') && i + 1 < sql.length() && sql.charAt(i + 1) == '{') {
+                int end = sql.indexOf('}', i + 2);
+                end = end < 0 ? sql.length() : end + 1;
+                out.append(sql, i, end);
+                i = end - 1;
+            } else if (Character.isLetter(c) || c == '_') {
+                int end = i + 1;
+                while (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end))
+                        || sql.charAt(end) == '_' || sql.charAt(end) == '$')) {
+                    end++;
+                }
+                String word = sql.substring(i, end);
+                String lower = word.toLowerCase(Locale.ROOT);
+                out.append(KEYWORDS.contains(lower) ? lower : word);
+                i = end - 1;
+            } else {
+                out.append(c);
+            }
+        }
+        int end = out.length();
+        while (end > 0 && (out.charAt(end - 1) == ';' || out.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        return out.substring(0, end);
+    }
+
+    /**
+     * SHA-256 of the parts joined with '\n', as hex
+     */
+    public static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update((part != null ? part : "").getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package cn.mklaus.sqlagent.config;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 /**
  * Database configuration for MCP server
  */
@@ -93,6 +98,21 @@ public class DatabaseConfig {
         return 3306; // MySQL default
     }
 
+    /**
+     * Stable identifier of this configuration without the password, identical to the one
+     * reported by the MCP server's /health endpoint. Used to find a shared server for the
+     * same database.
+     */
+    public String getFingerprint() {
+        String key = String.join("|", type.toLowerCase(), host, String.valueOf(port), database, username);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     @Override
     public String toString() {
         return username + "@" + host + ":" + port + "/" + database;
@@ -8,9 +8,13 @@ import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
@@ -41,6 +45,10 @@ public class SqlAgentConfigurable implements Configurable {
     private JTextField dbDatabaseField;
     private JTextField dbUsernameField;
     private JPasswordField dbPasswordField;
+    private JCheckBox shareMcpServerCheckBox;
+    private JCheckBox benchmarkCheckBox;
+    private JCheckBox verifyEquivalenceCheckBox;
+    private JCheckBox cacheOptimizationsCheckBox;
 
     // LLM Provider configuration fields
     private JComboBox<String> llmProviderComboBox;
@@ -49,6 +57,13 @@ public class SqlAgentConfigurable implements Configurable {
     private JTextField llmModelField;
     private JLabel llmSecurityWarningLabel;
 
+    // Batch analysis fields
+    private JTextField batchConcurrencyField;
+    private JTextField batchRequestsPerMinuteField;
+    private JTextField batchMaxRetriesField;
+    private JTextField batchMaxStatementsField;
+    private JTextField dynamicSqlMaxVariantsField;
+
     public static class State {
         public String serverUrl = "http://localhost:4096";
         public int timeout = 300;
@@ -59,8 +74,33 @@ public class SqlAgentConfigurable implements Configurable {
         // Database configuration for MCP server
         public DatabaseConfig databaseConfig = new DatabaseConfig();
 
+        // Serve MCP over localhost HTTP so IDEs and OpenCode sessions share one server process
+        public boolean shareMcpServerOverHttp = false;
+
+        // Measure original vs. optimized SELECT statements against the database; off by default
+        // because it runs the user's queries, several times each
+        public boolean benchmarkOptimizedSql = false;
+
+        // Check optimized SELECT statements return the same rows before they can be applied;
+        // off by default because it reads both full results from the database
+        public boolean verifyEquivalence = false;
+
+        // Reuse optimization results for the same SQL, schema and model across IDE restarts
+        public boolean cacheOptimizations = true;
+
         // LLM Provider configuration for OpenCode
         public LlmProviderConfig llmProviderConfig = new LlmProviderConfig();
+
+        // Batch analysis: parallel OpenCode requests, request rate, retries per statement,
+        // and how many of the most expensive statements are sent to the model
+        public int batchConcurrency = 3;
+        public int batchRequestsPerMinute = 20;
+        public int batchMaxRetries = 2;
+        public int batchMaxStatements = 50;
+
+        // Concrete variants of a statement with <if>/<choose> analyzed and estimated;
+        // beyond that the branch combinations are sampled
+        public int dynamicSqlMaxVariants = 16;
     }
 
     private State getState() {
@@ -268,6 +308,46 @@ public class SqlAgentConfigurable implements Configurable {
 
         row++;
 
+        // Shared MCP server over HTTP
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 2;
+        shareMcpServerCheckBox = new JCheckBox("Share MCP server over localhost HTTP", state.shareMcpServerOverHttp);
+        shareMcpServerCheckBox.setToolTipText("One MCP server process per database, shared by all IDE windows and OpenCode sessions");
+        mainPanel.add(shareMcpServerCheckBox, gbc);
+
+        row++;
+
+        // Benchmark optimized SQL
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 2;
+        benchmarkCheckBox = new JCheckBox("Benchmark optimized SQL against the database", state.benchmarkOptimizedSql);
+        benchmarkCheckBox.setToolTipText("Runs parameterless SELECT statements read-only a few times against the configured database and shows the measured latency");
+        mainPanel.add(benchmarkCheckBox, gbc);
+
+        row++;
+
+        // Verify result equivalence
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 2;
+        verifyEquivalenceCheckBox = new JCheckBox("Verify optimized SQL returns the same rows", state.verifyEquivalence);
+        verifyEquivalenceCheckBox.setToolTipText("Streams both results read-only from the configured database and compares them before the optimized SQL can be applied");
+        mainPanel.add(verifyEquivalenceCheckBox, gbc);
+
+        row++;
+
+        // Optimization cache
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 2;
+        cacheOptimizationsCheckBox = new JCheckBox("Reuse cached results for unchanged SQL, schema and model", state.cacheOptimizations);
+        cacheOptimizationsCheckBox.setToolTipText("Cached results show instantly; use Refresh in the tool window to ask the model again");
+        mainPanel.add(cacheOptimizationsCheckBox, gbc);
+
+        row++;
+
         // Test Connection Button
         gbc.gridx = 0;
         gbc.gridy = row;
@@ -373,9 +453,60 @@ public class SqlAgentConfigurable implements Configurable {
         llmSecurityWarningLabel.setToolTipText("Ensure your system is secure and don't share configuration files");
         mainPanel.add(llmSecurityWarningLabel, gbc);
 
+        row++;
+
+        // Separator for Batch Analysis
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 2;
+        mainPanel.add(new JSeparator(), gbc);
+
+        row++;
+
+        // Batch Analysis Section Label
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 2;
+        JLabel batchSectionLabel = new JLabel("<html><b>Batch Analysis (Analyze All Mapper SQL)</b></html>");
+        mainPanel.add(batchSectionLabel, gbc);
+
+        row++;
+
+        batchMaxStatementsField = new JTextField(String.valueOf(state.batchMaxStatements));
+        batchMaxStatementsField.setToolTipText("The most expensive statements by local analysis are sent to the model");
+        addLabeledField("Statements sent to AI:", batchMaxStatementsField, row++, gbc);
+
+        batchConcurrencyField = new JTextField(String.valueOf(state.batchConcurrency));
+        batchConcurrencyField.setToolTipText("OpenCode sessions working in parallel");
+        addLabeledField("Parallel requests:", batchConcurrencyField, row++, gbc);
+
+        batchRequestsPerMinuteField = new JTextField(String.valueOf(state.batchRequestsPerMinute));
+        batchRequestsPerMinuteField.setToolTipText("Keeps the run under the provider's rate limit; 0 for no limit");
+        addLabeledField("Requests per minute:", batchRequestsPerMinuteField, row++, gbc);
+
+        batchMaxRetriesField = new JTextField(String.valueOf(state.batchMaxRetries));
+        batchMaxRetriesField.setToolTipText("Retries of a failed request, with increasing delay");
+        addLabeledField("Retries per statement:", batchMaxRetriesField, row++, gbc);
+
+        dynamicSqlMaxVariantsField = new JTextField(String.valueOf(state.dynamicSqlMaxVariants));
+        dynamicSqlMaxVariantsField.setToolTipText("Branch combinations of dynamic SQL analyzed per statement; the most expensive is reported");
+        addLabeledField("Dynamic SQL variants:", dynamicSqlMaxVariantsField, row, gbc);
+
         return mainPanel;
     }
 
+    private void addLabeledField(String label, JTextField field, int row, GridBagConstraints gbc) {
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        mainPanel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        mainPanel.add(field, gbc);
+    }
+
     /**
      * Test connection to OpenCode server
      */
@@ -544,20 +675,38 @@ public class SqlAgentConfigurable implements Configurable {
     @Override
     public boolean isModified() {
         State state = getState();
-        DatabaseConfig dbConfig = state.databaseConfig;
-        LlmProviderConfig llmConfig = state.llmProviderConfig;
 
         return !serverUrlField.getText().trim().equals(state.serverUrl) ||
                 !timeoutField.getText().trim().equals(String.valueOf(state.timeout)) ||
                 autoStartServerCheckBox.isSelected() != state.autoStartServer ||
                 !openCodeExecutablePathField.getText().trim().equals(state.openCodeExecutablePath) ||
                 stopServerOnExitCheckBox.isSelected() != state.stopServerOnExit ||
-                !getTypeFromComboBox().equals(dbConfig.getType()) ||
+                isConnectionModified(state) ||
+                benchmarkCheckBox.isSelected() != state.benchmarkOptimizedSql ||
+                verifyEquivalenceCheckBox.isSelected() != state.verifyEquivalence ||
+                cacheOptimizationsCheckBox.isSelected() != state.cacheOptimizations ||
+                !batchConcurrencyField.getText().trim().equals(String.valueOf(state.batchConcurrency)) ||
+                !batchRequestsPerMinuteField.getText().trim().equals(String.valueOf(state.batchRequestsPerMinute)) ||
+                !batchMaxRetriesField.getText().trim().equals(String.valueOf(state.batchMaxRetries)) ||
+                !batchMaxStatementsField.getText().trim().equals(String.valueOf(state.batchMaxStatements)) ||
+                !dynamicSqlMaxVariantsField.getText().trim().equals(String.valueOf(state.dynamicSqlMaxVariants));
+    }
+
+    /**
+     * Whether the database, MCP sharing or LLM provider settings differ from the saved ones,
+     * i.e. the MCP server and the OpenCode configuration need to be renewed
+     */
+    private boolean isConnectionModified(State state) {
+        DatabaseConfig dbConfig = state.databaseConfig;
+        LlmProviderConfig llmConfig = state.llmProviderConfig;
+
+        return !getTypeFromComboBox().equals(dbConfig.getType()) ||
                 !dbHostField.getText().trim().equals(dbConfig.getHost()) ||
                 !dbPortField.getText().trim().equals(String.valueOf(dbConfig.getPort())) ||
                 !dbDatabaseField.getText().trim().equals(dbConfig.getDatabase()) ||
                 !dbUsernameField.getText().trim().equals(dbConfig.getUsername()) ||
                 !String.valueOf(dbPasswordField.getPassword()).equals(dbConfig.getPassword()) ||
+                shareMcpServerCheckBox.isSelected() != state.shareMcpServerOverHttp ||
                 !getLlmProviderType().equals(llmConfig.getProviderType()) ||
                 !String.valueOf(llmApiKeyField.getPassword()).equals(llmConfig.getApiKey()) ||
                 !llmBaseUrlField.getText().trim().equals(llmConfig.getBaseUrl()) ||
@@ -566,16 +715,20 @@ public class SqlAgentConfigurable implements Configurable {
 
     @Override
     public void apply() throws ConfigurationException {
+        // Validate everything first, so an invalid field leaves the settings untouched
+        int timeout = parseInt(timeoutField, "timeout (seconds)", 10, 600);
+        int port = parseInt(dbPortField, "port", 1, 65535);
+        int batchConcurrency = parseInt(batchConcurrencyField, "parallel requests", 1, 16);
+        int batchRequestsPerMinute = parseInt(batchRequestsPerMinuteField, "requests per minute", 0, 600);
+        int batchMaxRetries = parseInt(batchMaxRetriesField, "retries", 0, 10);
+        int batchMaxStatements = parseInt(batchMaxStatementsField, "statements sent to AI", 1, 10000);
+        int dynamicSqlMaxVariants = parseInt(dynamicSqlMaxVariantsField, "dynamic SQL variants", 1, 256);
+
         State state = getState();
+        boolean connectionModified = isConnectionModified(state);
+
         state.serverUrl = serverUrlField.getText().trim();
-        try {
-            state.timeout = Integer.parseInt(timeoutField.getText().trim());
-            if (state.timeout < 10 || state.timeout > 600) {
-                throw new ConfigurationException("Timeout must be between 10 and 600 seconds");
-            }
-        } catch (NumberFormatException e) {
-            throw new ConfigurationException("Invalid timeout value");
-        }
+        state.timeout = timeout;
         state.autoStartServer = autoStartServerCheckBox.isSelected();
         state.openCodeExecutablePath = openCodeExecutablePathField.getText().trim();
         state.stopServerOnExit = stopServerOnExitCheckBox.isSelected();
@@ -583,14 +736,21 @@ public class SqlAgentConfigurable implements Configurable {
         // Save database configuration
         state.databaseConfig.setType(getTypeFromComboBox());
         state.databaseConfig.setHost(dbHostField.getText().trim());
-        try {
-            state.databaseConfig.setPort(Integer.parseInt(dbPortField.getText().trim()));
-        } catch (NumberFormatException e) {
-            throw new ConfigurationException("Invalid port value");
-        }
+        state.databaseConfig.setPort(port);
         state.databaseConfig.setDatabase(dbDatabaseField.getText().trim());
         state.databaseConfig.setUsername(dbUsernameField.getText().trim());
         state.databaseConfig.setPassword(String.valueOf(dbPasswordField.getPassword()));
+        state.shareMcpServerOverHttp = shareMcpServerCheckBox.isSelected();
+        state.benchmarkOptimizedSql = benchmarkCheckBox.isSelected();
+        state.verifyEquivalence = verifyEquivalenceCheckBox.isSelected();
+        state.cacheOptimizations = cacheOptimizationsCheckBox.isSelected();
+
+        // Save batch analysis limits
+        state.batchConcurrency = batchConcurrency;
+        state.batchRequestsPerMinute = batchRequestsPerMinute;
+        state.batchMaxRetries = batchMaxRetries;
+        state.batchMaxStatements = batchMaxStatements;
+        state.dynamicSqlMaxVariants = dynamicSqlMaxVariants;
 
         // Save LLM provider configuration
         state.llmProviderConfig.setProviderType(getLlmProviderType());
@@ -603,27 +763,50 @@ public class SqlAgentConfigurable implements Configurable {
         state.llmProviderConfig.setModel(llmModelField.getText().trim());
 
         // After saving configurations, update OpenCode config
-        if (state.databaseConfig.isValid() || state.llmProviderConfig.isValid()) {
-            try {
-                // Start MCP server (will also update OpenCode config)
-                McpServerLifecycleService lifecycleService = McpServerLifecycleService.getInstance();
-                boolean started = lifecycleService.startMcpServer();
-
-                if (started) {
-                    // Show success notification
-                    showNotification("Configuration Saved",
-                            "MCP server started and OpenCode configuration updated at ~/.opencode/opencode.json",
-                            NotificationType.INFORMATION);
-                } else {
-                    showNotification("Configuration Warning",
-                            "Settings saved, but MCP server failed to start. Check logs for details.",
-                            NotificationType.WARNING);
+        if (connectionModified && (state.databaseConfig.isValid() || state.llmProviderConfig.isValid())) {
+            restartMcpServerInBackground();
+        }
+    }
+
+    /**
+     * (Re)start the MCP server with the new settings, which also updates the OpenCode config.
+     * Starting waits for the process and the database, so it must not run on the EDT.
+     */
+    private void restartMcpServerInBackground() {
+        ProgressManager.getInstance().run(new Task.Backgroundable(null, "Restarting SqlAgent MCP server", false) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    boolean started = McpServerLifecycleService.getInstance().restartMcpServer();
+
+                    if (started) {
+                        // Show success notification
+                        showNotification("Configuration Saved",
+                                "MCP server started and OpenCode configuration updated at ~/.opencode/opencode.json",
+                                NotificationType.INFORMATION);
+                    } else {
+                        showNotification("Configuration Warning",
+                                "Settings saved, but MCP server failed to start. Check logs for details.",
+                                NotificationType.WARNING);
+                    }
+                } catch (Exception e) {
+                    showNotification("MCP Server Error",
+                            "Failed to start MCP server: " + e.getMessage(),
+                            NotificationType.ERROR);
                 }
-            } catch (Exception e) {
-                showNotification("MCP Server Error",
-                        "Failed to start MCP server: " + e.getMessage(),
-                        NotificationType.ERROR);
             }
+        });
+    }
+
+    private static int parseInt(JTextField field, String name, int min, int max) throws ConfigurationException {
+        try {
+            int value = Integer.parseInt(field.getText().trim());
+            if (value < min || value > max) {
+                throw new ConfigurationException("Value of " + name + " must be between " + min + " and " + max);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException("Invalid value of " + name);
         }
     }
 
@@ -652,6 +835,10 @@ public class SqlAgentConfigurable implements Configurable {
         dbDatabaseField.setText(dbConfig.getDatabase());
         dbUsernameField.setText(dbConfig.getUsername());
         dbPasswordField.setText(dbConfig.getPassword());
+        shareMcpServerCheckBox.setSelected(state.shareMcpServerOverHttp);
+        benchmarkCheckBox.setSelected(state.benchmarkOptimizedSql);
+        verifyEquivalenceCheckBox.setSelected(state.verifyEquivalence);
+        cacheOptimizationsCheckBox.setSelected(state.cacheOptimizations);
 
         // Reset LLM provider configuration
         LlmProviderConfig llmConfig = state.llmProviderConfig;
@@ -659,5 +846,12 @@ public class SqlAgentConfigurable implements Configurable {
         llmApiKeyField.setText(llmConfig.getApiKey());
         llmBaseUrlField.setText(llmConfig.getBaseUrl());
         llmModelField.setText(llmConfig.getModel());
+
+        // Reset batch analysis limits
+        batchConcurrencyField.setText(String.valueOf(state.batchConcurrency));
+        batchRequestsPerMinuteField.setText(String.valueOf(state.batchRequestsPerMinute));
+        batchMaxRetriesField.setText(String.valueOf(state.batchMaxRetries));
+        batchMaxStatementsField.setText(String.valueOf(state.batchMaxStatements));
+        dynamicSqlMaxVariantsField.setText(String.valueOf(state.dynamicSqlMaxVariants));
     }
 }
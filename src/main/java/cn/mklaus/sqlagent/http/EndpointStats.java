@@ -0,0 +1,57 @@
+package cn.mklaus.sqlagent.http;
+
+/**
+ * Call counters of one endpoint, e.g. {@code POST localhost:4096/session/{id}/message}
+ */
+public class EndpointStats {
+    private long calls;
+    private long errors;
+    private long totalNanos;
+    private long maxNanos;
+    private long bytesSent;
+    private long bytesReceived;
+
+    synchronized void record(long nanos, long sent, long received, boolean error) {
+        calls++;
+        if (error) {
+            errors++;
+        }
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        bytesSent += sent;
+        bytesReceived += received;
+    }
+
+    public synchronized long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Calls that failed or got an HTTP error status; cancelled calls are not errors
+     */
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    public synchronized double getAverageMillis() {
+        return calls == 0 ? 0 : totalNanos / 1_000_000.0 / calls;
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1_000_000.0;
+    }
+
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d calls, %d errors, avg %.1f ms, max %.1f ms, %d B sent, %d B received",
+                calls, errors, getAverageMillis(), getMaxMillis(), bytesSent, bytesReceived);
+    }
+}
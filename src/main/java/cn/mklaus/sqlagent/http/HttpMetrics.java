@@ -0,0 +1,91 @@
+package cn.mklaus.sqlagent.http;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records latency, bytes and errors per endpoint for every call of the clients it is installed on
+ *
+ * Path segments containing digits (session, message and part IDs) are replaced by {id}, so all
+ * calls to the same API endpoint share one entry.
+ */
+public class HttpMetrics implements EventListener.Factory {
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallListener();
+    }
+
+    /**
+     * Stats of all endpoints called so far, sorted by endpoint
+     */
+    public Map<String, EndpointStats> snapshot() {
+        return new TreeMap<>(endpoints);
+    }
+
+    /**
+     * Endpoint key of a call: method, host, port and the path with IDs replaced
+     */
+    static String endpointOf(Call call) {
+        HttpUrl url = call.request().url();
+        StringBuilder key = new StringBuilder(call.request().method()).append(' ')
+                .append(url.host()).append(':').append(url.port());
+        for (String segment : url.pathSegments()) {
+            key.append('/').append(segment.chars().anyMatch(Character::isDigit) ? "{id}" : segment);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Listener of one call; OkHttp creates one per call and reports its events in order
+     */
+    private class CallListener extends EventListener {
+        private long startNanos;
+        private long bytesSent;
+        private long bytesReceived;
+        private boolean httpError;
+
+        @Override
+        public void callStart(Call call) {
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            bytesSent += byteCount;
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            httpError = response.code() >= 400;
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            bytesReceived += byteCount;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            record(call, httpError);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            record(call, !call.isCanceled());
+        }
+
+        private void record(Call call, boolean error) {
+            endpoints.computeIfAbsent(endpointOf(call), key -> new EndpointStats())
+                    .record(System.nanoTime() - startNanos, bytesSent, bytesReceived, error);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package cn.mklaus.sqlagent.http;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application service owning the plugin's HTTP transport
+ *
+ * All clients are derived from one OkHttpClient, so they share its connection pool and only
+ * differ in timeouts. Every call is recorded in HttpMetrics. Event streams stay open for a whole
+ * optimization, so they get their own dispatcher and never hold the slots of the calls they report on.
+ */
+@Service(Service.Level.APP)
+public final class HttpTransportService implements Disposable {
+    private static final Logger LOG = Logger.getInstance(HttpTransportService.class);
+
+    private static final int MAX_LLM_TIMEOUT_SECONDS = 600; // Upper bound of the request timeout setting
+    private static final int MAX_PARALLEL_SESSIONS = 16; // Upper bound of the parallel requests setting
+    // Every server is on localhost: one message call per session, plus session housekeeping
+    private static final int MAX_REQUESTS_PER_HOST = MAX_PARALLEL_SESSIONS * 2;
+
+    private final HttpMetrics metrics = new HttpMetrics();
+    private final OkHttpClient baseClient;
+    private final OkHttpClient healthCheckClient;
+    private final OkHttpClient apiClient;
+    private final OkHttpClient llmClient;
+    private final OkHttpClient streamClient;
+
+    public HttpTransportService() {
+        this.baseClient = new OkHttpClient.Builder()
+                .dispatcher(newDispatcher())
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .eventListenerFactory(metrics)
+                .build();
+        this.healthCheckClient = baseClient.newBuilder()
+                .connectTimeout(2, TimeUnit.SECONDS)
+                .readTimeout(2, TimeUnit.SECONDS)
+                .build();
+        this.apiClient = baseClient.newBuilder()
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+        // AI optimization can take time, especially with MCP tool calls. Each message call
+        // sets its own deadline from the settings
+        this.llmClient = baseClient.newBuilder()
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(MAX_LLM_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+        // Server-sent events can be minutes apart while the model works
+        this.streamClient = baseClient.newBuilder()
+                .dispatcher(newDispatcher())
+                .readTimeout(0, TimeUnit.SECONDS)
+                .build();
+    }
+
+    private static Dispatcher newDispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), MAX_REQUESTS_PER_HOST));
+        return dispatcher;
+    }
+
+    public static HttpTransportService getInstance() {
+        return ApplicationManager.getApplication().getService(HttpTransportService.class);
+    }
+
+    /**
+     * Client for liveness probes of local servers: fails within seconds when nothing listens
+     */
+    public OkHttpClient getHealthCheckClient() {
+        return healthCheckClient;
+    }
+
+    /**
+     * Client for short API calls such as creating or deleting a session
+     */
+    public OkHttpClient getApiClient() {
+        return apiClient;
+    }
+
+    /**
+     * Client for requests answered by the model; callers set the call timeout
+     */
+    public OkHttpClient getLlmClient() {
+        return llmClient;
+    }
+
+    /**
+     * Client for event streams, without read timeout
+     */
+    public OkHttpClient getStreamClient() {
+        return streamClient;
+    }
+
+    /**
+     * Client with the shared connection pool and metrics but without read timeout, for callers
+     * deriving their own timeouts
+     */
+    public OkHttpClient getBaseClient() {
+        return baseClient;
+    }
+
+    public HttpMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void dispose() {
+        for (Map.Entry<String, EndpointStats> entry : metrics.snapshot().entrySet()) {
+            LOG.info("HTTP " + entry.getKey() + ": " + entry.getValue());
+        }
+        for (OkHttpClient client : new OkHttpClient[]{streamClient, baseClient}) {
+            client.dispatcher().cancelAll();
+            client.dispatcher().executorService().shutdown();
+        }
+        baseClient.connectionPool().evictAll();
+    }
+}
@@ -0,0 +1,229 @@
+package cn.mklaus.sqlagent.inspection;
+
+import cn.mklaus.sqlagent.analysis.LocalSqlAnalyzer;
+import cn.mklaus.sqlagent.analysis.MapperSqlText;
+import cn.mklaus.sqlagent.mybatis.MyBatisOptimizerAction;
+import cn.mklaus.sqlagent.mybatis.MyBatisSqlExtractor;
+import cn.mklaus.sqlagent.mybatis.dynamic.MapperFragmentResolver;
+import com.intellij.codeInsight.intention.IntentionAction;
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.ExternalAnnotator;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.IncorrectOperationException;
+import com.intellij.xml.util.XmlTagUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Marks anti-patterns in the statements of MyBatis mapper XML files
+ *
+ * Runs LocalSqlAnalyzer off the EDT after the other highlighting passes. The analysis of a
+ * statement is cached on its tag until the tag's text changes, so typing in one statement
+ * only re-analyzes that statement. Findings are marked at the offending tokens; findings about
+ * the statement as a whole are marked on its tag name. Those take the {@code <include>}d
+ * fragments of the same file into account and are skipped when a fragment lives elsewhere.
+ * Statistics such as the number of joins only feed the batch score and are not marked.
+ */
+public class SqlOptimizationAnnotator extends ExternalAnnotator<List<XmlTag>, List<SqlOptimizationAnnotator.StatementResult>> {
+    private static final Set<String> STATEMENT_TAGS = Set.of("select", "insert", "update", "delete");
+    private static final LocalSqlAnalyzer ANALYZER = new LocalSqlAnalyzer();
+
+    /**
+     * Findings of one statement
+     */
+    static class StatementResult {
+        final XmlTag tag;
+        final LocalSqlAnalyzer.Analysis analysis;
+
+        StatementResult(XmlTag tag, LocalSqlAnalyzer.Analysis analysis) {
+            this.tag = tag;
+            this.analysis = analysis;
+        }
+    }
+
+    @Override
+    public @Nullable List<XmlTag> collectInformation(@NotNull PsiFile file) {
+        if (!(file instanceof XmlFile)) {
+            return null;
+        }
+        XmlTag root = ((XmlFile) file).getRootTag();
+        if (root == null || !"mapper".equals(root.getName())) {
+            return null;
+        }
+        List<XmlTag> tags = new ArrayList<>();
+        for (XmlTag tag : root.getSubTags()) {
+            if (STATEMENT_TAGS.contains(tag.getName())) {
+                tags.add(tag);
+            }
+        }
+        return tags.isEmpty() ? null : tags;
+    }
+
+    @Override
+    public @Nullable List<StatementResult> doAnnotate(List<XmlTag> tags) {
+        List<StatementResult> results = new ArrayList<>();
+        for (XmlTag tag : tags) {
+            ProgressManager.checkCanceled();
+            // One short read action per statement, so a pending write action is not held up
+            LocalSqlAnalyzer.Analysis analysis = ReadAction.compute(() -> tag.isValid() ? analyze(tag) : null);
+            if (analysis != null && analysis.getFindings().stream().anyMatch(finding -> !finding.isStatistic())) {
+                results.add(new StatementResult(tag, analysis));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Analysis of the statement, cached until its text or an included fragment changes
+     */
+    private static LocalSqlAnalyzer.Analysis analyze(XmlTag tag) {
+        return CachedValuesManager.getCachedValue(tag, () -> {
+            String sqlType = tag.getName().toUpperCase(Locale.ROOT);
+            LocalSqlAnalyzer.Analysis analysis = ANALYZER.analyze(sqlType,
+                    MapperSqlText.mask(tag.getValue().getText()), includedSql(tag));
+            // Unchanged statements keep their PSI across reparses of the file, and with it this value
+            ModificationTracker textChanged = () -> tag.isValid()
+                    ? Objects.hash(tag.getText(), includedSql(tag)) : -1;
+            return CachedValueProvider.Result.create(analysis, textChanged);
+        });
+    }
+
+    /**
+     * Masked text of the fragments the statement includes, nested includes too
+     * @return The text, or null if a fragment is not declared in this file
+     */
+    private static @Nullable String includedSql(XmlTag tag) {
+        XmlFile file = (XmlFile) tag.getContainingFile();
+        XmlTag root = file.getRootTag();
+        String namespace = root != null ? root.getAttributeValue("namespace") : null;
+        StringBuilder sql = new StringBuilder();
+        Set<String> seen = new HashSet<>();
+        Deque<XmlTag> pending = new ArrayDeque<>();
+        pending.add(tag);
+        while (!pending.isEmpty()) {
+            for (XmlTag include : PsiTreeUtil.findChildrenOfType(pending.poll(), XmlTag.class)) {
+                if (!"include".equals(include.getName())) {
+                    continue;
+                }
+                String refid = include.getAttributeValue("refid");
+                if (refid == null || namespace == null) {
+                    return null;
+                }
+                int dot = refid.lastIndexOf('.');
+                if (dot > 0 && !refid.substring(0, dot).equals(namespace)) {
+                    return null;
+                }
+                XmlTag fragment = MapperFragmentResolver.findInFile(file, namespace, refid.substring(dot + 1));
+                if (fragment == null) {
+                    return null;
+                }
+                if (seen.add(refid.substring(dot + 1))) {
+                    sql.append(MapperSqlText.mask(fragment.getValue().getText())).append('\n');
+                    pending.add(fragment);
+                }
+            }
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public void apply(@NotNull PsiFile file, List<StatementResult> results, @NotNull AnnotationHolder holder) {
+        for (StatementResult result : results) {
+            XmlTag tag = result.tag;
+            if (!tag.isValid()) {
+                continue;
+            }
+            int valueStart = tag.getValue().getTextRange().getStartOffset();
+            PsiElement tagName = XmlTagUtil.getStartTagNameElement(tag);
+            TextRange statementRange = tagName != null ? tagName.getTextRange() : tag.getTextRange();
+            int cost = result.analysis.getCost();
+            OptimizeStatementFix fix = new OptimizeStatementFix(tag);
+
+            for (LocalSqlAnalyzer.Finding finding : result.analysis.getFindings()) {
+                if (finding.isStatistic()) {
+                    continue;
+                }
+                TextRange range = finding.hasRange()
+                        ? new TextRange(valueStart + finding.getStart(), valueStart + finding.getEnd())
+                        : statementRange;
+                String message = finding.getMessage() + " (estimated cost " + finding.getCost()
+                        + " of " + cost + " for this statement)";
+                holder.newAnnotation(HighlightSeverity.WEAK_WARNING, message)
+                        .range(range)
+                        .withFix(fix)
+                        .create();
+            }
+        }
+    }
+
+    @Override
+    public @Nullable String getPairedBatchInspectionShortName() {
+        return "SqlOptimization";
+    }
+
+    /**
+     * Sends the statement to the optimizer, as its gutter icon does
+     */
+    private static class OptimizeStatementFix implements IntentionAction {
+        private final SmartPsiElementPointer<XmlTag> tagPointer;
+
+        OptimizeStatementFix(XmlTag tag) {
+            this.tagPointer = SmartPointerManager.createPointer(tag);
+        }
+
+        @Override
+        public @NotNull String getText() {
+            return "Optimize with AI";
+        }
+
+        @Override
+        public @NotNull String getFamilyName() {
+            return "SqlAgent Optimization";
+        }
+
+        @Override
+        public boolean isAvailable(@NotNull Project project, Editor editor, PsiFile file) {
+            return tagPointer.getElement() != null;
+        }
+
+        @Override
+        public void invoke(@NotNull Project project, Editor editor, PsiFile file) throws IncorrectOperationException {
+            XmlTag tag = tagPointer.getElement();
+            if (tag == null) {
+                return;
+            }
+            MyBatisSqlExtractor extractor = new MyBatisSqlExtractor();
+            new MyBatisOptimizerAction(tag, extractor.extractSql(tag), extractor.getStatementId(tag))
+                    .actionPerformedForProject(project);
+        }
+
+        @Override
+        public boolean startInWriteAction() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package cn.mklaus.sqlagent.mcp;
+
+import cn.mklaus.sqlagent.http.HttpTransportService;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tool client talking to the shared MCP server over streamable HTTP
+ */
+class HttpMcpToolClient extends McpToolClient {
+    private static final Gson GSON = new Gson();
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final String SESSION_HEADER = "Mcp-Session-Id";
+
+    private final String endpoint;
+    private final String token;
+    private final OkHttpClient client;
+    private volatile String sessionId;
+
+    HttpMcpToolClient(String endpoint, String token) {
+        this.endpoint = endpoint;
+        this.token = token;
+        this.client = HttpTransportService.getInstance().getBaseClient().newBuilder()
+                .connectTimeout(2, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    protected JsonObject send(JsonObject request, long timeoutMillis) throws IOException {
+        try (Response response = post(request, timeoutMillis)) {
+            if (response.code() == 404 && sessionId != null) {
+                sessionId = null;
+                throw new SessionExpiredException("MCP session expired");
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("MCP server returned HTTP " + response.code());
+            }
+
+            String session = response.header(SESSION_HEADER);
+            if (session != null) {
+                sessionId = session;
+            }
+
+            String body = response.body().string();
+            String contentType = response.header("Content-Type", "");
+            if (contentType.startsWith("text/event-stream")) {
+                body = extractEventData(body);
+            }
+            return JsonParser.parseString(body).getAsJsonObject();
+        }
+    }
+
+    @Override
+    protected void sendNotification(JsonObject notification) throws IOException {
+        try (Response response = post(notification, 5000)) {
+            if (!response.isSuccessful()) {
+                throw new IOException("MCP server returned HTTP " + response.code());
+            }
+        }
+    }
+
+    private Response post(JsonObject message, long timeoutMillis) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(endpoint)
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/json, text/event-stream")
+                .post(RequestBody.create(GSON.toJson(message), JSON));
+        if (sessionId != null) {
+            builder.header(SESSION_HEADER, sessionId);
+        }
+
+        OkHttpClient callClient = client.newBuilder()
+                .callTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .build();
+        return callClient.newCall(builder.build()).execute();
+    }
+
+    /**
+     * Take the data of the first SSE message
+     */
+    private String extractEventData(String stream) throws IOException {
+        StringBuilder data = new StringBuilder();
+        for (String line : stream.split("\n")) {
+            if (line.startsWith("data:")) {
+                data.append(line.substring(5).trim());
+            } else if (line.isBlank() && data.length() > 0) {
+                break;
+            }
+        }
+        if (data.length() == 0) {
+            throw new IOException("Empty event stream from MCP server");
+        }
+        return data.toString();
+    }
+
+    @Override
+    public void close() {
+        String session = sessionId;
+        if (session == null) {
+            return;
+        }
+        Request request = new Request.Builder()
+                .url(endpoint)
+                .header("Authorization", "Bearer " + token)
+                .header(SESSION_HEADER, session)
+                .delete()
+                .build();
+        try (Response ignored = client.newCall(request).execute()) {
+            sessionId = null;
+        } catch (IOException e) {
+            // Server already gone
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cn.mklaus.sqlagent.mcp;
 
+import cn.mklaus.sqlagent.analysis.PlanEstimateService;
 import cn.mklaus.sqlagent.config.DatabaseConfig;
 import cn.mklaus.sqlagent.config.LlmProviderConfig;
 import cn.mklaus.sqlagent.config.SqlAgentSettingsService;
@@ -10,6 +11,8 @@ import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Path;
+
 /**
  * Application service that manages MCP server lifecycle
  */
@@ -19,7 +22,7 @@ public final class McpServerLifecycleService implements Disposable {
 
     private final McpServerManager mcpServerManager;
     private final OpenCodeConfigGenerator configGenerator;
-    private boolean isRunning = false;
+    private volatile boolean isRunning = false;
 
     public McpServerLifecycleService() {
         this.mcpServerManager = new McpServerManager();
@@ -49,20 +52,25 @@ public final class McpServerLifecycleService implements Disposable {
         if (!dbConfig.isValid()) {
             LOG.warn("Database configuration is not valid, not starting MCP server");
             // Still update OpenCode config for LLM provider
-            String jarPath = System.getProperty("java.io.tmpdir") + "/sqlagent/mcp/sqlagent-mcp-server.jar";
-            LOG.info("Updating OpenCode configuration with LLM provider config");
-            configGenerator.updateConfig(dbConfig, llmConfig, jarPath);
+            Path jarPath = mcpServerManager.extractMcpServerJar();
+            if (jarPath != null) {
+                LOG.info("Updating OpenCode configuration with LLM provider config");
+                configGenerator.updateConfig(dbConfig, llmConfig, jarPath.toString());
+            }
             return false;
         }
 
         LOG.info("Starting MCP server for database: " + dbConfig);
-        isRunning = mcpServerManager.startServer(dbConfig);
+        isRunning = mcpServerManager.startServer(dbConfig, state.shareMcpServerOverHttp);
 
         if (isRunning) {
             // Update OpenCode configuration with the extracted JAR path and LLM provider config
-            String jarPath = System.getProperty("java.io.tmpdir") + "/sqlagent/mcp/sqlagent-mcp-server.jar";
-            LOG.info("Updating OpenCode configuration with MCP server JAR: " + jarPath);
-            configGenerator.updateConfig(dbConfig, llmConfig, jarPath);
+            // (already extracted by startServer, so this returns the cached path)
+            Path jarPath = mcpServerManager.extractMcpServerJar();
+            String httpEndpoint = mcpServerManager.getHttpEndpoint();
+            LOG.info("Updating OpenCode configuration with MCP server " + (httpEndpoint != null ? httpEndpoint : "JAR: " + jarPath));
+            configGenerator.updateConfig(dbConfig, llmConfig, jarPath != null ? jarPath.toString() : null,
+                    httpEndpoint, mcpServerManager.getHttpToken());
         }
 
         return isRunning;
@@ -88,11 +96,33 @@ public final class McpServerLifecycleService implements Disposable {
         return isRunning && mcpServerManager.isServerRunning();
     }
 
+    /**
+     * Whether the server has been started, without checking that it still answers. Takes no
+     * lock and does no I/O, so it is safe to call while highlighting.
+     */
+    public boolean isMcpServerStarted() {
+        return isRunning;
+    }
+
+    /**
+     * Get a client for calling MCP tools directly, starting the server if needed
+     * @return Client, or null when the database is not configured or the server cannot be started
+     */
+    public synchronized McpToolClient getToolClient() {
+        if (!isMcpServerRunning()) {
+            stopMcpServer();
+            startMcpServer();
+        }
+        return isRunning ? mcpServerManager.getToolClient() : null;
+    }
+
     /**
      * Restart MCP server with new configuration
      */
     public boolean restartMcpServer() {
         stopMcpServer();
+        // The configuration may point to another database now
+        PlanEstimateService.getInstance().clear();
         return startMcpServer();
     }
 
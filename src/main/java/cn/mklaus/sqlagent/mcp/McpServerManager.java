@@ -1,17 +1,46 @@
 package cn.mklaus.sqlagent.mcp;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import cn.mklaus.sqlagent.config.DatabaseConfig;
+import cn.mklaus.sqlagent.http.HttpTransportService;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.JarURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 
 /**
  * Manages the Java MCP server lifecycle
@@ -19,15 +48,41 @@ import java.util.concurrent.TimeUnit;
 public class McpServerManager {
     private static final Logger LOG = Logger.getInstance(McpServerManager.class);
     private static final int MAX_STARTUP_WAIT_SECONDS = 5;
+    private static final String JAR_RESOURCE = "/mcp/sqlagent-mcp-server.jar";
+    private static final String JAR_PREFIX = "sqlagent-mcp-server-";
+    private static final String STAMP_FILE = "extracted.properties";
+    private static final int HASH_PREFIX_LENGTH = 16;
+
+    private static final int SHARED_POOL_SIZE = 10;
+    private static final int SHARED_IDLE_TIMEOUT_MINUTES = 30;
+    private static final int HEARTBEAT_MINUTES = 5;
+
+    private final OkHttpClient healthClient = HttpTransportService.getInstance().getHealthCheckClient();
 
     private Process mcpServerProcess;
+    private String httpEndpoint;
+    private String httpToken;
+    private String serverFingerprint;
+    private McpToolClient toolClient;
+    private ScheduledFuture<?> heartbeat;
 
     /**
-     * Start the MCP server
+     * Start the MCP server over STDIO
      * @param config Database configuration
      * @return true if started successfully
      */
     public boolean startServer(DatabaseConfig config) {
+        return startServer(config, false);
+    }
+
+    /**
+     * Start the MCP server
+     * @param config Database configuration
+     * @param shareOverHttp Serve over localhost HTTP and reuse a server already running for the
+     *                      same database (started by another IDE instance), instead of STDIO
+     * @return true if started (or attached) successfully
+     */
+    public boolean startServer(DatabaseConfig config, boolean shareOverHttp) {
         try {
             // Validate config
             if (config == null || !config.isValid()) {
@@ -36,6 +91,20 @@ public class McpServerManager {
                 return false;
             }
 
+            if (shareOverHttp) {
+                String fingerprint = config.getFingerprint();
+                Properties registration = readRegistration(fingerprint, config.getPassword());
+                if (registration != null) {
+                    int sharedPort = Integer.parseInt(registration.getProperty("port"));
+                    String token = registration.getProperty("token");
+                    if (isHealthy(sharedPort, fingerprint, token)) {
+                        attach(sharedPort, fingerprint, token);
+                        LOG.info("Reusing shared MCP server at " + httpEndpoint);
+                        return true;
+                    }
+                }
+            }
+
             // Extract JAR from plugin resources
             Path jarPath = extractMcpServerJar();
             if (jarPath == null) {
@@ -66,13 +135,17 @@ public class McpServerManager {
             env.put("DB_USER", config.getUsername());
             env.put("DB_PASSWORD", config.getPassword());
 
-            pb.redirectErrorStream(true);
-
             LOG.info("Starting MCP server with database: " + config.getType() + "://" + config.getHost() + ":" + config.getPort() + "/" + config.getDatabase());
             LOG.info("Java: " + javaExec);
             LOG.info("JAR: " + jarPath);
 
+            if (shareOverHttp) {
+                return startSharedServer(pb, config.getFingerprint(), config.getPassword());
+            }
+
+            // stdout carries JSON-RPC responses to the plugin's tool client, stderr the server log
             mcpServerProcess = pb.start();
+            toolClient = new StdioMcpToolClient(mcpServerProcess);
 
             // Start output logger
             startOutputLogger();
@@ -88,20 +161,86 @@ public class McpServerManager {
                 LOG.error("MCP server failed to start, exit code: " + exitCode);
                 LOG.error("Check database configuration and ensure database is accessible");
                 mcpServerProcess = null;
+                toolClient = null;
                 return false;
             }
 
         } catch (Exception e) {
             LOG.error("Failed to start MCP server", e);
             mcpServerProcess = null;
+            toolClient = null;
             return false;
         }
     }
 
+    /**
+     * Start a server on a free localhost port and register it for other IDE instances.
+     * The shared server outlives this IDE. A server registered before for the same database,
+     * e.g. with an old password, is shut down first. The new one stops itself once nothing used
+     * it for SHARED_IDLE_TIMEOUT_MINUTES; attached IDEs keep it alive with a heartbeat, since
+     * opencode.json points OpenCode at its port and token and a running OpenCode would not
+     * follow a restarted server.
+     */
+    private boolean startSharedServer(ProcessBuilder pb, String fingerprint, String password)
+            throws IOException, InterruptedException {
+        shutdownRegistered(fingerprint);
+
+        int port = findFreePort();
+        String token = generateToken();
+        Map<String, String> env = pb.environment();
+        env.put("MCP_TRANSPORT", "http");
+        env.put("MCP_HTTP_PORT", String.valueOf(port));
+        env.put("MCP_HTTP_TOKEN", token);
+        env.put("MCP_IDLE_TIMEOUT_MINUTES", String.valueOf(SHARED_IDLE_TIMEOUT_MINUTES));
+        env.put("DB_POOL_SIZE", String.valueOf(SHARED_POOL_SIZE));
+
+        // Not tied to this IDE's pipes: the server logs to ~/.opencode/logs/sqlagent-mcp.log
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        mcpServerProcess = pb.start();
+
+        for (int i = 0; i < MAX_STARTUP_WAIT_SECONDS * 4; i++) {
+            Thread.sleep(250);
+            if (!mcpServerProcess.isAlive()) {
+                break;
+            }
+            if (isHealthy(port, fingerprint, token)) {
+                register(fingerprint, port, token, password, mcpServerProcess.pid());
+                attach(port, fingerprint, token);
+                LOG.info("Shared MCP server started at " + httpEndpoint + ", PID: " + mcpServerProcess.pid());
+                return true;
+            }
+        }
+
+        LOG.error("Shared MCP server did not become ready on port " + port);
+        mcpServerProcess.destroyForcibly();
+        mcpServerProcess = null;
+        return false;
+    }
+
     /**
      * Stop the MCP server
+     * A shared HTTP server is only detached from: other IDEs and OpenCode may still use it.
      */
     public void stopServer() {
+        if (toolClient != null) {
+            toolClient.close();
+            toolClient = null;
+        }
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+
+        if (httpEndpoint != null) {
+            LOG.info("Detaching from shared MCP server at " + httpEndpoint);
+            httpEndpoint = null;
+            httpToken = null;
+            serverFingerprint = null;
+            mcpServerProcess = null;
+            return;
+        }
+
         if (mcpServerProcess != null && mcpServerProcess.isAlive()) {
             LOG.info("Stopping MCP server");
             mcpServerProcess.destroy();
@@ -122,28 +261,254 @@ public class McpServerManager {
      * Check if MCP server is running
      */
     public boolean isServerRunning() {
+        if (httpEndpoint != null) {
+            return isHealthy(URI.create(httpEndpoint).getPort(), serverFingerprint, httpToken);
+        }
         return mcpServerProcess != null && mcpServerProcess.isAlive();
     }
 
     /**
-     * Extract MCP server JAR from plugin resources to temp directory
+     * Get the streamable HTTP endpoint of the shared server
+     * @return Endpoint URL, or null when running over STDIO
      */
-    private Path extractMcpServerJar() throws IOException {
-        // Get temp directory
-        Path tempDir = Path.of(System.getProperty("java.io.tmpdir"), "sqlagent", "mcp");
-        Files.createDirectories(tempDir);
+    public String getHttpEndpoint() {
+        return httpEndpoint;
+    }
 
-        Path jarPath = tempDir.resolve("sqlagent-mcp-server.jar");
+    /**
+     * Get the bearer token of the shared server
+     * @return Token, or null when running over STDIO
+     */
+    public String getHttpToken() {
+        return httpToken;
+    }
 
-        // Try to extract from resources
-        try (var in = getClass().getResourceAsStream("/mcp/sqlagent-mcp-server.jar")) {
-            if (in == null) {
-                LOG.error("MCP server JAR not found in resources: /mcp/sqlagent-mcp-server.jar");
-                return null;
+    /**
+     * Get a client for calling tools of the running server directly
+     * @return Client, or null when no server is running
+     */
+    public McpToolClient getToolClient() {
+        return toolClient;
+    }
+
+    private void attach(int port, String fingerprint, String token) {
+        httpEndpoint = buildEndpoint(port);
+        httpToken = token;
+        serverFingerprint = fingerprint;
+        toolClient = new HttpMcpToolClient(httpEndpoint, token);
+        // An authorized health check counts as activity, so the server stays up while this IDE is attached
+        heartbeat = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                () -> isHealthy(port, fingerprint, token), HEARTBEAT_MINUTES, HEARTBEAT_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stop the server registered for the database, so a replacement does not leave it running
+     * with its connection pool. Asks it through /shutdown with its token; if it does not answer,
+     * ends it by its recorded PID, as long as that process still runs the MCP server JAR.
+     */
+    private void shutdownRegistered(String fingerprint) {
+        Properties registration = loadRegistration(fingerprint);
+        if (registration == null) {
+            return;
+        }
+        int port = Integer.parseInt(registration.getProperty("port"));
+        String token = registration.getProperty("token");
+        if (token != null && requestShutdown(port, token)) {
+            LOG.info("Shut down previously registered MCP server on port " + port);
+            return;
+        }
+        try {
+            long pid = Long.parseLong(registration.getProperty("pid", ""));
+            ProcessHandle.of(pid)
+                    .filter(process -> process.info().commandLine().map(line -> line.contains(JAR_PREFIX)).orElse(false))
+                    .ifPresent(process -> {
+                        LOG.info("Stopping previously registered MCP server, PID: " + pid);
+                        process.destroy();
+                    });
+        } catch (NumberFormatException e) {
+            // Registered without a PID
+        }
+    }
+
+    private boolean requestShutdown(int port, String token) {
+        Request request = new Request.Builder()
+                .url("http://127.0.0.1:" + port + "/shutdown")
+                .header("Authorization", "Bearer " + token)
+                .post(RequestBody.create(new byte[0]))
+                .build();
+
+        try (Response response = healthClient.newCall(request).execute()) {
+            return response.code() == 204;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check that a server answers on the port, accepts the token and serves the expected database
+     */
+    private boolean isHealthy(int port, String fingerprint, String token) {
+        Request request = new Request.Builder()
+                .url("http://127.0.0.1:" + port + "/health")
+                .header("Authorization", "Bearer " + token)
+                .get()
+                .build();
+
+        try (Response response = healthClient.newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                return false;
             }
+            JsonObject health = JsonParser.parseString(response.body().string()).getAsJsonObject();
+            return health.has("fingerprint") && fingerprint.equals(health.get("fingerprint").getAsString());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private String buildEndpoint(int port) {
+        return "http://127.0.0.1:" + port + "/mcp";
+    }
+
+    private int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Registry of shared servers, keyed by database fingerprint: port, bearer token, PID, and a hash
+     * of token and password so that a changed password does not reuse a server holding the old one.
+     * Lives in the user home so that all IDE products and versions find the same server, and is
+     * readable by its owner only.
+     */
+    private Path getRegistryFile(String fingerprint) {
+        return Path.of(System.getProperty("user.home"), ".sqlagent", "mcp-servers", fingerprint + ".properties");
+    }
+
+    private Properties readRegistration(String fingerprint, String password) {
+        Properties registration = loadRegistration(fingerprint);
+        if (registration == null) {
+            return null;
+        }
+        String token = registration.getProperty("token");
+        if (token == null || !credentialsHash(token, password).equals(registration.getProperty("credentials"))) {
+            return null;
+        }
+        return registration;
+    }
 
-            Files.copy(in, jarPath, StandardCopyOption.REPLACE_EXISTING);
-            LOG.info("Extracted MCP server JAR to: " + jarPath);
+    /**
+     * The registry entry as written, without checking its credentials
+     */
+    private Properties loadRegistration(String fingerprint) {
+        Path registryFile = getRegistryFile(fingerprint);
+        if (!Files.isRegularFile(registryFile)) {
+            return null;
+        }
+        Properties registration = new Properties();
+        try (InputStream in = Files.newInputStream(registryFile)) {
+            registration.load(in);
+            Integer.parseInt(registration.getProperty("port", ""));
+        } catch (IOException | NumberFormatException e) {
+            LOG.warn("Invalid shared MCP server registry entry: " + registryFile);
+            return null;
+        }
+        return registration;
+    }
+
+    private void register(String fingerprint, int port, String token, String password, long pid) {
+        Path registryFile = getRegistryFile(fingerprint);
+        Properties registration = new Properties();
+        registration.setProperty("port", String.valueOf(port));
+        registration.setProperty("token", token);
+        registration.setProperty("pid", String.valueOf(pid));
+        registration.setProperty("credentials", credentialsHash(token, password));
+        try {
+            Files.createDirectories(registryFile.getParent());
+            Path tempFile = Files.createTempFile(registryFile.getParent(), fingerprint, ".tmp");
+            try {
+                restrictToOwner(tempFile);
+                try (OutputStream out = Files.newOutputStream(tempFile)) {
+                    registration.store(out, "SqlAgent shared MCP server");
+                }
+                moveAtomically(tempFile, registryFile);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to register shared MCP server: " + e.getMessage());
+        }
+    }
+
+    private static void restrictToOwner(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; the user home is private on Windows
+        }
+    }
+
+    private static String credentialsHash(String token, String password) {
+        return sha256((token + "|" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String generateToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * Extract MCP server JAR from plugin resources into the stable cache directory.
+     *
+     * The extracted file is named after the SHA-256 of its content, so an identical JAR
+     * is never rewritten. A small stamp file records the CRC/size of the bundled resource,
+     * which lets restarts skip reading and hashing the resource altogether.
+     *
+     * @return Path of the extracted JAR, or null if extraction failed
+     */
+    public synchronized Path extractMcpServerJar() {
+        URL resource = getClass().getResource(JAR_RESOURCE);
+        if (resource == null) {
+            LOG.error("MCP server JAR not found in resources: " + JAR_RESOURCE);
+            return null;
+        }
+
+        try {
+            Path cacheDir = getCacheDirectory();
+            Files.createDirectories(cacheDir);
+
+            // Fast path: resource unchanged since last extraction and the JAR is still there
+            String resourceStamp = getResourceStamp(resource);
+            Path cachedJar = findExtractedJar(cacheDir, resourceStamp);
+            if (cachedJar != null) {
+                LOG.debug("MCP server JAR is up to date: " + cachedJar);
+                return cachedJar;
+            }
+
+            byte[] content;
+            try (InputStream in = resource.openStream()) {
+                content = in.readAllBytes();
+            }
+
+            String hash = sha256(content).substring(0, HASH_PREFIX_LENGTH);
+            Path jarPath = cacheDir.resolve(JAR_PREFIX + hash + ".jar");
+
+            if (Files.isRegularFile(jarPath) && Files.size(jarPath) == content.length) {
+                LOG.info("MCP server JAR already extracted: " + jarPath);
+            } else {
+                Path tempFile = Files.createTempFile(cacheDir, JAR_PREFIX, ".tmp");
+                try {
+                    Files.write(tempFile, content);
+                    moveAtomically(tempFile, jarPath);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+                LOG.info("Extracted MCP server JAR to: " + jarPath);
+            }
+
+            writeStamp(cacheDir, resourceStamp, jarPath, content.length);
+            cleanupOldVersions(cacheDir, jarPath);
             return jarPath;
 
         } catch (IOException e) {
@@ -152,6 +517,137 @@ public class McpServerManager {
         }
     }
 
+    /**
+     * Stable per-installation cache directory (survives temp directory cleanup)
+     */
+    private Path getCacheDirectory() {
+        return Path.of(PathManager.getSystemPath(), "sqlagent", "mcp");
+    }
+
+    /**
+     * Identify the bundled resource without reading it: CRC and size from the plugin JAR
+     * directory entry, or size and modification time when running from exploded classes.
+     */
+    private String getResourceStamp(URL resource) throws IOException {
+        URLConnection connection = resource.openConnection();
+        if (connection instanceof JarURLConnection) {
+            JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+            return "jar:" + Long.toHexString(entry.getCrc()) + ":" + entry.getSize();
+        }
+        return "file:" + connection.getContentLengthLong() + ":" + connection.getLastModified();
+    }
+
+    /**
+     * Return the previously extracted JAR if the stamp file matches the current resource
+     */
+    private Path findExtractedJar(Path cacheDir, String resourceStamp) {
+        Path stampFile = cacheDir.resolve(STAMP_FILE);
+        if (!Files.isRegularFile(stampFile)) {
+            return null;
+        }
+
+        Properties stamp = new Properties();
+        try (InputStream in = Files.newInputStream(stampFile)) {
+            stamp.load(in);
+        } catch (IOException e) {
+            LOG.warn("Failed to read MCP server JAR stamp: " + e.getMessage());
+            return null;
+        }
+
+        if (!resourceStamp.equals(stamp.getProperty("resource"))) {
+            return null;
+        }
+
+        String jarName = stamp.getProperty("jar");
+        if (jarName == null) {
+            return null;
+        }
+
+        try {
+            Path jarPath = cacheDir.resolve(jarName);
+            long expectedSize = Long.parseLong(stamp.getProperty("size", "-1"));
+            if (Files.isRegularFile(jarPath) && Files.size(jarPath) == expectedSize) {
+                return jarPath;
+            }
+        } catch (NumberFormatException | IOException e) {
+            LOG.warn("Invalid MCP server JAR stamp: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Record which resource produced which extracted JAR
+     */
+    private void writeStamp(Path cacheDir, String resourceStamp, Path jarPath, long size) throws IOException {
+        Properties stamp = new Properties();
+        stamp.setProperty("resource", resourceStamp);
+        stamp.setProperty("jar", jarPath.getFileName().toString());
+        stamp.setProperty("size", String.valueOf(size));
+
+        Path tempFile = Files.createTempFile(cacheDir, "stamp", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                stamp.store(out, "SqlAgent MCP server JAR");
+            }
+            moveAtomically(tempFile, cacheDir.resolve(STAMP_FILE));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Rename within the cache directory so readers never see a partially written file
+     */
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Delete JARs of previous versions and temp files left behind by interrupted extractions
+     */
+    private void cleanupOldVersions(Path cacheDir, Path currentJar) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDir, JAR_PREFIX + "*")) {
+            for (Path entry : entries) {
+                if (entry.equals(currentJar) || isRecentTempFile(entry)) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(entry);
+                    LOG.info("Removed old MCP server JAR: " + entry);
+                } catch (IOException e) {
+                    // Still in use by another running server (e.g. on Windows); retry next time
+                    LOG.debug("Could not remove old MCP server JAR: " + entry);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to clean up old MCP server JARs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Temp files may belong to an extraction running concurrently in another IDE instance
+     */
+    private boolean isRecentTempFile(Path entry) throws IOException {
+        if (!entry.getFileName().toString().endsWith(".tmp")) {
+            return false;
+        }
+        long ageMillis = System.currentTimeMillis() - Files.getLastModifiedTime(entry).toMillis();
+        return ageMillis < TimeUnit.MINUTES.toMillis(10);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     /**
      * Find Java executable
      */
@@ -171,12 +667,12 @@ public class McpServerManager {
     }
 
     /**
-     * Start logging server output
+     * Start logging server output (the server logs to stderr)
      */
     private void startOutputLogger() {
         Thread loggerThread = new Thread(() -> {
             try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(mcpServerProcess.getInputStream()))) {
+                    new InputStreamReader(mcpServerProcess.getErrorStream()))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     LOG.info("MCP server: " + line);
@@ -0,0 +1,183 @@
+package cn.mklaus.sqlagent.mcp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JSON-RPC client for calling tools of the plugin's MCP server directly
+ *
+ * Used for measurements the plugin makes itself (benchmarks, equivalence checks), without
+ * going through the LLM. Thread-safe; the MCP handshake is done on first use.
+ */
+public abstract class McpToolClient implements AutoCloseable {
+    private static final Logger LOG = Logger.getInstance(McpToolClient.class);
+    private static final String PROTOCOL_VERSION = "2025-03-26";
+    private static final long CANCEL_POLL_MILLIS = 100;
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private volatile boolean initialized;
+
+    /**
+     * Call a tool and return its result
+     * @throws IOException If the server is unreachable, times out, or the tool fails
+     */
+    public JsonObject callTool(String name, JsonObject arguments, long timeoutMillis) throws IOException {
+        return callTool(name, arguments, timeoutMillis, null);
+    }
+
+    /**
+     * Call a tool, giving up as soon as the user cancels the progress
+     *
+     * On cancel the server is sent notifications/cancelled, which stops the queries the tool
+     * runs, and ProcessCanceledException is thrown.
+     * @param indicator Progress polled while waiting, or null to wait for the timeout
+     */
+    public JsonObject callTool(String name, JsonObject arguments, long timeoutMillis,
+                               @Nullable ProgressIndicator indicator) throws IOException {
+        JsonObject params = new JsonObject();
+        params.addProperty("name", name);
+        params.add("arguments", arguments);
+
+        JsonObject response;
+        try {
+            ensureInitialized(timeoutMillis);
+            response = send(request("tools/call", params), timeoutMillis, indicator);
+        } catch (SessionExpiredException e) {
+            // Server restarted or dropped the session: handshake again once
+            initialized = false;
+            ensureInitialized(timeoutMillis);
+            response = send(request("tools/call", params), timeoutMillis, indicator);
+        }
+
+        if (response.has("error")) {
+            throw new IOException(response.getAsJsonObject("error").get("message").getAsString());
+        }
+
+        JsonObject result = response.getAsJsonObject("result");
+        JsonArray content = result.getAsJsonArray("content");
+        String text = content.get(0).getAsJsonObject().get("text").getAsString();
+        if (result.has("isError") && result.get("isError").getAsBoolean()) {
+            throw new IOException(text);
+        }
+        return JsonParser.parseString(text).getAsJsonObject();
+    }
+
+    private JsonObject send(JsonObject request, long timeoutMillis, @Nullable ProgressIndicator indicator)
+            throws IOException {
+        if (indicator == null) {
+            return send(request, timeoutMillis);
+        }
+        indicator.checkCanceled();
+        Future<JsonObject> response = AppExecutorUtil.getAppExecutorService().submit(() -> send(request, timeoutMillis));
+        try {
+            while (true) {
+                try {
+                    return response.get(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    indicator.checkCanceled();
+                }
+            }
+        } catch (ProcessCanceledException e) {
+            response.cancel(true);
+            sendCancelled(request);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.cancel(true);
+            sendCancelled(request);
+            throw new IOException("Interrupted while waiting for the MCP server");
+        }
+    }
+
+    private void sendCancelled(JsonObject request) {
+        JsonObject params = new JsonObject();
+        params.add("requestId", request.get("id"));
+        params.addProperty("reason", "Cancelled by the user");
+
+        JsonObject notification = new JsonObject();
+        notification.addProperty("jsonrpc", "2.0");
+        notification.addProperty("method", "notifications/cancelled");
+        notification.add("params", params);
+        try {
+            sendNotification(notification);
+        } catch (IOException e) {
+            LOG.debug("Failed to cancel MCP request: " + e.getMessage());
+        }
+    }
+
+    private synchronized void ensureInitialized(long timeoutMillis) throws IOException {
+        if (initialized) {
+            return;
+        }
+
+        JsonObject params = new JsonObject();
+        params.addProperty("protocolVersion", PROTOCOL_VERSION);
+        params.add("capabilities", new JsonObject());
+        JsonObject clientInfo = new JsonObject();
+        clientInfo.addProperty("name", "sqlagent-plugin");
+        clientInfo.addProperty("version", "1.0.0");
+        params.add("clientInfo", clientInfo);
+
+        JsonObject response = send(request("initialize", params), timeoutMillis);
+        if (response.has("error")) {
+            throw new IOException("MCP initialize failed: " + response.getAsJsonObject("error").get("message").getAsString());
+        }
+
+        JsonObject notification = new JsonObject();
+        notification.addProperty("jsonrpc", "2.0");
+        notification.addProperty("method", "notifications/initialized");
+        sendNotification(notification);
+
+        initialized = true;
+    }
+
+    private JsonObject request(String method, JsonObject params) {
+        JsonObject request = new JsonObject();
+        request.addProperty("jsonrpc", "2.0");
+        request.addProperty("id", nextId.getAndIncrement());
+        request.addProperty("method", method);
+        request.add("params", params);
+        return request;
+    }
+
+    /**
+     * Send a request and wait for its response
+     */
+    protected abstract JsonObject send(JsonObject request, long timeoutMillis) throws IOException;
+
+    /**
+     * Send a notification, no response expected
+     */
+    protected abstract void sendNotification(JsonObject notification) throws IOException;
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * The server no longer knows the session, a new handshake is needed
+     */
+    protected static class SessionExpiredException extends IOException {
+        public SessionExpiredException(String message) {
+            super(message);
+        }
+    }
+}
@@ -30,6 +30,17 @@ public class OpenCodeConfigGenerator {
      * @return true if successful
      */
     public boolean updateConfig(DatabaseConfig dbConfig, LlmProviderConfig llmConfig, String mcpServerJarPath) {
+        return updateConfig(dbConfig, llmConfig, mcpServerJarPath, null, null);
+    }
+
+    /**
+     * Update OpenCode configuration to include MCP server and LLM provider
+     * @param mcpHttpEndpoint Endpoint of the shared HTTP server, or null to let OpenCode spawn its own over STDIO
+     * @param mcpHttpToken    Bearer token of the shared HTTP server
+     * @return true if successful
+     */
+    public boolean updateConfig(DatabaseConfig dbConfig, LlmProviderConfig llmConfig, String mcpServerJarPath,
+                                String mcpHttpEndpoint, String mcpHttpToken) {
         try {
             Path configPath = getConfigPath();
 
@@ -61,7 +72,9 @@ public class OpenCodeConfigGenerator {
             }
 
             // Add database-tools MCP server
-            JsonObject dbToolsMcp = createMcpServerConfig(dbConfig, mcpServerJarPath);
+            JsonObject dbToolsMcp = mcpHttpEndpoint != null
+                    ? createRemoteMcpServerConfig(mcpHttpEndpoint, mcpHttpToken)
+                    : createMcpServerConfig(dbConfig, mcpServerJarPath);
             mcpConfig.add(MCP_SERVER_NAME, dbToolsMcp);
 
             // Write config
@@ -144,6 +157,22 @@ public class OpenCodeConfigGenerator {
         return config;
     }
 
+    /**
+     * Create MCP server configuration JSON pointing at the shared HTTP server (OpenCode format)
+     */
+    private JsonObject createRemoteMcpServerConfig(String mcpHttpEndpoint, String mcpHttpToken) {
+        JsonObject config = new JsonObject();
+        config.addProperty("type", "remote");
+        config.addProperty("url", mcpHttpEndpoint);
+        config.addProperty("enabled", true);
+
+        // The shared server rejects requests without the token generated when it was launched
+        JsonObject headers = new JsonObject();
+        headers.addProperty("Authorization", "Bearer " + mcpHttpToken);
+        config.add("headers", headers);
+        return config;
+    }
+
     /**
      * Get OpenCode config path
      */
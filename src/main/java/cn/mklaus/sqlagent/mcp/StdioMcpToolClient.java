@@ -0,0 +1,105 @@
+package cn.mklaus.sqlagent.mcp;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tool client talking to the MCP server process over its stdin/stdout
+ *
+ * A reader thread dispatches responses to the waiting callers by request id, so several
+ * calls can be in flight at once.
+ */
+class StdioMcpToolClient extends McpToolClient {
+    private static final Logger LOG = Logger.getInstance(StdioMcpToolClient.class);
+    private static final Gson GSON = new Gson();
+
+    private final Process process;
+    private final OutputStream stdin;
+    private final Map<Long, CompletableFuture<JsonObject>> pending = new ConcurrentHashMap<>();
+
+    StdioMcpToolClient(Process process) {
+        this.process = process;
+        this.stdin = process.getOutputStream();
+
+        Thread readerThread = new Thread(this::readResponses, "MCP-Stdio-Client");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    @Override
+    protected JsonObject send(JsonObject request, long timeoutMillis) throws IOException {
+        long id = request.get("id").getAsLong();
+        CompletableFuture<JsonObject> future = new CompletableFuture<>();
+        pending.put(id, future);
+        try {
+            write(request);
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("MCP server did not answer within " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for MCP server", e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    @Override
+    protected void sendNotification(JsonObject notification) throws IOException {
+        write(notification);
+    }
+
+    private synchronized void write(JsonObject message) throws IOException {
+        if (!process.isAlive()) {
+            throw new IOException("MCP server process is not running");
+        }
+        stdin.write((GSON.toJson(message) + "\n").getBytes(StandardCharsets.UTF_8));
+        stdin.flush();
+    }
+
+    private void readResponses() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonObject response = JsonParser.parseString(line).getAsJsonObject();
+                    if (response.has("id") && !response.get("id").isJsonNull()) {
+                        CompletableFuture<JsonObject> future = pending.get(response.get("id").getAsLong());
+                        if (future != null) {
+                            future.complete(response);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    LOG.warn("Unexpected MCP server output: " + line);
+                }
+            }
+        } catch (IOException e) {
+            if (process.isAlive()) {
+                LOG.warn("Error reading MCP server responses: " + e.getMessage());
+            }
+        }
+
+        IOException closed = new IOException("MCP server process exited");
+        pending.values().forEach(future -> future.completeExceptionally(closed));
+    }
+}
@@ -0,0 +1,151 @@
+package cn.mklaus.sqlagent.model;
+
+import java.util.Map;
+
+/**
+ * Measured latency of the original and optimized SQL (benchmark_query MCP tool)
+ */
+public class BenchmarkResult {
+    private double originalP50Ms;
+    private double originalP95Ms;
+    private double originalMaxMs;
+    private long originalRows;
+    private Map<String, Long> originalCounters;
+    private double optimizedP50Ms;
+    private double optimizedP95Ms;
+    private double optimizedMaxMs;
+    private long optimizedRows;
+    private Map<String, Long> optimizedCounters;
+    private double improvement;
+    private int iterations;
+    private String skippedReason;
+
+    /**
+     * Result for SQL that was not measured
+     */
+    public static BenchmarkResult skipped(String reason) {
+        BenchmarkResult result = new BenchmarkResult();
+        result.skippedReason = reason;
+        return result;
+    }
+
+    public boolean isSkipped() {
+        return skippedReason != null;
+    }
+
+    public String getSkippedReason() {
+        return skippedReason;
+    }
+
+    public double getOriginalP50Ms() {
+        return originalP50Ms;
+    }
+
+    public void setOriginalP50Ms(double originalP50Ms) {
+        this.originalP50Ms = originalP50Ms;
+    }
+
+    public double getOriginalP95Ms() {
+        return originalP95Ms;
+    }
+
+    public void setOriginalP95Ms(double originalP95Ms) {
+        this.originalP95Ms = originalP95Ms;
+    }
+
+    public double getOriginalMaxMs() {
+        return originalMaxMs;
+    }
+
+    public void setOriginalMaxMs(double originalMaxMs) {
+        this.originalMaxMs = originalMaxMs;
+    }
+
+    public long getOriginalRows() {
+        return originalRows;
+    }
+
+    public void setOriginalRows(long originalRows) {
+        this.originalRows = originalRows;
+    }
+
+    public Map<String, Long> getOriginalCounters() {
+        return originalCounters;
+    }
+
+    public void setOriginalCounters(Map<String, Long> originalCounters) {
+        this.originalCounters = originalCounters;
+    }
+
+    public double getOptimizedP50Ms() {
+        return optimizedP50Ms;
+    }
+
+    public void setOptimizedP50Ms(double optimizedP50Ms) {
+        this.optimizedP50Ms = optimizedP50Ms;
+    }
+
+    public double getOptimizedP95Ms() {
+        return optimizedP95Ms;
+    }
+
+    public void setOptimizedP95Ms(double optimizedP95Ms) {
+        this.optimizedP95Ms = optimizedP95Ms;
+    }
+
+    public double getOptimizedMaxMs() {
+        return optimizedMaxMs;
+    }
+
+    public void setOptimizedMaxMs(double optimizedMaxMs) {
+        this.optimizedMaxMs = optimizedMaxMs;
+    }
+
+    public long getOptimizedRows() {
+        return optimizedRows;
+    }
+
+    public void setOptimizedRows(long optimizedRows) {
+        this.optimizedRows = optimizedRows;
+    }
+
+    public Map<String, Long> getOptimizedCounters() {
+        return optimizedCounters;
+    }
+
+    public void setOptimizedCounters(Map<String, Long> optimizedCounters) {
+        this.optimizedCounters = optimizedCounters;
+    }
+
+    /**
+     * Fraction of the original p50 latency saved (0.9 = 90% faster), negative when slower
+     */
+    public double getImprovement() {
+        return improvement;
+    }
+
+    public void setImprovement(double improvement) {
+        this.improvement = improvement;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * One-line summary, e.g. "p50 120.3 ms → 8.1 ms (93.3% faster)"
+     */
+    public String getSummary() {
+        if (isSkipped()) {
+            return "Not measured: " + skippedReason;
+        }
+        String change = improvement >= 0
+                ? String.format("%.1f%% faster", improvement * 100)
+                : String.format("%.1f%% slower", -improvement * 100);
+        return String.format("p50 %.1f ms → %.1f ms (%s)", originalP50Ms, optimizedP50Ms, change);
+    }
+}
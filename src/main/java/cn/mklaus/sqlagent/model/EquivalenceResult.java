@@ -0,0 +1,103 @@
+package cn.mklaus.sqlagent.model;
+
+/**
+ * Whether the optimized SQL returns the same rows as the original (verify_equivalence MCP tool)
+ */
+public class EquivalenceResult {
+
+    /**
+     * Outcome of the check
+     */
+    public enum Status {
+        EQUIVALENT,
+        DIFFERENT,
+        INCONCLUSIVE,
+        SKIPPED
+    }
+
+    private Status status;
+    private String reason;
+    private long originalRows;
+    private long optimizedRows;
+    private String onlyInOriginal;
+    private String onlyInOptimized;
+
+    public EquivalenceResult(Status status, String reason) {
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public static EquivalenceResult skipped(String reason) {
+        return new EquivalenceResult(Status.SKIPPED, reason);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isEquivalent() {
+        return status == Status.EQUIVALENT;
+    }
+
+    /**
+     * Whether the results were shown to differ, as opposed to not being checked completely
+     */
+    public boolean isDifferent() {
+        return status == Status.DIFFERENT;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public long getOriginalRows() {
+        return originalRows;
+    }
+
+    public void setOriginalRows(long originalRows) {
+        this.originalRows = originalRows;
+    }
+
+    public long getOptimizedRows() {
+        return optimizedRows;
+    }
+
+    public void setOptimizedRows(long optimizedRows) {
+        this.optimizedRows = optimizedRows;
+    }
+
+    /**
+     * Sample row returned only by the original SQL, as JSON text
+     */
+    public String getOnlyInOriginal() {
+        return onlyInOriginal;
+    }
+
+    public void setOnlyInOriginal(String onlyInOriginal) {
+        this.onlyInOriginal = onlyInOriginal;
+    }
+
+    /**
+     * Sample row returned only by the optimized SQL, as JSON text
+     */
+    public String getOnlyInOptimized() {
+        return onlyInOptimized;
+    }
+
+    public void setOnlyInOptimized(String onlyInOptimized) {
+        this.onlyInOptimized = onlyInOptimized;
+    }
+
+    public String getSummary() {
+        switch (status) {
+            case EQUIVALENT:
+                return "Same results (" + originalRows + " rows)";
+            case DIFFERENT:
+                return "Results differ: " + reason;
+            case INCONCLUSIVE:
+                return "Equivalence inconclusive: " + reason;
+            default:
+                return "Equivalence not verified: " + reason;
+        }
+    }
+}
@@ -12,6 +12,9 @@ public class OptimizationResponse {
     private double estimatedImprovement;
     private String errorMessage;
     private String rawResponse;  // Store raw response for debugging
+    private BenchmarkResult benchmarkResult;
+    private EquivalenceResult equivalenceResult;
+    private transient long cachedAt;  // When the cached result was produced, 0 for a fresh result
 
     public OptimizationResponse() {
         this.estimatedImprovement = 0.0;
@@ -68,4 +71,49 @@ public class OptimizationResponse {
     public void setRawResponse(String rawResponse) {
         this.rawResponse = rawResponse;
     }
+
+    public BenchmarkResult getBenchmarkResult() {
+        return benchmarkResult;
+    }
+
+    public void setBenchmarkResult(BenchmarkResult benchmarkResult) {
+        this.benchmarkResult = benchmarkResult;
+    }
+
+    public EquivalenceResult getEquivalenceResult() {
+        return equivalenceResult;
+    }
+
+    public void setEquivalenceResult(EquivalenceResult equivalenceResult) {
+        this.equivalenceResult = equivalenceResult;
+    }
+
+    /**
+     * Whether the optimized SQL was shown to return different rows than the original
+     */
+    public boolean hasDifferentResults() {
+        return equivalenceResult != null && equivalenceResult.isDifferent();
+    }
+
+    /**
+     * Whether the optimized SQL was actually measured against the database
+     */
+    public boolean hasMeasuredImprovement() {
+        return benchmarkResult != null && !benchmarkResult.isSkipped();
+    }
+
+    public long getCachedAt() {
+        return cachedAt;
+    }
+
+    public void setCachedAt(long cachedAt) {
+        this.cachedAt = cachedAt;
+    }
+
+    /**
+     * Whether the result comes from the optimization cache instead of the model
+     */
+    public boolean isCached() {
+        return cachedAt > 0;
+    }
 }
@@ -0,0 +1,97 @@
+package cn.mklaus.sqlagent.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The optimizer's estimate of a statement's plan (explain_sql MCP tool with estimate_only)
+ */
+public class PlanEstimate {
+    private static final long MANY_ROWS = 10_000;
+    private static final long HUGE_ROWS = 1_000_000;
+
+    private long rowsExamined;
+    private List<String> fullScanTables = new ArrayList<>();
+    private boolean sort;
+    private boolean temporary;
+    private double cost = -1;
+    private String unavailableReason;
+
+    /**
+     * Estimate for a statement the database could not explain
+     */
+    public static PlanEstimate unavailable(String reason) {
+        PlanEstimate estimate = new PlanEstimate();
+        estimate.unavailableReason = reason;
+        return estimate;
+    }
+
+    public boolean isUnavailable() {
+        return unavailableReason != null;
+    }
+
+    public String getUnavailableReason() {
+        return unavailableReason;
+    }
+
+    /**
+     * HIGH for a million rows or a full scan of ten thousand, MEDIUM for any full scan, sort,
+     * temporary table or ten thousand rows, LOW otherwise
+     */
+    public ImpactLevel getImpact() {
+        boolean fullScan = !fullScanTables.isEmpty();
+        if (rowsExamined >= HUGE_ROWS || (fullScan && rowsExamined >= MANY_ROWS)) {
+            return ImpactLevel.HIGH;
+        }
+        if (fullScan || sort || temporary || rowsExamined >= MANY_ROWS) {
+            return ImpactLevel.MEDIUM;
+        }
+        return ImpactLevel.LOW;
+    }
+
+    public long getRowsExamined() {
+        return rowsExamined;
+    }
+
+    public void setRowsExamined(long rowsExamined) {
+        this.rowsExamined = rowsExamined;
+    }
+
+    public List<String> getFullScanTables() {
+        return fullScanTables;
+    }
+
+    public void setFullScanTables(List<String> fullScanTables) {
+        this.fullScanTables = fullScanTables;
+    }
+
+    /**
+     * True if rows are sorted by the engine (filesort) rather than read in index order
+     */
+    public boolean isSort() {
+        return sort;
+    }
+
+    public void setSort(boolean sort) {
+        this.sort = sort;
+    }
+
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    public void setTemporary(boolean temporary) {
+        this.temporary = temporary;
+    }
+
+    /**
+     * Optimizer cost in the engine's own units, or -1 if not reported
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    public void setCost(double cost) {
+        this.cost = cost;
+    }
+}
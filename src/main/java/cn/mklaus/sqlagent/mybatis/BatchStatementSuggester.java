@@ -0,0 +1,106 @@
+package cn.mklaus.sqlagent.mybatis;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Suggests a batched variant of a mapper statement that is called once per element of a collection
+ *
+ * SELECT and DELETE statements filtering on {@code column = #{param}} become
+ * {@code column IN <foreach>}; INSERT ... VALUES statements repeat their value list in a
+ * {@code <foreach>}. The suggestion is text for the developer to review, not an applied edit.
+ */
+public class BatchStatementSuggester {
+    private static final String ITEM = "item";
+    private static final Pattern VALUES = Pattern.compile("(?is)\\bVALUES\\s*(\\(.*\\))\\s*$");
+
+    /**
+     * @param sqlType     SELECT, INSERT, UPDATE or DELETE
+     * @param statementId Id of the statement called per element
+     * @param body        Statement body as written in the mapper XML, including dynamic tags
+     * @param parameter   Name of the parameter that changes per call, e.g. "id" or "user"
+     * @return Batched statement XML, or null if the statement has no shape this class can batch
+     */
+    public String suggest(String sqlType, String statementId, String body, String parameter) {
+        if (sqlType == null || body == null || parameter == null || parameter.isEmpty()) {
+            return null;
+        }
+        String batchedBody;
+        switch (sqlType) {
+            case "SELECT":
+            case "DELETE":
+                batchedBody = batchEquality(body, parameter);
+                break;
+            case "INSERT":
+                batchedBody = batchValues(body, parameter);
+                break;
+            default:
+                return null;
+        }
+        if (batchedBody == null) {
+            return null;
+        }
+        String tag = sqlType.toLowerCase();
+        return "<" + tag + " id=\"" + getBatchId(statementId) + "\">\n    " + batchedBody.trim() + "\n</" + tag + ">";
+    }
+
+    /**
+     * Name for the batched statement: findById becomes findByIds, anything else gets a Batch suffix
+     */
+    public String getBatchId(String statementId) {
+        if (statementId == null || statementId.isEmpty()) {
+            return "batch";
+        }
+        return statementId.endsWith("Id") ? statementId + "s" : statementId + "Batch";
+    }
+
+    /**
+     * Name of the collection parameter of the batched statement
+     */
+    public String getCollectionName(String parameter) {
+        return parameter.endsWith("s") ? parameter + "List" : parameter + "s";
+    }
+
+    /**
+     * Replace the single {@code column = #{parameter}} of the body with an IN list
+     */
+    private String batchEquality(String body, String parameter) {
+        Pattern equality = Pattern.compile(
+                "([\\w.`\"]+)\\s*=\\s*#\\{\\s*" + Pattern.quote(parameter) + "\\s*(,[^}]*)?}");
+        Matcher matcher = equality.matcher(body);
+        if (!matcher.find()) {
+            return null;
+        }
+        String column = matcher.group(1);
+        int start = matcher.start();
+        int end = matcher.end();
+        if (matcher.find()) {
+            // The parameter drives several conditions, an IN list would change their pairing
+            return null;
+        }
+        String foreach = "<foreach collection=\"" + getCollectionName(parameter) + "\" item=\"" + ITEM
+                + "\" open=\"(\" separator=\",\" close=\")\">#{" + ITEM + "}</foreach>";
+        return body.substring(0, start) + column + " IN " + foreach + body.substring(end);
+    }
+
+    /**
+     * Wrap the VALUES tuple in a foreach over the collection, pointing its parameters at the item
+     */
+    private String batchValues(String body, String parameter) {
+        Matcher matcher = VALUES.matcher(body.trim());
+        if (!matcher.find() || body.contains("<foreach")) {
+            return null;
+        }
+        String trimmed = body.trim();
+        String tuple = matcher.group(1);
+        String prefix = parameter + ".";
+        String itemTuple = tuple.replaceAll("#\\{\\s*" + Pattern.quote(prefix), "#{" + ITEM + ".");
+        if (itemTuple.equals(tuple)) {
+            // Properties referenced without the parameter prefix, as with a single unnamed bean parameter
+            itemTuple = tuple.replaceAll("#\\{\\s*(?!" + ITEM + "\\.)", "#{" + ITEM + ".");
+        }
+        return trimmed.substring(0, matcher.start(1))
+                + "\n    <foreach collection=\"" + getCollectionName(parameter) + "\" item=\"" + ITEM
+                + "\" separator=\",\">\n        " + itemTuple + "\n    </foreach>";
+    }
+}
@@ -0,0 +1,59 @@
+package cn.mklaus.sqlagent.mybatis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads JDBC URLs and MyBatis executor settings from application configuration text
+ * (application.yml, application.properties, mybatis-config.xml)
+ */
+public final class JdbcSettings {
+    private static final Pattern JDBC_URL = Pattern.compile("jdbc:(mysql|postgresql)://[^\\s\"'<>]+");
+    private static final Pattern BATCH_EXECUTOR_PROPERTY =
+            Pattern.compile("(?i)executor-?type\\s*[:=]\\s*[\"']?batch\\b");
+    private static final Pattern BATCH_EXECUTOR_SETTING =
+            Pattern.compile("(?i)name\\s*=\\s*\"defaultExecutorType\"\\s+value\\s*=\\s*\"batch\"");
+
+    private JdbcSettings() {
+    }
+
+    /**
+     * MySQL and PostgreSQL JDBC URLs in the text, in order of appearance
+     */
+    public static List<String> findJdbcUrls(String text) {
+        List<String> urls = new ArrayList<>();
+        Matcher matcher = JDBC_URL.matcher(text);
+        while (matcher.find()) {
+            urls.add(matcher.group());
+        }
+        return urls;
+    }
+
+    /**
+     * Whether the text makes BATCH the default executor, as Spring Boot properties
+     * ({@code mybatis.executor-type}, {@code default-executor-type}) or a mybatis-config setting
+     */
+    public static boolean declaresBatchExecutor(String text) {
+        return BATCH_EXECUTOR_PROPERTY.matcher(text).find() || BATCH_EXECUTOR_SETTING.matcher(text).find();
+    }
+
+    /**
+     * The driver property that makes JDBC batches go out as multi-row statements
+     * @return {@code rewriteBatchedStatements=true} for MySQL or {@code reWriteBatchedInserts=true}
+     *         for PostgreSQL if the URL does not set it, otherwise null
+     */
+    public static String missingBatchRewriteFlag(String url) {
+        String flag;
+        if (url.startsWith("jdbc:mysql:")) {
+            flag = "rewriteBatchedStatements=true";
+        } else if (url.startsWith("jdbc:postgresql:")) {
+            flag = "reWriteBatchedInserts=true";
+        } else {
+            return null;
+        }
+        return url.toLowerCase(Locale.ROOT).contains(flag.toLowerCase(Locale.ROOT)) ? null : flag;
+    }
+}
@@ -0,0 +1,80 @@
+package cn.mklaus.sqlagent.mybatis;
+
+import cn.mklaus.sqlagent.model.MyBatisSqlInfo;
+import cn.mklaus.sqlagent.mybatis.index.MapperStatementIndex;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds mapper XML statements by namespace and statement id
+ *
+ * Mapper files are looked up in MapperStatementIndex, so only the files of the namespace are
+ * parsed. Needs smart mode.
+ */
+public class MapperStatementLocator {
+    private static final MyBatisSqlExtractor EXTRACTOR = new MyBatisSqlExtractor();
+
+    private MapperStatementLocator() {
+    }
+
+    /**
+     * @return Mapper XML files declaring the namespace, usually one
+     */
+    public static List<XmlFile> findMapperFiles(Project project, String namespace) {
+        if (namespace == null) {
+            return List.of();
+        }
+        return toXmlFiles(project, MapperStatementIndex.findFiles(project, namespace));
+    }
+
+    /**
+     * @return All mapper XML files of the project
+     */
+    public static List<XmlFile> findAllMapperFiles(Project project) {
+        Set<VirtualFile> files = new LinkedHashSet<>();
+        for (String namespace : MapperStatementIndex.getNamespaces(project)) {
+            files.addAll(MapperStatementIndex.findFiles(project, namespace));
+        }
+        return toXmlFiles(project, files);
+    }
+
+    /**
+     * @return The statement, or null if no mapper XML declares it
+     */
+    public static MyBatisSqlInfo findStatement(Project project, String namespace, String statementId) {
+        for (XmlFile file : findMapperFiles(project, namespace)) {
+            XmlTag root = file.getRootTag();
+            if (root == null) {
+                continue;
+            }
+            for (XmlTag tag : root.getSubTags()) {
+                if (statementId.equals(tag.getAttributeValue("id"))) {
+                    return EXTRACTOR.extractSqlInfo(tag);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<XmlFile> toXmlFiles(Project project, Collection<VirtualFile> virtualFiles) {
+        List<XmlFile> files = new ArrayList<>();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        for (VirtualFile virtualFile : virtualFiles) {
+            PsiFile psiFile = psiManager.findFile(virtualFile);
+            if (psiFile instanceof XmlFile) {
+                files.add((XmlFile) psiFile);
+            }
+        }
+        return files;
+    }
+}
@@ -3,6 +3,9 @@ package cn.mklaus.sqlagent.mybatis;
 import cn.mklaus.sqlagent.config.SqlAgentConfigurable;
 import cn.mklaus.sqlagent.config.SqlAgentSettingsService;
 import cn.mklaus.sqlagent.model.OptimizationResponse;
+import cn.mklaus.sqlagent.opencode.SessionEventListener;
+import cn.mklaus.sqlagent.service.QueryBenchmarkService;
+import cn.mklaus.sqlagent.service.QueryEquivalenceService;
 import cn.mklaus.sqlagent.service.SqlOptimizerService;
 import cn.mklaus.sqlagent.ui.DiffViewer;
 import cn.mklaus.sqlagent.ui.OptimizationPanel;
@@ -15,6 +18,7 @@ import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
@@ -60,7 +64,7 @@ public class MyBatisOptimizerAction extends AnAction {
         if (project == null) {
             return;
         }
-        performOptimization(project);
+        performOptimization(project, false);
     }
 
     /**
@@ -70,13 +74,14 @@ public class MyBatisOptimizerAction extends AnAction {
         if (project == null) {
             return;
         }
-        performOptimization(project);
+        performOptimization(project, false);
     }
 
     /**
      * Common optimization logic
+     * @param forceRefresh Ask the model even if the optimization cache has a result
      */
-    private void performOptimization(Project project) {
+    private void performOptimization(Project project, boolean forceRefresh) {
         // Note: Database configuration is now managed by OpenCode MCP tools
         // Database connection is configured in ~/.opencode/config.json
 
@@ -106,7 +111,22 @@ public class MyBatisOptimizerAction extends AnAction {
                             state);
 
                     updateProgress(indicator, panel, "Optimizing with AI...", 0.5, 50);
-                    response = optimizer.optimize(originalSql);
+                    response = optimizer.optimize(originalSql, indicator,
+                            panel != null ? panel.createEventListener() : SessionEventListener.NONE, forceRefresh);
+
+                    if (state.verifyEquivalence && response != null && !response.hasError()
+                            && response.getOptimizedSql() != null) {
+                        updateProgress(indicator, panel, "Verifying optimized SQL returns the same rows...", 0.7, 70);
+                        response.setEquivalenceResult(new QueryEquivalenceService().verify(originalSql, response.getOptimizedSql(), indicator));
+                        cn.mklaus.sqlagent.ui.OptimizationLogger.logEquivalence(panel, response.getEquivalenceResult());
+                    }
+
+                    if (state.benchmarkOptimizedSql && response != null && !response.hasError()
+                            && response.getOptimizedSql() != null && !response.hasDifferentResults()) {
+                        updateProgress(indicator, panel, "Benchmarking original vs optimized SQL...", 0.8, 80);
+                        response.setBenchmarkResult(new QueryBenchmarkService().benchmark(originalSql, response.getOptimizedSql(), indicator));
+                        cn.mklaus.sqlagent.ui.OptimizationLogger.logBenchmark(panel, response.getBenchmarkResult());
+                    }
                     updateProgress(indicator, panel, "Processing results...", 0.9, 90);
 
                     if (panel != null) {
@@ -120,6 +140,8 @@ public class MyBatisOptimizerAction extends AnAction {
                         indicator.setFraction(1.0);
                     }
 
+                } catch (ProcessCanceledException e) {
+                    throw e;
                 } catch (Exception e) {
                     error = e;
                     cn.mklaus.sqlagent.ui.OptimizationLogger.logError(panel, e);
@@ -128,6 +150,14 @@ public class MyBatisOptimizerAction extends AnAction {
                 }
             }
 
+            @Override
+            public void onCancel() {
+                if (panel != null) {
+                    panel.setStatus("Optimization cancelled: " + statementId, false);
+                    panel.log("Optimization cancelled");
+                }
+            }
+
             @Override
             public void onSuccess() {
                 runOnEdt(() -> {
@@ -152,6 +182,9 @@ public class MyBatisOptimizerAction extends AnAction {
                         panel.setOptimizationResult(originalSql,
                                 response.getOptimizedSql(), response,
                                 () -> applyOptimizedSql(response.getOptimizedSql()));
+                        if (response.isCached()) {
+                            panel.setCachedResult(response.getCachedAt(), () -> performOptimization(project, true));
+                        }
                     }
                 });
             }
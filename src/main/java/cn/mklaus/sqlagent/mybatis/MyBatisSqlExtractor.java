@@ -5,6 +5,7 @@ import com.intellij.psi.xml.XmlTagValue;
 import com.intellij.psi.xml.XmlText;
 import com.intellij.psi.PsiElement;
 import com.intellij.openapi.diagnostic.Logger;
+import cn.mklaus.sqlagent.model.MyBatisSqlInfo;
 
 /**
  * Extracts SQL from MyBatis mapper XML tags
@@ -43,6 +44,20 @@ public class MyBatisSqlExtractor {
         return sql.trim();
     }
 
+    /**
+     * Collect namespace, id, type and SQL of a statement tag
+     *
+     * @param sqlTag The select, insert, update or delete tag
+     * @return The statement information, or null if the tag is not a statement
+     */
+    public MyBatisSqlInfo extractSqlInfo(XmlTag sqlTag) {
+        String sqlType = sqlTag != null ? getSqlType(sqlTag.getName()) : null;
+        if (sqlType == null) {
+            return null;
+        }
+        return new MyBatisSqlInfo(getNamespace(sqlTag), getStatementId(sqlTag), sqlType, extractSql(sqlTag), sqlTag);
+    }
+
     /**
      * Get the statement ID from the tag's 'id' attribute
      *
@@ -1,90 +1,241 @@
 package cn.mklaus.sqlagent.mybatis;
 
+import cn.mklaus.sqlagent.analysis.ExplainableSql;
+import cn.mklaus.sqlagent.analysis.MapperSqlText;
+import cn.mklaus.sqlagent.analysis.PlanEstimateService;
+import cn.mklaus.sqlagent.model.PlanEstimate;
+import cn.mklaus.sqlagent.mybatis.dynamic.DynamicSqlExpansion;
+import cn.mklaus.sqlagent.mybatis.dynamic.MapperStatementVariants;
+import cn.mklaus.sqlagent.mybatis.dynamic.SqlVariant;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.codeInsight.daemon.LineMarkerInfo;
 import com.intellij.codeInsight.daemon.LineMarkerProvider;
 import com.intellij.icons.AllIcons;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.xml.XmlTag;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.xml.XmlFile;
-import com.intellij.openapi.util.TextRange;
-import com.intellij.openapi.project.Project;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.psi.xml.XmlToken;
+import com.intellij.psi.xml.XmlTokenType;
+import com.intellij.xml.util.XmlTagUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Line marker provider for MyBatis mapper XML files
- * Adds gutter icons next to SQL statements (select, insert, update, delete tags)
+ *
+ * The fast pass adds the optimize icon on the name of each select, insert, update and delete
+ * tag without looking at the SQL. The slow pass adds a badge with the estimated plan cost
+ * (rows examined, full scans, sorts) of the most expensive dynamic SQL variant; estimates come
+ * from the MCP server in the background and the markers are refreshed when they arrive.
  */
 public class MyBatisSqlLineMarkerProvider implements LineMarkerProvider {
 
     private static final Icon SQL_ICON = AllIcons.Actions.Execute;
+    private static final Key<Boolean> REFRESH_SCHEDULED = Key.create("SqlAgent.PlanEstimateRefreshScheduled");
 
     @Nullable
     @Override
     public LineMarkerInfo<?> getLineMarkerInfo(@NotNull PsiElement element) {
-        // Only process XML tags
-        if (!(element instanceof XmlTag)) {
+        XmlTag tag = getStatementTag(element);
+        if (tag == null) {
             return null;
         }
-
-        XmlTag tag = (XmlTag) element;
-        String tagName = tag.getName();
-
-        // Only process MyBatis SQL tags
-        if (!isSqlTag(tagName)) {
-            return null;
-        }
-
-        // Check if this file is likely a MyBatis mapper
-        if (!isMyBatisMapperFile(tag)) {
-            return null;
-        }
-
-        // Extract SQL information
-        MyBatisSqlExtractor extractor = new MyBatisSqlExtractor();
-        String statementId = extractor.getStatementId(tag);
-        String sql = extractor.extractSql(tag);
-
-        // Skip if no statement ID or no SQL content
+        String statementId = tag.getAttributeValue("id");
         if (statementId == null || statementId.trim().isEmpty()) {
             return null;
         }
 
-        if (sql == null || sql.trim().isEmpty()) {
-            return null;
-        }
-
-        // Get SQL type for tooltip
-        String sqlType = extractor.getSqlType(tagName);
-        String fullName = getFullName(tag, statementId);
-        String tooltip = buildTooltip(sqlType, fullName);
-        Project project = tag.getProject();
-
-        // Create line marker info with click handler
-        TextRange range = element.getTextRange();
+        MyBatisSqlExtractor extractor = new MyBatisSqlExtractor();
+        String tooltip = buildTooltip(extractor.getSqlType(tag.getName()), getFullName(tag, statementId));
 
         return new LineMarkerInfo<>(
                 element,
-                range,
+                element.getTextRange(),
                 SQL_ICON,
                 (e) -> tooltip,
                 (e, elt) -> {
-                    // Handle click - trigger optimization action directly
-                    MyBatisOptimizerAction action = new MyBatisOptimizerAction(tag, sql, statementId);
-                    action.actionPerformedForProject(project);
+                    // The SQL is extracted on click, not on every highlighting pass
+                    XmlTag clicked = getStatementTag(elt);
+                    String sql = clicked != null ? extractor.extractSql(clicked) : null;
+                    if (sql == null || sql.trim().isEmpty()) {
+                        return;
+                    }
+                    MyBatisOptimizerAction action = new MyBatisOptimizerAction(clicked, sql, statementId);
+                    action.actionPerformedForProject(elt.getProject());
                 },
                 GutterIconRenderer.Alignment.RIGHT
         );
     }
 
+    @Override
+    public void collectSlowLineMarkers(@NotNull List<? extends PsiElement> elements,
+                                       @NotNull Collection<? super LineMarkerInfo<?>> result) {
+        PlanEstimateService estimates = PlanEstimateService.getInstance();
+        for (PsiElement element : elements) {
+            XmlTag tag = getStatementTag(element);
+            // Plain inserts have no plan worth showing
+            if (tag == null || "insert".equalsIgnoreCase(tag.getName())) {
+                continue;
+            }
+            ProgressManager.checkCanceled();
+
+            DynamicSqlExpansion expansion = MapperStatementVariants.expand(tag);
+            List<SqlVariant> variants = expansion.getVariants();
+            if (variants.isEmpty()) {
+                // The XML does not parse while being edited; estimate the tag text as it is
+                variants = List.of(new SqlVariant(MapperSqlText.mask(tag.getValue().getText()), List.of()));
+            }
+            PsiFile file = element.getContainingFile();
+            PlanEstimate worst = null;
+            SqlVariant worstVariant = null;
+            int estimated = 0;
+            for (SqlVariant variant : variants) {
+                String sql = ExplainableSql.of(variant.getSql());
+                if (sql.isEmpty()) {
+                    continue;
+                }
+                PlanEstimate estimate = estimates.getCached(sql);
+                if (estimate == null) {
+                    estimates.request(sql, () -> scheduleRefresh(file));
+                    continue;
+                }
+                estimated++;
+                if (!estimate.isUnavailable() && (worst == null || isMoreExpensive(estimate, worst))) {
+                    worst = estimate;
+                    worstVariant = variant;
+                }
+            }
+            if (worst == null) {
+                continue;
+            }
+            String tooltip = describe(worst) + describeVariant(worstVariant, variants.size(), estimated, expansion);
+            result.add(new LineMarkerInfo<>(
+                    element,
+                    element.getTextRange(),
+                    getCostIcon(worst),
+                    (e) -> tooltip,
+                    null,
+                    GutterIconRenderer.Alignment.LEFT
+            ));
+        }
+    }
+
+    /**
+     * Re-run highlighting of the file once, however many estimates arrive meanwhile
+     */
+    private static void scheduleRefresh(PsiFile file) {
+        // Marked on the file itself, so nothing outlives the file or its project
+        if (!((UserDataHolderEx) file).replace(REFRESH_SCHEDULED, null, Boolean.TRUE)) {
+            return;
+        }
+        Project project = file.getProject();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            file.putUserData(REFRESH_SCHEDULED, null);
+            if (file.isValid()) {
+                DaemonCodeAnalyzer.getInstance(project).restart(file);
+            }
+        }, project.getDisposed());
+    }
+
+    private static boolean isMoreExpensive(PlanEstimate estimate, PlanEstimate other) {
+        // ImpactLevel is declared from HIGH to LOW
+        int byImpact = Integer.compare(other.getImpact().ordinal(), estimate.getImpact().ordinal());
+        if (byImpact != 0) {
+            return byImpact > 0;
+        }
+        if (estimate.getRowsExamined() != other.getRowsExamined()) {
+            return estimate.getRowsExamined() > other.getRowsExamined();
+        }
+        return estimate.getCost() > other.getCost();
+    }
+
+    private static Icon getCostIcon(PlanEstimate estimate) {
+        switch (estimate.getImpact()) {
+            case HIGH:
+                return AllIcons.General.Error;
+            case MEDIUM:
+                return AllIcons.General.Warning;
+            default:
+                return AllIcons.General.InspectionsOK;
+        }
+    }
+
+    /**
+     * Tooltip of the cost badge, e.g. "Estimated plan: ~12,000 rows examined, full scan of orders, filesort"
+     */
+    private static String describe(PlanEstimate estimate) {
+        StringBuilder text = new StringBuilder("Estimated plan: ~")
+                .append(String.format(Locale.ROOT, "%,d", estimate.getRowsExamined()))
+                .append(" rows examined");
+        if (!estimate.getFullScanTables().isEmpty()) {
+            text.append(", full scan of ").append(String.join(", ", estimate.getFullScanTables()));
+        }
+        if (estimate.isSort()) {
+            text.append(", filesort");
+        }
+        if (estimate.isTemporary()) {
+            text.append(", temporary table");
+        }
+        if (estimate.getCost() >= 0) {
+            text.append(String.format(Locale.ROOT, ", cost %.1f", estimate.getCost()));
+        }
+        return text.append(" (sample parameter values)").toString();
+    }
+
+    /**
+     * Which dynamic SQL variant the badge is for, e.g. ". Worst of 4 variants, when: not (name != null)"
+     */
+    private static String describeVariant(SqlVariant variant, int variants, int estimated, DynamicSqlExpansion expansion) {
+        if (variants < 2) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder(". Worst of ").append(variants).append(" variants");
+        if (expansion.isSampled()) {
+            text.append(" sampled from ").append(String.format(Locale.ROOT, "%,d", expansion.getCombinations()));
+        }
+        if (!variant.getConditions().isEmpty()) {
+            text.append(", when: ").append(String.join(", ", variant.getConditions()));
+        }
+        if (estimated < variants) {
+            text.append(" (").append(estimated).append(" estimated so far)");
+        }
+        return text.toString();
+    }
+
+    /**
+     * The statement tag whose name token this is, for markers on leaf elements only
+     */
+    private static XmlTag getStatementTag(PsiElement element) {
+        if (!(element instanceof XmlToken) || ((XmlToken) element).getTokenType() != XmlTokenType.XML_NAME) {
+            return null;
+        }
+        PsiElement parent = element.getParent();
+        if (!(parent instanceof XmlTag)) {
+            return null;
+        }
+        XmlTag tag = (XmlTag) parent;
+        if (!isSqlTag(tag.getName()) || XmlTagUtil.getStartTagNameElement(tag) != element) {
+            return null;
+        }
+        return isMyBatisMapperFile(tag) ? tag : null;
+    }
+
     /**
      * Check if the tag is a MyBatis SQL tag
      */
-    private boolean isSqlTag(String tagName) {
+    private static boolean isSqlTag(String tagName) {
         if (tagName == null) {
             return false;
         }
@@ -97,7 +248,7 @@ public class MyBatisSqlLineMarkerProvider implements LineMarkerProvider {
     /**
      * Check if this is likely a MyBatis mapper file
      */
-    private boolean isMyBatisMapperFile(XmlTag tag) {
+    private static boolean isMyBatisMapperFile(XmlTag tag) {
         PsiElement containingFile = tag.getContainingFile();
         if (!(containingFile instanceof XmlFile)) {
             return false;
@@ -0,0 +1,359 @@
+package cn.mklaus.sqlagent.mybatis.dynamic;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Expands a MyBatis statement with dynamic SQL into the concrete statements it can produce
+ *
+ * Each {@code <if>} is a choice between its body and nothing, each {@code <choose>} a choice
+ * between its {@code <when>} branches and {@code <otherwise>}. {@code <where>}, {@code <set>}
+ * and {@code <trim>} add and strip prefixes and suffixes as MyBatis does, {@code <include>}
+ * inlines {@code <sql>} fragments of any mapper with their {@code <property>} values, and a
+ * {@code <foreach>} body is rendered once. Up to maxVariants combinations are enumerated; beyond
+ * that the variant without optional branches, the one with all of them and a fixed random
+ * sample are returned.
+ *
+ * Resolved fragments are memoized per expander, so one expander should be used for the
+ * statements of a file or a batch. Not thread-safe.
+ */
+public class DynamicSqlExpander {
+    private static final Pattern PARAMETER = Pattern.compile("[#$]\\{[^}]*}");
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final List<String> WHERE_OVERRIDES = List.of("AND ", "OR ");
+    private static final List<String> SET_OVERRIDES = List.of(",");
+    private static final int MAX_INCLUDE_DEPTH = 8;
+    private static final int SAMPLE_ATTEMPTS_PER_VARIANT = 20;
+    private static final DocumentBuilderFactory XML = createFactory();
+
+    private final FragmentResolver resolver;
+    private final int maxVariants;
+    private final Map<String, Optional<Element>> fragments = new HashMap<>();
+
+    public DynamicSqlExpander(FragmentResolver resolver, int maxVariants) {
+        this.resolver = resolver;
+        this.maxVariants = Math.max(1, maxVariants);
+    }
+
+    /**
+     * @param namespace    Namespace of the mapper, for includes without one
+     * @param statementXml The statement tag, e.g. {@code <select id="find">...</select>}
+     */
+    public DynamicSqlExpansion expand(String namespace, String statementXml) {
+        Element statement = parse(statementXml);
+        if (statement == null) {
+            return new DynamicSqlExpansion(List.of(), 0, false);
+        }
+        List<Integer> arities = new ArrayList<>();
+        SqlNode body = children(statement, namespace, Map.of(), arities, new ArrayDeque<>());
+
+        long combinations = 1;
+        for (int arity : arities) {
+            combinations = combinations > Long.MAX_VALUE / arity ? Long.MAX_VALUE : combinations * arity;
+        }
+        Map<String, SqlVariant> variants = new LinkedHashMap<>();
+        int[] choices = new int[arities.size()];
+        boolean sampled = combinations > maxVariants;
+        if (!sampled) {
+            // Odometer over all combinations, starting with no optional branch taken
+            while (true) {
+                render(body, choices, variants);
+                int i = 0;
+                while (i < choices.length && ++choices[i] == arities.get(i)) {
+                    choices[i] = 0;
+                    i++;
+                }
+                if (i == choices.length) {
+                    break;
+                }
+            }
+        } else {
+            render(body, choices, variants);
+            for (int i = 0; i < choices.length; i++) {
+                choices[i] = arities.get(i) - 1;
+            }
+            render(body, choices, variants);
+            // Seeded by the statement, so the sample and the cached estimates stay the same
+            Random random = new Random(statementXml.hashCode());
+            for (int attempt = 0; attempt < maxVariants * SAMPLE_ATTEMPTS_PER_VARIANT && variants.size() < maxVariants; attempt++) {
+                for (int i = 0; i < choices.length; i++) {
+                    choices[i] = random.nextInt(arities.get(i));
+                }
+                render(body, choices, variants);
+            }
+        }
+        return new DynamicSqlExpansion(new ArrayList<>(variants.values()), combinations, sampled);
+    }
+
+    private static void render(SqlNode body, int[] choices, Map<String, SqlVariant> variants) {
+        StringBuilder sql = new StringBuilder();
+        List<String> conditions = new ArrayList<>();
+        body.render(choices, sql, conditions);
+        String text = collapse(sql.toString());
+        variants.putIfAbsent(text, new SqlVariant(text, conditions));
+    }
+
+    private SqlNode children(Element element, String namespace, Map<String, String> properties,
+                             List<Integer> arities, Deque<String> includes) {
+        List<SqlNode> nodes = new ArrayList<>();
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                String text = PARAMETER.matcher(substitute(child.getNodeValue(), properties)).replaceAll("?");
+                // MyBatis joins the pieces of dynamic SQL with spaces
+                nodes.add((choices, sql, conditions) -> sql.append(text).append(' '));
+            } else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                nodes.add(element((Element) child, namespace, properties, arities, includes));
+            }
+        }
+        return (choices, sql, conditions) -> nodes.forEach(node -> node.render(choices, sql, conditions));
+    }
+
+    private SqlNode element(Element element, String namespace, Map<String, String> properties,
+                            List<Integer> arities, Deque<String> includes) {
+        switch (element.getTagName()) {
+            case "if": {
+                int choice = newChoice(arities, 2);
+                String test = element.getAttribute("test");
+                SqlNode body = children(element, namespace, properties, arities, includes);
+                return (choices, sql, conditions) -> {
+                    if (choices[choice] == 1) {
+                        conditions.add(test);
+                        body.render(choices, sql, conditions);
+                    } else {
+                        conditions.add("not (" + test + ")");
+                    }
+                };
+            }
+            case "choose":
+                return choose(element, namespace, properties, arities, includes);
+            case "where":
+                return trim("WHERE", null, WHERE_OVERRIDES, List.of(),
+                        children(element, namespace, properties, arities, includes));
+            case "set":
+                return trim("SET", null, SET_OVERRIDES, SET_OVERRIDES,
+                        children(element, namespace, properties, arities, includes));
+            case "trim":
+                return trim(element.getAttribute("prefix"), element.getAttribute("suffix"),
+                        overrides(element.getAttribute("prefixOverrides")),
+                        overrides(element.getAttribute("suffixOverrides")),
+                        children(element, namespace, properties, arities, includes));
+            case "foreach": {
+                String open = element.getAttribute("open");
+                String close = element.getAttribute("close");
+                SqlNode body = children(element, namespace, properties, arities, includes);
+                return (choices, sql, conditions) -> {
+                    StringBuilder item = new StringBuilder();
+                    body.render(choices, item, conditions);
+                    sql.append(' ').append(open).append(collapse(item.toString())).append(close).append(' ');
+                };
+            }
+            case "include":
+                return include(element, namespace, properties, arities, includes);
+            case "bind":
+                return (choices, sql, conditions) -> {
+                };
+            default:
+                return children(element, namespace, properties, arities, includes);
+        }
+    }
+
+    private SqlNode choose(Element element, String namespace, Map<String, String> properties,
+                           List<Integer> arities, Deque<String> includes) {
+        List<Element> whens = childElements(element, "when");
+        List<Element> otherwise = childElements(element, "otherwise");
+        // One choice per <when>, plus <otherwise> or nothing
+        int choice = newChoice(arities, whens.size() + 1);
+        List<String> tests = new ArrayList<>();
+        List<SqlNode> bodies = new ArrayList<>();
+        for (Element when : whens) {
+            tests.add(when.getAttribute("test"));
+            bodies.add(children(when, namespace, properties, arities, includes));
+        }
+        SqlNode otherwiseBody = otherwise.isEmpty() ? null
+                : children(otherwise.get(0), namespace, properties, arities, includes);
+        return (choices, sql, conditions) -> {
+            int branch = choices[choice];
+            if (branch < bodies.size()) {
+                conditions.add(tests.get(branch));
+                bodies.get(branch).render(choices, sql, conditions);
+            } else {
+                conditions.add("otherwise");
+                if (otherwiseBody != null) {
+                    otherwiseBody.render(choices, sql, conditions);
+                }
+            }
+        };
+    }
+
+    private SqlNode include(Element element, String namespace, Map<String, String> properties,
+                            List<Integer> arities, Deque<String> includes) {
+        String refid = substitute(element.getAttribute("refid"), properties);
+        int dot = refid.lastIndexOf('.');
+        String fragmentNamespace = dot > 0 ? refid.substring(0, dot) : namespace;
+        String id = refid.substring(dot + 1);
+        String key = fragmentNamespace + "." + id;
+        Element fragment = includes.size() < MAX_INCLUDE_DEPTH && !includes.contains(key)
+                ? findFragment(fragmentNamespace, id) : null;
+        if (fragment == null) {
+            // Unknown or circular: MyBatis would fail, the variants just lack the fragment
+            return (choices, sql, conditions) -> {
+            };
+        }
+
+        Map<String, String> fragmentProperties = new HashMap<>(properties);
+        for (Element property : childElements(element, "property")) {
+            fragmentProperties.put(property.getAttribute("name"), substitute(property.getAttribute("value"), properties));
+        }
+        includes.push(key);
+        SqlNode body = children(fragment, fragmentNamespace, fragmentProperties, arities, includes);
+        includes.pop();
+        return body;
+    }
+
+    private Element findFragment(String namespace, String id) {
+        return fragments.computeIfAbsent(namespace + "." + id, key -> {
+            String xml = namespace != null ? resolver.findFragment(namespace, id) : null;
+            return Optional.ofNullable(xml != null ? parse(xml) : null);
+        }).orElse(null);
+    }
+
+    private static SqlNode trim(String prefix, String suffix, List<String> prefixOverrides,
+                                List<String> suffixOverrides, SqlNode body) {
+        return (choices, sql, conditions) -> {
+            StringBuilder inner = new StringBuilder();
+            body.render(choices, inner, conditions);
+            String text = collapse(inner.toString());
+            if (text.isEmpty()) {
+                return;
+            }
+            for (String override : prefixOverrides) {
+                if (text.toUpperCase(Locale.ENGLISH).startsWith(override)) {
+                    text = text.substring(override.trim().length());
+                    break;
+                }
+            }
+            String upper = text.toUpperCase(Locale.ENGLISH);
+            for (String override : suffixOverrides) {
+                if (upper.endsWith(override) || upper.endsWith(override.trim())) {
+                    text = text.substring(0, text.length() - override.trim().length());
+                    break;
+                }
+            }
+            sql.append(' ');
+            if (prefix != null && !prefix.isEmpty()) {
+                sql.append(prefix).append(' ');
+            }
+            sql.append(text);
+            if (suffix != null && !suffix.isEmpty()) {
+                sql.append(' ').append(suffix);
+            }
+            sql.append(' ');
+        };
+    }
+
+    /**
+     * prefixOverrides and suffixOverrides: alternatives separated by |, matched case-insensitively
+     */
+    private static List<String> overrides(String attribute) {
+        List<String> overrides = new ArrayList<>();
+        if (attribute == null || attribute.isEmpty()) {
+            return overrides;
+        }
+        for (String override : attribute.split("\\|")) {
+            // Whitespace is collapsed before matching, so "AND\n" is "AND "
+            String normalized = collapse(override.toUpperCase(Locale.ENGLISH) + "x");
+            overrides.add(normalized.substring(0, normalized.length() - 1));
+        }
+        return overrides;
+    }
+
+    private static int newChoice(List<Integer> arities, int arity) {
+        arities.add(arity);
+        return arities.size() - 1;
+    }
+
+    private static String substitute(String text, Map<String, String> properties) {
+        if (properties.isEmpty() || text.indexOf('$') < 0) {
+            return text;
+        }
+        Matcher matcher = PROPERTY.matcher(text);
+        StringBuilder out = new StringBuilder();
+        while (matcher.find()) {
+            String value = properties.get(matcher.group(1).trim());
+            matcher.appendReplacement(out, Matcher.quoteReplacement(value != null ? value : matcher.group()));
+        }
+        matcher.appendTail(out);
+        return out.toString();
+    }
+
+    private static List<Element> childElements(Element element, String name) {
+        List<Element> elements = new ArrayList<>();
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(((Element) child).getTagName())) {
+                elements.add((Element) child);
+            }
+        }
+        return elements;
+    }
+
+    private static String collapse(String sql) {
+        return WHITESPACE.matcher(sql).replaceAll(" ").trim();
+    }
+
+    private static Element parse(String xml) {
+        try {
+            DocumentBuilder builder = XML.newDocumentBuilder();
+            // Fail without printing the error to stderr
+            builder.setErrorHandler(new DefaultHandler());
+            Document document = builder.parse(new InputSource(new StringReader(xml)));
+            return document.getDocumentElement();
+        } catch (Exception e) {
+            // Typically a statement being edited
+            return null;
+        }
+    }
+
+    private static DocumentBuilderFactory createFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        try {
+            // Statement XML comes without a DOCTYPE; never fetch or expand external entities
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        } catch (ParserConfigurationException e) {
+            factory.setExpandEntityReferences(false);
+        }
+        return factory;
+    }
+
+    /**
+     * Part of a statement, rendered for one combination of choices
+     */
+    private interface SqlNode {
+        void render(int[] choices, StringBuilder sql, List<String> conditions);
+    }
+}
@@ -0,0 +1,39 @@
+package cn.mklaus.sqlagent.mybatis.dynamic;
+
+import java.util.List;
+
+/**
+ * The variants of a dynamic mapper statement
+ */
+public class DynamicSqlExpansion {
+    private final List<SqlVariant> variants;
+    private final long combinations;
+    private final boolean sampled;
+
+    public DynamicSqlExpansion(List<SqlVariant> variants, long combinations, boolean sampled) {
+        this.variants = variants;
+        this.combinations = combinations;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Distinct variants, the one with no optional branch first; empty if the XML does not parse
+     */
+    public List<SqlVariant> getVariants() {
+        return variants;
+    }
+
+    /**
+     * Number of branch combinations, Long.MAX_VALUE if it overflows; several may give the same SQL
+     */
+    public long getCombinations() {
+        return combinations;
+    }
+
+    /**
+     * True if there were more combinations than the bound and the variants are a sample
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+}
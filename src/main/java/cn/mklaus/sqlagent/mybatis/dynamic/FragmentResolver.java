@@ -0,0 +1,12 @@
+package cn.mklaus.sqlagent.mybatis.dynamic;
+
+/**
+ * Looks up the {@code <sql>} fragments referenced by {@code <include refid>}
+ */
+public interface FragmentResolver {
+
+    /**
+     * @return XML of the {@code <sql>} tag, or null if no mapper declares it
+     */
+    String findFragment(String namespace, String id);
+}
@@ -0,0 +1,58 @@
+package cn.mklaus.sqlagent.mybatis.dynamic;
+
+import cn.mklaus.sqlagent.mybatis.index.MapperStatementEntry;
+import cn.mklaus.sqlagent.mybatis.index.MapperStatementIndex;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+
+/**
+ * Finds {@code <sql>} fragments in the mapper file of a statement, then in all mapper files
+ * of the project through the MapperStatementIndex. Call inside a read action.
+ */
+public class MapperFragmentResolver implements FragmentResolver {
+    private final XmlFile file;
+
+    public MapperFragmentResolver(XmlFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public String findFragment(String namespace, String id) {
+        XmlTag fragment = findInFile(file, namespace, id);
+        if (fragment != null) {
+            return fragment.getText();
+        }
+
+        Project project = file.getProject();
+        if (DumbService.isDumb(project)) {
+            return null;
+        }
+        MapperStatementEntry entry = MapperStatementIndex.findFragment(project, namespace, id);
+        if (entry == null || entry.getFile() == null) {
+            return null;
+        }
+        PsiFile mapper = PsiManager.getInstance(project).findFile(entry.getFile());
+        fragment = mapper instanceof XmlFile ? findInFile((XmlFile) mapper, namespace, id) : null;
+        return fragment != null ? fragment.getText() : null;
+    }
+
+    /**
+     * The {@code <sql>} fragment declared in the file, without looking at other mapper files
+     */
+    public static XmlTag findInFile(XmlFile file, String namespace, String id) {
+        XmlTag root = file.getRootTag();
+        if (root == null || !namespace.equals(root.getAttributeValue("namespace"))) {
+            return null;
+        }
+        for (XmlTag sql : root.findSubTags("sql")) {
+            if (id.equals(sql.getAttributeValue("id"))) {
+                return sql;
+            }
+        }
+        return null;
+    }
+}
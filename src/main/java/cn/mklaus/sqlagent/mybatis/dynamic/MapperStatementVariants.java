@@ -0,0 +1,41 @@
+package cn.mklaus.sqlagent.mybatis.dynamic;
+
+import cn.mklaus.sqlagent.config.SqlAgentSettingsService;
+import cn.mklaus.sqlagent.mybatis.MyBatisSqlExtractor;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+
+import java.util.List;
+
+/**
+ * Concrete variants of mapper statements, memoized per statement tag
+ *
+ * The expansion is dropped on any PSI change, since included fragments may live in other files.
+ */
+public final class MapperStatementVariants {
+
+    private MapperStatementVariants() {
+    }
+
+    /**
+     * Variants of a select, insert, update or delete tag. Call inside a read action.
+     */
+    public static DynamicSqlExpansion expand(XmlTag statement) {
+        return CachedValuesManager.getCachedValue(statement, () -> {
+            PsiFile file = statement.getContainingFile();
+            DynamicSqlExpansion expansion;
+            if (file instanceof XmlFile) {
+                int maxVariants = SqlAgentSettingsService.getInstance().getState().dynamicSqlMaxVariants;
+                DynamicSqlExpander expander = new DynamicSqlExpander(new MapperFragmentResolver((XmlFile) file), maxVariants);
+                expansion = expander.expand(new MyBatisSqlExtractor().getNamespace(statement), statement.getText());
+            } else {
+                expansion = new DynamicSqlExpansion(List.of(), 0, false);
+            }
+            return CachedValueProvider.Result.create(expansion, PsiModificationTracker.getInstance(statement.getProject()));
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package cn.mklaus.sqlagent.mybatis.dynamic;
+
+import java.util.List;
+
+/**
+ * One concrete SQL statement a dynamic mapper statement can produce
+ */
+public class SqlVariant {
+    private final String sql;
+    private final List<String> conditions;
+
+    public SqlVariant(String sql, List<String> conditions) {
+        this.sql = sql;
+        this.conditions = conditions;
+    }
+
+    /**
+     * SQL with ? for #{} and ${} parameters, whitespace collapsed
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * The branches taken, e.g. "name != null", "not (age != null)", "otherwise"
+     */
+    public List<String> getConditions() {
+        return conditions;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
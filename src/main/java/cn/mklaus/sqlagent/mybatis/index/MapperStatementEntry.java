@@ -0,0 +1,190 @@
+package cn.mklaus.sqlagent.mybatis.index;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A mapper statement as stored in MapperStatementIndex
+ *
+ * Holds what project-wide features look up without parsing the XML: the SQL itself is not
+ * stored, only its fingerprint, and the offset of the tag to find it in the file.
+ */
+public class MapperStatementEntry {
+    private static final Pattern TABLE_REFERENCE = Pattern.compile(
+            "\\b(?:from|join|into|update)\\s+([`\"]?[\\w$]+[`\"]?(?:\\.[`\"]?[\\w$]+[`\"]?)?)", Pattern.CASE_INSENSITIVE);
+    private static final Set<String> NOT_TABLES = Set.of("select", "set", "where", "dual", "lateral", "values");
+
+    private final String namespace;
+    private final String statementId;
+    private final String sqlType;
+    private final List<String> tables;
+    private final String fingerprint;
+    private final List<String> includes;
+    private final int offset;
+    private VirtualFile file;
+
+    public MapperStatementEntry(String namespace, String statementId, String sqlType, List<String> tables,
+                                String fingerprint, List<String> includes, int offset) {
+        this.namespace = namespace;
+        this.statementId = statementId;
+        this.sqlType = sqlType;
+        this.tables = tables;
+        this.fingerprint = fingerprint;
+        this.includes = includes;
+        this.offset = offset;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    /**
+     * SELECT, INSERT, UPDATE or DELETE
+     */
+    public String getSqlType() {
+        return sqlType;
+    }
+
+    /**
+     * Lower-case names of the tables the statement reads or writes, without schema
+     */
+    public List<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * Hash of the normalized SQL; equal for statements that differ only in layout and comments
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * refid values of the {@code <include>} tags in the statement
+     */
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Offset of the statement tag in its file
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * The mapper file, set on entries returned by MapperStatementIndex lookups
+     */
+    public VirtualFile getFile() {
+        return file;
+    }
+
+    MapperStatementEntry withFile(VirtualFile file) {
+        MapperStatementEntry located = new MapperStatementEntry(namespace, statementId, sqlType, tables,
+                fingerprint, includes, offset);
+        located.file = file;
+        return located;
+    }
+
+    /**
+     * Tables referenced by a statement, parsed when possible and matched by FROM/JOIN/INTO/UPDATE
+     * otherwise, since dynamic SQL often does not parse
+     */
+    public static List<String> findTables(String sql) {
+        Set<String> tables = new TreeSet<>();
+        if (sql == null) {
+            return new ArrayList<>();
+        }
+        try {
+            TablesNamesFinder.findTables(sql).forEach(table -> tables.add(simpleName(table)));
+        } catch (JSQLParserException | RuntimeException e) {
+            Matcher matcher = TABLE_REFERENCE.matcher(sql);
+            while (matcher.find()) {
+                String table = simpleName(matcher.group(1));
+                if (!NOT_TABLES.contains(table)) {
+                    tables.add(table);
+                }
+            }
+        }
+        return new ArrayList<>(tables);
+    }
+
+    private static String simpleName(String table) {
+        String name = table.substring(table.lastIndexOf('.') + 1);
+        return name.replace("`", "").replace("\"", "").toLowerCase(Locale.ROOT);
+    }
+
+    public void save(DataOutput out) throws IOException {
+        out.writeUTF(namespace);
+        out.writeUTF(statementId);
+        out.writeUTF(sqlType);
+        writeList(out, tables);
+        out.writeUTF(fingerprint);
+        writeList(out, includes);
+        out.writeInt(offset);
+    }
+
+    public static MapperStatementEntry read(DataInput in) throws IOException {
+        return new MapperStatementEntry(in.readUTF(), in.readUTF(), in.readUTF(), readList(in),
+                in.readUTF(), readList(in), in.readInt());
+    }
+
+    private static void writeList(DataOutput out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readList(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    // Index values must be comparable so the platform can tell whether a file's data changed
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MapperStatementEntry)) {
+            return false;
+        }
+        MapperStatementEntry that = (MapperStatementEntry) o;
+        return offset == that.offset && namespace.equals(that.namespace) && statementId.equals(that.statementId)
+                && sqlType.equals(that.sqlType) && tables.equals(that.tables) && fingerprint.equals(that.fingerprint)
+                && includes.equals(that.includes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(namespace, statementId, sqlType, tables, fingerprint, includes, offset);
+    }
+
+    @Override
+    public String toString() {
+        return namespace + "." + statementId + " " + sqlType + " " + tables;
+    }
+}
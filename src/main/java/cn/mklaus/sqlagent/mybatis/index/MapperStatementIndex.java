@@ -0,0 +1,228 @@
+package cn.mklaus.sqlagent.mybatis.index;
+
+import cn.mklaus.sqlagent.cache.SqlFingerprint;
+import cn.mklaus.sqlagent.model.MyBatisSqlInfo;
+import cn.mklaus.sqlagent.mybatis.MyBatisSqlExtractor;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * File-based index of the statements and SQL fragments of MyBatis mapper XML files
+ *
+ * Each statement is stored under three keys: its namespace, every table it references and
+ * its SQL fingerprint, so statements can be found by any of them without opening the XML.
+ * {@code <sql>} fragments are stored under their qualified id for resolving includes. The
+ * platform re-indexes a file when it changes, so lookups stay current.
+ */
+public class MapperStatementIndex extends FileBasedIndexExtension<String, List<MapperStatementEntry>> {
+    public static final ID<String, List<MapperStatementEntry>> NAME = ID.create("cn.mklaus.sqlagent.MapperStatementIndex");
+
+    private static final int VERSION = 2;
+    private static final String FRAGMENT_TYPE = "SQL";
+    private static final MyBatisSqlExtractor EXTRACTOR = new MyBatisSqlExtractor();
+
+    @Override
+    public @NotNull ID<String, List<MapperStatementEntry>> getName() {
+        return NAME;
+    }
+
+    @Override
+    public @NotNull DataIndexer<String, List<MapperStatementEntry>, FileContent> getIndexer() {
+        return MapperStatementIndex::index;
+    }
+
+    private static Map<String, List<MapperStatementEntry>> index(FileContent inputData) {
+        // Skip the PSI of the many XML files that are not mappers
+        if (!StringUtil.contains(inputData.getContentAsText(), "<mapper")) {
+            return Map.of();
+        }
+        PsiFile psiFile = inputData.getPsiFile();
+        XmlTag root = psiFile instanceof XmlFile ? ((XmlFile) psiFile).getRootTag() : null;
+        String namespace = root != null && "mapper".equals(root.getName()) ? root.getAttributeValue("namespace") : null;
+        if (namespace == null) {
+            return Map.of();
+        }
+
+        Map<String, List<MapperStatementEntry>> data = new HashMap<>();
+        // Present even without statements, so the file is found by its namespace
+        data.put(namespaceKey(namespace), new ArrayList<>());
+        for (XmlTag tag : root.getSubTags()) {
+            String id = tag.getAttributeValue("id");
+            if (id == null) {
+                continue;
+            }
+            if ("sql".equals(tag.getName())) {
+                MapperStatementEntry fragment = new MapperStatementEntry(namespace, id, FRAGMENT_TYPE, List.of(), "",
+                        findIncludes(tag), tag.getTextRange().getStartOffset());
+                add(data, fragmentKey(namespace, id), fragment);
+                continue;
+            }
+            MyBatisSqlInfo info = EXTRACTOR.extractSqlInfo(tag);
+            if (info == null) {
+                continue;
+            }
+            String sql = info.getOriginalSql() != null ? info.getOriginalSql() : "";
+            MapperStatementEntry entry = new MapperStatementEntry(namespace, id, info.getSqlType(),
+                    MapperStatementEntry.findTables(sql), SqlFingerprint.hash(SqlFingerprint.normalize(sql)),
+                    findIncludes(tag), tag.getTextRange().getStartOffset());
+            add(data, namespaceKey(namespace), entry);
+            add(data, fingerprintKey(entry.getFingerprint()), entry);
+            for (String table : entry.getTables()) {
+                add(data, tableKey(table), entry);
+            }
+        }
+        return data;
+    }
+
+    private static List<String> findIncludes(XmlTag tag) {
+        Set<String> refids = new LinkedHashSet<>();
+        for (XmlTag child : PsiTreeUtil.findChildrenOfType(tag, XmlTag.class)) {
+            if ("include".equals(child.getName()) && child.getAttributeValue("refid") != null) {
+                refids.add(child.getAttributeValue("refid"));
+            }
+        }
+        return new ArrayList<>(refids);
+    }
+
+    private static void add(Map<String, List<MapperStatementEntry>> data, String key, MapperStatementEntry entry) {
+        data.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+    }
+
+    @Override
+    public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public @NotNull DataExternalizer<List<MapperStatementEntry>> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<MapperStatementEntry> entries) throws IOException {
+                out.writeInt(entries.size());
+                for (MapperStatementEntry entry : entries) {
+                    entry.save(out);
+                }
+            }
+
+            @Override
+            public List<MapperStatementEntry> read(@NotNull DataInput in) throws IOException {
+                int size = in.readInt();
+                List<MapperStatementEntry> entries = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    entries.add(MapperStatementEntry.read(in));
+                }
+                return entries;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public @NotNull FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(XmlFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    private static String namespaceKey(String namespace) {
+        return "ns:" + namespace;
+    }
+
+    private static String tableKey(String table) {
+        return "table:" + table.toLowerCase(Locale.ROOT);
+    }
+
+    private static String fingerprintKey(String fingerprint) {
+        return "fp:" + fingerprint;
+    }
+
+    private static String fragmentKey(String namespace, String id) {
+        return "sql:" + namespace + "." + id;
+    }
+
+    /**
+     * Statements of a mapper namespace. Needs smart mode, like all lookups below.
+     */
+    public static List<MapperStatementEntry> findByNamespace(Project project, String namespace) {
+        return lookup(project, namespaceKey(namespace));
+    }
+
+    /**
+     * Statements reading or writing a table, by its name without schema
+     */
+    public static List<MapperStatementEntry> findByTable(Project project, String table) {
+        return lookup(project, tableKey(table));
+    }
+
+    /**
+     * Statements whose normalized SQL has the fingerprint, i.e. duplicates of each other
+     */
+    public static List<MapperStatementEntry> findByFingerprint(Project project, String fingerprint) {
+        return lookup(project, fingerprintKey(fingerprint));
+    }
+
+    /**
+     * A {@code <sql>} fragment by namespace and id
+     */
+    public static MapperStatementEntry findFragment(Project project, String namespace, String id) {
+        List<MapperStatementEntry> fragments = lookup(project, fragmentKey(namespace, id));
+        return fragments.isEmpty() ? null : fragments.get(0);
+    }
+
+    /**
+     * Mapper files declaring a namespace
+     */
+    public static Collection<VirtualFile> findFiles(Project project, String namespace) {
+        return FileBasedIndex.getInstance().getContainingFiles(NAME, namespaceKey(namespace),
+                GlobalSearchScope.projectScope(project));
+    }
+
+    /**
+     * Namespaces of all mapper files in the project
+     */
+    public static List<String> getNamespaces(Project project) {
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        FileBasedIndex index = FileBasedIndex.getInstance();
+        List<String> namespaces = new ArrayList<>();
+        // All keys may include stale ones of deleted files; keep those that still have a file
+        for (String key : index.getAllKeys(NAME, project)) {
+            if (key.startsWith("ns:") && !index.getContainingFiles(NAME, key, scope).isEmpty()) {
+                namespaces.add(key.substring(3));
+            }
+        }
+        return namespaces;
+    }
+
+    private static List<MapperStatementEntry> lookup(Project project, String key) {
+        List<MapperStatementEntry> entries = new ArrayList<>();
+        FileBasedIndex.getInstance().processValues(NAME, key, null, (file, values) -> {
+            values.forEach(entry -> entries.add(entry.withFile(file)));
+            return true;
+        }, GlobalSearchScope.projectScope(project));
+        return entries;
+    }
+}
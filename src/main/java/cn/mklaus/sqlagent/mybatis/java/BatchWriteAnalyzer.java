@@ -0,0 +1,239 @@
+package cn.mklaus.sqlagent.mybatis.java;
+
+import cn.mklaus.sqlagent.mybatis.JdbcSettings;
+import cn.mklaus.sqlagent.mybatis.MyBatisSqlExtractor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiEnumConstant;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlTag;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds inefficient batch writes around MyBatis insert, update and delete statements
+ *
+ * Looks at the statement itself (multi-row {@code <foreach>} inserts that grow with the
+ * collection, statements joined with ';') and at its Java call sites (one write per loop
+ * iteration without a BATCH executor, BATCH executors whose JDBC URL lacks the driver's
+ * batch rewrite flag). JDBC URLs and executor defaults are read from application.yml,
+ * application.properties and mybatis-config.xml in the project.
+ */
+public class BatchWriteAnalyzer {
+    private static final String EXECUTOR_TYPE = "org.apache.ibatis.session.ExecutorType";
+    private static final Pattern INSERT_TARGET =
+            Pattern.compile("(?is)INSERT\\s+(?:IGNORE\\s+)?INTO\\s+([\\w.`\"]+)\\s*\\(([^)<]*)\\)");
+
+    private final MyBatisSqlExtractor extractor = new MyBatisSqlExtractor();
+    private final NPlusOneDetector detector = new NPlusOneDetector();
+
+    /**
+     * One problem found for a statement
+     */
+    public static class Finding {
+        private final String message;
+        private final boolean unboundedMultiRow;
+
+        Finding(String message, boolean unboundedMultiRow) {
+            this.message = message;
+            this.unboundedMultiRow = unboundedMultiRow;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * Whether the finding is a multi-row insert whose chunk size can be estimated
+         */
+        public boolean isUnboundedMultiRow() {
+            return unboundedMultiRow;
+        }
+    }
+
+    /**
+     * @param tag An insert, update or delete tag of a mapper XML
+     * @return Findings, cached on the tag until the next PSI change
+     */
+    public List<Finding> analyze(XmlTag tag) {
+        return CachedValuesManager.getCachedValue(tag, () ->
+                CachedValueProvider.Result.create(doAnalyze(tag), PsiModificationTracker.getInstance(tag.getProject())));
+    }
+
+    private List<Finding> doAnalyze(XmlTag tag) {
+        String sqlType = extractor.getSqlType(tag.getName());
+        if (sqlType == null || "SELECT".equals(sqlType)) {
+            return List.of();
+        }
+        List<Finding> findings = new ArrayList<>();
+
+        XmlTag foreach = findForeach(tag);
+        if (foreach != null) {
+            String separator = foreach.getAttributeValue("separator");
+            if (separator != null && separator.contains(";")) {
+                findings.add(new Finding("<foreach> joins one " + sqlType + " per element with ';': this needs "
+                        + "allowMultiQueries=true and the server still runs the statements one by one. "
+                        + "Call the single-row statement with ExecutorType.BATCH instead", false));
+            } else if ("INSERT".equals(sqlType)) {
+                findings.add(new Finding("Multi-row INSERT grows with the <foreach> collection: a large "
+                        + "collection can exceed max_allowed_packet or 65535 bind parameters. "
+                        + "Split the collection into chunks", true));
+            }
+        }
+
+        Settings settings = getSettings(tag.getProject());
+        boolean batchExecutorUsed = settings.batchExecutorDefault;
+        for (MapperCallSite site : detector.findLoopCallSites(tag)) {
+            if (settings.batchExecutorDefault || usesBatchExecutor(site.getCall())) {
+                batchExecutorUsed = true;
+                continue;
+            }
+            findings.add(new Finding("Row-by-row " + sqlType + " in " + String.join(" inside ", site.getLoops())
+                    + " at " + describeCaller(site.getCall()) + ": " + site.describeFanOut()
+                    + ", each a round trip. Open the SqlSession with ExecutorType.BATCH or write "
+                    + "the rows with a multi-row <foreach> statement", false));
+        }
+
+        if (batchExecutorUsed) {
+            Set<String> missingFlags = new LinkedHashSet<>();
+            for (String url : settings.jdbcUrls) {
+                String flag = JdbcSettings.missingBatchRewriteFlag(url);
+                // pgjdbc only rewrites inserts
+                if (flag != null && (url.startsWith("jdbc:mysql:") || "INSERT".equals(sqlType))) {
+                    missingFlags.add(flag);
+                }
+            }
+            for (String flag : missingFlags) {
+                findings.add(new Finding("ExecutorType.BATCH is used, but the JDBC URL does not set " + flag
+                        + ": the driver still sends one " + sqlType + " per row", false));
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Table and columns of an INSERT INTO table (columns ...) statement
+     * @return Table followed by its columns, or null if the statement lists no plain columns
+     */
+    public List<String> getInsertTarget(XmlTag tag) {
+        Matcher matcher = INSERT_TARGET.matcher(tag.getValue().getText());
+        if (!matcher.find()) {
+            return null;
+        }
+        List<String> target = new ArrayList<>();
+        target.add(unquote(matcher.group(1)));
+        for (String column : matcher.group(2).split(",")) {
+            if (!column.isBlank()) {
+                target.add(unquote(column.trim()));
+            }
+        }
+        return target.size() > 1 ? target : null;
+    }
+
+    private static String unquote(String identifier) {
+        String name = identifier.contains(".") ? identifier.substring(identifier.lastIndexOf('.') + 1) : identifier;
+        return name.replace("`", "").replace("\"", "");
+    }
+
+    private static XmlTag findForeach(XmlTag tag) {
+        for (XmlTag child : tag.getSubTags()) {
+            XmlTag foreach = "foreach".equals(child.getName()) ? child : findForeach(child);
+            if (foreach != null) {
+                return foreach;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the caller's method or class refers to ExecutorType.BATCH, e.g. in openSession(ExecutorType.BATCH)
+     */
+    private static boolean usesBatchExecutor(PsiElement call) {
+        PsiElement scope = PsiTreeUtil.getParentOfType(call, PsiClass.class);
+        if (scope == null) {
+            return false;
+        }
+        for (PsiReferenceExpression reference : PsiTreeUtil.findChildrenOfType(scope, PsiReferenceExpression.class)) {
+            if (!"BATCH".equals(reference.getReferenceName())) {
+                continue;
+            }
+            PsiElement resolved = reference.resolve();
+            if (resolved instanceof PsiEnumConstant && ((PsiEnumConstant) resolved).getContainingClass() != null
+                    && EXECUTOR_TYPE.equals(((PsiEnumConstant) resolved).getContainingClass().getQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String describeCaller(PsiElement call) {
+        PsiMethod caller = PsiTreeUtil.getParentOfType(call, PsiMethod.class);
+        if (caller != null && caller.getContainingClass() != null) {
+            return caller.getContainingClass().getName() + "." + caller.getName() + "()";
+        }
+        return call.getContainingFile().getName();
+    }
+
+    /**
+     * JDBC URLs and executor default of the project's configuration files
+     */
+    private static class Settings {
+        private final List<String> jdbcUrls = new ArrayList<>();
+        private boolean batchExecutorDefault;
+        // The files read, and file creation or deletion for configuration files added later
+        private final List<Object> dependencies = new ArrayList<>(List.of(VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS));
+    }
+
+    /**
+     * Settings, read again only when one of the configuration files changes
+     */
+    private static Settings getSettings(Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(project, () -> {
+            Settings settings = loadSettings(project);
+            return CachedValueProvider.Result.create(settings, settings.dependencies.toArray());
+        });
+    }
+
+    private static Settings loadSettings(Project project) {
+        Settings settings = new Settings();
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        List<VirtualFile> files = new ArrayList<>(FilenameIndex.getVirtualFilesByName("mybatis-config.xml", scope));
+        for (String extension : List.of("properties", "yml", "yaml")) {
+            for (VirtualFile file : FilenameIndex.getAllFilesByExt(project, extension, scope)) {
+                if (file.getName().startsWith("application") || file.getName().startsWith("bootstrap")) {
+                    files.add(file);
+                }
+            }
+        }
+
+        PsiManager psiManager = PsiManager.getInstance(project);
+        for (VirtualFile file : files) {
+            PsiFile psiFile = psiManager.findFile(file);
+            if (psiFile == null) {
+                continue;
+            }
+            settings.dependencies.add(psiFile);
+            String text = psiFile.getText();
+            settings.jdbcUrls.addAll(JdbcSettings.findJdbcUrls(text));
+            settings.batchExecutorDefault |= JdbcSettings.declaresBatchExecutor(text);
+        }
+        return settings;
+    }
+}
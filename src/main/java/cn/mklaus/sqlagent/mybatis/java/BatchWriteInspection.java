@@ -0,0 +1,185 @@
+package cn.mklaus.sqlagent.mybatis.java;
+
+import cn.mklaus.sqlagent.mcp.McpServerLifecycleService;
+import cn.mklaus.sqlagent.mcp.McpToolClient;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.xml.util.XmlTagUtil;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inspection for batch writes in MyBatis mapper XML files
+ *
+ * Reports the findings of BatchWriteAnalyzer on insert, update and delete statements. Multi-row
+ * inserts get a quick fix estimating the chunk size with the batch_write_sizing MCP tool.
+ */
+public class BatchWriteInspection extends LocalInspectionTool {
+
+    private static final String NOTIFICATION_GROUP_ID = "SQL Agent";
+
+    private final BatchWriteAnalyzer analyzer = new BatchWriteAnalyzer();
+
+    @NotNull
+    @Override
+    public String getDisplayName() {
+        return "Inefficient MyBatis batch writes";
+    }
+
+    @Nls
+    @NotNull
+    @Override
+    public String getGroupDisplayName() {
+        return "SqlAgent";
+    }
+
+    @Nls
+    @NotNull
+    @Override
+    public String getShortName() {
+        return "SqlAgentBatchWrite";
+    }
+
+    @Override
+    public boolean isEnabledByDefault() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public String getStaticDescription() {
+        return "Reports row-by-row inserts and updates called in Java loops, BATCH executors without the JDBC "
+                + "driver's batch rewrite flag, and multi-row &lt;foreach&gt; inserts that can outgrow "
+                + "max_allowed_packet.";
+    }
+
+    @Override
+    public ProblemDescriptor[] checkFile(@NotNull PsiFile file, @NotNull InspectionManager manager, boolean isOnTheFly) {
+        if (!(file instanceof XmlFile)) {
+            return ProblemDescriptor.EMPTY_ARRAY;
+        }
+        XmlTag root = ((XmlFile) file).getRootTag();
+        if (root == null || !"mapper".equals(root.getName())) {
+            return ProblemDescriptor.EMPTY_ARRAY;
+        }
+
+        List<ProblemDescriptor> problems = new ArrayList<>();
+        for (XmlTag tag : root.getSubTags()) {
+            ProgressManager.checkCanceled();
+            String tagName = tag.getName();
+            if (!"insert".equals(tagName) && !"update".equals(tagName) && !"delete".equals(tagName)) {
+                continue;
+            }
+            PsiElement anchor = XmlTagUtil.getStartTagNameElement(tag) != null
+                    ? XmlTagUtil.getStartTagNameElement(tag)
+                    : tag;
+            for (BatchWriteAnalyzer.Finding finding : analyzer.analyze(tag)) {
+                List<String> target = finding.isUnboundedMultiRow() ? analyzer.getInsertTarget(tag) : null;
+                LocalQuickFix[] fixes = target != null
+                        ? new LocalQuickFix[]{new EstimateChunkSizeQuickFix(target)}
+                        : LocalQuickFix.EMPTY_ARRAY;
+                problems.add(manager.createProblemDescriptor(
+                        anchor,
+                        finding.getMessage(),
+                        fixes,
+                        ProblemHighlightType.WARNING,
+                        isOnTheFly,
+                        false
+                ));
+            }
+        }
+        return problems.toArray(ProblemDescriptor.EMPTY_ARRAY);
+    }
+
+    /**
+     * Quick fix asking the MCP server for the chunk size that fits the statement limits
+     */
+    private static class EstimateChunkSizeQuickFix implements LocalQuickFix {
+        private static final long TIMEOUT_MILLIS = 30_000;
+
+        private final List<String> target; // Table followed by its columns
+
+        EstimateChunkSizeQuickFix(List<String> target) {
+            this.target = target;
+        }
+
+        @Nls(capitalization = Nls.Capitalization.Sentence)
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Estimate chunk size from the database";
+        }
+
+        @Override
+        public boolean startInWriteAction() {
+            return false;
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            ProgressManager.getInstance().run(new Task.Backgroundable(project, "Estimating chunk size", true) {
+                @Override
+                public void run(@NotNull ProgressIndicator indicator) {
+                    McpToolClient client = McpServerLifecycleService.getInstance().getToolClient();
+                    if (client == null) {
+                        notify(project, "Database is not configured", NotificationType.WARNING);
+                        return;
+                    }
+
+                    JsonObject arguments = new JsonObject();
+                    arguments.addProperty("table", target.get(0));
+                    JsonArray columns = new JsonArray();
+                    target.subList(1, target.size()).forEach(columns::add);
+                    arguments.add("columns", columns);
+                    try {
+                        JsonObject sizing = client.callTool("batch_write_sizing", arguments, TIMEOUT_MILLIS, indicator);
+                        if (!sizing.has("recommended_chunk_rows") || sizing.get("recommended_chunk_rows").isJsonNull()) {
+                            notify(project, "The MCP server returned no chunk size for " + target.get(0),
+                                    NotificationType.WARNING);
+                            return;
+                        }
+                        StringBuilder content = new StringBuilder("Chunk inserts into " + target.get(0) + " to at most "
+                                + sizing.get("recommended_chunk_rows").getAsLong() + " rows per statement");
+                        if (sizing.has("bytes_per_row") && sizing.has("limiting_factor")) {
+                            content.append(" (about ").append(sizing.get("bytes_per_row").getAsLong())
+                                    .append(" bytes per row, limited by ")
+                                    .append(sizing.get("limiting_factor").getAsString()).append(")");
+                        }
+                        notify(project, content.toString(), NotificationType.INFORMATION);
+                    } catch (ProcessCanceledException e) {
+                        throw e;
+                    } catch (IOException | RuntimeException e) {
+                        notify(project, "Error: " + e.getMessage(), NotificationType.ERROR);
+                    }
+                }
+            });
+        }
+
+        private static void notify(Project project, String content, NotificationType type) {
+            Notification notification = new Notification(NOTIFICATION_GROUP_ID, "Batch Write Chunk Size", content, type);
+            Notifications.Bus.notify(notification, project);
+        }
+    }
+}
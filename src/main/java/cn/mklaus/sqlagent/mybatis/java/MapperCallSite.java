@@ -0,0 +1,90 @@
+package cn.mklaus.sqlagent.mybatis.java;
+
+import cn.mklaus.sqlagent.model.MyBatisSqlInfo;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+
+import java.util.List;
+
+/**
+ * A call to a mapper method that runs once per iteration of one or more loops
+ */
+public class MapperCallSite {
+    public static final long UNKNOWN_FAN_OUT = -1;
+
+    private final PsiElement call;             // Method call or method reference
+    private final PsiMethod mapperMethod;
+    private final MyBatisSqlInfo statement;    // Mapper XML statement, or null for annotation mappers
+    private final String sqlType;              // SELECT, INSERT, UPDATE, DELETE, or null if unknown
+    private final List<String> loops;          // Enclosing loops, innermost first
+    private final long fanOut;                 // Queries per execution of the outermost loop, or UNKNOWN_FAN_OUT
+    private final String varyingParameter;     // Mapper parameter taking a different value per iteration
+    private final String suggestion;
+
+    public MapperCallSite(PsiElement call, PsiMethod mapperMethod, MyBatisSqlInfo statement, String sqlType,
+                          List<String> loops, long fanOut, String varyingParameter, String suggestion) {
+        this.call = call;
+        this.mapperMethod = mapperMethod;
+        this.statement = statement;
+        this.sqlType = sqlType;
+        this.loops = loops;
+        this.fanOut = fanOut;
+        this.varyingParameter = varyingParameter;
+        this.suggestion = suggestion;
+    }
+
+    public PsiElement getCall() {
+        return call;
+    }
+
+    public PsiMethod getMapperMethod() {
+        return mapperMethod;
+    }
+
+    public MyBatisSqlInfo getStatement() {
+        return statement;
+    }
+
+    public String getSqlType() {
+        return sqlType;
+    }
+
+    public List<String> getLoops() {
+        return loops;
+    }
+
+    public long getFanOut() {
+        return fanOut;
+    }
+
+    public String getVaryingParameter() {
+        return varyingParameter;
+    }
+
+    public String getSuggestion() {
+        return suggestion;
+    }
+
+    /**
+     * Mapper and method name, e.g. "UserMapper.findById"
+     */
+    public String getFullName() {
+        if (statement != null) {
+            return statement.getFullName();
+        }
+        String mapper = mapperMethod.getContainingClass() != null ? mapperMethod.getContainingClass().getName() : "";
+        return mapper + "." + mapperMethod.getName();
+    }
+
+    /**
+     * Human-readable fan-out, e.g. "about 100 queries" or "1 query per element"
+     */
+    public String describeFanOut() {
+        if (fanOut != UNKNOWN_FAN_OUT) {
+            return "about " + fanOut + (fanOut == 1 ? " query" : " queries");
+        }
+        return loops.size() > 1
+                ? "1 query per element of " + loops.size() + " nested loops"
+                : "1 query per element";
+    }
+}
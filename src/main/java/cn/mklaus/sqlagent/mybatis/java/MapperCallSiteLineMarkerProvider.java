@@ -0,0 +1,103 @@
+package cn.mklaus.sqlagent.mybatis.java;
+
+import cn.mklaus.sqlagent.mybatis.MyBatisSqlExtractor;
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.codeInsight.daemon.LineMarkerProvider;
+import com.intellij.codeInsight.navigation.NavigationGutterIconBuilder;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.psi.xml.XmlToken;
+import com.intellij.xml.util.XmlTagUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Line marker provider for MyBatis mapper XML statements called inside Java loops
+ * Adds a warning icon beside the optimize icon, navigating to the call sites
+ */
+public class MapperCallSiteLineMarkerProvider implements LineMarkerProvider {
+    private final NPlusOneDetector detector = new NPlusOneDetector();
+    private final MyBatisSqlExtractor extractor = new MyBatisSqlExtractor();
+
+    @Nullable
+    @Override
+    public LineMarkerInfo<?> getLineMarkerInfo(@NotNull PsiElement element) {
+        // Searching Java references is too slow for the first pass
+        return null;
+    }
+
+    @Override
+    public void collectSlowLineMarkers(@NotNull List<? extends PsiElement> elements,
+                                       @NotNull Collection<? super LineMarkerInfo<?>> result) {
+        for (PsiElement element : elements) {
+            ProgressManager.checkCanceled();
+            XmlTag tag = getStatementTag(element);
+            if (tag == null) {
+                continue;
+            }
+            List<MapperCallSite> sites = detector.findLoopCallSites(tag);
+            if (sites.isEmpty()) {
+                continue;
+            }
+
+            result.add(NavigationGutterIconBuilder.create(AllIcons.General.Warning)
+                    .setTargets(sites.stream().map(MapperCallSite::getCall).collect(Collectors.toList()))
+                    .setTooltipText(buildTooltip(sites))
+                    .setPopupTitle("Call Sites in Loops")
+                    .setAlignment(GutterIconRenderer.Alignment.RIGHT)
+                    .createLineMarkerInfo(element));
+        }
+    }
+
+    /**
+     * The statement tag whose start tag name is the element, or null
+     */
+    private XmlTag getStatementTag(PsiElement element) {
+        if (!(element instanceof XmlToken) || !(element.getParent() instanceof XmlTag)) {
+            return null;
+        }
+        XmlTag tag = (XmlTag) element.getParent();
+        if (XmlTagUtil.getStartTagNameElement(tag) != element || extractor.getSqlType(tag.getName()) == null
+                || tag.getAttributeValue("id") == null) {
+            return null;
+        }
+        XmlTag root = tag.getContainingFile() instanceof XmlFile ? ((XmlFile) tag.getContainingFile()).getRootTag() : null;
+        return root != null && "mapper".equals(root.getName()) && tag.getParentTag() == root ? tag : null;
+    }
+
+    /**
+     * Build tooltip text for the gutter icon
+     */
+    private String buildTooltip(List<MapperCallSite> sites) {
+        StringBuilder tooltip = new StringBuilder("<html><b>SQL Agent: called inside loops at ")
+                .append(sites.size())
+                .append(sites.size() == 1 ? " call site" : " call sites")
+                .append("</b>");
+        for (MapperCallSite site : sites) {
+            PsiMethod caller = PsiTreeUtil.getParentOfType(site.getCall(), PsiMethod.class);
+            tooltip.append("<br>")
+                    .append(StringUtil.escapeXmlEntities(caller != null && caller.getContainingClass() != null
+                            ? caller.getContainingClass().getName() + "." + caller.getName() + "()"
+                            : site.getCall().getContainingFile().getName()))
+                    .append(": ")
+                    .append(StringUtil.escapeXmlEntities(String.join(" inside ", site.getLoops())))
+                    .append(", ")
+                    .append(site.describeFanOut());
+        }
+        tooltip.append("<br><br><pre>")
+                .append(StringUtil.escapeXmlEntities(sites.get(0).getSuggestion()))
+                .append("</pre></html>");
+        return tooltip.toString();
+    }
+}
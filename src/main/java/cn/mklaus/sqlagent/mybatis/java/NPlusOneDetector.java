@@ -0,0 +1,398 @@
+package cn.mklaus.sqlagent.mybatis.java;
+
+import cn.mklaus.sqlagent.model.MyBatisSqlInfo;
+import cn.mklaus.sqlagent.mybatis.BatchStatementSuggester;
+import cn.mklaus.sqlagent.mybatis.MapperStatementLocator;
+import cn.mklaus.sqlagent.mybatis.MyBatisSqlExtractor;
+import com.intellij.codeInsight.AnnotationUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.JavaTokenType;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiArrayInitializerExpression;
+import com.intellij.psi.PsiBinaryExpression;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDeclarationStatement;
+import com.intellij.psi.PsiDoWhileStatement;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiForStatement;
+import com.intellij.psi.PsiForeachStatement;
+import com.intellij.psi.PsiLambdaExpression;
+import com.intellij.psi.PsiLocalVariable;
+import com.intellij.psi.PsiLoopStatement;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiMethodReferenceExpression;
+import com.intellij.psi.PsiNewExpression;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiVariable;
+import com.intellij.psi.PsiWhileStatement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.searches.MethodReferencesSearch;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlTag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Detects mapper method calls that run once per element of a loop or stream (N+1 queries)
+ *
+ * A call counts when it sits in the body of a for, for-each, while or do loop, or in a lambda or
+ * method reference passed to an iterating method such as {@code forEach} or {@code map} of a
+ * stream, collection or map; {@code Optional.map} and the like run at most once. The
+ * walk stops at the enclosing method, so calls inside helper methods invoked from a loop are
+ * not followed. Fan-out is only estimated when the iteration count is a compile-time constant.
+ */
+public class NPlusOneDetector {
+    private static final String MYBATIS_ANNOTATIONS = "org.apache.ibatis.annotations.";
+    private static final Map<String, String> STATEMENT_ANNOTATIONS = Map.of(
+            MYBATIS_ANNOTATIONS + "Select", "SELECT",
+            MYBATIS_ANNOTATIONS + "Insert", "INSERT",
+            MYBATIS_ANNOTATIONS + "Update", "UPDATE",
+            MYBATIS_ANNOTATIONS + "Delete", "DELETE");
+    private static final Set<String> ITERATING_METHODS = Set.of(
+            "forEach", "forEachOrdered", "map", "flatMap", "filter", "peek", "mapToObj", "mapToInt",
+            "mapToLong", "anyMatch", "allMatch", "noneMatch", "removeIf", "replaceAll", "toMap", "groupingBy");
+    // Declaring types whose ITERATING_METHODS call their function once per element
+    private static final List<String> ITERATING_TYPES = List.of(
+            "java.util.stream.BaseStream", "java.lang.Iterable", "java.util.Map", "java.util.stream.Collectors");
+    private static final Set<String> SIZED_FACTORIES = Set.of("of", "asList");
+    private static final int MAX_REFERENCES = 200;
+
+    private final BatchStatementSuggester suggester = new BatchStatementSuggester();
+    private final MyBatisSqlExtractor extractor = new MyBatisSqlExtractor();
+
+    /**
+     * @param call A method call or method reference expression
+     * @return The call site if it invokes a mapper method inside a loop, otherwise null
+     */
+    public MapperCallSite detect(PsiElement call) {
+        PsiMethod method;
+        if (call instanceof PsiMethodCallExpression) {
+            method = ((PsiMethodCallExpression) call).resolveMethod();
+        } else if (call instanceof PsiMethodReferenceExpression) {
+            PsiElement resolved = ((PsiMethodReferenceExpression) call).resolve();
+            method = resolved instanceof PsiMethod ? (PsiMethod) resolved : null;
+        } else {
+            return null;
+        }
+        if (method == null || !isMapperMethod(method)) {
+            return null;
+        }
+
+        List<String> loops = new ArrayList<>();
+        long fanOut = 1;
+        PsiElement outermost = null;
+        PsiElement child = call;
+        if (call instanceof PsiMethodReferenceExpression) {
+            // userMapper::findById passed to map() runs per element like a lambda would
+            Long size = iteratingCallSize(call, loops);
+            if (size == null) {
+                return null;
+            }
+            fanOut = multiply(fanOut, size);
+            outermost = call;
+        }
+        for (PsiElement current = call.getParent(); current != null; child = current, current = current.getParent()) {
+            if (current instanceof PsiMember || current instanceof PsiFile) {
+                break;
+            }
+            if (current instanceof PsiLoopStatement && isRepeated((PsiLoopStatement) current, child)) {
+                loops.add(describeLoop((PsiLoopStatement) current));
+                fanOut = multiply(fanOut, loopSize((PsiLoopStatement) current));
+                outermost = current;
+            } else if (current instanceof PsiLambdaExpression) {
+                Long size = iteratingCallSize(current, loops);
+                if (size == null) {
+                    // A lambda handed to anything else, e.g. an executor, is not known to repeat
+                    break;
+                }
+                fanOut = multiply(fanOut, size);
+                outermost = current;
+            }
+        }
+        if (loops.isEmpty()) {
+            return null;
+        }
+
+        String namespace = method.getContainingClass().getQualifiedName();
+        MyBatisSqlInfo statement = MapperStatementLocator.findStatement(method.getProject(), namespace, method.getName());
+        String sqlType = statement != null ? statement.getSqlType() : annotatedSqlType(method);
+        String varyingParameter = varyingParameter(call, method, outermost);
+        String suggestion = suggest(statement, sqlType, varyingParameter);
+        return new MapperCallSite(call, method, statement, sqlType, loops, fanOut, varyingParameter, suggestion);
+    }
+
+    /**
+     * Java calls of a mapper XML statement's method that run inside loops
+     *
+     * The project-wide reference search is cached on the tag until the next PSI change, so the
+     * gutter and the inspections share one search per statement.
+     * @param tag The select, insert, update or delete tag
+     */
+    public List<MapperCallSite> findLoopCallSites(XmlTag tag) {
+        return CachedValuesManager.getCachedValue(tag, () -> CachedValueProvider.Result.create(
+                searchLoopCallSites(tag), PsiModificationTracker.getInstance(tag.getProject())));
+    }
+
+    private List<MapperCallSite> searchLoopCallSites(XmlTag tag) {
+        String namespace = extractor.getNamespace(tag);
+        String statementId = extractor.getStatementId(tag);
+        if (namespace == null || statementId == null) {
+            return List.of();
+        }
+        Project project = tag.getProject();
+        PsiClass mapper = JavaPsiFacade.getInstance(project).findClass(namespace, GlobalSearchScope.projectScope(project));
+        if (mapper == null) {
+            return List.of();
+        }
+
+        List<MapperCallSite> sites = new ArrayList<>();
+        for (PsiMethod method : mapper.findMethodsByName(statementId, false)) {
+            int[] seen = new int[1];
+            MethodReferencesSearch.search(method, GlobalSearchScope.projectScope(project), true).forEach(reference -> {
+                PsiElement element = reference.getElement();
+                PsiElement call = element instanceof PsiMethodReferenceExpression
+                        ? element
+                        : element.getParent() instanceof PsiMethodCallExpression ? element.getParent() : null;
+                MapperCallSite site = call != null ? detect(call) : null;
+                if (site != null) {
+                    sites.add(site);
+                }
+                return ++seen[0] < MAX_REFERENCES;
+            });
+        }
+        return sites;
+    }
+
+    /**
+     * Whether the method belongs to a MyBatis mapper: an interface annotated with @Mapper, with
+     * statement annotations, or with a mapper XML for its qualified name
+     */
+    public boolean isMapperMethod(PsiMethod method) {
+        PsiClass mapper = method.getContainingClass();
+        if (mapper == null || !mapper.isInterface() || mapper.getQualifiedName() == null) {
+            return false;
+        }
+        if (mapper.hasAnnotation(MYBATIS_ANNOTATIONS + "Mapper") || annotatedSqlType(method) != null) {
+            return true;
+        }
+        return !MapperStatementLocator.findMapperFiles(method.getProject(), mapper.getQualifiedName()).isEmpty();
+    }
+
+    private String suggest(MyBatisSqlInfo statement, String sqlType, String varyingParameter) {
+        if (varyingParameter == null) {
+            return "The arguments do not change between iterations: call the mapper once before the loop";
+        }
+        if (statement != null) {
+            String batched = suggester.suggest(sqlType, statement.getStatementId(),
+                    statement.getXmlTag().getValue().getText(), varyingParameter);
+            if (batched != null) {
+                return "Collect the " + varyingParameter + " values, call a batched statement once and map the "
+                        + "results back by key:\n" + batched;
+            }
+        }
+        if (sqlType == null || "SELECT".equals(sqlType)) {
+            return "Collect the " + varyingParameter + " values and query them at once with IN (...) "
+                    + "built by <foreach>, then map the results back by key";
+        }
+        return "Run the writes through a SqlSession opened with ExecutorType.BATCH, or a multi-row "
+                + "statement built with <foreach>";
+    }
+
+    /**
+     * Name of the mapper parameter whose argument is declared inside the loops, so it differs per call
+     */
+    private static String varyingParameter(PsiElement call, PsiMethod method, PsiElement outermost) {
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        if (call instanceof PsiMethodReferenceExpression) {
+            return parameters.length == 1 ? parameterName(parameters[0]) : null;
+        }
+        PsiExpression[] arguments = ((PsiMethodCallExpression) call).getArgumentList().getExpressions();
+        for (int i = 0; i < arguments.length && i < parameters.length; i++) {
+            for (PsiReferenceExpression reference : PsiTreeUtil.collectElementsOfType(arguments[i],
+                    PsiReferenceExpression.class)) {
+                PsiElement variable = reference.resolve();
+                if ((variable instanceof PsiParameter || variable instanceof PsiLocalVariable)
+                        && PsiTreeUtil.isAncestor(outermost, variable, false)) {
+                    return parameterName(parameters[i]);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The @Param name MyBatis binds the parameter to, or its Java name
+     */
+    private static String parameterName(PsiVariable parameter) {
+        PsiAnnotation param = parameter.getModifierList() != null
+                ? parameter.getModifierList().findAnnotation(MYBATIS_ANNOTATIONS + "Param")
+                : null;
+        String name = param != null ? AnnotationUtil.getStringAttributeValue(param, "value") : null;
+        return name != null ? name : parameter.getName();
+    }
+
+    private static String annotatedSqlType(PsiMethod method) {
+        for (Map.Entry<String, String> annotation : STATEMENT_ANNOTATIONS.entrySet()) {
+            if (method.hasAnnotation(annotation.getKey())) {
+                return annotation.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether code at {@code child} runs once per iteration; for-each sources and for initializers run once
+     */
+    private static boolean isRepeated(PsiLoopStatement loop, PsiElement child) {
+        if (loop instanceof PsiForeachStatement) {
+            return child != ((PsiForeachStatement) loop).getIteratedValue();
+        }
+        if (loop instanceof PsiForStatement) {
+            return child != ((PsiForStatement) loop).getInitialization();
+        }
+        return true;
+    }
+
+    private static String describeLoop(PsiLoopStatement loop) {
+        if (loop instanceof PsiForeachStatement) {
+            PsiExpression source = ((PsiForeachStatement) loop).getIteratedValue();
+            return "for-each over " + (source != null ? source.getText() : "a collection");
+        }
+        if (loop instanceof PsiWhileStatement) {
+            return "while loop";
+        }
+        if (loop instanceof PsiDoWhileStatement) {
+            return "do-while loop";
+        }
+        return "for loop";
+    }
+
+    /**
+     * Iteration count of a loop when it is fixed at compile time
+     */
+    private static long loopSize(PsiLoopStatement loop) {
+        if (loop instanceof PsiForeachStatement) {
+            return sourceSize(((PsiForeachStatement) loop).getIteratedValue());
+        }
+        if (!(loop instanceof PsiForStatement)
+                || !(((PsiForStatement) loop).getCondition() instanceof PsiBinaryExpression)
+                || !(((PsiForStatement) loop).getInitialization() instanceof PsiDeclarationStatement)) {
+            return MapperCallSite.UNKNOWN_FAN_OUT;
+        }
+        // for (int i = start; i < end; i++)
+        PsiBinaryExpression condition = (PsiBinaryExpression) ((PsiForStatement) loop).getCondition();
+        PsiElement[] declared = ((PsiDeclarationStatement) ((PsiForStatement) loop).getInitialization())
+                .getDeclaredElements();
+        if (declared.length != 1 || !(declared[0] instanceof PsiLocalVariable)) {
+            return MapperCallSite.UNKNOWN_FAN_OUT;
+        }
+        Long start = constant(((PsiLocalVariable) declared[0]).getInitializer());
+        Long end = constant(condition.getROperand());
+        boolean inclusive = condition.getOperationTokenType() == JavaTokenType.LE;
+        if (start == null || end == null
+                || !inclusive && condition.getOperationTokenType() != JavaTokenType.LT) {
+            return MapperCallSite.UNKNOWN_FAN_OUT;
+        }
+        return Math.max(0, end - start + (inclusive ? 1 : 0));
+    }
+
+    /**
+     * For a lambda or method reference passed to an iterating method, record the loop and return
+     * the number of elements if fixed at compile time
+     * @return The element count, UNKNOWN_FAN_OUT, or null if the callee does not iterate
+     */
+    private static Long iteratingCallSize(PsiElement function, List<String> loops) {
+        if (!(function.getParent() instanceof PsiExpressionList)
+                || !(function.getParent().getParent() instanceof PsiMethodCallExpression)) {
+            return null;
+        }
+        PsiMethodCallExpression iterating = (PsiMethodCallExpression) function.getParent().getParent();
+        String name = iterating.getMethodExpression().getReferenceName();
+        if (name == null || !ITERATING_METHODS.contains(name) || !isIteratingType(iterating)) {
+            return null;
+        }
+        loops.add(name + "()");
+
+        // Walk the call chain back to its source: list.stream().limit(10).map(...)
+        long size = MapperCallSite.UNKNOWN_FAN_OUT;
+        PsiExpression qualifier = iterating.getMethodExpression().getQualifierExpression();
+        while (qualifier instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression link = (PsiMethodCallExpression) qualifier;
+            PsiExpression[] arguments = link.getArgumentList().getExpressions();
+            if ("limit".equals(link.getMethodExpression().getReferenceName()) && arguments.length == 1) {
+                Long limit = constant(arguments[0]);
+                if (limit != null) {
+                    return limit;
+                }
+            }
+            if (SIZED_FACTORIES.contains(link.getMethodExpression().getReferenceName())) {
+                size = sourceSize(link);
+            }
+            qualifier = link.getMethodExpression().getQualifierExpression();
+        }
+        return size;
+    }
+
+    /**
+     * Whether the called method belongs to a stream, collection, map or Collectors
+     */
+    private static boolean isIteratingType(PsiMethodCallExpression call) {
+        PsiMethod method = call.resolveMethod();
+        PsiClass owner = method != null ? method.getContainingClass() : null;
+        for (String type : ITERATING_TYPES) {
+            if (InheritanceUtil.isInheritor(owner, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Element count of {@code List.of(a, b)}, {@code Arrays.asList(a, b)} or an array initializer
+     */
+    private static long sourceSize(PsiExpression source) {
+        if (source instanceof PsiNewExpression && ((PsiNewExpression) source).getArrayInitializer() != null) {
+            return ((PsiNewExpression) source).getArrayInitializer().getInitializers().length;
+        }
+        if (source instanceof PsiArrayInitializerExpression) {
+            return ((PsiArrayInitializerExpression) source).getInitializers().length;
+        }
+        if (source instanceof PsiMethodCallExpression
+                && SIZED_FACTORIES.contains(((PsiMethodCallExpression) source).getMethodExpression().getReferenceName())) {
+            PsiExpression[] arguments = ((PsiMethodCallExpression) source).getArgumentList().getExpressions();
+            // A single argument may be an array spread into the varargs
+            return arguments.length == 1 ? MapperCallSite.UNKNOWN_FAN_OUT : arguments.length;
+        }
+        return MapperCallSite.UNKNOWN_FAN_OUT;
+    }
+
+    private static Long constant(PsiExpression expression) {
+        if (expression == null) {
+            return null;
+        }
+        Object value = JavaPsiFacade.getInstance(expression.getProject()).getConstantEvaluationHelper()
+                .computeConstantExpression(expression);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    private static long multiply(long fanOut, long factor) {
+        if (fanOut == MapperCallSite.UNKNOWN_FAN_OUT || factor == MapperCallSite.UNKNOWN_FAN_OUT) {
+            return MapperCallSite.UNKNOWN_FAN_OUT;
+        }
+        return fanOut * factor;
+    }
+}
@@ -0,0 +1,94 @@
+package cn.mklaus.sqlagent.mybatis.java;
+
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.codeInsight.daemon.LineMarkerProvider;
+import com.intellij.codeInsight.navigation.NavigationGutterIconBuilder;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiIdentifier;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiMethodReferenceExpression;
+import com.intellij.psi.PsiReferenceExpression;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Line marker provider for Java call sites of mapper methods inside loops
+ * Adds a warning icon on the method name, navigating to the mapper statement
+ */
+public class NPlusOneLineMarkerProvider implements LineMarkerProvider {
+
+    private final NPlusOneDetector detector = new NPlusOneDetector();
+
+    @Nullable
+    @Override
+    public LineMarkerInfo<?> getLineMarkerInfo(@NotNull PsiElement element) {
+        // Resolving calls and mapper files is too slow for the first pass
+        return null;
+    }
+
+    @Override
+    public void collectSlowLineMarkers(@NotNull List<? extends PsiElement> elements,
+                                       @NotNull Collection<? super LineMarkerInfo<?>> result) {
+        for (PsiElement element : elements) {
+            ProgressManager.checkCanceled();
+            PsiElement call = getCall(element);
+            if (call == null) {
+                continue;
+            }
+            MapperCallSite site = detector.detect(call);
+            if (site == null) {
+                continue;
+            }
+
+            PsiElement target = site.getStatement() != null ? site.getStatement().getXmlTag() : site.getMapperMethod();
+            result.add(NavigationGutterIconBuilder.create(AllIcons.General.Warning)
+                    .setTargets(target)
+                    .setTooltipText(buildTooltip(site))
+                    .setAlignment(GutterIconRenderer.Alignment.RIGHT)
+                    .createLineMarkerInfo(element));
+        }
+    }
+
+    /**
+     * The call or method reference whose method name identifier is the element, or null
+     */
+    private PsiElement getCall(PsiElement element) {
+        if (!(element instanceof PsiIdentifier)) {
+            return null;
+        }
+        PsiElement parent = element.getParent();
+        if (parent instanceof PsiMethodReferenceExpression
+                && ((PsiMethodReferenceExpression) parent).getReferenceNameElement() == element) {
+            return parent;
+        }
+        if (parent instanceof PsiReferenceExpression && parent.getParent() instanceof PsiMethodCallExpression
+                && ((PsiReferenceExpression) parent).getReferenceNameElement() == element) {
+            return parent.getParent();
+        }
+        return null;
+    }
+
+    /**
+     * Build tooltip text for the gutter icon
+     */
+    static String buildTooltip(MapperCallSite site) {
+        StringBuilder tooltip = new StringBuilder("<html><b>SQL Agent: possible N+1 query</b><br>");
+        tooltip.append(StringUtil.escapeXmlEntities(site.getFullName()))
+                .append(" runs in ")
+                .append(StringUtil.escapeXmlEntities(String.join(" inside ", site.getLoops())))
+                .append(": ")
+                .append(site.describeFanOut())
+                .append("<br><br>")
+                .append("<pre>")
+                .append(StringUtil.escapeXmlEntities(site.getSuggestion()))
+                .append("</pre></html>");
+        return tooltip.toString();
+    }
+}
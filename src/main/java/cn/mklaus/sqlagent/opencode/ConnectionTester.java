@@ -1,10 +1,10 @@
 package cn.mklaus.sqlagent.opencode;
 
+import cn.mklaus.sqlagent.http.HttpTransportService;
 import com.intellij.openapi.diagnostic.Logger;
 import okhttp3.*;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Tests OpenCode and database-tools MCP connection
@@ -17,10 +17,7 @@ public class ConnectionTester {
 
     public ConnectionTester(String serverUrl) {
         this.serverUrl = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(5, TimeUnit.SECONDS)
-                .readTimeout(10, TimeUnit.SECONDS)
-                .build();
+        this.httpClient = HttpTransportService.getInstance().getApiClient();
     }
 
     /**
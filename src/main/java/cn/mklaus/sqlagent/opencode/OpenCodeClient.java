@@ -7,10 +7,15 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * HTTP client for communicating with OpenCode Server
@@ -18,49 +23,165 @@ import java.util.UUID;
 public class OpenCodeClient {
     private static final Logger LOG = Logger.getInstance(OpenCodeClient.class);
 
+    private static final int DEFAULT_TIMEOUT_SECONDS = 300;
+
+    private final OpenCodeSessionPool sessionPool;
     private final SessionManager sessionManager;
+    private final int timeoutSeconds;
     private final Gson gson;
 
     public OpenCodeClient(String serverUrl) {
-        this.sessionManager = new SessionManager(serverUrl);
+        this(serverUrl, DEFAULT_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * @param timeoutSeconds Deadline of one optimization request, from the plugin settings
+     */
+    public OpenCodeClient(String serverUrl, int timeoutSeconds) {
+        this.sessionPool = OpenCodeSessionPool.getInstance();
+        this.sessionManager = sessionPool.getSessionManager(serverUrl);
+        this.timeoutSeconds = timeoutSeconds;
         this.gson = new Gson();
     }
 
     /**
-     * Send optimization request to OpenCode Server
+     * Send optimization request to OpenCode Server and wait for the result
      */
-    public OptimizationResponse optimize(OptimizationRequest request) throws IOException {
-        try {
-            String sessionId = sessionManager.getSessionId();
+    public OptimizationResponse optimize(OptimizationRequest request) {
+        return optimizeAsync(request).join();
+    }
 
-            // Build the prompt
-            PromptBuilder promptBuilder = new PromptBuilder();
-            String prompt = promptBuilder.buildPrompt(request);
-            LOG.info(prompt);
+    /**
+     * Send optimization request to OpenCode Server without blocking the caller
+     *
+     * Failures complete the future with an error response. Cancelling the future cancels the
+     * HTTP call and aborts the model run on the server; the call is also aborted when it
+     * exceeds the configured timeout.
+     */
+    public CompletableFuture<OptimizationResponse> optimizeAsync(OptimizationRequest request) {
+        return optimizeAsync(request, SessionEventListener.NONE);
+    }
 
-            // Send message to session
-            String responseJson = sendMessage(sessionId, prompt);
+    /**
+     * Send optimization request to OpenCode Server, reporting tool calls, reasoning and
+     * completed suggestions to the listener while the model answers
+     */
+    public CompletableFuture<OptimizationResponse> optimizeAsync(OptimizationRequest request,
+                                                                 SessionEventListener listener) {
+        CompletableFuture<OptimizationResponse> result = new CompletableFuture<>();
+
+        // Leasing may create a session, which blocks; a pooled thread keeps it from holding a
+        // dispatcher thread that the message call and event stream need
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            PooledSession session = null;
+            try {
+                session = sessionPool.lease(sessionManager);
+                if (result.isDone()) {
+                    sessionPool.release(session, true);
+                    return;
+                }
+                PooledSession leased = session;
+                String sessionId = session.getId();
+                // Whoever finishes first gives the session back; the pool may lease it to
+                // another request right after, so nobody else may touch it then
+                AtomicBoolean owned = new AtomicBoolean(true);
+
+                // Build the prompt
+                PromptBuilder promptBuilder = new PromptBuilder();
+                String prompt = promptBuilder.buildPrompt(request);
+                LOG.info(prompt);
+
+                // Subscribe to the session's events before the model starts
+                String messageId = generateMessageId();
+                if (listener != SessionEventListener.NONE) {
+                    OpenCodeEventStream events = OpenCodeEventStream.open(sessionManager,
+                            new SessionEventDecoder(sessionId, messageId, listener));
+                    result.whenComplete((response, error) -> events.close());
+                }
 
-            // Parse response
-            return parseOptimizationResponse(responseJson);
+                // Send message to session
+                Call call = sessionManager.getHttpClient().newCall(buildMessageRequest(sessionId, messageId, prompt));
+                call.timeout().timeout(timeoutSeconds, TimeUnit.SECONDS);
+                result.whenComplete((response, error) -> {
+                    if (result.isCancelled()) {
+                        call.cancel();
+                        if (owned.compareAndSet(true, false)) {
+                            LOG.info("Optimization cancelled, aborting session " + sessionId);
+                            sessionManager.abortSession(sessionId);
+                            sessionPool.release(leased, false);
+                        }
+                    }
+                });
+                call.enqueue(new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        if (!owned.compareAndSet(true, false)) {
+                            return;
+                        }
+                        if (e instanceof InterruptedIOException) {
+                            // The call timed out, but the model keeps running on the server
+                            sessionManager.abortSession(sessionId);
+                        }
+                        sessionPool.release(leased, false);
+                        result.complete(handleFailure(e));
+                    }
 
-        } catch (Exception e) {
-            LOG.error("Optimization failed", e);
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        if (!owned.compareAndSet(true, false)) {
+                            response.close();
+                            return;
+                        }
+                        try (response) {
+                            String responseJson = readMessageResponse(response);
+                            recordUse(leased, responseJson);
+                            sessionPool.release(leased, true);
+
+                            // Parse response
+                            result.complete(parseOptimizationResponse(responseJson));
+                        } catch (Exception e) {
+                            sessionPool.release(leased, false);
+                            result.complete(handleFailure(e));
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                if (session != null) {
+                    sessionPool.release(session, false);
+                }
+                result.complete(handleFailure(e));
+            }
+        });
+        return result;
+    }
+
+    private OptimizationResponse handleFailure(Exception e) {
+        LOG.error("Optimization failed", e);
 
-            OptimizationResponse errorResponse = new OptimizationResponse();
-            errorResponse.setErrorMessage(buildDetailedErrorMessage(e));
-            return errorResponse;
+        OptimizationResponse errorResponse = new OptimizationResponse();
+        errorResponse.setErrorMessage(buildDetailedErrorMessage(e));
+        return errorResponse;
+    }
+
+    /**
+     * Count the answered message against the session, so the pool can recycle it once its context is large
+     */
+    private void recordUse(PooledSession session, String responseJson) {
+        try {
+            session.recordUse(gson.fromJson(responseJson, JsonObject.class));
+        } catch (Exception e) {
+            LOG.warn("Could not read token usage: " + e.getMessage());
         }
     }
 
     /**
-     * Send a message to the session
+     * Build the request sending a message to the session
      */
-    private String sendMessage(String sessionId, String prompt) throws IOException {
+    private Request buildMessageRequest(String sessionId, String messageId, String prompt) {
         String url = sessionManager.getServerUrl() + "/session/" + sessionId + "/message";
 
         JsonObject requestBody = new JsonObject();
-        requestBody.addProperty("messageID", generateMessageId());
+        requestBody.addProperty("messageID", messageId);
         requestBody.add("parts", createTextPart(prompt));
 
         LOG.info("Sending request to: " + url);
@@ -71,23 +192,26 @@ public class OpenCodeClient {
                 gson.toJson(requestBody)
         );
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(url)
                 .post(body)
                 .build();
+    }
 
-        try (Response response = sessionManager.getHttpClient().newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "No response body";
-                LOG.error("Request failed with status " + response.code() + " " + response.message());
-                LOG.error("Response body: " + errorBody);
-                throw new IOException("Request failed: " + response.code() + " " + response.message() + ". Response: " + errorBody);
-            }
-
-            String responseBody = response.body().string();
-            LOG.info("Response received successfully");
-            return responseBody;
+    /**
+     * Read the body of a message response
+     */
+    private String readMessageResponse(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            String errorBody = response.body() != null ? response.body().string() : "No response body";
+            LOG.error("Request failed with status " + response.code() + " " + response.message());
+            LOG.error("Response body: " + errorBody);
+            throw new IOException("Request failed: " + response.code() + " " + response.message() + ". Response: " + errorBody);
         }
+
+        String responseBody = response.body().string();
+        LOG.info("Response received successfully");
+        return responseBody;
     }
 
     /**
@@ -254,9 +378,8 @@ public class OpenCodeClient {
     }
 
     /**
-     * Close the client and cleanup resources
+     * Close the client. Sessions belong to OpenCodeSessionPool and outlive the client.
      */
     public void close() {
-        sessionManager.closeSession();
     }
 }
@@ -0,0 +1,109 @@
+package cn.mklaus.sqlagent.opencode;
+
+import cn.mklaus.sqlagent.http.HttpTransportService;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.diagnostic.Logger;
+import okhttp3.*;
+import okio.BufferedSource;
+
+import java.io.IOException;
+
+/**
+ * Subscription to the server-sent event stream of OpenCode Server ({@code GET /event})
+ *
+ * Each event's data is handed to a SessionEventDecoder. The stream only adds progress
+ * reporting: when it fails, the optimization still completes with the message response.
+ */
+public class OpenCodeEventStream implements AutoCloseable {
+    private static final Logger LOG = Logger.getInstance(OpenCodeEventStream.class);
+
+    private final Call call;
+
+    private OpenCodeEventStream(Call call) {
+        this.call = call;
+    }
+
+    /**
+     * Connect to the event stream of the session manager's server
+     */
+    public static OpenCodeEventStream open(SessionManager sessionManager, SessionEventDecoder decoder) {
+        Request request = new Request.Builder()
+                .url(sessionManager.getServerUrl() + "/event")
+                .header("Accept", "text/event-stream")
+                .get()
+                .build();
+
+        Call call = HttpTransportService.getInstance().getStreamClient().newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (!call.isCanceled()) {
+                    LOG.warn("Event stream failed: " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (!response.isSuccessful()) {
+                        LOG.warn("Event stream not available: " + response.code() + " " + response.message());
+                        return;
+                    }
+                    readEvents(response.body().source(), decoder);
+                } catch (IOException e) {
+                    if (!call.isCanceled()) {
+                        LOG.warn("Event stream closed: " + e.getMessage());
+                    }
+                }
+            }
+        });
+        return new OpenCodeEventStream(call);
+    }
+
+    /**
+     * Read events until the server or close() ends the stream
+     */
+    static void readEvents(BufferedSource source, SessionEventDecoder decoder) throws IOException {
+        Gson gson = new Gson();
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                dispatch(gson, data.toString(), decoder);
+                data.setLength(0);
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(line.startsWith("data: ") ? line.substring(6) : line.substring(5));
+            }
+        }
+        dispatch(gson, data.toString(), decoder);
+    }
+
+    private static void dispatch(Gson gson, String data, SessionEventDecoder decoder) {
+        if (data.isEmpty()) {
+            return;
+        }
+        try {
+            JsonObject event = gson.fromJson(data, JsonObject.class);
+            if (event != null) {
+                decoder.accept(event);
+            }
+        } catch (JsonParseException e) {
+            LOG.debug("Skipping malformed event: " + data);
+        } catch (RuntimeException e) {
+            LOG.warn("Event listener failed", e);
+        }
+    }
+
+    /**
+     * Stop listening
+     */
+    @Override
+    public void close() {
+        call.cancel();
+    }
+}
@@ -1,5 +1,6 @@
 package cn.mklaus.sqlagent.opencode;
 
+import cn.mklaus.sqlagent.http.HttpTransportService;
 import com.intellij.openapi.diagnostic.Logger;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -31,10 +32,7 @@ public class OpenCodeServerManager {
     public OpenCodeServerManager(String serverUrl, String customExecutablePath) {
         this.serverUrl = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
         this.locator = new OpenCodeLocator(customExecutablePath);
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(2, TimeUnit.SECONDS)
-                .readTimeout(2, TimeUnit.SECONDS)
-                .build();
+        this.httpClient = HttpTransportService.getInstance().getHealthCheckClient();
     }
 
     /**
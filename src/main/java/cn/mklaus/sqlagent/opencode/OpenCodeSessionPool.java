@@ -0,0 +1,233 @@
+package cn.mklaus.sqlagent.opencode;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Application service that keeps OpenCode sessions ready for optimization requests
+ *
+ * Sessions are created ahead of time and leased to one request at a time. An idle session is
+ * checked against the server before it is leased, since the server may have restarted since
+ * it was created. A session whose conversation has grown too large, or that failed or was
+ * cancelled, is deleted instead of being reused, and the pool is refilled in the background. Requests to the server are never made while
+ * holding the pool's lock.
+ */
+@Service(Service.Level.APP)
+public final class OpenCodeSessionPool implements Disposable {
+    private static final Logger LOG = Logger.getInstance(OpenCodeSessionPool.class);
+
+    private static final int MIN_IDLE = 2;
+    private static final int MAX_IDLE = 4;
+    private static final int MAX_USES = 20;
+    private static final long MAX_CONTEXT_TOKENS = 64_000;
+    private static final long VALIDATION_INTERVAL_SECONDS = 60;
+
+    private final Deque<PooledSession> idle = new ArrayDeque<>();
+    private final Function<String, SessionManager> managerFactory;
+    private final Executor executor; // Refills and deletions
+    private final ScheduledFuture<?> validation;
+    private SessionManager sessionManager;
+    private boolean refilling;
+
+    public OpenCodeSessionPool() {
+        this(SessionManager::new, AppExecutorUtil.getAppExecutorService());
+    }
+
+    OpenCodeSessionPool(Function<String, SessionManager> managerFactory, Executor executor) {
+        this.managerFactory = managerFactory;
+        this.executor = executor;
+        this.validation = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                this::validateIdleSessions, VALIDATION_INTERVAL_SECONDS, VALIDATION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static OpenCodeSessionPool getInstance() {
+        return ApplicationManager.getApplication().getService(OpenCodeSessionPool.class);
+    }
+
+    /**
+     * Session operations of the server, shared by all requests to it. Switching to another
+     * server URL drops the sessions of the previous one.
+     */
+    public SessionManager getSessionManager(String serverUrl) {
+        String url = SessionManager.normalize(serverUrl);
+        List<PooledSession> dropped;
+        SessionManager manager;
+        synchronized (this) {
+            if (sessionManager != null && sessionManager.getServerUrl().equals(url)) {
+                return sessionManager;
+            }
+            dropped = drain();
+            sessionManager = managerFactory.apply(url);
+            manager = sessionManager;
+        }
+        deleteAsync(dropped);
+        return manager;
+    }
+
+    /**
+     * Take an idle session of the server that still exists there, or create one if none is ready
+     */
+    public PooledSession lease(SessionManager manager) throws IOException {
+        PooledSession session;
+        while (true) {
+            synchronized (this) {
+                session = manager == sessionManager ? idle.pollFirst() : null;
+            }
+            if (session == null || manager.isSessionValid(session.getId())) {
+                break;
+            }
+            LOG.info("Dropping invalid session: " + session.getId());
+        }
+        if (session == null) {
+            session = new PooledSession(manager.createSession(), manager);
+        }
+        session.setLeased(true);
+        refillAsync();
+        return session;
+    }
+
+    /**
+     * Give a leased session back. Releasing it again has no effect.
+     * @param reusable false after a failure, timeout or cancellation, when the session's
+     *                 conversation is in an unknown state
+     */
+    public void release(PooledSession session, boolean reusable) {
+        synchronized (this) {
+            if (!session.isLeased()) {
+                return;
+            }
+            session.setLeased(false);
+            if (reusable && !isWornOut(session) && session.getSessionManager() == sessionManager
+                    && idle.size() < MAX_IDLE) {
+                // Most recently used first, so surplus sessions age at the tail
+                idle.addFirst(session);
+                return;
+            }
+        }
+        LOG.info("Recycling session " + session.getId() + " after " + session.getUses() + " uses, "
+                + session.getContextTokens() + " context tokens");
+        deleteAsync(List.of(session));
+        refillAsync();
+    }
+
+    private static boolean isWornOut(PooledSession session) {
+        return session.getUses() >= MAX_USES || session.getContextTokens() >= MAX_CONTEXT_TOKENS;
+    }
+
+    /**
+     * Create sessions in the background until MIN_IDLE are ready
+     */
+    private void refillAsync() {
+        synchronized (this) {
+            if (refilling || sessionManager == null || idle.size() >= MIN_IDLE) {
+                return;
+            }
+            refilling = true;
+        }
+        executor.execute(this::refill);
+    }
+
+    private void refill() {
+        try {
+            while (true) {
+                SessionManager manager;
+                synchronized (this) {
+                    if (sessionManager == null || idle.size() >= MIN_IDLE) {
+                        return;
+                    }
+                    manager = sessionManager;
+                }
+                PooledSession session = new PooledSession(manager.createSession(), manager);
+                synchronized (this) {
+                    if (manager == sessionManager) {
+                        idle.addLast(session);
+                        continue;
+                    }
+                }
+                // Server URL changed meanwhile
+                manager.deleteSession(session.getId());
+                return;
+            }
+        } catch (IOException e) {
+            // Server is not running; the next lease creates a session or reports the error
+            LOG.info("Could not pre-create session: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                refilling = false;
+            }
+        }
+    }
+
+    /**
+     * Drop idle sessions that no longer exist on the server, e.g. after it restarted
+     */
+    private void validateIdleSessions() {
+        List<PooledSession> sessions;
+        synchronized (this) {
+            sessions = new ArrayList<>(idle);
+        }
+        for (PooledSession session : sessions) {
+            if (!session.getSessionManager().isSessionValid(session.getId())) {
+                LOG.info("Dropping invalid session: " + session.getId());
+                synchronized (this) {
+                    idle.remove(session);
+                }
+            }
+        }
+        if (!sessions.isEmpty()) {
+            refillAsync();
+        }
+    }
+
+    /**
+     * Remove all idle sessions; the caller deletes them after releasing the lock
+     */
+    private synchronized List<PooledSession> drain() {
+        List<PooledSession> sessions = new ArrayList<>(idle);
+        idle.clear();
+        return sessions;
+    }
+
+    private void deleteAsync(List<PooledSession> sessions) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            for (PooledSession session : sessions) {
+                session.getSessionManager().deleteSession(session.getId());
+            }
+        });
+    }
+
+    /**
+     * Number of sessions ready to be leased
+     */
+    synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public void dispose() {
+        validation.cancel(false);
+        List<PooledSession> sessions;
+        synchronized (this) {
+            sessions = drain();
+            sessionManager = null;
+        }
+        // Best effort: disposal does not wait for the server
+        deleteAsync(sessions);
+    }
+}
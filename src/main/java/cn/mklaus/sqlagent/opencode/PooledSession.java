@@ -0,0 +1,75 @@
+package cn.mklaus.sqlagent.opencode;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * An OpenCode session owned by OpenCodeSessionPool, with the usage that decides when it is recycled
+ */
+public class PooledSession {
+    private final String id;
+    private final SessionManager sessionManager;
+    private int uses;
+    private long contextTokens;
+    private boolean leased;
+
+    PooledSession(String id, SessionManager sessionManager) {
+        this.id = id;
+        this.sessionManager = sessionManager;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    SessionManager getSessionManager() {
+        return sessionManager;
+    }
+
+    /**
+     * Number of messages answered in this session
+     */
+    public int getUses() {
+        return uses;
+    }
+
+    /**
+     * Tokens of the conversation history the next message is sent with
+     */
+    public long getContextTokens() {
+        return contextTokens;
+    }
+
+    /**
+     * Count an answered message, taking the context size from the token usage of the
+     * assistant message ({@code info.tokens} of the message response)
+     */
+    public void recordUse(JsonObject messageResponse) {
+        uses++;
+        JsonObject tokens = getObject(getObject(messageResponse, "info"), "tokens");
+        if (tokens != null) {
+            JsonObject cache = getObject(tokens, "cache");
+            contextTokens = getLong(tokens, "input") + getLong(tokens, "output")
+                    + getLong(cache, "read") + getLong(cache, "write");
+        }
+    }
+
+    boolean isLeased() {
+        return leased;
+    }
+
+    void setLeased(boolean leased) {
+        this.leased = leased;
+    }
+
+    private static JsonObject getObject(JsonObject json, String member) {
+        return json != null && json.has(member) && json.get(member).isJsonObject() ? json.getAsJsonObject(member) : null;
+    }
+
+    private static long getLong(JsonObject json, String member) {
+        JsonElement element = json != null ? json.get(member) : null;
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber()
+                ? element.getAsLong()
+                : 0;
+    }
+}
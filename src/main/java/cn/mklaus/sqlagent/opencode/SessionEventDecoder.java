@@ -0,0 +1,175 @@
+package cn.mklaus.sqlagent.opencode;
+
+import cn.mklaus.sqlagent.model.OptimizationSuggestion;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns OpenCode server events into SessionEventListener calls
+ *
+ * OpenCode sends {@code message.part.updated} events carrying the whole part each time, so the
+ * decoder keeps the last state of every part and reports only what changed: new tool call
+ * statuses, appended reasoning, and suggestions whose JSON object has been closed.
+ */
+public class SessionEventDecoder {
+    private final String sessionId;
+    private final String userMessageId;
+    private final SessionEventListener listener;
+    private final Gson gson = new Gson();
+
+    private final Map<String, String> toolStatuses = new HashMap<>();
+    private final Map<String, Integer> reasoningLengths = new HashMap<>();
+    private final Map<String, Integer> suggestionCounts = new HashMap<>();
+
+    /**
+     * @param userMessageId ID of the prompt message, whose parts are not reported
+     */
+    public SessionEventDecoder(String sessionId, String userMessageId, SessionEventListener listener) {
+        this.sessionId = sessionId;
+        this.userMessageId = userMessageId;
+        this.listener = listener;
+    }
+
+    /**
+     * Handle one event of the {@code /event} stream
+     */
+    public void accept(JsonObject event) {
+        if (!"message.part.updated".equals(getString(event, "type")) || !isObject(event, "properties")) {
+            return;
+        }
+        JsonObject properties = event.getAsJsonObject("properties");
+        if (!isObject(properties, "part")) {
+            return;
+        }
+        JsonObject part = properties.getAsJsonObject("part");
+        if (!sessionId.equals(getString(part, "sessionID")) || userMessageId.equals(getString(part, "messageID"))) {
+            return;
+        }
+
+        String partId = getString(part, "id");
+        String type = getString(part, "type");
+        if ("tool".equals(type)) {
+            acceptTool(partId, part);
+        } else if ("reasoning".equals(type)) {
+            acceptReasoning(partId, getString(part, "text"));
+        } else if ("text".equals(type)) {
+            acceptText(partId, getString(part, "text"));
+        }
+    }
+
+    private void acceptTool(String partId, JsonObject part) {
+        String status = isObject(part, "state") ? getString(part.getAsJsonObject("state"), "status") : null;
+        if (status != null && !status.equals(toolStatuses.put(partId, status))) {
+            listener.onToolCall(getString(part, "tool"), status);
+        }
+    }
+
+    private void acceptReasoning(String partId, String text) {
+        if (text == null) {
+            return;
+        }
+        int reported = reasoningLengths.getOrDefault(partId, 0);
+        if (text.length() > reported) {
+            listener.onReasoning(text.substring(reported));
+            reasoningLengths.put(partId, text.length());
+        }
+    }
+
+    private void acceptText(String partId, String text) {
+        if (text == null) {
+            return;
+        }
+        List<String> objects = findCompleteSuggestions(text);
+        int reported = suggestionCounts.getOrDefault(partId, 0);
+        for (int i = reported; i < objects.size(); i++) {
+            try {
+                OptimizationSuggestion suggestion = gson.fromJson(objects.get(i), OptimizationSuggestion.class);
+                if (suggestion != null && suggestion.getTitle() != null) {
+                    listener.onSuggestion(suggestion);
+                }
+            } catch (JsonParseException e) {
+                // Not a suggestion object, the final response decides
+            }
+        }
+        suggestionCounts.put(partId, Math.max(reported, objects.size()));
+    }
+
+    /**
+     * The closed objects of the {@code "suggestions"} array in a possibly unfinished JSON text
+     */
+    static List<String> findCompleteSuggestions(String text) {
+        List<String> objects = new ArrayList<>();
+        int key = text.indexOf("\"suggestions\"");
+        if (key < 0) {
+            return objects;
+        }
+        int i = skipWhitespace(text, key + "\"suggestions\"".length());
+        if (i >= text.length() || text.charAt(i) != ':') {
+            return objects;
+        }
+        i = skipWhitespace(text, i + 1);
+        if (i >= text.length() || text.charAt(i) != '[') {
+            return objects;
+        }
+
+        int depth = 0;
+        int objectStart = -1;
+        boolean inString = false;
+        boolean escaped = false;
+        for (i = i + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                if (depth == 0 && c == '{') {
+                    objectStart = i;
+                }
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    break; // End of the suggestions array
+                }
+                depth--;
+                if (depth == 0 && c == '}' && objectStart >= 0) {
+                    objects.add(text.substring(objectStart, i + 1));
+                    objectStart = -1;
+                }
+            }
+        }
+        return objects;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isObject(JsonObject json, String member) {
+        return json.has(member) && json.get(member).isJsonObject();
+    }
+
+    private static String getString(JsonObject json, String member) {
+        JsonElement element = json.get(member);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+}
@@ -0,0 +1,37 @@
+package cn.mklaus.sqlagent.opencode;
+
+import cn.mklaus.sqlagent.model.OptimizationSuggestion;
+
+/**
+ * Receives the progress of an OpenCode session while the model is still answering
+ *
+ * Called on OkHttp threads, in the order the server sends its events.
+ */
+public interface SessionEventListener {
+
+    /**
+     * Listener that ignores all events
+     */
+    SessionEventListener NONE = new SessionEventListener() {
+    };
+
+    /**
+     * A tool call started, finished or failed
+     * @param tool Tool name as OpenCode reports it, e.g. database-tools_explain_sql
+     * @param status pending, running, completed or error
+     */
+    default void onToolCall(String tool, String status) {
+    }
+
+    /**
+     * Reasoning text added since the last call
+     */
+    default void onReasoning(String delta) {
+    }
+
+    /**
+     * A suggestion of the answer's JSON block is complete
+     */
+    default void onSuggestion(OptimizationSuggestion suggestion) {
+    }
+}
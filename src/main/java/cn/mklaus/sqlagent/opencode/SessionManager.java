@@ -1,5 +1,6 @@
 package cn.mklaus.sqlagent.opencode;
 
+import cn.mklaus.sqlagent.http.HttpTransportService;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
@@ -7,46 +8,44 @@ import okhttp3.*;
 
 import java.io.IOException;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 /**
- * Manages OpenCode session lifecycle
+ * Session operations of one OpenCode server: create, validate, abort and delete
+ *
+ * Holds no session itself; OpenCodeSessionPool decides which sessions are kept and reused.
  */
 public class SessionManager {
     private static final Logger LOG = Logger.getInstance(SessionManager.class);
 
-    private String currentSessionId;
     private final String serverUrl;
+    private final OkHttpClient apiClient;
     private final OkHttpClient httpClient;
     private final Gson gson;
 
     public SessionManager(String serverUrl) {
-        this.serverUrl = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
-        this.gson = new Gson();
+        // Session operations are quick; messages wait for the model with their own deadline
+        this(serverUrl, HttpTransportService.getInstance().getApiClient(), HttpTransportService.getInstance().getLlmClient());
+    }
 
-        // Configure HTTP client with timeouts
-        // AI optimization can take time, especially with MCP tool calls
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(300, TimeUnit.SECONDS)  // 5 minutes for AI + MCP tools
-                .build();
+    SessionManager(String serverUrl, OkHttpClient apiClient, OkHttpClient httpClient) {
+        this.serverUrl = normalize(serverUrl);
+        this.gson = new Gson();
+        this.apiClient = apiClient;
+        this.httpClient = httpClient;
     }
 
     /**
-     * Get or create a session
+     * Server URL without a trailing slash
      */
-    public String getSessionId() throws IOException {
-        if (currentSessionId == null || !isSessionValid()) {
-            createNewSession();
-        }
-        return currentSessionId;
+    static String normalize(String serverUrl) {
+        return serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
     }
 
     /**
      * Create a new session
+     * @return Session ID
      */
-    private void createNewSession() throws IOException {
+    public String createSession() throws IOException {
         String url = buildUrl("/session");
 
         Request request = new Request.Builder()
@@ -54,7 +53,7 @@ public class SessionManager {
                 .post(createEmptyJsonBody())
                 .build();
 
-        try (Response response = httpClient.newCall(request).execute()) {
+        try (Response response = apiClient.newCall(request).execute()) {
             if (!response.isSuccessful()) {
                 String errorBody = response.body() != null ? response.body().string() : "No response body";
                 throw new IOException("Failed to create session: " + response.code() + " " + response.message() +
@@ -62,8 +61,9 @@ public class SessionManager {
             }
 
             JsonObject json = parseJsonResponse(response);
-            this.currentSessionId = extractSessionId(json);
-            LOG.info("Created new session: " + currentSessionId);
+            String sessionId = extractSessionId(json);
+            LOG.info("Created new session: " + sessionId);
+            return sessionId;
         }
     }
 
@@ -100,21 +100,17 @@ public class SessionManager {
     }
 
     /**
-     * Check if current session is valid
+     * Check if a session still exists on the server
      */
-    private boolean isSessionValid() {
-        if (currentSessionId == null) {
-            return false;
-        }
-
+    public boolean isSessionValid(String sessionId) {
         try {
-            String url = buildUrl("/session/" + currentSessionId);
+            String url = buildUrl("/session/" + sessionId);
             Request request = new Request.Builder()
                     .url(url)
                     .get()
                     .build();
 
-            try (Response response = httpClient.newCall(request).execute()) {
+            try (Response response = apiClient.newCall(request).execute()) {
                 return response.isSuccessful();
             }
         } catch (Exception e) {
@@ -124,32 +120,54 @@ public class SessionManager {
     }
 
     /**
-     * Close current session
+     * Ask the server to stop the model run of a session, e.g. after the user cancelled the request.
+     * Fire and forget: the session stays usable for the next message.
      */
-    public void closeSession() {
-        if (currentSessionId == null) {
-            return;
-        }
+    public void abortSession(String sessionId) {
+        Request request = new Request.Builder()
+                .url(buildUrl("/session/" + sessionId + "/abort"))
+                .post(createEmptyJsonBody())
+                .build();
 
-        try {
-            String url = buildUrl("/session/" + currentSessionId);
-            Request request = new Request.Builder()
-                    .url(url)
-                    .delete()
-                    .build();
+        apiClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                LOG.warn("Failed to abort session " + sessionId + ": " + e.getMessage());
+            }
 
-            try (Response response = httpClient.newCall(request).execute()) {
-                LOG.info("Closed session: " + currentSessionId);
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                LOG.info("Aborted session: " + sessionId);
             }
-        } catch (Exception e) {
-            LOG.error("Failed to close session: " + e.getMessage());
-        } finally {
-            currentSessionId = null;
-        }
+        });
+    }
+
+    /**
+     * Delete a session. Fire and forget: the pool no longer uses it either way.
+     */
+    public void deleteSession(String sessionId) {
+        Request request = new Request.Builder()
+                .url(buildUrl("/session/" + sessionId))
+                .delete()
+                .build();
+
+        apiClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                LOG.warn("Failed to delete session " + sessionId + ": " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                LOG.info("Deleted session: " + sessionId);
+            }
+        });
     }
 
     /**
-     * Get HTTP client for making requests
+     * Get HTTP client for sending messages to a session
      */
     public OkHttpClient getHttpClient() {
         return httpClient;
@@ -25,6 +25,17 @@ public class PromptBuilder {
                - `get_table_metadata`: Get columns, indexes, and row counts
                - `explain_sql`: Get the execution plan
                - `list_tables`: List all tables in the database
+               - `get_relationships`: Foreign keys and inferred join paths between tables, with fan-out
+               - `sample_distribution`: Null ratio, distinct count and top values of columns (data skew)
+               - `benchmark_query`: Measure the latency of the original and optimized SELECT
+               - `verify_equivalence`: Check the optimized SELECT returns the same rows as the original
+               - `index_health`: Unused, duplicate and redundant indexes with their sizes (before suggesting new ones)
+               - `lock_waits`: Sessions blocked on locks, their root blockers and long transactions (contention vs. plan)
+               - `table_footprint`: Data, index and TOAST sizes, average row length and bloat (I/O volume, not just rows)
+               - `rewrite_sql`: Deterministic rewrite candidates (OR→UNION ALL, IN→EXISTS/JOIN, scalar subquery→JOIN, deep OFFSET, COUNT→EXISTS) with checked preconditions; validate them with `verify_equivalence` and `benchmark_query`
+               - `batch_write_sizing`: Bytes per row of a multi-row INSERT against max_allowed_packet and the bind parameter limit, with a recommended chunk size
+               - Every tool accepts `output_format: "compact"` and `max_tokens` to keep
+                 large results (wide tables, big plans) small
 
             3. **Follow the sql-optimizer workflow**:
                - Parse the SQL to identify tables
@@ -0,0 +1,116 @@
+package cn.mklaus.sqlagent.service;
+
+import cn.mklaus.sqlagent.mcp.McpServerLifecycleService;
+import cn.mklaus.sqlagent.mcp.McpToolClient;
+import cn.mklaus.sqlagent.model.BenchmarkResult;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Measures original vs. optimized SQL with the benchmark_query MCP tool
+ *
+ * Only plain SELECT statements are measured: statements with bind parameters or MyBatis
+ * placeholders cannot run as-is, and anything else could modify data.
+ */
+public class QueryBenchmarkService {
+    private static final Logger LOG = Logger.getInstance(QueryBenchmarkService.class);
+    private static final int ITERATIONS = 5;
+    private static final long TIMEOUT_MILLIS = 120_000;
+    private static final Pattern LEADING_COMMENTS = Pattern.compile("^(\\s*(--[^\\n]*\\n|/\\*.*?\\*/))*\\s*", Pattern.DOTALL);
+    private static final Pattern PLACEHOLDERS = Pattern.compile("[#$]\\{|\\?");
+    private static final Pattern QUOTED = Pattern.compile("'(?:[^']|'')*'|\"(?:[^\"]|\"\")*\"|`[^`]*`");
+
+    /**
+     * Benchmark both statements
+     * @param indicator Cancelling it stops the queries on the database
+     * @return Measured result, or a skipped result explaining why nothing was measured
+     */
+    public BenchmarkResult benchmark(String originalSql, String optimizedSql, ProgressIndicator indicator) {
+        String reason = checkRunnable(originalSql);
+        if (reason == null) {
+            reason = checkRunnable(optimizedSql);
+        }
+        if (reason != null) {
+            return BenchmarkResult.skipped(reason);
+        }
+
+        McpToolClient client = McpServerLifecycleService.getInstance().getToolClient();
+        if (client == null) {
+            return BenchmarkResult.skipped("database is not configured");
+        }
+
+        JsonObject arguments = new JsonObject();
+        arguments.addProperty("original_sql", originalSql);
+        arguments.addProperty("optimized_sql", optimizedSql);
+        arguments.addProperty("iterations", ITERATIONS);
+
+        try {
+            return parse(client.callTool("benchmark_query", arguments, TIMEOUT_MILLIS, indicator));
+        } catch (IOException e) {
+            LOG.warn("Benchmark failed: " + e.getMessage());
+            return BenchmarkResult.skipped(e.getMessage());
+        }
+    }
+
+    /**
+     * @return Reason the statement cannot be run as-is against the database, or null if it can
+     */
+    static String checkRunnable(String sql) {
+        if (sql == null || sql.isBlank()) {
+            return "empty statement";
+        }
+        String body = LEADING_COMMENTS.matcher(sql).replaceFirst("");
+        String keyword = body.length() >= 6 ? body.substring(0, 6).toUpperCase() : body.toUpperCase();
+        if (!keyword.startsWith("SELECT") && !keyword.startsWith("WITH")) {
+            return "only SELECT statements are run";
+        }
+        if (PLACEHOLDERS.matcher(QUOTED.matcher(body).replaceAll("''")).find()) {
+            return "statement has bind parameters";
+        }
+        return null;
+    }
+
+    private BenchmarkResult parse(JsonObject json) {
+        BenchmarkResult result = new BenchmarkResult();
+
+        JsonObject original = json.getAsJsonObject("original");
+        result.setOriginalP50Ms(original.get("p50_ms").getAsDouble());
+        result.setOriginalP95Ms(original.get("p95_ms").getAsDouble());
+        result.setOriginalMaxMs(original.get("max_ms").getAsDouble());
+        result.setOriginalRows(original.get("rows").getAsLong());
+        result.setOriginalCounters(parseCounters(original.getAsJsonObject("counters")));
+
+        JsonObject optimized = json.getAsJsonObject("optimized");
+        result.setOptimizedP50Ms(optimized.get("p50_ms").getAsDouble());
+        result.setOptimizedP95Ms(optimized.get("p95_ms").getAsDouble());
+        result.setOptimizedMaxMs(optimized.get("max_ms").getAsDouble());
+        result.setOptimizedRows(optimized.get("rows").getAsLong());
+        result.setOptimizedCounters(parseCounters(optimized.getAsJsonObject("counters")));
+
+        if (json.has("improvement")) {
+            result.setImprovement(json.get("improvement").getAsDouble());
+        }
+        result.setIterations(json.get("iterations").getAsInt());
+        return result;
+    }
+
+    private Map<String, Long> parseCounters(JsonObject counters) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (counters == null) {
+            return result;
+        }
+        for (Map.Entry<String, JsonElement> entry : counters.entrySet()) {
+            if (entry.getValue().isJsonPrimitive() && entry.getValue().getAsJsonPrimitive().isNumber()) {
+                result.put(entry.getKey(), entry.getValue().getAsLong());
+            }
+        }
+        return result;
+    }
+}
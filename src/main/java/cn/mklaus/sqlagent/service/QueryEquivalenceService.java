@@ -0,0 +1,71 @@
+package cn.mklaus.sqlagent.service;
+
+import cn.mklaus.sqlagent.mcp.McpServerLifecycleService;
+import cn.mklaus.sqlagent.mcp.McpToolClient;
+import cn.mklaus.sqlagent.model.EquivalenceResult;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+
+import java.io.IOException;
+
+/**
+ * Checks that optimized SQL returns the same rows as the original, using the
+ * verify_equivalence MCP tool
+ */
+public class QueryEquivalenceService {
+    private static final Logger LOG = Logger.getInstance(QueryEquivalenceService.class);
+    private static final long TIMEOUT_MILLIS = 150_000;
+    private static final int CHECK_TIMEOUT_MS = 120_000;
+
+    /**
+     * @param indicator Cancelling it stops the queries on the database
+     */
+    public EquivalenceResult verify(String originalSql, String optimizedSql, ProgressIndicator indicator) {
+        String reason = QueryBenchmarkService.checkRunnable(originalSql);
+        if (reason == null) {
+            reason = QueryBenchmarkService.checkRunnable(optimizedSql);
+        }
+        if (reason != null) {
+            return EquivalenceResult.skipped(reason);
+        }
+
+        McpToolClient client = McpServerLifecycleService.getInstance().getToolClient();
+        if (client == null) {
+            return EquivalenceResult.skipped("database is not configured");
+        }
+
+        JsonObject arguments = new JsonObject();
+        arguments.addProperty("original_sql", originalSql);
+        arguments.addProperty("optimized_sql", optimizedSql);
+        arguments.addProperty("timeout_ms", CHECK_TIMEOUT_MS);
+
+        try {
+            return parse(client.callTool("verify_equivalence", arguments, TIMEOUT_MILLIS, indicator));
+        } catch (IOException e) {
+            LOG.warn("Equivalence check failed: " + e.getMessage());
+            return EquivalenceResult.skipped(e.getMessage());
+        }
+    }
+
+    private EquivalenceResult parse(JsonObject json) {
+        EquivalenceResult.Status status = EquivalenceResult.Status.valueOf(
+                json.get("status").getAsString().toUpperCase());
+        String reason = json.has("reason") ? json.get("reason").getAsString() : null;
+
+        EquivalenceResult result = new EquivalenceResult(status, reason);
+        result.setOriginalRows(json.getAsJsonObject("original").get("rows").getAsLong());
+        result.setOptimizedRows(json.getAsJsonObject("optimized").get("rows").getAsLong());
+
+        JsonObject difference = json.getAsJsonObject("first_difference");
+        if (difference != null) {
+            if (difference.has("only_in_original")) {
+                result.setOnlyInOriginal(difference.get("only_in_original").toString());
+            }
+            if (difference.has("only_in_optimized")) {
+                result.setOnlyInOptimized(difference.get("only_in_optimized").toString());
+            }
+        }
+        return result;
+    }
+}
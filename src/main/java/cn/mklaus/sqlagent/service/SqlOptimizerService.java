@@ -1,12 +1,22 @@
 package cn.mklaus.sqlagent.service;
 
+import cn.mklaus.sqlagent.cache.OptimizationCache;
 import cn.mklaus.sqlagent.config.SqlAgentConfigurable;
 import cn.mklaus.sqlagent.model.*;
 import cn.mklaus.sqlagent.opencode.OpenCodeClient;
 import cn.mklaus.sqlagent.opencode.OpenCodeServerManager;
+import cn.mklaus.sqlagent.opencode.SessionEventListener;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.Nullable;
 
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Service for orchestrating SQL optimization
@@ -16,6 +26,7 @@ import java.util.Arrays;
  */
 public class SqlOptimizerService {
     private static final Logger LOG = Logger.getInstance(SqlOptimizerService.class);
+    private static final long CANCEL_CHECK_INTERVAL_MILLIS = 100;
 
     private final String openCodeServerUrl;
     private final OpenCodeServerManager serverManager;
@@ -42,8 +53,63 @@ public class SqlOptimizerService {
      * @return Optimization response with optimized SQL and suggestions
      */
     public OptimizationResponse optimize(String originalSql) {
+        return optimize(originalSql, null);
+    }
+
+    /**
+     * Optimize a SQL query, giving up as soon as the progress indicator is cancelled
+     *
+     * The request to OpenCode runs asynchronously; cancelling the indicator cancels the HTTP call,
+     * aborts the model run on the server and throws ProcessCanceledException.
+     *
+     * @param originalSql The SQL query to optimize
+     * @param indicator Progress of the calling task, or null if the call cannot be cancelled
+     * @return Optimization response with optimized SQL and suggestions
+     */
+    public OptimizationResponse optimize(String originalSql, @Nullable ProgressIndicator indicator) {
+        return optimize(originalSql, indicator, SessionEventListener.NONE);
+    }
+
+    /**
+     * Optimize a SQL query, reporting the model's tool calls, reasoning and suggestions to the
+     * listener as they arrive
+     *
+     * @param originalSql The SQL query to optimize
+     * @param indicator Progress of the calling task, or null if the call cannot be cancelled
+     * @param listener Receives the progress of the OpenCode session
+     * @return Optimization response with optimized SQL and suggestions
+     */
+    public OptimizationResponse optimize(String originalSql, @Nullable ProgressIndicator indicator,
+                                         SessionEventListener listener) {
+        return optimize(originalSql, indicator, listener, false);
+    }
+
+    /**
+     * Optimize a SQL query, answering from the optimization cache when the same SQL was
+     * optimized before for the current schema and model
+     *
+     * @param originalSql The SQL query to optimize
+     * @param indicator Progress of the calling task, or null if the call cannot be cancelled
+     * @param listener Receives the progress of the OpenCode session
+     * @param forceRefresh Ask the model even if a cached result exists, and replace it
+     * @return Optimization response with optimized SQL and suggestions; isCached() tells a cache hit
+     */
+    public OptimizationResponse optimize(String originalSql, @Nullable ProgressIndicator indicator,
+                                         SessionEventListener listener, boolean forceRefresh) {
         try {
             LOG.info("Starting optimization for SQL: " + originalSql.substring(0, Math.min(50, originalSql.length())) + "...");
+
+            String cacheKey = null;
+            if (settings.cacheOptimizations) {
+                OptimizationCache cache = OptimizationCache.getInstance();
+                cacheKey = cache.key(originalSql, settings.databaseConfig, settings.llmProviderConfig);
+                OptimizationResponse cached = forceRefresh || cacheKey == null ? null : cache.get(cacheKey);
+                if (cached != null) {
+                    LOG.info("Using cached optimization from " + Instant.ofEpochMilli(cached.getCachedAt()));
+                    return cached;
+                }
+            }
+
             LOG.info("Server: " + openCodeServerUrl + ", auto-start: " + settings.autoStartServer);
 
             boolean isServerRunning = serverManager.isServerRunning();
@@ -62,15 +128,21 @@ public class SqlOptimizerService {
             }
 
             OptimizationRequest request = buildOptimizationRequest(originalSql);
-            OptimizationResponse response = new OpenCodeClient(openCodeServerUrl).optimize(request);
+            OpenCodeClient client = new OpenCodeClient(openCodeServerUrl, settings.timeout);
+            OptimizationResponse response = await(client.optimizeAsync(request, listener), indicator);
 
             LOG.info("Optimization completed. Has error: " + response.hasError());
             if (response.hasError()) {
                 LOG.error("Optimization error: " + response.getErrorMessage());
+            } else if (cacheKey != null) {
+                OptimizationCache.getInstance().put(cacheKey, response);
             }
 
             return response;
 
+        } catch (ProcessCanceledException e) {
+            LOG.info("Optimization cancelled");
+            throw e;
         } catch (Exception e) {
             LOG.error("Service error", e);
             return createDetailedErrorResponse("Service error: " + e.getMessage(),
@@ -78,6 +150,24 @@ public class SqlOptimizerService {
         }
     }
 
+    /**
+     * Wait for the response, cancelling the request when the indicator is cancelled
+     */
+    private OptimizationResponse await(CompletableFuture<OptimizationResponse> future,
+                                       @Nullable ProgressIndicator indicator) throws InterruptedException, ExecutionException {
+        while (true) {
+            if (indicator != null && indicator.isCanceled()) {
+                future.cancel(true);
+                throw new ProcessCanceledException();
+            }
+            try {
+                return future.get(CANCEL_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Still running, check the indicator again
+            }
+        }
+    }
+
     /**
      * Create detailed error response with suggestions
      */
@@ -37,7 +37,7 @@ public class DiffViewer {
         DiffContentFactory contentFactory = DiffContentFactory.getInstance();
 
         SimpleDiffRequest diffRequest = new SimpleDiffRequest(
-                "SQL Optimization - " + String.format("%.1f%%", response.getEstimatedImprovement() * 100) + " Improvement",
+                "SQL Optimization - " + describeImprovement(response),
                 contentFactory.create(project, originalDoc, FileTypes.PLAIN_TEXT),
                 contentFactory.create(project, optimizedDoc, FileTypes.PLAIN_TEXT),
                 "Original SQL",
@@ -130,9 +130,7 @@ public class DiffViewer {
 
         // Build diff request
         DiffContentFactory contentFactory = DiffContentFactory.getInstance();
-        String title = "File Diff - " +
-                String.format("%.1f%%", response.getEstimatedImprovement() * 100) +
-                " Improvement";
+        String title = "File Diff - " + describeImprovement(response);
 
         SimpleDiffRequest diffRequest = new SimpleDiffRequest(
                 title,
@@ -145,6 +143,19 @@ public class DiffViewer {
         DiffManager.getInstance().showDiff(project, diffRequest);
     }
 
+    /**
+     * Equivalence warning or measured latency when available, otherwise the AI's estimate
+     */
+    private static String describeImprovement(@NotNull OptimizationResponse response) {
+        if (response.hasDifferentResults()) {
+            return "Warning: " + response.getEquivalenceResult().getSummary();
+        }
+        if (response.hasMeasuredImprovement()) {
+            return "Measured: " + response.getBenchmarkResult().getSummary();
+        }
+        return String.format("%.1f%%", response.getEstimatedImprovement() * 100) + " Improvement (estimated)";
+    }
+
     /**
      * Create modified file content by replacing SQL at specific range
      * Formats the optimized SQL and maintains consistent indentation
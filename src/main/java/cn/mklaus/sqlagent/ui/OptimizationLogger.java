@@ -1,8 +1,12 @@
 package cn.mklaus.sqlagent.ui;
 
 import cn.mklaus.sqlagent.config.SqlAgentConfigurable;
+import cn.mklaus.sqlagent.model.BenchmarkResult;
+import cn.mklaus.sqlagent.model.EquivalenceResult;
 import cn.mklaus.sqlagent.model.OptimizationResponse;
 
+import java.util.Map;
+
 /**
  * Utility class for logging optimization-related messages
  */
@@ -59,4 +63,51 @@ public class OptimizationLogger {
         panel.log("  2. Check OpenCode logs: ~/.opencode/logs/server.log");
         panel.log("  3. Database configuration in ~/.opencode/opencode.json");
     }
+
+    /**
+     * Log measured latency and counters of original vs. optimized SQL
+     */
+    public static void logBenchmark(OptimizationPanel panel, BenchmarkResult result) {
+        if (panel == null || result == null) return;
+
+        if (result.isSkipped()) {
+            panel.log("Benchmark skipped: " + result.getSkippedReason());
+            return;
+        }
+
+        panel.log("Benchmark (" + result.getIterations() + " runs each):");
+        panel.log(String.format("  Original:  p50 %.1f ms, p95 %.1f ms, max %.1f ms, %d rows",
+                result.getOriginalP50Ms(), result.getOriginalP95Ms(), result.getOriginalMaxMs(), result.getOriginalRows()));
+        panel.log(String.format("  Optimized: p50 %.1f ms, p95 %.1f ms, max %.1f ms, %d rows",
+                result.getOptimizedP50Ms(), result.getOptimizedP95Ms(), result.getOptimizedMaxMs(), result.getOptimizedRows()));
+        logCounters(panel, "  Original counters:  ", result.getOriginalCounters());
+        logCounters(panel, "  Optimized counters: ", result.getOptimizedCounters());
+        if (result.getOriginalRows() != result.getOptimizedRows()) {
+            panel.log("  Warning: row counts differ, the rewrite may not be equivalent");
+        }
+        panel.log("  " + result.getSummary());
+    }
+
+    /**
+     * Log the result equivalence check, with sample rows when the results differ
+     */
+    public static void logEquivalence(OptimizationPanel panel, EquivalenceResult result) {
+        if (panel == null || result == null) return;
+
+        panel.log(result.getSummary());
+        if (result.getOnlyInOriginal() != null) {
+            panel.log("  Only in original:  " + result.getOnlyInOriginal());
+        }
+        if (result.getOnlyInOptimized() != null) {
+            panel.log("  Only in optimized: " + result.getOnlyInOptimized());
+        }
+    }
+
+    private static void logCounters(OptimizationPanel panel, String prefix, Map<String, Long> counters) {
+        if (counters == null || counters.isEmpty()) return;
+
+        StringBuilder line = new StringBuilder(prefix);
+        counters.forEach((name, value) -> line.append(name).append('=').append(value).append(' '));
+        panel.log(line.toString().trim());
+    }
 }
@@ -2,11 +2,14 @@ package cn.mklaus.sqlagent.ui;
 
 import cn.mklaus.sqlagent.model.OptimizationResponse;
 import cn.mklaus.sqlagent.model.OptimizationSuggestion;
+import cn.mklaus.sqlagent.opencode.SessionEventListener;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.*;
+import com.intellij.util.text.DateFormatUtil;
 import com.intellij.util.ui.UIUtil;
 
 import javax.swing.*;
@@ -24,6 +27,7 @@ public class OptimizationPanel {
     private JLabel statusLabel;
     private JProgressBar progressBar;
     private JButton applyButton;
+    private JButton refreshButton;
 
     // Store optimization result for applying
     private Editor editor;
@@ -31,6 +35,7 @@ public class OptimizationPanel {
     private String optimizedSql;
     private OptimizationResponse response;
     private Runnable applyCallback;
+    private Runnable refreshCallback;
 
     private static final int MAX_LOG_LINES = 100; // Limit log lines to prevent EDT freeze
 
@@ -82,12 +87,22 @@ public class OptimizationPanel {
         applyButton = new JButton("Apply Optimized SQL");
         applyButton.setEnabled(false);
         applyButton.addActionListener(e -> {
-            if (applyCallback != null) {
+            if (applyCallback != null && confirmApply()) {
                 applyCallback.run();
             }
         });
+        // Refresh button, shown for results served from the optimization cache
+        refreshButton = new JButton("Refresh (Ask AI Again)");
+        refreshButton.setVisible(false);
+        refreshButton.addActionListener(e -> {
+            if (refreshCallback != null) {
+                refreshButton.setVisible(false);
+                refreshCallback.run();
+            }
+        });
         JPanel buttonPanel = new JPanel(new BorderLayout());
         buttonPanel.add(applyButton, BorderLayout.NORTH);
+        buttonPanel.add(refreshButton, BorderLayout.SOUTH);
         bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
 
         mainPanel.add(bottomPanel, BorderLayout.SOUTH);
@@ -133,9 +148,11 @@ public class OptimizationPanel {
     }
 
     public void clear() {
+        refreshCallback = null;
         runOnEdt(() -> {
             logArea.setText("");
             suggestionModel.clear();
+            refreshButton.setVisible(false);
         });
     }
 
@@ -157,8 +174,16 @@ public class OptimizationPanel {
         });
     }
 
+    /**
+     * Show the suggestions of the final response, replacing those streamed while the model answered
+     */
     public void addSuggestion(OptimizationResponse response) {
         runOnEdt(() -> {
+            for (int i = suggestionModel.size() - 1; i >= 0; i--) {
+                if (suggestionModel.get(i).isPartial()) {
+                    suggestionModel.remove(i);
+                }
+            }
             if (response.getSuggestions() != null && !response.getSuggestions().isEmpty()) {
                 for (OptimizationSuggestion suggestion : response.getSuggestions()) {
                     suggestionModel.addElement(new SuggestionItem(suggestion));
@@ -173,6 +198,64 @@ public class OptimizationPanel {
         });
     }
 
+    /**
+     * Listener showing tool calls, reasoning and suggestions of the OpenCode session while it runs
+     */
+    public SessionEventListener createEventListener() {
+        return new PanelEventListener();
+    }
+
+    private class PanelEventListener implements SessionEventListener {
+        private final StringBuilder reasoning = new StringBuilder();
+
+        @Override
+        public void onToolCall(String tool, String status) {
+            flushReasoning();
+            log("Tool " + tool + ": " + status);
+        }
+
+        @Override
+        public void onReasoning(String delta) {
+            reasoning.append(delta);
+            int newline;
+            while ((newline = reasoning.indexOf("\n")) >= 0) {
+                logReasoning(reasoning.substring(0, newline));
+                reasoning.delete(0, newline + 1);
+            }
+        }
+
+        @Override
+        public void onSuggestion(OptimizationSuggestion suggestion) {
+            flushReasoning();
+            log("Suggestion: " + suggestion.getTitle());
+            runOnEdt(() -> suggestionModel.addElement(new SuggestionItem(suggestion, true)));
+        }
+
+        private void flushReasoning() {
+            logReasoning(reasoning.toString());
+            reasoning.setLength(0);
+        }
+
+        private void logReasoning(String line) {
+            if (!line.isBlank()) {
+                log("Thinking: " + line.trim());
+            }
+        }
+    }
+
+    /**
+     * Mark the shown result as coming from the optimization cache and offer to ask the model again
+     */
+    public void setCachedResult(long cachedAt, Runnable refreshCallback) {
+        this.refreshCallback = refreshCallback;
+        runOnEdt(() -> {
+            statusLabel.setText("Cached result from " + DateFormatUtil.formatPrettyDateTime(cachedAt));
+            refreshButton.setVisible(true);
+            mainPanel.revalidate();
+        });
+        log("Result served from the optimization cache");
+    }
+
     /**
      * Set the optimization result and enable the apply button
      */
@@ -215,11 +298,28 @@ public class OptimizationPanel {
         });
     }
 
+    /**
+     * Ask for confirmation when the optimized SQL was shown to return different rows
+     */
+    private boolean confirmApply() {
+        if (response == null || !response.hasDifferentResults()) {
+            return true;
+        }
+        String message = "The optimized SQL returns different rows than the original:\n"
+                + response.getEquivalenceResult().getReason() + "\n\nApply it anyway?";
+        return Messages.showYesNoDialog(project, message, "Results Differ", Messages.getWarningIcon()) == Messages.YES;
+    }
+
     /**
      * Update apply button text with improvement percentage
      */
     private void updateApplyButtonText() {
-        if (response != null && response.getEstimatedImprovement() > 0) {
+        if (response != null && response.hasDifferentResults()) {
+            applyButton.setText("Apply Optimized SQL (results differ!)");
+        } else if (response != null && response.hasMeasuredImprovement()) {
+            double improvement = response.getBenchmarkResult().getImprovement() * 100;
+            applyButton.setText(String.format("Apply Optimized SQL (%.1f%% faster, measured)", improvement));
+        } else if (response != null && response.getEstimatedImprovement() > 0) {
             double improvement = response.getEstimatedImprovement() * 100;
             applyButton.setText(String.format("Apply Optimized SQL (%.1f%% improvement)", improvement));
         } else {
@@ -232,15 +332,25 @@ public class OptimizationPanel {
      */
     public static class SuggestionItem {
         private final OptimizationSuggestion suggestion;
+        private final boolean partial; // Streamed before the final response arrived
 
         public SuggestionItem(OptimizationSuggestion suggestion) {
+            this(suggestion, false);
+        }
+
+        public SuggestionItem(OptimizationSuggestion suggestion, boolean partial) {
             this.suggestion = suggestion;
+            this.partial = partial;
         }
 
         public OptimizationSuggestion getSuggestion() {
             return suggestion;
         }
 
+        public boolean isPartial() {
+            return partial;
+        }
+
         @Override
         public String toString() {
             return suggestion.getTitle();
@@ -3,6 +3,9 @@ package cn.mklaus.sqlagent.ui;
 import cn.mklaus.sqlagent.config.SqlAgentConfigurable;
 import cn.mklaus.sqlagent.config.SqlAgentSettingsService;
 import cn.mklaus.sqlagent.model.*;
+import cn.mklaus.sqlagent.opencode.SessionEventListener;
+import cn.mklaus.sqlagent.service.QueryBenchmarkService;
+import cn.mklaus.sqlagent.service.QueryEquivalenceService;
 import cn.mklaus.sqlagent.service.SqlOptimizerService;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
@@ -15,6 +18,7 @@ import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
@@ -58,7 +62,14 @@ public class OptimizeSqlAction extends AnAction {
         // Database connection is configured in ~/.opencode/config.json
 
         showToolWindow(project);
+        runOptimization(project, editor, selectedSql, false);
+    }
 
+    /**
+     * Optimize in the background and show the result in the tool window
+     * @param forceRefresh Ask the model even if the optimization cache has a result
+     */
+    private void runOptimization(Project project, Editor editor, String selectedSql, boolean forceRefresh) {
         ProgressManager.getInstance().run(new Task.Backgroundable(project, "Optimizing SQL", true) {
             private OptimizationResponse response;
             private Exception error;
@@ -78,9 +89,26 @@ public class OptimizeSqlAction extends AnAction {
                             state);
 
                     updateProgress(indicator, panel, "Optimizing with AI...", 0.3, 30);
-                    response = optimizer.optimize(selectedSql.trim());
+                    response = optimizer.optimize(selectedSql.trim(), indicator,
+                            panel != null ? panel.createEventListener() : SessionEventListener.NONE, forceRefresh);
+
+                    if (state.verifyEquivalence && response != null && !response.hasError()
+                            && response.getOptimizedSql() != null) {
+                        updateProgress(indicator, panel, "Verifying optimized SQL returns the same rows...", 0.7, 70);
+                        response.setEquivalenceResult(new QueryEquivalenceService().verify(selectedSql.trim(), response.getOptimizedSql(), indicator));
+                        OptimizationLogger.logEquivalence(panel, response.getEquivalenceResult());
+                    }
+
+                    if (state.benchmarkOptimizedSql && response != null && !response.hasError()
+                            && response.getOptimizedSql() != null && !response.hasDifferentResults()) {
+                        updateProgress(indicator, panel, "Benchmarking original vs optimized SQL...", 0.8, 80);
+                        response.setBenchmarkResult(new QueryBenchmarkService().benchmark(selectedSql.trim(), response.getOptimizedSql(), indicator));
+                        OptimizationLogger.logBenchmark(panel, response.getBenchmarkResult());
+                    }
                     finalizeOptimization(indicator, panel, response);
 
+                } catch (ProcessCanceledException e) {
+                    throw e;
                 } catch (Exception e) {
                     error = e;
                     OptimizationLogger.logError(panel, e);
@@ -123,6 +151,14 @@ public class OptimizeSqlAction extends AnAction {
                 }
             }
 
+            @Override
+            public void onCancel() {
+                if (panel != null) {
+                    panel.setStatus("Optimization cancelled", false);
+                    panel.log("Optimization cancelled");
+                }
+            }
+
             @Override
             public void onSuccess() {
                 runOnEdt(() -> {
@@ -139,6 +175,10 @@ public class OptimizeSqlAction extends AnAction {
                     }
 
                     showDiffAndApply(project, editor, selectedSql, response.getOptimizedSql(), response, panel);
+                    if (panel != null && response.isCached()) {
+                        panel.setCachedResult(response.getCachedAt(),
+                                () -> runOptimization(project, editor, selectedSql, true));
+                    }
                 });
             }
 
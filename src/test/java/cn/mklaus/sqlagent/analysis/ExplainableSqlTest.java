@@ -0,0 +1,29 @@
+package cn.mklaus.sqlagent.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ExplainableSql
+ */
+public class ExplainableSqlTest {
+
+    @Test
+    public void testDynamicSqlBecomesValid() {
+        String xml = "SELECT * FROM users <where><if test=\"a\">AND name = #{name}</if>"
+                + "<if test=\"b\">AND status = 'a?'</if></where> ORDER BY id LIMIT #{offset}, #{size}";
+
+        assertEquals("SELECT * FROM users where name = '1' AND status = 'a?' ORDER BY id LIMIT 0, 10",
+                ExplainableSql.of(MapperSqlText.mask(xml)));
+    }
+
+    @Test
+    public void testEmptyWhereAndSetCommasAreRemoved() {
+        String xml = "UPDATE users <set><if test=\"a\">name = #{name},</if><if test=\"b\">age = #{age},</if></set>"
+                + " WHERE id = #{id}";
+
+        assertEquals("UPDATE users set name = '1', age = '1' WHERE id = '1'", ExplainableSql.of(MapperSqlText.mask(xml)));
+        assertEquals("SELECT id FROM users", ExplainableSql.of(MapperSqlText.mask("SELECT id FROM users <where> </where>")));
+    }
+}
@@ -0,0 +1,58 @@
+package cn.mklaus.sqlagent.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for LocalSqlAnalyzer
+ */
+public class LocalSqlAnalyzerTest {
+
+    private final LocalSqlAnalyzer analyzer = new LocalSqlAnalyzer();
+
+    @Test
+    public void testIndexedLookupIsCheap() {
+        LocalSqlAnalyzer.Analysis analysis = analyzer.analyze("SELECT",
+                "SELECT id, name FROM users WHERE id = ?");
+
+        assertEquals(0, analysis.getCost());
+        assertTrue(analysis.getFindings().isEmpty());
+    }
+
+    @Test
+    public void testCostAddsUpFindings() {
+        LocalSqlAnalyzer.Analysis analysis = analyzer.analyze("SELECT",
+                "SELECT * FROM users u JOIN orders o ON o.user_id = u.id "
+                        + "WHERE u.name LIKE '%' || ? AND DATE(o.created_at) = ? LIMIT ?, ?");
+
+        // select * 10, leading wildcard 25, function on column 15, offset 15, one join 5
+        assertEquals(70, analysis.getCost());
+        assertEquals(5, analysis.getFindings().size());
+    }
+
+    @Test
+    public void testWritesWithoutWhereRankHighest() {
+        assertEquals(50, analyzer.analyze("DELETE", "DELETE FROM sessions").getCost());
+        assertEquals(30, analyzer.analyze("SELECT", "SELECT id FROM users /* if: active */").getCost());
+        assertEquals(0, analyzer.analyze("SELECT", "SELECT id FROM users LIMIT 10").getCost());
+    }
+
+    @Test
+    public void testWhereFromIncludedFragmentCounts() {
+        assertEquals(0, analyzer.analyze("UPDATE", "UPDATE users SET name = ?  ", "WHERE id = ?").getCost());
+        assertEquals(50, analyzer.analyze("UPDATE", "UPDATE users SET name = ?  ", "id, name").getCost());
+
+        // An unresolved fragment may hold the WHERE, the statement is not judged as a whole
+        assertEquals(0, analyzer.analyze("DELETE", "DELETE FROM sessions  ", null).getCost());
+    }
+
+    @Test
+    public void testJoinsOnlyCountAsStatistic() {
+        LocalSqlAnalyzer.Analysis analysis = analyzer.analyze("SELECT",
+                "SELECT u.id FROM users u JOIN orders o ON o.user_id = u.id WHERE u.id = ?");
+
+        assertEquals(5, analysis.getCost());
+        assertTrue(analysis.getFindings().get(0).isStatistic());
+    }
+}
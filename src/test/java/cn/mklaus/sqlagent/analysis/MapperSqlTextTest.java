@@ -0,0 +1,50 @@
+package cn.mklaus.sqlagent.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MapperSqlText
+ */
+public class MapperSqlTextTest {
+
+    @Test
+    public void testMaskKeepsOffsets() {
+        String xml = "\n  SELECT * FROM users\n  <where>\n    <if test=\"name != null\">AND name = #{name}</if>\n"
+                + "    AND age &gt;= ${minAge} <!-- adults -->\n  </where>";
+
+        String sql = MapperSqlText.mask(xml);
+
+        assertEquals(xml.length(), sql.length());
+        assertEquals(xml.indexOf("SELECT"), sql.indexOf("SELECT"));
+        assertEquals(xml.indexOf("<where>") + 1, sql.indexOf("where"));
+        assertEquals(xml.indexOf("#{name}"), sql.indexOf("?"));
+        assertEquals("AND age >   = ?", sql.substring(xml.indexOf("AND age"), xml.indexOf("${minAge}") + 1));
+        assertFalse(sql.contains("<"));
+    }
+
+    @Test
+    public void testMaskKeepsCdataAndTrimPrefix() {
+        String xml = "UPDATE users <trim prefix=\"SET\" suffixOverrides=\",\">name = #{name},</trim>"
+                + " WHERE <![CDATA[ age < 18 ]]>";
+
+        String sql = MapperSqlText.mask(xml);
+
+        assertEquals(xml.length(), sql.length());
+        assertTrue(sql.matches("UPDATE users +SET +name = \\? +, +WHERE +age < 18 +"));
+    }
+
+    @Test
+    public void testAnalyzerFindingsPointIntoXml() {
+        String xml = "SELECT id FROM users <where> name LIKE '%' || #{name} OR email = #{email}</where>";
+
+        LocalSqlAnalyzer.Analysis analysis = new LocalSqlAnalyzer().analyze("SELECT", MapperSqlText.mask(xml));
+
+        assertEquals(35, analysis.getCost());
+        for (LocalSqlAnalyzer.Finding finding : analysis.getFindings()) {
+            String marked = xml.substring(finding.getStart(), finding.getEnd());
+            assertTrue(marked, marked.equals("OR") || marked.equals("LIKE '%"));
+        }
+    }
+}
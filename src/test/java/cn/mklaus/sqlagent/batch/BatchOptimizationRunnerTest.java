@@ -0,0 +1,106 @@
+package cn.mklaus.sqlagent.batch;
+
+import cn.mklaus.sqlagent.model.OptimizationResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for BatchOptimizationRunner
+ */
+public class BatchOptimizationRunnerTest {
+
+    private static List<BatchItem> items(int count) {
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BatchItem item = new BatchItem("com.example.UserMapper", "find" + i, "SELECT", "SELECT " + i, "f" + i);
+            item.setStatus(BatchStatus.QUEUED);
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static OptimizationResponse success() {
+        OptimizationResponse response = new OptimizationResponse();
+        response.setOptimizedSql("SELECT 1");
+        return response;
+    }
+
+    private static OptimizationResponse error(String message) {
+        OptimizationResponse response = new OptimizationResponse();
+        response.setErrorMessage(message);
+        return response;
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<BatchItem> items = items(12);
+
+        new BatchOptimizationRunner(3, 0, 0, 0).run(items, item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return success();
+        }, item -> { }, () -> false);
+
+        assertEquals(3, maxRunning.get());
+        items.forEach(item -> assertEquals(BatchStatus.OPTIMIZED, item.getStatus()));
+    }
+
+    @Test
+    public void testFailedRequestsAreRetried() {
+        List<BatchItem> items = items(2);
+        AtomicInteger calls = new AtomicInteger();
+
+        new BatchOptimizationRunner(1, 0, 2, 1).run(items, item -> {
+            calls.incrementAndGet();
+            if (item.getStatementId().equals("find1")) {
+                throw new IOException("connection reset");
+            }
+            return item.getAttempts() < 2 ? error("Server busy") : success();
+        }, item -> { }, () -> false);
+
+        assertEquals(BatchStatus.OPTIMIZED, items.get(0).getStatus());
+        assertEquals(2, items.get(0).getAttempts());
+        assertEquals(BatchStatus.FAILED, items.get(1).getStatus());
+        assertEquals(3, items.get(1).getAttempts());
+        assertEquals("connection reset", items.get(1).getMessage());
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    public void testRateLimitSpacesRequests() {
+        List<BatchItem> items = items(3);
+        long start = System.currentTimeMillis();
+
+        // 600 per minute: one start every 100 ms
+        new BatchOptimizationRunner(3, 600, 0, 0).run(items, item -> success(), item -> { }, () -> false);
+
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    @Test
+    public void testCancelledItemsStayQueued() {
+        List<BatchItem> items = items(4);
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        new BatchOptimizationRunner(1, 0, 0, 0).run(items, item -> {
+            cancelled.set(true);
+            return success();
+        }, item -> { }, cancelled::get);
+
+        assertEquals(BatchStatus.OPTIMIZED, items.get(0).getStatus());
+        for (BatchItem item : items.subList(1, 4)) {
+            assertEquals(BatchStatus.QUEUED, item.getStatus());
+            assertEquals(0, item.getAttempts());
+        }
+    }
+}
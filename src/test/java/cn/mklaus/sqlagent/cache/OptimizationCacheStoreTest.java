@@ -0,0 +1,74 @@
+package cn.mklaus.sqlagent.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for OptimizationCacheStore and SqlFingerprint
+ */
+public class OptimizationCacheStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNormalizesFormattingButKeepsLiterals() {
+        String sql = "SELECT *\n  FROM Users -- all users\n WHERE name = 'Bob'  /* exact */ ;";
+        assertEquals("select * from Users where name = 'Bob'", SqlFingerprint.normalize(sql));
+        assertEquals("select userId from t where id = #{userId} and type = ${Type}",
+                SqlFingerprint.normalize("Select userId FROM t Where id = #{userId} AND type = ${Type}"));
+        assertNotEquals(SqlFingerprint.normalize("select a from t where id = #{userId}"),
+                SqlFingerprint.normalize("select a from t where id = #{userid}"));
+        assertNotEquals(SqlFingerprint.hash(SqlFingerprint.normalize("select 'a'")),
+                SqlFingerprint.hash(SqlFingerprint.normalize("select 'A'")));
+    }
+
+    @Test
+    public void testReopenRestoresLatestEntriesAndDropsPartialLine() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("cache.log");
+        try (OptimizationCacheStore store = new OptimizationCacheStore(file, 10, 1024 * 1024)) {
+            store.put("a", "{\"v\":1}");
+            store.put("b", "{\"v\":2}");
+            store.put("a", "{\"v\":3}");
+        }
+        Files.writeString(file, "c\t123\t{\"v\"", StandardOpenOption.APPEND);
+
+        try (OptimizationCacheStore store = new OptimizationCacheStore(file, 10, 1024 * 1024)) {
+            assertEquals(2, store.size());
+            assertEquals("{\"v\":3}", store.get("a").getPayload());
+            assertEquals("{\"v\":2}", store.get("b").getPayload());
+            assertNull(store.get("c"));
+
+            store.put("c", "{\"v\":4}");
+            assertEquals("{\"v\":4}", store.get("c").getPayload());
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedAndCompacts() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("cache.log");
+        String payload = "x".repeat(100);
+        try (OptimizationCacheStore store = new OptimizationCacheStore(file, 3, 1000)) {
+            store.put("a", payload);
+            store.put("b", payload);
+            store.put("c", payload);
+            store.get("a");
+            store.put("d", payload);
+            assertNull(store.get("b"));
+            assertNotNull(store.get("a"));
+
+            for (int i = 0; i < 10; i++) {
+                store.put("a", payload);
+            }
+            assertTrue(Files.size(file) <= 1000);
+            assertEquals(payload, store.get("a").getPayload());
+        }
+    }
+}
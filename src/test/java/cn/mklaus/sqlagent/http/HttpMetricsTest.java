@@ -0,0 +1,74 @@
+package cn.mklaus.sqlagent.http;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for HttpMetrics
+ */
+public class HttpMetricsTest {
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(exchange.getRequestURI().getPath().endsWith("missing") ? 404 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testRecordsCallsPerEndpoint() throws Exception {
+        HttpMetrics metrics = new HttpMetrics();
+        OkHttpClient client = new OkHttpClient.Builder().eventListenerFactory(metrics).build();
+
+        RequestBody body = RequestBody.create("{}", MediaType.get("application/json"));
+        call(client, new Request.Builder().url(baseUrl + "/session/ses_01a/message").post(body).build());
+        call(client, new Request.Builder().url(baseUrl + "/session/ses_02b/message").post(body).build());
+        call(client, new Request.Builder().url(baseUrl + "/session/missing").get().build());
+
+        Map<String, EndpointStats> snapshot = metrics.snapshot();
+        String port = ":" + server.getAddress().getPort();
+        EndpointStats messages = snapshot.get("POST localhost" + port + "/session/{id}/message");
+        assertEquals(2, messages.getCalls());
+        assertEquals(0, messages.getErrors());
+        assertEquals(4, messages.getBytesSent());
+        assertEquals(22, messages.getBytesReceived());
+
+        EndpointStats missing = snapshot.get("GET localhost" + port + "/session/missing");
+        assertEquals(1, missing.getCalls());
+        assertEquals(1, missing.getErrors());
+    }
+
+    private static void call(OkHttpClient client, Request request) throws Exception {
+        try (Response response = client.newCall(request).execute()) {
+            response.body().string();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package cn.mklaus.sqlagent.mybatis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for BatchStatementSuggester
+ */
+public class BatchStatementSuggesterTest {
+
+    private final BatchStatementSuggester suggester = new BatchStatementSuggester();
+
+    @Test
+    public void testSelectByIdBecomesInList() {
+        String batched = suggester.suggest("SELECT", "findById",
+                "SELECT * FROM users WHERE id = #{id} AND deleted = 0", "id");
+
+        assertEquals("<select id=\"findByIds\">\n"
+                + "    SELECT * FROM users WHERE id IN <foreach collection=\"ids\" item=\"item\" open=\"(\" "
+                + "separator=\",\" close=\")\">#{item}</foreach> AND deleted = 0\n"
+                + "</select>", batched);
+    }
+
+    @Test
+    public void testParameterUsedTwiceIsNotBatched() {
+        assertNull(suggester.suggest("SELECT", "findPair",
+                "SELECT * FROM links WHERE source = #{node} OR target = #{node}", "node"));
+        assertNull(suggester.suggest("SELECT", "findAll", "SELECT * FROM users", "id"));
+    }
+
+    @Test
+    public void testInsertValuesWrappedInForeach() {
+        String batched = suggester.suggest("INSERT", "insertUser",
+                "INSERT INTO users (name, email) VALUES (#{user.name}, #{user.email})", "user");
+
+        assertEquals("<insert id=\"insertUserBatch\">\n"
+                + "    INSERT INTO users (name, email) VALUES \n"
+                + "    <foreach collection=\"users\" item=\"item\" separator=\",\">\n"
+                + "        (#{item.name}, #{item.email})\n"
+                + "    </foreach>\n"
+                + "</insert>", batched);
+    }
+
+    @Test
+    public void testUpdateIsLeftToBatchExecutor() {
+        assertNull(suggester.suggest("UPDATE", "updateName",
+                "UPDATE users SET name = #{name} WHERE id = #{id}", "id"));
+    }
+}
@@ -0,0 +1,38 @@
+package cn.mklaus.sqlagent.mybatis;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for JdbcSettings
+ */
+public class JdbcSettingsTest {
+
+    @Test
+    public void testFindsUrlsAndMissingRewriteFlags() {
+        String yaml = "spring:\n"
+                + "  datasource:\n"
+                + "    url: jdbc:mysql://db:3306/shop?useSSL=false&rewriteBatchedStatements=true\n"
+                + "  replica:\n"
+                + "    url: \"jdbc:postgresql://pg:5432/shop\"\n";
+
+        List<String> urls = JdbcSettings.findJdbcUrls(yaml);
+        assertEquals(List.of("jdbc:mysql://db:3306/shop?useSSL=false&rewriteBatchedStatements=true",
+                "jdbc:postgresql://pg:5432/shop"), urls);
+        assertNull(JdbcSettings.missingBatchRewriteFlag(urls.get(0)));
+        assertEquals("reWriteBatchedInserts=true", JdbcSettings.missingBatchRewriteFlag(urls.get(1)));
+        assertEquals("rewriteBatchedStatements=true",
+                JdbcSettings.missingBatchRewriteFlag("jdbc:mysql://db/shop"));
+    }
+
+    @Test
+    public void testBatchExecutorDeclarations() {
+        assertTrue(JdbcSettings.declaresBatchExecutor("mybatis.executor-type=batch"));
+        assertTrue(JdbcSettings.declaresBatchExecutor("mybatis:\n  configuration:\n    default-executor-type: BATCH"));
+        assertTrue(JdbcSettings.declaresBatchExecutor("<setting name=\"defaultExecutorType\" value=\"BATCH\"/>"));
+        assertFalse(JdbcSettings.declaresBatchExecutor("mybatis.executor-type=reuse"));
+    }
+}
@@ -0,0 +1,79 @@
+package cn.mklaus.sqlagent.mybatis.dynamic;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for DynamicSqlExpander
+ */
+public class DynamicSqlExpanderTest {
+
+    @Test
+    public void testWhereAndSetTrimming() {
+        DynamicSqlExpander expander = new DynamicSqlExpander((namespace, id) -> null, 16);
+
+        DynamicSqlExpansion select = expander.expand("demo.UserMapper", "<select id=\"find\">SELECT * FROM users <where>"
+                + "<if test=\"name != null\">AND name = #{name}</if>"
+                + "<if test=\"age != null\">\n OR age &gt;= #{age}</if></where></select>");
+
+        assertEquals(4, select.getCombinations());
+        assertFalse(select.isSampled());
+        assertEquals(List.of("SELECT * FROM users", "SELECT * FROM users WHERE name = ?",
+                "SELECT * FROM users WHERE age >= ?", "SELECT * FROM users WHERE name = ? OR age >= ?"), sqls(select));
+        assertEquals(List.of("name != null", "not (age != null)"), select.getVariants().get(1).getConditions());
+
+        DynamicSqlExpansion update = expander.expand("demo.UserMapper", "<update id=\"update\">UPDATE users <set>"
+                + "<choose><when test=\"name != null\">name = #{name},</when><otherwise>name = 'x',</otherwise></choose>"
+                + "</set> WHERE id IN <foreach collection=\"ids\" open=\"(\" separator=\",\" close=\")\">#{id}</foreach>"
+                + "</update>");
+
+        assertEquals(List.of("UPDATE users SET name = ? WHERE id IN (?)",
+                "UPDATE users SET name = 'x' WHERE id IN (?)"), sqls(update));
+    }
+
+    @Test
+    public void testIncludeResolvesFragmentsWithProperties() {
+        DynamicSqlExpander expander = new DynamicSqlExpander((namespace, id) -> {
+            if ("demo.Common".equals(namespace) && "columns".equals(id)) {
+                return "<sql id=\"columns\">${alias}.id, ${alias}.name<include refid=\"extra\"/></sql>";
+            }
+            if ("demo.Common".equals(namespace) && "extra".equals(id)) {
+                return "<sql id=\"extra\"><trim prefix=\",\" suffixOverrides=\",\">${alias}.email,</trim></sql>";
+            }
+            return null;
+        }, 16);
+
+        DynamicSqlExpansion expansion = expander.expand("demo.UserMapper", "<select id=\"find\">SELECT "
+                + "<include refid=\"demo.Common.columns\"><property name=\"alias\" value=\"u\"/></include>"
+                + " FROM users u <include refid=\"missing\"/></select>");
+
+        assertEquals(List.of("SELECT u.id, u.name , u.email FROM users u"), sqls(expansion));
+    }
+
+    @Test
+    public void testSamplesWhenCombinationsExceedBound() {
+        StringBuilder xml = new StringBuilder("<select id=\"search\">SELECT * FROM orders <where>");
+        for (int i = 0; i < 20; i++) {
+            xml.append("<if test=\"c").append(i).append(" != null\">AND c").append(i).append(" = #{c").append(i).append("}</if>");
+        }
+        xml.append("</where></select>");
+
+        DynamicSqlExpansion expansion = new DynamicSqlExpander((namespace, id) -> null, 8).expand("demo", xml.toString());
+
+        assertTrue(expansion.isSampled());
+        assertEquals(1L << 20, expansion.getCombinations());
+        assertEquals(8, expansion.getVariants().size());
+        assertEquals("SELECT * FROM orders", expansion.getVariants().get(0).getSql());
+        assertTrue(expansion.getVariants().get(1).getSql().endsWith("c18 = ? AND c19 = ?"));
+        assertEquals(sqls(expansion), sqls(new DynamicSqlExpander((namespace, id) -> null, 8).expand("demo", xml.toString())));
+        assertTrue(new DynamicSqlExpander((namespace, id) -> null, 8).expand("demo", "<select>").getVariants().isEmpty());
+    }
+
+    private static List<String> sqls(DynamicSqlExpansion expansion) {
+        return expansion.getVariants().stream().map(SqlVariant::getSql).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,50 @@
+package cn.mklaus.sqlagent.mybatis.index;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MapperStatementEntry
+ */
+public class MapperStatementEntryTest {
+
+    @Test
+    public void testEntrySurvivesSerialization() throws IOException {
+        MapperStatementEntry entry = new MapperStatementEntry("com.example.UserMapper", "findActive", "SELECT",
+                List.of("orders", "users"), "3f2a", List.of("columns", "com.example.Common.paging"), 412);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        entry.save(new DataOutputStream(bytes));
+        MapperStatementEntry read = MapperStatementEntry.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(entry, read);
+        assertEquals(List.of("columns", "com.example.Common.paging"), read.getIncludes());
+        assertEquals(412, read.getOffset());
+    }
+
+    @Test
+    public void testTablesOfParsableStatement() {
+        assertEquals(List.of("orders", "users"), MapperStatementEntry.findTables(
+                "SELECT u.id FROM app.users u JOIN `orders` o ON o.user_id = u.id WHERE u.id IN (SELECT user_id FROM orders)"));
+        assertEquals(List.of("audit_log"), MapperStatementEntry.findTables(
+                "INSERT INTO audit_log (action) VALUES (?)"));
+    }
+
+    @Test
+    public void testTablesOfDynamicSqlThatDoesNotParse() {
+        // A <where> body starting with AND, as MyBatisSqlExtractor leaves it
+        assertEquals(List.of("roles", "users"), MapperStatementEntry.findTables(
+                "SELECT * FROM users u LEFT JOIN roles r ON r.id = u.role_id WHERE AND u.name = ?"));
+        assertEquals(List.of("users"), MapperStatementEntry.findTables(
+                "UPDATE users SET WHERE id = ?"));
+    }
+}
@@ -0,0 +1,120 @@
+package cn.mklaus.sqlagent.opencode;
+
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for OpenCodeSessionPool
+ */
+public class OpenCodeSessionPoolTest {
+
+    private final List<String> deleted = new ArrayList<>();
+    private final Set<String> gone = new HashSet<>();
+    private final OpenCodeSessionPool pool = new OpenCodeSessionPool(FakeSessionManager::new, Runnable::run);
+
+    @After
+    public void tearDown() {
+        pool.dispose();
+    }
+
+    @Test
+    public void testLeaseCreatesSessionAndRefillsPool() throws Exception {
+        SessionManager manager = pool.getSessionManager("http://localhost:4096/");
+
+        PooledSession first = pool.lease(manager);
+        assertEquals("http://localhost:4096-1", first.getId());
+        assertEquals(2, pool.getIdleCount());
+
+        PooledSession second = pool.lease(manager);
+        assertEquals("http://localhost:4096-2", second.getId()); // Pre-created, oldest first
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void testReleaseReturnsReusableSessionOnce() throws Exception {
+        SessionManager manager = pool.getSessionManager("http://localhost:4096");
+        PooledSession session = pool.lease(manager);
+
+        pool.release(session, true);
+        pool.release(session, true);
+
+        assertEquals(3, pool.getIdleCount());
+        assertSame(session, pool.lease(manager)); // Most recently used first
+        assertTrue(deleted.isEmpty());
+    }
+
+    @Test
+    public void testLeaseSkipsSessionsTheServerLost() throws Exception {
+        SessionManager manager = pool.getSessionManager("http://localhost:4096");
+        pool.release(pool.lease(manager), true);
+
+        // Server restarted: none of the idle sessions exist anymore
+        gone.addAll(List.of("http://localhost:4096-1", "http://localhost:4096-2", "http://localhost:4096-3"));
+
+        assertEquals("http://localhost:4096-4", pool.lease(manager).getId());
+    }
+
+    @Test
+    public void testEvictsFailedAndWornOutSessions() throws Exception {
+        SessionManager manager = pool.getSessionManager("http://localhost:4096");
+        PooledSession failed = pool.lease(manager);
+        PooledSession large = pool.lease(manager);
+        large.recordUse(JsonParser.parseString("{\"info\":{\"tokens\":{\"input\":70000,\"output\":500}}}").getAsJsonObject());
+
+        pool.release(failed, false);
+        pool.release(large, true);
+
+        assertEquals(List.of(failed.getId(), large.getId()), deleted);
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void testServerChangeAndDisposeDeleteIdleSessions() throws Exception {
+        pool.lease(pool.getSessionManager("http://localhost:4096"));
+
+        SessionManager other = pool.getSessionManager("http://localhost:5000");
+        assertEquals(List.of("http://localhost:4096-2", "http://localhost:4096-3"), deleted);
+
+        pool.lease(other);
+        pool.dispose();
+        assertEquals(4, deleted.size());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    /**
+     * Session operations without a server; fails if called while the pool holds its lock
+     */
+    private class FakeSessionManager extends SessionManager {
+        private int created;
+
+        FakeSessionManager(String serverUrl) {
+            super(serverUrl, null, null);
+        }
+
+        @Override
+        public String createSession() {
+            assertFalse(Thread.holdsLock(pool));
+            return getServerUrl() + "-" + ++created;
+        }
+
+        @Override
+        public void deleteSession(String sessionId) {
+            assertFalse(Thread.holdsLock(pool));
+            deleted.add(sessionId);
+        }
+
+        @Override
+        public boolean isSessionValid(String sessionId) {
+            assertFalse(Thread.holdsLock(pool));
+            return !gone.contains(sessionId);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package cn.mklaus.sqlagent.opencode;
+
+import cn.mklaus.sqlagent.model.OptimizationSuggestion;
+import okio.Buffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for SessionEventDecoder and the event stream framing
+ */
+public class SessionEventDecoderTest {
+
+    private final List<String> received = new ArrayList<>();
+
+    private final SessionEventListener listener = new SessionEventListener() {
+        @Override
+        public void onToolCall(String tool, String status) {
+            received.add("tool " + tool + " " + status);
+        }
+
+        @Override
+        public void onReasoning(String delta) {
+            received.add("reasoning " + delta);
+        }
+
+        @Override
+        public void onSuggestion(OptimizationSuggestion suggestion) {
+            received.add("suggestion " + suggestion.getTitle());
+        }
+    };
+
+    @Test
+    public void testFindsOnlyClosedSuggestionObjects() {
+        String partial = "```json\n{\"optimizedSql\": \"SELECT 1\", \"suggestions\": [\n"
+                + "  {\"title\": \"Add index {a}\", \"description\": \"say \\\"hi\\\"\"},\n"
+                + "  {\"title\": \"Rewrite";
+        assertEquals(1, SessionEventDecoder.findCompleteSuggestions(partial).size());
+        String finished = partial + "\"}, {\"title\": \"x\"}], \"other\": [{}]}";
+        assertEquals(3, SessionEventDecoder.findCompleteSuggestions(finished).size());
+        assertTrue(SessionEventDecoder.findCompleteSuggestions("{\"suggestions\"").isEmpty());
+    }
+
+    @Test
+    public void testReportsChangesOfOwnSessionOnly() throws Exception {
+        String stream = event("ses1", "msg-user", "text", "\"text\":\"{\\\"suggestions\\\": [{\\\"title\\\": \\\"prompt\\\"}]}\"")
+                + event("ses2", "msg-a", "reasoning", "\"text\":\"other session\"")
+                + event("ses1", "msg-a", "reasoning", "\"text\":\"Checking\"")
+                + event("ses1", "msg-a", "reasoning", "\"text\":\"Checking indexes\"")
+                + event("ses1", "msg-a", "tool", "\"tool\":\"explain_sql\",\"state\":{\"status\":\"running\"}")
+                + event("ses1", "msg-a", "tool", "\"tool\":\"explain_sql\",\"state\":{\"status\":\"running\"}")
+                + event("ses1", "msg-a", "tool", "\"tool\":\"explain_sql\",\"state\":{\"status\":\"completed\"}")
+                + event("ses1", "msg-a", "text", "\"text\":\"{\\\"suggestions\\\": [{\\\"title\\\": \\\"Add index\\\"}\"")
+                + event("ses1", "msg-a", "text", "\"text\":\"{\\\"suggestions\\\": [{\\\"title\\\": \\\"Add index\\\"}, {\\\"title\\\": \\\"Use\"")
+                + "data: not json\n\n";
+
+        OpenCodeEventStream.readEvents(new Buffer().writeUtf8(stream),
+                new SessionEventDecoder("ses1", "msg-user", listener));
+
+        assertEquals(List.of(
+                "reasoning Checking",
+                "reasoning  indexes",
+                "tool explain_sql running",
+                "tool explain_sql completed",
+                "suggestion Add index"), received);
+    }
+
+    /**
+     * A message.part.updated event as OpenCode sends it; reasoning, tool and text parts get distinct IDs
+     */
+    private static String event(String sessionId, String messageId, String type, String fields) {
+        return "event: message\n"
+                + "data: {\"type\":\"message.part.updated\",\"properties\":{\"part\":{\"id\":\"prt-" + messageId + "-" + type
+                + "\",\"sessionID\":\"" + sessionId + "\",\"messageID\":\"" + messageId + "\",\"type\":\"" + type + "\","
+                + fields + "}}}\n\n";
+    }
+}